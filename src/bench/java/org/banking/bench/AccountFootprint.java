@@ -0,0 +1,103 @@
+package org.banking.bench;
+
+import org.banking.model.AccountSlots;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Retained heap of a book of `accounts` accounts (ten per customer) held as
+ * Account objects (heap) versus in AccountSlots (slots), and what the
+ * collector pays for it: the time of a full collection with the book live,
+ * and the collections and their total time while a million random deposits,
+ * withdrawals and transfers run against it. With slots the heap holds only
+ * the customers, so the pauses follow the customer count, not the account
+ * count.
+ *
+ * Usage: AccountFootprint [heap|slots] [accounts]   (default: slots 10000000)
+ * Run each layout in its own JVM; slots need direct memory for 64 bytes an
+ * account plus the index, e.g.
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=org.banking.bench.AccountFootprint \
+ *       -Dbench.jvm="-Xmx4g -XX:MaxDirectMemorySize=2g" -Dbench.args="slots 20000000"
+ */
+public class AccountFootprint {
+
+    private static final int OPERATIONS = 1_000_000;
+
+    // Keeps the book reachable while the heap is measured.
+    private static Object retained;
+
+    public static void main(String[] args) {
+        String layout = args.length > 0 ? args[0] : "slots";
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        long before = usedHeap();
+        BankingService service = new BankingService();
+        AccountSlots slots = layout.equals("slots") ? new AccountSlots(accounts) : null;
+        service.setAccountSlots(slots);
+        for (int i = 0; i < accounts; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i / 10);
+            if (i % 10 == 0) {
+                service.registerCustomer(new Customer(customerId, "First", "Last"));
+            }
+            service.createAccount(customerId, BankingServiceBenchmark.accountNumberFor(i), "CHECKING", 1000.0);
+        }
+        retained = service;
+        long bytes = usedHeap() - before;
+        System.out.printf("%s: %,d accounts retain %,d MB of heap (%.1f bytes/account), %,d MB off the heap%n",
+                          layout, accounts, bytes >> 20, (double) bytes / accounts,
+                          slots == null ? 0 : slots.getOffHeapBytes() >> 20);
+
+        long start = System.nanoTime();
+        System.gc();
+        System.out.printf("full collection: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        String[] numbers = new String[4096];
+        Random random = new Random(42);
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = BankingServiceBenchmark.accountNumberFor(random.nextInt(accounts));
+        }
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            String number = numbers[i & (numbers.length - 1)];
+            switch (i % 3) {
+                case 0: service.processTransaction(number, "DEPOSIT", 5.0); break;
+                case 1: service.processTransaction(number, "WITHDRAWAL", 5.0); break;
+                default: service.transferFunds(number, numbers[(i * 31) & (numbers.length - 1)], 1.0); break;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("traffic: %.0f ns/op, %d collections, %d ms in GC (total balance %s)%n",
+                          (double) nanos / OPERATIONS, gcCount() - gcCount, gcTime() - gcTime,
+                          service.getTotalBankBalance());
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += gc.getCollectionTime();
+        }
+        return millis;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,90 @@
+package org.banking.bench;
+
+import org.banking.files.BankingFiles;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BankingFiles save and load of the full customer list, each customer with
+ * one account and a short transaction history, in Java serialization
+ * (saveCustomers, loadCustomers) and the binary snapshot format
+ * (saveSnapshot, loadSnapshot); setup prints both file sizes. Uses temp
+ * files so the working directory's customers.dat is never touched. 10M customers is left
+ * out of the default sizes: Java serialization's handle table alone outgrows
+ * the heap there; pass -p customerCount=10000000 with a larger -Xmx to try.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BankingFilesBenchmark {
+
+    private static final int HISTORY_PER_ACCOUNT = 4;
+
+    @Param({"1000", "100000", "1000000"})
+    public int customerCount;
+
+    private List<Customer> customers;
+    private File saveFile;
+    private File loadFile;
+    private File snapshotLoadFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BankingService service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            String accountNumber = BankingServiceBenchmark.accountNumberFor(i);
+            service.registerCustomer(new Customer(customerId, "First", "Last",
+                                                  "customer@example.com", "5551234567", "1 Main Street"));
+            service.createAccount(customerId, accountNumber, "CHECKING", 1000.0);
+            for (int t = 0; t < HISTORY_PER_ACCOUNT; t++) {
+                service.processTransaction(accountNumber, "DEPOSIT", 10.0);
+            }
+        }
+        customers = service.getAllCustomers();
+        saveFile = File.createTempFile("bench-save", ".dat");
+        loadFile = File.createTempFile("bench-load", ".dat");
+        BankingFiles.saveCustomers(customers, loadFile);
+        snapshotLoadFile = File.createTempFile("bench-load", ".bsn");
+        BankingFiles.saveSnapshot(customers, snapshotLoadFile);
+        System.out.printf("%n%d customers: serialized %d bytes, binary snapshot %d bytes%n",
+                          customerCount, loadFile.length(), snapshotLoadFile.length());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveFile.delete();
+        loadFile.delete();
+        snapshotLoadFile.delete();
+    }
+
+    @Benchmark
+    public long saveCustomers() throws IOException {
+        BankingFiles.saveCustomers(customers, saveFile);
+        return saveFile.length();
+    }
+
+    @Benchmark
+    public List<Customer> loadCustomers() throws IOException, ClassNotFoundException {
+        return BankingFiles.loadCustomers(loadFile);
+    }
+
+    @Benchmark
+    public long saveSnapshot() throws IOException {
+        return BankingFiles.saveSnapshot(customers, saveFile);
+    }
+
+    @Benchmark
+    public List<Customer> loadSnapshot() throws IOException {
+        return BankingFiles.loadSnapshot(snapshotLoadFile);
+    }
+}
@@ -0,0 +1,112 @@
+package org.banking.bench;
+
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BankingService read and posting paths against a populated registry where
+ * every customer holds one checking account. Operations pick customers at
+ * random across the whole registry, so larger sizes also measure cache
+ * misses. 10M customers needs roughly 8GB of heap. getCustomer on its own
+ * is covered by CustomerLookupBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BankingServiceBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int customerCount;
+
+    private BankingService service;
+    private long[] customerIds;
+    private String[] accountNumbers;
+    private long[] targetCustomerIds;
+    private String[] targetAccountNumbers;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            service.registerCustomer(new Customer(customerIdFor(i), "First", "Last"));
+            service.createAccount(customerIdFor(i), accountNumberFor(i), "CHECKING", 100000.0);
+        }
+        Random random = new Random(42);
+        customerIds = new long[SAMPLES];
+        accountNumbers = new String[SAMPLES];
+        targetCustomerIds = new long[SAMPLES];
+        targetAccountNumbers = new String[SAMPLES];
+        for (int s = 0; s < SAMPLES; s++) {
+            int i = random.nextInt(customerCount);
+            int j = random.nextInt(customerCount);
+            customerIds[s] = customerIdFor(i);
+            accountNumbers[s] = accountNumberFor(i);
+            targetCustomerIds[s] = customerIdFor(j);
+            targetAccountNumbers[s] = accountNumberFor(j);
+        }
+    }
+
+    @Benchmark
+    public double getTotalCustomerBalance() {
+        return service.getTotalCustomerBalance(customerIds[next()]);
+    }
+
+    @Benchmark
+    public double getAccountBalance() {
+        int s = next();
+        return service.getAccountBalance(customerIds[s], accountNumbers[s]);
+    }
+
+    @Benchmark
+    public boolean processDeposit() {
+        int s = next();
+        return service.processTransaction(customerIds[s], accountNumbers[s], "DEPOSIT", 1.0);
+    }
+
+    @Benchmark
+    public boolean processWithdrawal() {
+        int s = next();
+        return service.processTransaction(customerIds[s], accountNumbers[s], "WITHDRAWAL", 1.0);
+    }
+
+    @Benchmark
+    public boolean processInterest() {
+        int s = next();
+        return service.processTransaction(customerIds[s], accountNumbers[s], "INTEREST", 0.0);
+    }
+
+    @Benchmark
+    public boolean processCharge() {
+        int s = next();
+        return service.processTransaction(customerIds[s], accountNumbers[s], "CHARGE", 1.0);
+    }
+
+    @Benchmark
+    public boolean transferFunds() {
+        int s = next();
+        return service.transferFunds(customerIds[s], accountNumbers[s],
+                                     targetCustomerIds[s], targetAccountNumbers[s], 1.0);
+    }
+
+    private int next() {
+        return cursor++ & (SAMPLES - 1);
+    }
+
+    static long customerIdFor(int i) {
+        return 1_000_000L + i * 7L;
+    }
+
+    static String accountNumberFor(int i) {
+        return String.format("%010d", 1_000_000_000L + i);
+    }
+}
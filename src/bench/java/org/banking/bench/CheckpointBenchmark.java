@@ -0,0 +1,149 @@
+package org.banking.bench;
+
+import org.banking.files.BinarySnapshot;
+import org.banking.files.Checkpointer;
+import org.banking.model.CheckpointGate;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Latency of foreground transfers and deposits while the bank is saved
+ * back to back on a background thread, by mode:
+ *
+ *   off            no saving, no gate (baseline)
+ *   gate           CheckpointGate attached, no checkpoint running
+ *   checkpointing  Checkpointer writing cuts while traffic continues
+ *   pausing        traffic stopped (write lock) for every BinarySnapshot
+ *                  write of the live customers, the alternative without cuts
+ *
+ * Run in SampleTime mode, so the percentiles show what a save adds to the
+ * tail. Teardown prints how many saves ran and the last one's duration,
+ * size and (checkpointing) pause. On a machine with few cores the writer
+ * also competes with the benchmark thread for CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CheckpointBenchmark {
+
+    @Param({"100000"})
+    public int customerCount;
+
+    @Param({"off", "gate", "checkpointing", "pausing"})
+    public String mode;
+
+    private BankingService service;
+    private String[] accountNumbers;
+    private Path file;
+    private Checkpointer checkpointer;
+    private final ReentrantReadWriteLock traffic = new ReentrantReadWriteLock();
+    private volatile boolean stopping;
+    private Thread pauser;
+    private volatile long saves;
+    private volatile long lastSaveNanos;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        service = new BankingService(true);
+        service.setHistoryRetention(16, null); // history must not pile up over the run
+        if (!mode.equals("off") && !mode.equals("pausing")) {
+            service.setCheckpointGate(new CheckpointGate());
+        }
+        accountNumbers = new String[customerCount];
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            accountNumbers[i] = BankingServiceBenchmark.accountNumberFor(i);
+            service.registerCustomer(new Customer(customerId, "First", "Last",
+                                                  "customer@example.com", "5551234567", "1 Main Street"));
+            service.createAccount(customerId, accountNumbers[i], "CHECKING", 1_000_000);
+        }
+        file = Files.createTempFile(Files.createDirectories(Path.of("target")), "bench-checkpoint", ".bsn");
+        if (mode.equals("checkpointing")) {
+            checkpointer = Checkpointer.open(service, file);
+            checkpointer.startCheckpoints(1);
+        } else if (mode.equals("pausing")) {
+            pauser = new Thread(this::pauseAndSave, "pausing-saver");
+            pauser.setDaemon(true);
+            pauser.start();
+        }
+    }
+
+    private void pauseAndSave() {
+        while (!stopping) {
+            traffic.writeLock().lock();
+            try {
+                long start = System.nanoTime();
+                BinarySnapshot.write(service.getAllCustomers(), file);
+                lastSaveNanos = System.nanoTime() - start;
+                saves++;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                traffic.writeLock().unlock();
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (checkpointer != null) {
+            checkpointer.close();
+            System.out.printf("%n%d checkpoints, last %.1f ms, %d bytes, paused traffic %.3f ms%n",
+                              checkpointer.getCheckpointCount(), checkpointer.getLastCheckpointNanos() / 1e6,
+                              checkpointer.getLastCheckpointBytes(), checkpointer.getLastPauseNanos() / 1e6);
+        }
+        if (pauser != null) {
+            stopping = true;
+            pauser.join();
+            System.out.printf("%n%d paused saves, last %.1f ms, %d bytes%n",
+                              saves, lastSaveNanos / 1e6, Files.size(file));
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String from = accountNumbers[random.nextInt(customerCount)];
+        String to = accountNumbers[random.nextInt(customerCount)];
+        if (pauser == null) {
+            return service.transferFunds(from, to, 1);
+        }
+        traffic.readLock().lock();
+        try {
+            return service.transferFunds(from, to, 1);
+        } finally {
+            traffic.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        String to = accountNumbers[ThreadLocalRandom.current().nextInt(customerCount)];
+        if (pauser == null) {
+            return service.processTransaction(to, "DEPOSIT", 1);
+        }
+        traffic.readLock().lock();
+        try {
+            return service.processTransaction(to, "DEPOSIT", 1);
+        } finally {
+            traffic.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.banking.bench;
+
+import org.banking.model.Account;
+import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.banking.utils.EpochClock;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of stamping a transaction under each EpochClock mode: the clock read
+ * itself, creating a Transaction, appending to a TransactionLog and a full
+ * Account deposit. legacyLocalDateTimeNow is the LocalDateTime.now() call
+ * Transaction used to make for every entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ClockBenchmark {
+
+    @Param({"precise", "coarse"})
+    public String mode;
+
+    private TransactionLog log;
+    private Account account;
+
+    @Setup(Level.Trial)
+    public void setUpClock() {
+        if (mode.equals("coarse")) {
+            EpochClock.useCoarse(EpochClock.DEFAULT_TICK_MICROS);
+        } else {
+            EpochClock.usePrecise();
+        }
+    }
+
+    // Bounded ring with no overflow, so appends do not pile up across the run.
+    @Setup(Level.Iteration)
+    public void setUpHistory() {
+        log = new TransactionLog(1024, null);
+        account = new Account("1000000000", "CHECKING", 1000.0, 1L, new TransactionLog(1024, null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        EpochClock.usePrecise();
+    }
+
+    @Benchmark
+    public long clockRead() {
+        return EpochClock.nowMicros();
+    }
+
+    @Benchmark
+    public LocalDateTime legacyLocalDateTimeNow() {
+        return LocalDateTime.now();
+    }
+
+    @Benchmark
+    public Transaction createTransaction() {
+        return Transaction.ofMinor("DEPOSIT", 100, 100_000);
+    }
+
+    @Benchmark
+    public int appendToLog() {
+        log.append(TransactionType.DEPOSIT, 100, 100_000);
+        return log.size();
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        return account.depositMinor(1);
+    }
+}
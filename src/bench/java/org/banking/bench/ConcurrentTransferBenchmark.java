@@ -0,0 +1,68 @@
+package org.banking.bench;
+
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uniform random transfers between accounts, striped locking versus a single
+ * global lock around a non-concurrent service. Run with increasing thread
+ * counts to check scaling, e.g. -t 1, -t 2, -t 4 ... up to the core count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConcurrentTransferBenchmark {
+
+    @Param({"10000"})
+    public int accountCount;
+
+    private BankingService striped;
+    private BankingService global;
+    private String[] accountNumbers;
+
+    // Rebuilt every iteration so transaction history does not pile up across the run.
+    @Setup(Level.Iteration)
+    public void setUp() {
+        striped = populate(new BankingService(true));
+        global = populate(new BankingService());
+    }
+
+    private BankingService populate(BankingService service) {
+        accountNumbers = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountNumbers[i] = String.format("%010d", i);
+            service.registerCustomer(new Customer(i + 1, "First", "Last"));
+            service.createAccount(i + 1, accountNumbers[i], "CHECKING", 1_000_000);
+        }
+        return service;
+    }
+
+    @Benchmark
+    public boolean stripedTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return striped.transferFunds(accountNumbers[random.nextInt(accountCount)],
+                accountNumbers[random.nextInt(accountCount)], 1);
+    }
+
+    @Benchmark
+    public boolean globalLockTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String from = accountNumbers[random.nextInt(accountCount)];
+        String to = accountNumbers[random.nextInt(accountCount)];
+        synchronized (global) {
+            return global.transferFunds(from, to, 1);
+        }
+    }
+
+    @Benchmark
+    public double stripedBalanceRead() {
+        return striped.getAccountBalance(accountNumbers[ThreadLocalRandom.current().nextInt(accountCount)]);
+    }
+}
@@ -0,0 +1,60 @@
+package org.banking.bench;
+
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures BankingService.getCustomer as the registry grows.
+ * Lookup cost should stay flat from 1K to 10M customers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CustomerLookupBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int customerCount;
+
+    private BankingService service;
+    private long[] lookupIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            service.registerCustomer(new Customer(idFor(i), "First", "Last"));
+        }
+        Random random = new Random(42);
+        lookupIds = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookupIds[i] = idFor(random.nextInt(customerCount));
+        }
+    }
+
+    @Benchmark
+    public Customer getCustomer() {
+        long id = lookupIds[cursor++ & (LOOKUPS - 1)];
+        return service.getCustomer(id);
+    }
+
+    @Benchmark
+    public Customer getMissingCustomer() {
+        long id = -lookupIds[cursor++ & (LOOKUPS - 1)];
+        return service.getCustomer(id);
+    }
+
+    private static long idFor(int i) {
+        // Spread IDs out so they are not a dense 0..n range.
+        return 1_000_000L + i * 7L;
+    }
+}
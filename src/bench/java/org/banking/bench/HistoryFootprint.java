@@ -0,0 +1,105 @@
+package org.banking.bench;
+
+import org.banking.files.HistoryArchive;
+import org.banking.model.Account;
+import org.banking.model.Customer;
+import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Retained heap of a transaction history held as a columnar TransactionLog
+ * versus the previous ArrayList of Transaction objects, and of a log whose
+ * history is aged into a HistoryArchive every million entries (archived,
+ * which also reports the archive's size on disk and the time to scan the
+ * whole history back).
+ *
+ * Usage: HistoryFootprint [log|objects|archived] [entries]   (default: log 100000000)
+ * Run each layout in its own JVM with enough heap, e.g.
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=org.banking.bench.HistoryFootprint \
+ *       -Dbench.jvm=-Xmx16g -Dbench.args="objects 100000000"
+ */
+public class HistoryFootprint {
+
+    // Keeps the history reachable while the heap is measured.
+    private static Object retained;
+
+    public static void main(String[] args) throws IOException {
+        String layout = args.length > 0 ? args[0] : "log";
+        int entries = args.length > 1 ? Integer.parseInt(args[1]) : 100_000_000;
+
+        long before = usedHeap();
+        if (layout.equals("objects")) {
+            List<Transaction> list = new ArrayList<>();
+            for (int i = 0; i < entries; i++) {
+                list.add(Transaction.ofMinor("DEPOSIT", i, i));
+            }
+            retained = list;
+        } else if (layout.equals("archived")) {
+            archived(entries, before);
+            return;
+        } else {
+            TransactionLog log = new TransactionLog();
+            for (int i = 0; i < entries; i++) {
+                log.append(TransactionType.DEPOSIT, i, i);
+            }
+            retained = log;
+        }
+        long after = usedHeap();
+
+        long bytes = after - before;
+        System.out.printf("%s: %,d entries retain %,d MB (%.1f bytes/entry)%n",
+                          layout, entries, bytes >> 20, (double) bytes / entries);
+    }
+
+    private static void archived(int entries, long before) throws IOException {
+        Path directory = Files.createTempDirectory(Files.createDirectories(Path.of("target")), "bench-archive");
+        try (HistoryArchive archive = HistoryArchive.open(directory)) {
+            TransactionLog log = new TransactionLog(TransactionLog.DEFAULT_CAPACITY, archive.newStore());
+            Customer customer = new Customer(1, "First", "Last");
+            customer.addAccount(new Account("A1", "CHECKING", 0.0, 1, log));
+            long disk = 0;
+            for (int i = 0; i < entries; i++) {
+                log.append(TransactionType.DEPOSIT, i, i);
+                if ((i + 1) % 1_000_000 == 0) {
+                    archive.age(List.of(customer), Long.MAX_VALUE);
+                    disk += archive.getLastAgeBytes();
+                }
+            }
+            retained = customer;
+            long bytes = usedHeap() - before;
+            System.out.printf("archived: %,d entries retain %,d KB (%.2f bytes/entry), %,d MB on disk"
+                              + " (%.2f bytes/entry)%n", entries, bytes >> 10, (double) bytes / entries,
+                              disk >> 20, (double) disk / entries);
+
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < log.size(); i++) {
+                sum += log.getBalanceAfter(i);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("full scan: %.1f ms (%.1f ns/entry, checksum %d)%n",
+                              nanos / 1e6, (double) nanos / entries, sum);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
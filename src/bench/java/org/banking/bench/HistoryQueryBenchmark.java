@@ -0,0 +1,79 @@
+package org.banking.bench;
+
+import org.banking.model.HistoryCursor;
+import org.banking.model.HistoryView;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-range queries over a long history: a one-hour window out of entries
+ * stamped one a second. linearFilter is the previous approach (walk the
+ * whole history comparing timestamps); binarySearch is TransactionLog.between;
+ * the typed variants count the INTEREST entries (1 in 100) in the window by
+ * scanning it and through the per-type index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HistoryQueryBenchmark {
+
+    private static final long T0 = 1_700_000_000_000_000L;
+    private static final long SECOND = 1_000_000L;
+
+    @Param({"100000", "10000000"})
+    public int entries;
+
+    private TransactionLog log;
+    private TransactionLog indexed;
+    private long from;
+    private long to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        log = new TransactionLog();
+        indexed = new TransactionLog();
+        indexed.enableTypeIndex();
+        for (int i = 0; i < entries; i++) {
+            byte type = i % 100 == 0 ? TransactionType.INTEREST : TransactionType.DEPOSIT;
+            log.append(type, i, i, T0 + i * SECOND);
+            indexed.append(type, i, i, T0 + i * SECOND);
+        }
+        from = T0 + (entries / 2) * SECOND;
+        to = from + 3600 * SECOND;
+    }
+
+    @Benchmark
+    public int linearFilter() {
+        HistoryView all = log.toList();
+        int count = 0;
+        for (int i = 0; i < all.size(); i++) {
+            long t = all.getTimestampMicros(i);
+            if (t >= from && t < to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int binarySearch() {
+        return log.between(from, to).size();
+    }
+
+    @Benchmark
+    public int typedScan() {
+        return log.between(from, to, TransactionType.INTEREST).skipAll();
+    }
+
+    @Benchmark
+    public int typedIndex() {
+        HistoryCursor cursor = indexed.between(from, to, TransactionType.INTEREST);
+        return cursor.skipAll();
+    }
+}
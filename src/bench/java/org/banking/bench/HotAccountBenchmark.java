@@ -0,0 +1,59 @@
+package org.banking.bench;
+
+import org.banking.model.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention on a single hot account: a deposit/withdraw mix from 1 to 64
+ * threads hitting the CAS balance path of one Account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HotAccountBenchmark {
+
+    private Account hot;
+
+    // Rebuilt every iteration so transaction history does not pile up across the run.
+    @Setup(Level.Iteration)
+    public void setUp() {
+        hot = new Account("1000000000", "CHECKING", 1_000_000_000.0, 1L);
+    }
+
+    private boolean mixedOperation() {
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            return hot.deposit(1.0);
+        }
+        return hot.withdraw(1.0);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean threads01() {
+        return mixedOperation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean threads04() {
+        return mixedOperation();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean threads16() {
+        return mixedOperation();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean threads64() {
+        return mixedOperation();
+    }
+}
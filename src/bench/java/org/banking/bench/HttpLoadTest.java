@@ -0,0 +1,162 @@
+package org.banking.bench;
+
+import org.banking.api.BankingHttpServer;
+import org.banking.service.BankingService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load generator for the HTTP API. Each simulated client is a
+ * virtual thread issuing a mix of balance reads (70%), deposits (20%) and
+ * transfers (10%) back to back. Prints requests/sec and p50/p99/p999 latency.
+ *
+ * Usage: HttpLoadTest [baseUrl|embedded] [clients] [seconds] [accounts]
+ * With "embedded" (the default) a server is started in-process on a free port.
+ */
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "embedded";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int accounts = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        BankingHttpServer embedded = null;
+        String baseUrl = target;
+        if (target.equals("embedded")) {
+            embedded = new BankingHttpServer(new BankingService(true), 0);
+            embedded.start();
+            baseUrl = "http://localhost:" + embedded.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+        String[] accountNumbers = seed(client, baseUrl, accounts);
+        System.out.printf("Seeded %d accounts at %s; running %d clients for %ds%n",
+                          accounts, baseUrl, clients, seconds);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LatencyRecorder[] recorders = new LatencyRecorder[clients];
+        final String url = baseUrl;
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long started = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders[c] = recorder;
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = nextRequest(url, accountNumbers, random);
+                    long t0 = System.nanoTime();
+                    try {
+                        client.send(request, HttpResponse.BodyHandlers.discarding());
+                        recorder.record(System.nanoTime() - t0);
+                    } catch (Exception e) {
+                        recorder.errors++;
+                    }
+                }
+                return null;
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+
+        report(recorders, elapsed);
+        if (embedded != null) {
+            embedded.stop();
+        }
+    }
+
+    private static String[] seed(HttpClient client, String baseUrl, int accounts) throws Exception {
+        String[] numbers = new String[accounts];
+        long customerBase = 900_000_000L + ThreadLocalRandom.current().nextInt(1_000_000) * 1000L;
+        for (int i = 0; i < accounts; i++) {
+            long customerId = customerBase + i;
+            numbers[i] = String.format("%010d", customerId);
+            send(client, post(baseUrl + "/customers",
+                "{\"customerId\":" + customerId + ",\"firstName\":\"Load\",\"lastName\":\"Test\"}"));
+            send(client, post(baseUrl + "/accounts",
+                "{\"customerId\":" + customerId + ",\"accountNumber\":\"" + numbers[i]
+                + "\",\"accountType\":\"CHECKING\",\"initialBalance\":100000}"));
+        }
+        return numbers;
+    }
+
+    private static HttpRequest nextRequest(String baseUrl, String[] accounts, ThreadLocalRandom random) {
+        String account = accounts[random.nextInt(accounts.length)];
+        int dice = random.nextInt(10);
+        if (dice < 7) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + account + "/balance")).GET().build();
+        }
+        if (dice < 9) {
+            return post(baseUrl + "/accounts/" + account + "/deposit", "{\"amount\":1}");
+        }
+        String other = accounts[random.nextInt(accounts.length)];
+        return post(baseUrl + "/transfers", "{\"from\":\"" + account + "\",\"to\":\"" + other + "\",\"amount\":1}");
+    }
+
+    private static HttpRequest post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static void report(LatencyRecorder[] recorders, double elapsedSeconds) {
+        int total = 0;
+        long errors = 0;
+        for (LatencyRecorder r : recorders) {
+            total += r.count;
+            errors += r.errors;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (LatencyRecorder r : recorders) {
+            System.arraycopy(r.samples, 0, all, offset, r.count);
+            offset += r.count;
+        }
+        Arrays.sort(all);
+        System.out.printf("requests: %d  errors: %d  elapsed: %.1fs%n", total, errors, elapsedSeconds);
+        System.out.printf("throughput: %.0f req/s%n", total / elapsedSeconds);
+        System.out.printf("latency p50: %.3f ms  p99: %.3f ms  p999: %.3f ms  max: %.3f ms%n",
+                          percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+                          total == 0 ? 0.0 : all[total - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Per-client latency samples in nanoseconds; only its own thread writes it.
+     */
+    private static final class LatencyRecorder {
+        long[] samples = new long[1024];
+        int count;
+        long errors;
+
+        void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count << 1);
+            }
+            samples[count++] = nanos;
+        }
+    }
+}
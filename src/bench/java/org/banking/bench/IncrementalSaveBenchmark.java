@@ -0,0 +1,108 @@
+package org.banking.bench;
+
+import org.banking.files.BinarySnapshot;
+import org.banking.files.CustomerSegments;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One save after changePercent of customerCount customers (one account
+ * each, HISTORY_PER_ACCOUNT entries of history) posted a deposit:
+ * saveChanged writes only those customers to a CustomerSegments segment,
+ * saveFull writes every customer to a BinarySnapshot. Both include the
+ * time to post the deposits; only saveChanged forces its file to disk.
+ * Each iteration compacts the segments first so they do not pile up; the
+ * bytes of the last save are printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IncrementalSaveBenchmark {
+
+    private static final int HISTORY_PER_ACCOUNT = 4;
+
+    @Param({"1000000"})
+    public int customerCount;
+
+    @Param({"0.1", "1", "10"})
+    public double changePercent;
+
+    private BankingService service;
+    private List<Customer> customers;
+    private Path full;
+    private Path directory;
+    private CustomerSegments segments;
+    private int changesPerSave;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            String accountNumber = BankingServiceBenchmark.accountNumberFor(i);
+            service.registerCustomer(new Customer(customerId, "First", "Last",
+                                                  "customer@example.com", "5551234567", "1 Main Street"));
+            service.createAccount(customerId, accountNumber, "CHECKING", 1000.0);
+            for (int t = 0; t < HISTORY_PER_ACCOUNT; t++) {
+                service.processTransaction(accountNumber, "DEPOSIT", 10.0);
+            }
+        }
+        customers = service.getAllCustomers();
+        changesPerSave = Math.max(1, (int) (customerCount * changePercent / 100));
+        Path target = Files.createDirectories(Path.of("target"));
+        full = Files.createTempFile(target, "bench-full", ".bsn");
+        directory = Files.createTempDirectory(target, "bench-segments");
+        segments = CustomerSegments.open(directory);
+        segments.save(customers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%d customers, %.1f%% changed: segment %d bytes, full snapshot %d bytes%n",
+                          customerCount, changePercent, segments.getLastSaveBytes(), Files.size(full));
+        segments.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+        Files.deleteIfExists(full);
+    }
+
+    @Setup(Level.Iteration)
+    public void compact() throws IOException {
+        segments.compact();
+    }
+
+    @Benchmark
+    public long saveChanged() throws IOException {
+        change();
+        return segments.save(customers);
+    }
+
+    @Benchmark
+    public long saveFull() throws IOException {
+        change();
+        return BinarySnapshot.write(customers, full);
+    }
+
+    private void change() {
+        for (int i = 0; i < changesPerSave; i++) {
+            service.processTransaction(BankingServiceBenchmark.accountNumberFor(next), "DEPOSIT", 1.0);
+            next = (next + 1) % customerCount;
+        }
+    }
+}
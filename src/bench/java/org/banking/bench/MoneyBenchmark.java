@@ -0,0 +1,78 @@
+package org.banking.bench;
+
+import org.banking.utils.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-point long arithmetic (Money) against the old double path and a
+ * BigDecimal baseline: a run of postings followed by one monthly interest
+ * calculation, which is what Account does on the hot path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final int POSTINGS = 64;
+    private static final BigDecimal TWELVE = BigDecimal.valueOf(12);
+
+    private double[] doubleAmounts;
+    private long[] minorAmounts;
+    private BigDecimal[] decimalAmounts;
+    private double rate;
+    private long rateMinor;
+    private BigDecimal rateDecimal;
+
+    @Setup
+    public void setUp() {
+        doubleAmounts = new double[POSTINGS];
+        minorAmounts = new long[POSTINGS];
+        decimalAmounts = new BigDecimal[POSTINGS];
+        for (int i = 0; i < POSTINGS; i++) {
+            double amount = (i % 2 == 0 ? 1 : -1) * (10.05 + i);
+            doubleAmounts[i] = amount;
+            minorAmounts[i] = Money.of(amount);
+            decimalAmounts[i] = BigDecimal.valueOf(amount);
+        }
+        rate = 0.03;
+        rateMinor = Money.rateOf(rate);
+        rateDecimal = BigDecimal.valueOf(rate);
+    }
+
+    @Benchmark
+    public double doubleArithmetic() {
+        double balance = 5000.0;
+        for (double amount : doubleAmounts) {
+            balance += amount;
+        }
+        return balance + balance * rate / 12;
+    }
+
+    @Benchmark
+    public long fixedPointArithmetic() {
+        long balance = Money.ofUnits(5000);
+        for (long amount : minorAmounts) {
+            balance = Money.add(balance, amount);
+        }
+        return Money.add(balance, Money.applyRate(balance, rateMinor, 12));
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalArithmetic() {
+        BigDecimal balance = BigDecimal.valueOf(5000);
+        for (BigDecimal amount : decimalAmounts) {
+            balance = balance.add(amount);
+        }
+        BigDecimal interest = balance.multiply(rateDecimal, MathContext.DECIMAL64)
+                .divide(TWELVE, 2, RoundingMode.HALF_EVEN);
+        return balance.add(interest);
+    }
+}
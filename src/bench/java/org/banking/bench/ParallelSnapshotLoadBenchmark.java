@@ -0,0 +1,95 @@
+package org.banking.bench;
+
+import org.banking.files.BankingFiles;
+import org.banking.files.BinarySnapshot;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a BinarySnapshot of `customerCount` customers (one account
+ * each, `history` deposits in every account's history) with `threads`
+ * threads. read only decodes the file; load also registers the customers
+ * with a fresh concurrent BankingService (BankingFiles.loadSnapshot).
+ * threads = 0 is the sequential path: BinarySnapshot.read(path), then
+ * registerCustomer per customer, as recovery did before.
+ *
+ * Setup prints the snapshot size. The speedup needs as many cores as
+ * threads. For a multi-GB snapshot pass e.g. "-p customerCount=5000000
+ * -p history=100 -jvmArgsAppend -Xmx32g" in bench.filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ParallelSnapshotLoadBenchmark {
+
+    @Param({"500000"})
+    public int customerCount;
+
+    @Param({"20"})
+    public int history;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    private Path file;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BankingService service = new BankingService(true);
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            String accountNumber = BankingServiceBenchmark.accountNumberFor(i);
+            service.registerCustomer(new Customer(customerId, "First" + i, "Last" + i,
+                                                  "customer" + i + "@example.com", "5551234567", "1 Main Street"));
+            service.createAccount(customerId, accountNumber, "CHECKING", 1000.0);
+            for (int h = 0; h < history; h++) {
+                service.processTransaction(accountNumber, "DEPOSIT", 1.0 + h);
+            }
+        }
+        file = Files.createTempFile(Files.createDirectories(Path.of("target")), "bench-parallel", ".bsn");
+        long size = BinarySnapshot.write(service.getAllCustomers(), file);
+        System.out.printf("%nsnapshot: %d customers, %.1f MB%n", customerCount, size / 1e6);
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Customer> read() throws IOException {
+        return threads == 0 ? BinarySnapshot.read(file) : BinarySnapshot.read(file, pool);
+    }
+
+    @Benchmark
+    public BankingService load() throws IOException {
+        BankingService service = new BankingService(true);
+        if (threads == 0) {
+            for (Customer customer : BinarySnapshot.read(file)) {
+                service.registerCustomer(customer);
+            }
+        } else {
+            List<Customer> loaded = BinarySnapshot.read(file, pool);
+            pool.submit(() -> service.registerAll(loaded)).join();
+        }
+        return service;
+    }
+}
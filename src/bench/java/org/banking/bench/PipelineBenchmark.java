@@ -0,0 +1,88 @@
+package org.banking.bench;
+
+import org.banking.model.Customer;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+import org.banking.service.TransactionPipeline;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TransactionPipeline throughput and round-trip latency against the
+ * synchronous transferFunds path. pipelinedTransfers publishes a burst and
+ * waits for all completions, so its score counts finished operations.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PipelineBenchmark {
+
+    private static final int BURST = 1024;
+
+    @Param({"10000"})
+    public int accountCount;
+
+    @Param({"4"})
+    public int shards;
+
+    private BankingService service;
+    private TransactionPipeline pipeline;
+    private String[] accountNumbers;
+    private final AtomicLong completed = new AtomicLong();
+    private final TransactionPipeline.Completion counter = ok -> completed.incrementAndGet();
+
+    // Rebuilt every iteration so transaction history does not pile up across the run.
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new BankingService(true);
+        accountNumbers = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountNumbers[i] = String.format("%010d", i);
+            service.registerCustomer(new Customer(i + 1, "First", "Last"));
+            service.createAccount(i + 1, accountNumbers[i], "CHECKING", 1_000_000);
+        }
+        pipeline = new TransactionPipeline(service, shards, 4096);
+        pipeline.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        pipeline.close();
+    }
+
+    private String randomAccount() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountCount)];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BURST)
+    public void pipelinedTransfers() {
+        long target = completed.get() + BURST;
+        for (int i = 0; i < BURST; i++) {
+            pipeline.transfer(randomAccount(), randomAccount(), 1, counter);
+        }
+        while (completed.get() < target) {
+            Thread.yield();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean synchronousTransfer() {
+        return service.transferFunds(randomAccount(), randomAccount(), 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Boolean pipelinedRoundTrip() throws Exception {
+        return pipeline.submit(TransactionType.DEPOSIT, randomAccount(), null, 1).get();
+    }
+}
@@ -0,0 +1,63 @@
+package org.banking.bench;
+
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * registerCustomer and createAccount on a registry that already holds
+ * customerCount customers. Both grow the registry, so it is rebuilt every
+ * iteration; createAccount spreads new accounts over a pool of customers
+ * registered without accounts so no customer's account list grows long.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RegistrationBenchmark {
+
+    private static final int POOL = 1 << 18;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int customerCount;
+
+    private BankingService service;
+    private long nextCustomerId;
+    private long nextAccountNumber;
+    private int poolCursor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            service.registerCustomer(new Customer(BankingServiceBenchmark.customerIdFor(i), "First", "Last"));
+            service.createAccount(BankingServiceBenchmark.customerIdFor(i),
+                                  BankingServiceBenchmark.accountNumberFor(i), "CHECKING", 1000.0);
+        }
+        for (int p = 0; p < POOL; p++) {
+            service.registerCustomer(new Customer(poolCustomerId(p), "Pool", "Customer"));
+        }
+        nextCustomerId = 5_000_000_000L;
+        nextAccountNumber = 5_000_000_000L;
+        poolCursor = 0;
+    }
+
+    @Benchmark
+    public boolean registerCustomer() {
+        return service.registerCustomer(new Customer(nextCustomerId++, "New", "Customer"));
+    }
+
+    @Benchmark
+    public boolean createAccount() {
+        long customerId = poolCustomerId(poolCursor++ & (POOL - 1));
+        return service.createAccount(customerId, Long.toString(nextAccountNumber++), "SAVINGS", 500.0);
+    }
+
+    private static long poolCustomerId(int p) {
+        return 4_000_000_000L + p;
+    }
+}
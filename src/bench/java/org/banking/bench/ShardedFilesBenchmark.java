@@ -0,0 +1,92 @@
+package org.banking.bench;
+
+import org.banking.files.ShardedFiles;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A book of customerCount customers (one account each) in a ShardedFiles
+ * directory of `shards` shards, each compacted to its accounts.dat:
+ * saveAll rewrites every shard after every customer changed (a deposit
+ * each, then save and compact, in parallel across shards), loadAll reads
+ * every shard, and repairOne rewrites a single shard from the live
+ * customers, the cost of fixing a damaged shard. With one shard the book
+ * is a single file, as before. The parallel part needs as many cores as
+ * shards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShardedFilesBenchmark {
+
+    @Param({"500000"})
+    public int customerCount;
+
+    @Param({"1", "4", "16"})
+    public int shards;
+
+    private BankingService service;
+    private List<Customer> customers;
+    private Path directory;
+    private ShardedFiles files;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            service.registerCustomer(new Customer(customerId, "First", "Last",
+                                                  "customer@example.com", "5551234567", "1 Main Street"));
+            service.createAccount(customerId, BankingServiceBenchmark.accountNumberFor(i), "CHECKING", 1000.0);
+        }
+        customers = service.getAllCustomers();
+        directory = Files.createTempDirectory(Files.createDirectories(Path.of("target")), "bench-shards");
+        files = ShardedFiles.open(directory, shards);
+        files.save(customers);
+        files.compact();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        files.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void changeEveryone() {
+        for (int i = 0; i < customerCount; i++) {
+            service.processTransaction(BankingServiceBenchmark.accountNumberFor(i), "DEPOSIT", 1.0);
+        }
+    }
+
+    @Benchmark
+    public int saveAll() throws IOException {
+        int saved = files.save(customers);
+        files.compact();
+        return saved;
+    }
+
+    @Benchmark
+    public List<Customer> loadAll() throws IOException {
+        return files.load();
+    }
+
+    @Benchmark
+    public void repairOne() throws IOException {
+        files.replace(0, customers);
+    }
+}
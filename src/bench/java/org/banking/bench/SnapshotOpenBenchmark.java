@@ -0,0 +1,121 @@
+package org.banking.bench;
+
+import org.banking.files.BinarySnapshot;
+import org.banking.files.MappedSnapshot;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request after a restart: open a snapshot of customerCount
+ * customers (one account each, HISTORY_PER_ACCOUNT entries of history) and
+ * serve one balance lookup. loadBinary reads the whole BinarySnapshot and
+ * registers every customer first; openMapped maps a MappedSnapshot and
+ * builds only the customer that is asked for. Setup prints the heap each
+ * approach retains, with the mapped one after touching 1% of the accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotOpenBenchmark {
+
+    private static final int HISTORY_PER_ACCOUNT = 16;
+
+    @Param({"100000", "1000000"})
+    public int customerCount;
+
+    private Path binary;
+    private Path mapped;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BankingService service = new BankingService();
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            String accountNumber = BankingServiceBenchmark.accountNumberFor(i);
+            service.registerCustomer(new Customer(customerId, "First", "Last",
+                                                  "customer@example.com", "5551234567", "1 Main Street"));
+            service.createAccount(customerId, accountNumber, "CHECKING", 1000.0);
+            for (int t = 0; t < HISTORY_PER_ACCOUNT; t++) {
+                service.processTransaction(accountNumber, "DEPOSIT", 10.0);
+            }
+        }
+        List<Customer> customers = service.getAllCustomers();
+        Path directory = Files.createDirectories(Path.of("target"));
+        binary = Files.createTempFile(directory, "bench-open", ".bsn");
+        mapped = Files.createTempFile(directory, "bench-open", ".map");
+        BinarySnapshot.write(customers, binary);
+        MappedSnapshot.write(customers, mapped);
+        service = null;
+        customers = null;
+
+        long before = usedHeap();
+        BankingService loaded = loadBinary();
+        long binaryHeap = usedHeap() - before;
+        before = usedHeap();
+        BankingService lazy = openMapped();
+        for (int i = 0; i < customerCount; i += 100) {
+            lazy.getAccount(BankingServiceBenchmark.accountNumberFor(i));
+        }
+        long mappedHeap = usedHeap() - before;
+        System.out.printf("%n%d customers: binary %d MB file, %d MB heap; mapped %d MB file, %d MB heap at 1%% touched%n",
+                          customerCount, Files.size(binary) >> 20, binaryHeap >> 20, Files.size(mapped) >> 20,
+                          mappedHeap >> 20);
+        if (loaded.getTotalAccounts() != lazy.getTotalAccounts()) {
+            throw new IllegalStateException("snapshots disagree");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(mapped);
+    }
+
+    @Setup(Level.Iteration)
+    public void nextProbe() {
+        probe = (probe + 7919) % customerCount;
+    }
+
+    @Benchmark
+    public double loadBinaryAndServe() throws IOException {
+        return loadBinary().getAccountBalance(BankingServiceBenchmark.accountNumberFor(probe));
+    }
+
+    @Benchmark
+    public double openMappedAndServe() throws IOException {
+        return openMapped().getAccountBalance(BankingServiceBenchmark.accountNumberFor(probe));
+    }
+
+    private BankingService loadBinary() throws IOException {
+        BankingService service = new BankingService(true);
+        for (Customer customer : BinarySnapshot.read(binary)) {
+            service.registerCustomer(customer);
+        }
+        return service;
+    }
+
+    private BankingService openMapped() throws IOException {
+        BankingService service = new BankingService(true);
+        service.setCustomerSource(MappedSnapshot.open(mapped));
+        return service;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,100 @@
+package org.banking.bench;
+
+import org.banking.files.BankingStore;
+import org.banking.files.WriteAheadLog;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.banking.service.JournalReplayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restart time of a BankingStore: a book of `accounts` accounts (one per
+ * customer) is checkpointed to a snapshot, then `tail` deposits are logged
+ * after it. restart is the full BankingStore.open (load the snapshot,
+ * replay the tail, reopen the log); replayTail replays only the log tail
+ * into a service holding just the accounts it touches, with `partitions`
+ * replay partitions (restart uses one per core).
+ *
+ * For the 10M-account restart pass "-p accounts=10000000 -jvmArgsAppend
+ * -Xmx16g" in bench.filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StartupBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    @Param({"100000"})
+    public int tail;
+
+    @Param({"1", "4"})
+    public int partitions;
+
+    private Path directory;
+    private Path tailLog;
+    private BankingService replayTarget;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory(Files.createDirectories(Path.of("target")), "bench-store");
+        // PER_INTERVAL: building the book does not need an fsync per operation.
+        try (BankingStore store = BankingStore.open(directory, () -> new BankingService(true),
+                                                    WriteAheadLog.Durability.PER_INTERVAL)) {
+            BankingService service = store.getService();
+            for (int i = 0; i < accounts; i++) {
+                long customerId = BankingServiceBenchmark.customerIdFor(i);
+                service.registerCustomer(new Customer(customerId, "First" + i, "Last" + i));
+                service.createAccount(customerId, BankingServiceBenchmark.accountNumberFor(i), "CHECKING", 1000.0);
+            }
+            store.checkpoint();
+            for (int i = 0; i < tail; i++) {
+                service.processTransaction(BankingServiceBenchmark.accountNumberFor(i % accounts), "DEPOSIT", 1.0);
+            }
+            tailLog = store.getWriteAheadLog().getPath();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpReplayTarget() {
+        replayTarget = new BankingService(true);
+        for (int i = 0; i < Math.min(tail, accounts); i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            replayTarget.registerCustomer(new Customer(customerId, "First" + i, "Last" + i));
+            replayTarget.createAccount(customerId, BankingServiceBenchmark.accountNumberFor(i), "CHECKING", 1000.0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public BankingService restart() throws IOException {
+        try (BankingStore store = BankingStore.open(directory)) {
+            return store.getService();
+        }
+    }
+
+    @Benchmark
+    public long replayTail() throws IOException {
+        JournalReplayer replayer = new JournalReplayer(replayTarget, partitions);
+        long records = WriteAheadLog.replay(tailLog, replayer);
+        replayer.finish();
+        return records;
+    }
+}
@@ -0,0 +1,78 @@
+package org.banking.bench;
+
+import org.banking.model.HistoryView;
+import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.banking.service.StatementRenderer;
+import org.banking.utils.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a full statement to a Writer. legacyPrintln is the previous CLI
+ * path (a DateTimeFormatter.ofPattern plus String.format per line, one
+ * println each); transactionToString materializes Transactions and uses the
+ * current toString(); streamingRenderer is StatementRenderer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatementBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int lines;
+
+    private HistoryView history;
+    private StatementRenderer renderer;
+    private Writer sink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TransactionLog log = new TransactionLog();
+        long micros = 1_700_000_000_000_000L;
+        long balance = 0;
+        for (int i = 0; i < lines; i++) {
+            long amount = 1 + (i % 50_000);
+            balance += amount;
+            log.append(TransactionType.DEPOSIT, amount, balance, micros);
+            micros += 10_000L; // 100 entries a second
+        }
+        history = log.toList();
+        renderer = new StatementRenderer();
+        sink = Writer.nullWriter();
+    }
+
+    @Benchmark
+    public void legacyPrintln() {
+        PrintWriter out = new PrintWriter(sink);
+        for (Transaction t : history) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            out.println(String.format("[%s] %s: Amount=%s, Balance=%s",
+                                      t.getTimestamp().format(formatter), t.getTransactionType(),
+                                      Money.format(t.getAmountMinor()), Money.format(t.getBalanceAfterMinor())));
+        }
+        out.flush();
+    }
+
+    @Benchmark
+    public void transactionToString() throws IOException {
+        for (Transaction t : history) {
+            sink.write(t.toString());
+            sink.write('\n');
+        }
+    }
+
+    @Benchmark
+    public void streamingRenderer() throws IOException {
+        renderer.render(history, 0, history.size(), sink);
+    }
+}
@@ -0,0 +1,48 @@
+package org.banking.bench;
+
+import org.banking.model.Account;
+import org.banking.model.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account.getTransactionHistory for a recent window and for the full
+ * history, as the history grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TransactionHistoryBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int historySize;
+
+    private Account account;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        account = new Account("1000000000", "CHECKING", 100000.0, 1L);
+        for (int i = 0; i < historySize; i++) {
+            if ((i & 1) == 0) {
+                account.deposit(10.0);
+            } else {
+                account.withdraw(10.0);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Transaction> lastTen() {
+        return account.getTransactionHistory(10);
+    }
+
+    @Benchmark
+    public List<Transaction> fullHistory() {
+        return account.getTransactionHistory(Integer.MAX_VALUE);
+    }
+}
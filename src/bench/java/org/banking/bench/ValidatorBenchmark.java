@@ -0,0 +1,61 @@
+package org.banking.bench;
+
+import org.banking.utils.BankingValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BankingValidator checks, each fed a rotating mix of valid and invalid input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    private static final String[] EMAILS = {"alice@example.com", "bob.smith+bank@mail.org", "not-an-email", ""};
+    private static final String[] PHONES = {"5551234567", "0123456789", "555-123-4567", "12345"};
+    private static final String[] ACCOUNT_NUMBERS = {"1000000001", "1234567890123456", "12AB567890", "123"};
+    private static final String[] ACCOUNT_TYPES = {"SAVINGS", "CHECKING", "CREDIT", "BROKERAGE"};
+    private static final double[] AMOUNTS = {0.01, 250.75, 1000000.0, -5.0};
+    private static final long[] CUSTOMER_IDS = {1L, 1234567890L, 9999999999L, 0L};
+
+    private int cursor;
+
+    private int next() {
+        return cursor++ & 3;
+    }
+
+    @Benchmark
+    public boolean isValidEmail() {
+        return BankingValidator.isValidEmail(EMAILS[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidPhone() {
+        return BankingValidator.isValidPhone(PHONES[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidAccountNumber() {
+        return BankingValidator.isValidAccountNumber(ACCOUNT_NUMBERS[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidAmount() {
+        return BankingValidator.isValidAmount(AMOUNTS[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidCustomerId() {
+        return BankingValidator.isValidCustomerId(CUSTOMER_IDS[next()]);
+    }
+
+    @Benchmark
+    public boolean isValidAccountType() {
+        return BankingValidator.isValidAccountType(ACCOUNT_TYPES[next()]);
+    }
+}
@@ -0,0 +1,87 @@
+package org.banking.bench;
+
+import org.banking.files.WriteAheadLog;
+import org.banking.model.Customer;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable throughput of the write-ahead log under each Durability mode,
+ * with 8 concurrent callers. appendAndCommit is the log alone (append one
+ * posting record, then commit); serviceDeposit is a full BankingService
+ * deposit with the log attached as its journal, each caller on its own
+ * account. The log lives in target/, so fsync cost is that of the build
+ * disk. Compare the secondary metrics: forces per op shows how many
+ * records share one fsync under group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(8)
+public class WriteAheadLogBenchmark {
+
+    @Param({"PER_OPERATION", "PER_BATCH", "PER_INTERVAL"})
+    public WriteAheadLog.Durability durability;
+
+    private Path file;
+    private WriteAheadLog wal;
+    private BankingService service;
+    private final AtomicInteger nextCaller = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String accountNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(WriteAheadLogBenchmark bench) {
+            accountNumber = BankingServiceBenchmark.accountNumberFor(bench.nextCaller.getAndIncrement());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createDirectories(Path.of("target", "bench-wal"));
+        file = Files.createTempFile(dir, "bench", ".wal");
+        Files.delete(file);
+        wal = new WriteAheadLog(file, durability, WriteAheadLog.DEFAULT_INTERVAL_MILLIS);
+        service = new BankingService(true);
+        service.setHistoryRetention(64, null);
+        for (int i = 0; i < 64; i++) {
+            long customerId = BankingServiceBenchmark.customerIdFor(i);
+            service.registerCustomer(new Customer(customerId, "First" + i, "Last" + i));
+            service.createAccount(customerId, BankingServiceBenchmark.accountNumberFor(i), "CHECKING", 1000.0);
+        }
+        service.setJournal(wal);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s: %d records, %d forces (%.1f records per force), %.1f MB%n",
+                          durability, wal.getRecordCount(), wal.getForceCount(),
+                          (double) wal.getRecordCount() / Math.max(1, wal.getForceCount()),
+                          wal.size() / 1e6);
+        wal.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void appendAndCommit(Caller caller) {
+        wal.posted(caller.accountNumber, TransactionType.DEPOSIT, 100, 100_000, 1_700_000_000_000_000L);
+        wal.commit();
+    }
+
+    @Benchmark
+    public boolean serviceDeposit(Caller caller) {
+        return service.processTransaction(caller.accountNumber, "DEPOSIT", 1.0);
+    }
+}
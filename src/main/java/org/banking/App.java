@@ -1,18 +1,38 @@
 package org.banking;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import org.banking.api.BankingHttpServer;
 import org.banking.cli.BankingCLI;
+import org.banking.files.BankingStore;
+import org.banking.files.WriteAheadLog;
 import org.banking.service.BankingService;
 import org.banking.model.Customer;
 
 /**
  * Main application entry point for the Banking System.
  * Pre-populates with test data for demonstration.
+ * Run with "--http [port]" to serve the HTTP/JSON API instead of the CLI.
+ * Add "--data <dir>" to keep the bank durable in dir (snapshot plus
+ * write-ahead log, checkpointed every minute) and recover it on start; the
+ * test data is only loaded into an empty store.
  */
 public class App {
-    public static void main(String[] args) {
-        BankingService bankingService = new BankingService();
-        populateTestData(bankingService);
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 60_000L;
+    
+    public static void main(String[] args) throws IOException {
+        String dataDir = optionValue(args, "--data");
+        if (args.length > 0 && args[0].equals("--http")) {
+            int port = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 8080;
+            BankingService concurrentService = openService(dataDir, true);
+            BankingHttpServer server = new BankingHttpServer(concurrentService, port);
+            server.start();
+            System.out.println("Banking HTTP API listening on port " + server.getPort());
+            return;
+        }
+        
+        BankingService bankingService = openService(dataDir, false);
         
         BankingCLI cli = new BankingCLI(bankingService);
         Scanner scanner = new Scanner(System.in);
@@ -29,6 +49,37 @@ public class App {
         cli.startMenu(scanner);
     }
     
+    /**
+     * Creates the service, recovering it from dataDir if one was given. The
+     * store stays open (and checkpointing) for the life of the process.
+     */
+    private static BankingService openService(String dataDir, boolean concurrent) throws IOException {
+        if (dataDir == null) {
+            BankingService service = new BankingService(concurrent);
+            populateTestData(service);
+            return service;
+        }
+        BankingStore store = BankingStore.open(Paths.get(dataDir), () -> new BankingService(concurrent),
+                                               WriteAheadLog.Durability.PER_BATCH);
+        System.out.printf("Recovered %d customers from %s in %d ms (%d log records replayed)%n",
+                          store.getService().getAllCustomers().size(), dataDir,
+                          store.getRecoveryNanos() / 1_000_000L, store.getReplayedRecordCount());
+        if (store.getService().getAllCustomers().isEmpty()) {
+            populateTestData(store.getService());
+        }
+        store.startCheckpoints(CHECKPOINT_INTERVAL_MILLIS);
+        return store.getService();
+    }
+    
+    private static String optionValue(String[] args, String option) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+    
     /**
      * Pre-populate the system with test data
      */
@@ -0,0 +1,330 @@
+package org.banking.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.banking.model.Customer;
+import org.banking.model.HistoryView;
+import org.banking.model.JournalUnavailableException;
+import org.banking.model.NotDurableException;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+import org.banking.utils.BankingValidator;
+import org.banking.utils.Money;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP/JSON front end for BankingService, built on the JDK's
+ * com.sun.net.httpserver. Every request runs on its own virtual thread, so
+ * thousands of concurrent clients do not need a large platform thread pool.
+ *
+ * Routes:
+ * - POST /customers                      register a customer
+ * - POST /accounts                       create an account
+ * - POST /accounts/{number}/deposit      deposit {"amount": ...}
+ * - POST /accounts/{number}/withdraw     withdraw {"amount": ...}
+ * - GET  /accounts/{number}/balance      current balance
+ * - GET  /accounts/{number}/transactions recent history (?limit=N, default 10);
+ *                                        501 for accounts in account slots,
+ *                                        which keep none
+ * - POST /transfers                      transfer {"from", "to", "amount"}
+ *
+ * Invalid input is answered with 400 and an amount that would take a
+ * balance out of range with 422. A change the journal refuses (failed or
+ * closed) is answered with 503 and "applied": false; it has not been
+ * applied, so the client may retry it. A change that was applied but that
+ * the journal failed to make durable (NotDurableException) is answered with
+ * 500 and "applied": true: it must not be retried, and a crash may still
+ * lose it. Any other failure is answered with 500, so a client always gets
+ * a reply rather than a dropped connection.
+ *
+ * The service must be in concurrent mode.
+ */
+public class BankingHttpServer {
+
+    private static final int BACKLOG = 1024;
+
+    private final BankingService bankingService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public BankingHttpServer(BankingService bankingService, int port) throws IOException {
+        if (bankingService == null || !bankingService.isConcurrent()) {
+            throw new IllegalArgumentException("BankingHttpServer requires a BankingService in concurrent mode");
+        }
+        this.bankingService = bankingService;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/customers", guarded(this::handleCustomers));
+        server.createContext("/accounts", guarded(this::handleAccounts));
+        server.createContext("/transfers", guarded(this::handleTransfers));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleCustomers(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().equals("/customers")) {
+                sendError(exchange, 404, "not found");
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "method not allowed");
+                return;
+            }
+            Map<String, String> body = readBody(exchange);
+            long id = Long.parseLong(required(body, "customerId"));
+            String email = body.get("email");
+            String phone = body.get("phone");
+            if (email != null && !BankingValidator.isValidEmail(email)) {
+                sendError(exchange, 400, "invalid email");
+                return;
+            }
+            if (phone != null && !BankingValidator.isValidPhone(phone)) {
+                sendError(exchange, 400, "invalid phone");
+                return;
+            }
+            Customer customer = new Customer(id, required(body, "firstName"), required(body, "lastName"),
+                                             email, phone, body.get("address"));
+            if (!bankingService.registerCustomer(customer)) {
+                sendError(exchange, 409, "customer already exists");
+                return;
+            }
+            send(exchange, 201, new StringBuilder("{\"customerId\":").append(id).append('}'));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void handleAccounts(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/accounts") || path.equals("/accounts/")) {
+                if (!method.equals("POST")) {
+                    sendError(exchange, 405, "method not allowed");
+                    return;
+                }
+                createAccount(exchange);
+                return;
+            }
+            // /accounts/{number}/{action}
+            String[] parts = path.split("/");
+            if (parts.length != 4) {
+                sendError(exchange, 404, "not found");
+                return;
+            }
+            String accountNumber = parts[2];
+            String action = parts[3];
+            // Accounts in account slots have no Account object: go by number.
+            if (bankingService.getAccountBalanceMinor(accountNumber) == BankingService.NO_BALANCE) {
+                sendError(exchange, 404, "account not found");
+                return;
+            }
+            switch (action) {
+                case "balance":
+                    if (requireMethod(exchange, "GET")) {
+                        sendBalance(exchange, 200, true, accountNumber);
+                    }
+                    break;
+                case "transactions":
+                    if (requireMethod(exchange, "GET")) {
+                        sendHistory(exchange, accountNumber);
+                    }
+                    break;
+                case "deposit":
+                case "withdraw":
+                    if (requireMethod(exchange, "POST")) {
+                        double amount = parseAmount(readBody(exchange));
+                        String type = action.equals("deposit") ? "DEPOSIT" : "WITHDRAWAL";
+                        boolean ok = bankingService.processTransaction(accountNumber, type, amount);
+                        sendBalance(exchange, ok ? 200 : 422, ok, accountNumber);
+                    }
+                    break;
+                default:
+                    sendError(exchange, 404, "not found");
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void createAccount(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        long customerId = Long.parseLong(required(body, "customerId"));
+        String accountNumber = required(body, "accountNumber");
+        String accountType = required(body, "accountType");
+        double initialBalance = Double.parseDouble(required(body, "initialBalance"));
+        if (!BankingValidator.isValidAccountType(accountType)) {
+            sendError(exchange, 400, "invalid account type");
+            return;
+        }
+        if (!bankingService.createAccount(customerId, accountNumber, accountType, initialBalance)) {
+            sendError(exchange, 422, "failed to create account");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("{\"accountNumber\":");
+        Json.appendString(sb, accountNumber).append('}');
+        send(exchange, 201, sb);
+    }
+
+    private void handleTransfers(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().equals("/transfers")) {
+                sendError(exchange, 404, "not found");
+                return;
+            }
+            if (!requireMethod(exchange, "POST")) {
+                return;
+            }
+            Map<String, String> body = readBody(exchange);
+            String from = required(body, "from");
+            String to = required(body, "to");
+            double amount = parseAmount(body);
+            boolean ok = bankingService.transferFunds(from, to, amount);
+            send(exchange, ok ? 200 : 422, new StringBuilder("{\"success\":").append(ok).append('}'));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void sendBalance(HttpExchange exchange, int status, boolean success, String accountNumber)
+            throws IOException {
+        long balance = bankingService.getAccountBalanceMinor(accountNumber);
+        if (balance == BankingService.NO_BALANCE) {
+            sendError(exchange, 404, "account not found");
+            return;
+        }
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("{\"success\":").append(success).append(",\"accountNumber\":");
+        Json.appendString(sb, accountNumber).append(",\"balance\":");
+        Money.appendTo(sb, balance).append('}');
+        send(exchange, status, sb);
+    }
+
+    private void sendHistory(HttpExchange exchange, String accountNumber) throws IOException {
+        int limit = 10;
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null && query.startsWith("limit=")) {
+            limit = Integer.parseInt(query.substring("limit=".length()));
+        }
+        if (limit <= 0) {
+            limit = 10;
+        }
+        HistoryView history;
+        try {
+            history = bankingService.getTransactionHistory(accountNumber, limit);
+        } catch (UnsupportedOperationException e) {
+            sendError(exchange, 501, "account keeps no transaction history");
+            return;
+        }
+        if (history == null) {
+            sendError(exchange, 404, "account not found");
+            return;
+        }
+        StringBuilder sb = new StringBuilder(64 + history.size() * 96);
+        sb.append("{\"accountNumber\":");
+        Json.appendString(sb, accountNumber).append(",\"transactions\":[");
+        for (int i = 0; i < history.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"type\":");
+            Json.appendString(sb, TransactionType.nameOf(history.getTypeCode(i))).append(",\"amount\":");
+            Money.appendTo(sb, history.getAmountMinor(i)).append(",\"balanceAfter\":");
+            Money.appendTo(sb, history.getBalanceAfterMinor(i)).append(",\"timestamp\":");
+            Json.appendString(sb, history.getTimestamp(i).toString()).append('}');
+        }
+        sb.append("]}");
+        send(exchange, 200, sb);
+    }
+
+    private static boolean requireMethod(HttpExchange exchange, String method) throws IOException {
+        if (exchange.getRequestMethod().equals(method)) {
+            return true;
+        }
+        sendError(exchange, 405, "method not allowed");
+        return false;
+    }
+
+    private static double parseAmount(Map<String, String> body) {
+        double amount = Double.parseDouble(required(body, "amount"));
+        if (!BankingValidator.isValidAmount(amount)) {
+            throw new IllegalArgumentException("invalid amount");
+        }
+        return amount;
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null) {
+            throw new IllegalArgumentException("missing field '" + field + "'");
+        }
+        return value;
+    }
+
+    private static HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (ArithmeticException e) {
+                sendError(exchange, 422, "amount out of range");
+            } catch (JournalUnavailableException e) {
+                sendJournalError(exchange, 503, "journal unavailable", false);
+            } catch (NotDurableException e) {
+                sendJournalError(exchange, 500, "applied but not durable", true);
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, "internal error");
+            }
+        };
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.appendString(sb, message).append('}');
+        send(exchange, status, sb);
+    }
+
+    private static void sendJournalError(HttpExchange exchange, int status, String message, boolean applied)
+            throws IOException {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.appendString(sb, message).append(",\"applied\":").append(applied).append('}');
+        send(exchange, status, sb);
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.banking.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the HTTP API: parses flat objects whose values are
+ * strings, numbers, booleans or null, and escapes strings for output. Nested
+ * objects and arrays are not accepted in requests.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object into a map of raw values (strings unescaped,
+     * numbers and literals as written). Throws IllegalArgumentException on
+     * malformed input.
+     */
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        if (text == null) {
+            throw new IllegalArgumentException("empty body");
+        }
+        int[] pos = {skipWhitespace(text, 0)};
+        expect(text, pos, '{');
+        pos[0] = skipWhitespace(text, pos[0]);
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+            return fields;
+        }
+        while (true) {
+            pos[0] = skipWhitespace(text, pos[0]);
+            String key = readString(text, pos);
+            pos[0] = skipWhitespace(text, pos[0]);
+            expect(text, pos, ':');
+            pos[0] = skipWhitespace(text, pos[0]);
+            String value = (peek(text, pos) == '"') ? readString(text, pos) : readLiteral(text, pos);
+            fields.put(key, value);
+            pos[0] = skipWhitespace(text, pos[0]);
+            char c = peek(text, pos);
+            pos[0]++;
+            if (c == '}') {
+                return fields;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+    }
+
+    public static StringBuilder appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = peek(text, pos);
+            pos[0]++;
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = peek(text, pos);
+            pos[0]++;
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos[0] + 4 > text.length()) {
+                        throw new IllegalArgumentException("bad unicode escape");
+                    }
+                    sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad escape '\\" + e + "'");
+            }
+        }
+    }
+
+    private static String readLiteral(String text, int[] pos) {
+        int start = pos[0];
+        while (pos[0] < text.length()) {
+            char c = text.charAt(pos[0]);
+            if (c == ',' || c == '}' || Character.isWhitespace(c)) {
+                break;
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("nested values are not supported");
+            }
+            pos[0]++;
+        }
+        if (start == pos[0]) {
+            throw new IllegalArgumentException("missing value at " + start);
+        }
+        String literal = text.substring(start, pos[0]);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static char peek(String text, int[] pos) {
+        if (pos[0] >= text.length()) {
+            throw new IllegalArgumentException("unexpected end of JSON");
+        }
+        return text.charAt(pos[0]);
+    }
+
+    private static void expect(String text, int[] pos, char expected) {
+        if (peek(text, pos) != expected) {
+            throw new IllegalArgumentException("expected '" + expected + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static int skipWhitespace(String text, int pos) {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -1,12 +1,11 @@
 package org.banking.cli;
 
-import org.banking.model.Account;
 import org.banking.model.Customer;
-import org.banking.model.Transaction;
+import org.banking.model.HistoryView;
 import org.banking.service.BankingService;
+import org.banking.service.StatementRenderer;
 import org.banking.utils.BankingValidator;
 
-import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -23,6 +22,7 @@ import java.util.Scanner;
 public class BankingCLI {
 
     private final BankingService bankingService;
+    private final StatementRenderer statementRenderer = new StatementRenderer();
     private long currentCustomerId = -1L;
 
     public BankingCLI(BankingService bankingService) {
@@ -225,19 +225,22 @@ public class BankingCLI {
             System.out.println("Customer not found.");
             return;
         }
-        Account a = c.getAccount(acc);
-        if (a == null) {
+        HistoryView history;
+        try {
+            history = bankingService.getTransactionHistory(currentCustomerId, acc, n);
+        } catch (UnsupportedOperationException e) {
+            System.out.println("This account keeps no transaction history.");
+            return;
+        }
+        if (history == null) {
             System.out.println("Account not found.");
             return;
         }
-        List<Transaction> history = a.getTransactionHistory(n);
         if (history.isEmpty()) {
             System.out.println("No transactions found.");
-        } else {
-            for (Transaction t : history) {
-                System.out.println(t);
-            }
+            return;
         }
+        System.out.print(statementRenderer.renderTo(history, new StringBuilder(history.size() * 64)));
     }
 
     private void logout() {
@@ -0,0 +1,181 @@
+package org.banking.files;
+
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.HistoryStore;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HistoryStore whose oldest entries live in a HistoryArchive: entries
+ * 0..archived-1 are read from the archive's blocks, the entries after them
+ * from an in-memory ChunkedHistoryStore, which is where appends go until
+ * HistoryArchive.age moves them out. Failures reading the archive are
+ * thrown as UncheckedIOException.
+ *
+ * All methods are synchronized on the store, so aging does not race the
+ * log appending to or reading from it. Serializes as a ChunkedHistoryStore
+ * holding a copy of every entry, so a serialized account does not depend on
+ * the archive.
+ */
+final class ArchivedHistoryStore implements HistoryStore {
+    private static final long serialVersionUID = 1L;
+
+    final transient HistoryArchive archive;
+    private transient String accountNumber;               // null until first aged or reopened
+    private transient HistoryArchive.Block[] blocks;      // ascending first sequence
+    private transient int blockCount;
+    private transient int archived;
+    private transient ChunkedHistoryStore recent = new ChunkedHistoryStore();
+
+    ArchivedHistoryStore(HistoryArchive archive, String accountNumber, List<HistoryArchive.Block> blocks,
+                         int archived) {
+        this.archive = archive;
+        this.accountNumber = accountNumber;
+        this.blocks = blocks.toArray(new HistoryArchive.Block[Math.max(blocks.size(), 4)]);
+        this.blockCount = blocks.size();
+        this.archived = archived;
+    }
+
+    @Override
+    public synchronized void append(byte type, long amount, long balanceAfter, long timestampMicros) {
+        recent.append(type, amount, balanceAfter, timestampMicros);
+    }
+
+    @Override
+    public synchronized int size() {
+        return archived + recent.size();
+    }
+
+    synchronized int getArchivedCount() {
+        return archived;
+    }
+
+    synchronized String getAccountNumber() {
+        return accountNumber;
+    }
+
+    @Override
+    public synchronized byte getType(int index) {
+        if (index >= archived) {
+            return recent.getType(index - archived);
+        }
+        HistoryArchive.Columns block = block(index);
+        return block.types[index - block.first];
+    }
+
+    @Override
+    public synchronized long getAmount(int index) {
+        if (index >= archived) {
+            return recent.getAmount(index - archived);
+        }
+        HistoryArchive.Columns block = block(index);
+        return block.amounts[index - block.first];
+    }
+
+    @Override
+    public synchronized long getBalanceAfter(int index) {
+        if (index >= archived) {
+            return recent.getBalanceAfter(index - archived);
+        }
+        HistoryArchive.Columns block = block(index);
+        return block.balances[index - block.first];
+    }
+
+    @Override
+    public synchronized long getTimestampMicros(int index) {
+        if (index >= archived) {
+            return recent.getTimestampMicros(index - archived);
+        }
+        HistoryArchive.Columns block = block(index);
+        return block.timestamps[index - block.first];
+    }
+
+    /**
+     * Copies the in-memory entries stamped before horizonMicros, which are
+     * the next ones to archive, or returns null if there are none.
+     */
+    synchronized HistoryArchive.Columns takeOlderThan(long horizonMicros) {
+        int lo = 0;
+        int hi = recent.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (recent.getTimestampMicros(mid) < horizonMicros) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == 0) {
+            return null;
+        }
+        HistoryArchive.Columns aged = new HistoryArchive.Columns();
+        aged.ensure(lo);
+        aged.first = archived;
+        aged.count = lo;
+        for (int i = 0; i < lo; i++) {
+            aged.types[i] = recent.getType(i);
+            aged.amounts[i] = recent.getAmount(i);
+            aged.balances[i] = recent.getBalanceAfter(i);
+            aged.timestamps[i] = recent.getTimestampMicros(i);
+        }
+        return aged;
+    }
+
+    /**
+     * Drops the first entries of the in-memory part, now in the archive as
+     * added (blocks starting at the current archived count).
+     */
+    synchronized void archived(String accountNumber, List<HistoryArchive.Block> added, int entries) {
+        this.accountNumber = accountNumber;
+        if (blockCount + added.size() > blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(blocks.length * 2, blockCount + added.size()));
+        }
+        for (HistoryArchive.Block block : added) {
+            blocks[blockCount++] = block;
+        }
+        ChunkedHistoryStore rest = new ChunkedHistoryStore();
+        for (int i = entries; i < recent.size(); i++) {
+            rest.append(recent.getType(i), recent.getAmount(i), recent.getBalanceAfter(i),
+                        recent.getTimestampMicros(i));
+        }
+        recent = rest;
+        archived += entries;
+    }
+
+    private HistoryArchive.Columns block(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        // The last block starting at or before index: a later block replaces
+        // the tail of an earlier one it overlaps.
+        int lo = 0;
+        int hi = blockCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (blocks[mid].first <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        try {
+            return archive.decode(blocks[lo]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        ChunkedHistoryStore copy = new ChunkedHistoryStore();
+        synchronized (this) {
+            for (int i = 0; i < size(); i++) {
+                copy.append(getType(i), getAmount(i), getBalanceAfter(i), getTimestampMicros(i));
+            }
+        }
+        return copy;
+    }
+}
@@ -2,10 +2,17 @@ package org.banking.files;
 
 import org.banking.model.Account;
 import org.banking.model.Customer;
+import org.banking.model.TransactionLog;
 import org.banking.service.BankingService;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * BankingFiles class handles serialization and deserialization of banking data.
@@ -13,21 +20,153 @@ import java.util.List;
 public class BankingFiles {
     
     private static final String CUSTOMERS_FILE = "customers.dat";
-    private static final String ACCOUNTS_FILE = "accounts.dat";
+    static final String ACCOUNTS_FILE = "accounts.dat"; // per shard, see ShardedFiles
+    private static final String WAL_FILE = "banking.wal";
+    private static final String SEGMENTS_DIR = "customers.segments";
+    private static final String SHARDS_DIR = "customers.shards";
     
     public static void saveCustomers(List<Customer> customers) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(CUSTOMERS_FILE))) {
+        saveCustomers(customers, new File(CUSTOMERS_FILE));
+    }
+    
+    public static void saveCustomers(List<Customer> customers, File file) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
             oos.writeObject(customers);
         }
     }
     
-    @SuppressWarnings("unchecked")
     public static List<Customer> loadCustomers() throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(CUSTOMERS_FILE))) {
+        return loadCustomers(new File(CUSTOMERS_FILE));
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static List<Customer> loadCustomers(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
             return (List<Customer>) ois.readObject();
         }
     }
     
+    /**
+     * Incremental save: writes only the customers that changed since they
+     * were last saved into a new segment of the default segment directory
+     * (see CustomerSegments). Returns how many customers were written.
+     */
+    public static int saveChangedCustomers(List<Customer> customers) throws IOException {
+        try (CustomerSegments segments = openCustomerSegments()) {
+            return segments.save(customers);
+        }
+    }
+    
+    public static List<Customer> loadCustomerSegments() throws IOException {
+        try (CustomerSegments segments = openCustomerSegments()) {
+            return segments.load();
+        }
+    }
+    
+    public static CustomerSegments openCustomerSegments() throws IOException {
+        return CustomerSegments.open(Paths.get(SEGMENTS_DIR));
+    }
+    
+    /**
+     * Opens the default data directory partitioned into shardCount shards by
+     * customer ID, each with its own accounts.dat and incremental saves (see
+     * ShardedFiles).
+     */
+    public static ShardedFiles openShardedFiles(int shardCount) throws IOException {
+        return ShardedFiles.open(Paths.get(SHARDS_DIR), shardCount);
+    }
+    
+    /**
+     * Saves customers in the binary snapshot format (see BinarySnapshot),
+     * which is much faster to write and read than saveCustomers and smaller
+     * on disk. Returns the file size in bytes.
+     */
+    public static long saveSnapshot(List<Customer> customers, File file) throws IOException {
+        return BinarySnapshot.write(customers, file.toPath());
+    }
+    
+    public static List<Customer> loadSnapshot(File file) throws IOException {
+        return BinarySnapshot.read(file.toPath());
+    }
+    
+    /**
+     * Loads a snapshot whose accounts may keep old history in archive (see
+     * openHistoryArchive).
+     */
+    public static List<Customer> loadSnapshot(File file, HistoryArchive archive) throws IOException {
+        return BinarySnapshot.read(file.toPath(), archive);
+    }
+    
+    /**
+     * Loads a binary snapshot into service using threads threads: the file's
+     * blocks are decoded in parallel, then registered with registerAll,
+     * which indexes the accounts in parallel on the same pool when the
+     * service is concurrent. Returns the number of customers registered.
+     */
+    public static int loadSnapshot(File file, BankingService service, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Customer> loaded = BinarySnapshot.read(file.toPath(), pool);
+            return pool.submit(() -> service.registerAll(loaded)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checkpoints the live service to file in the binary snapshot format
+     * (read it back with loadSnapshot) without stopping its traffic; see
+     * Checkpointer, which can also run checkpoints in the background.
+     */
+    public static Checkpointer openCheckpointer(BankingService service, File file) {
+        return Checkpointer.open(service, file.toPath());
+    }
+
+    /**
+     * Saves customers as a MappedSnapshot, which can be opened without
+     * reading it (see openMappedSnapshot). Returns the file size in bytes.
+     */
+    public static long saveMappedSnapshot(List<Customer> customers, File file) throws IOException {
+        return MappedSnapshot.write(customers, file.toPath());
+    }
+    
+    /**
+     * Maps a snapshot written by saveMappedSnapshot and makes it the
+     * service's customer source, so customers are loaded from it on first
+     * access. The service must be empty.
+     */
+    public static MappedSnapshot openMappedSnapshot(BankingService service, File file) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file.toPath());
+        service.setCustomerSource(snapshot);
+        return snapshot;
+    }
+    
+    /**
+     * Opens the history archive in directory and makes it the history
+     * overflow of accounts the service creates from now on, so their history
+     * older than a horizon can be moved to disk with HistoryArchive.age.
+     */
+    public static HistoryArchive openHistoryArchive(BankingService service, File directory) throws IOException {
+        HistoryArchive archive = HistoryArchive.open(directory.toPath());
+        service.setHistoryRetention(TransactionLog.DEFAULT_CAPACITY, archive::newStore);
+        return archive;
+    }
+    
+    /**
+     * Opens the default write-ahead log for appending and attaches it to the
+     * service, so every change from now on is logged with the given durability.
+     */
+    public static WriteAheadLog openWriteAheadLog(BankingService service, WriteAheadLog.Durability durability)
+            throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(walPath(), durability, WriteAheadLog.DEFAULT_INTERVAL_MILLIS);
+        service.setJournal(wal);
+        return wal;
+    }
+    
+    public static Path walPath() {
+        return Paths.get(WAL_FILE);
+    }
+    
     public static boolean customersFileExists() {
         File file = new File(CUSTOMERS_FILE);
         return file.exists();
@@ -39,4 +178,17 @@ public class BankingFiles {
             file.delete();
         }
     }
+
+    /**
+     * Forces the directory holding file to disk, so that a file just created
+     * in it or renamed into it survives a crash. Platforms that cannot open a
+     * directory (Windows) skip this.
+     */
+    static void forceParent(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // directories cannot be opened here
+        }
+    }
 }
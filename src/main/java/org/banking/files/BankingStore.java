@@ -0,0 +1,269 @@
+package org.banking.files;
+
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+import org.banking.service.JournalReplayer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * BankingStore keeps a BankingService durable in a data directory as a
+ * snapshot plus a write-ahead log, and recovers it on open.
+ *
+ * The directory holds numbered generations:
+ *
+ *   snapshot-N.dat   every customer as of the start of generation N, in
+ *                    the BinarySnapshot format
+ *   wal-N.log        the changes made during generation N
+ *
+ * Opening the store loads the newest snapshot and replays the log files of
+ * that generation and later through a JournalReplayer (in parallel across
+ * account partitions when the service is concurrent), then keeps appending
+ * to the newest log.
+ *
+ * checkpoint() starts a new generation: the log is rolled to a new file, and
+ * the snapshot for the new generation is built from the previous snapshot
+ * plus the sealed log files, not from the live accounts, so it is exactly
+ * consistent with the log without pausing traffic. Older files are deleted
+ * once the new snapshot and its directory entry are durable. A crash at any
+ * point leaves a snapshot and a complete run of log files after it.
+ * Checkpoints run periodically (startCheckpoints), which bounds the log
+ * tail a restart has to replay.
+ * Building the snapshot holds a second copy of the book in memory while it
+ * runs. Snapshots only hold Account objects, so the store refuses a service
+ * that keeps accounts in account slots.
+ */
+public class BankingStore implements Closeable {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Supplier<BankingService> serviceFactory;
+    private final BankingService service;
+    private final WriteAheadLog wal;
+    private long generation; // generation of the log being appended to
+    private ScheduledExecutorService checkpoints;
+    private volatile IOException checkpointFailure;
+    private final long recoveryNanos;
+    private final long snapshotGeneration; // -1 if recovery found no snapshot
+    private final long replayedRecords;
+    private volatile long lastCheckpointNanos;
+
+    private BankingStore(Path directory, Supplier<BankingService> serviceFactory,
+                         WriteAheadLog.Durability durability) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.serviceFactory = serviceFactory;
+        long start = System.nanoTime();
+        this.service = requireHeapAccounts(serviceFactory.get());
+        long snapshot = latest(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long[] counts = recover(service, snapshot);
+        List<Long> logs = generations(WAL_PREFIX, WAL_SUFFIX);
+        this.generation = logs.isEmpty() ? Math.max(snapshot, 0) : Math.max(snapshot, logs.get(logs.size() - 1));
+        this.snapshotGeneration = snapshot;
+        this.replayedRecords = counts[1];
+        this.wal = new WriteAheadLog(walPath(generation), durability, WriteAheadLog.DEFAULT_INTERVAL_MILLIS);
+        service.setJournal(wal);
+        this.recoveryNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Opens (creating if needed) the store in directory with a concurrent
+     * service and PER_BATCH durability, recovering its state.
+     */
+    public static BankingStore open(Path directory) throws IOException {
+        return open(directory, () -> new BankingService(true), WriteAheadLog.Durability.PER_BATCH);
+    }
+
+    /**
+     * Opens the store, recovering into services from serviceFactory, which
+     * must return a new, empty service configured as required (concurrency,
+     * history retention). Checkpoints use the same factory.
+     */
+    public static BankingStore open(Path directory, Supplier<BankingService> serviceFactory,
+                                    WriteAheadLog.Durability durability) throws IOException {
+        return new BankingStore(directory, serviceFactory, durability);
+    }
+
+    public BankingService getService() {
+        return service;
+    }
+
+    /**
+     * Starts a new generation and writes its snapshot (see class comment).
+     * Runs on the calling thread; traffic continues meanwhile.
+     */
+    public synchronized void checkpoint() throws IOException {
+        requireHeapAccounts(service);
+        long start = System.nanoTime();
+        long sealed = generation;
+        long next = sealed + 1;
+        wal.roll(walPath(next));
+        BankingFiles.forceParent(walPath(next));
+        generation = next;
+
+        BankingService shadow = serviceFactory.get();
+        long snapshot = latest(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        recover(shadow, snapshot, sealed);
+        writeSnapshot(shadow.getAllCustomers(), next);
+
+        for (long g : generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (g < next) {
+                Files.deleteIfExists(snapshotPath(g));
+            }
+        }
+        for (long g : generations(WAL_PREFIX, WAL_SUFFIX)) {
+            if (g < next) {
+                Files.deleteIfExists(walPath(g));
+            }
+        }
+        lastCheckpointNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Runs checkpoint() every intervalMillis on a background thread. A failed
+     * checkpoint is kept (getCheckpointFailure) and retried next time.
+     */
+    public synchronized void startCheckpoints(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        if (checkpoints != null) {
+            return;
+        }
+        requireHeapAccounts(service);
+        checkpoints = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "banking-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpoints.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+                checkpointFailure = null;
+            } catch (IOException e) {
+                checkpointFailure = e;
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = checkpoints;
+            checkpoints = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        service.setJournal(null);
+        wal.close();
+    }
+
+    public Path getDirectory() { return directory; }
+    public WriteAheadLog getWriteAheadLog() { return wal; }
+    public synchronized long getGeneration() { return generation; }
+    public long getRecoveryNanos() { return recoveryNanos; }
+    public long getSnapshotGeneration() { return snapshotGeneration; }
+    public long getReplayedRecordCount() { return replayedRecords; }
+    public long getLastCheckpointNanos() { return lastCheckpointNanos; }
+    public IOException getCheckpointFailure() { return checkpointFailure; }
+
+    private static BankingService requireHeapAccounts(BankingService service) {
+        if (service.getAccountSlots() != null) {
+            throw new IllegalStateException("a BankingStore cannot persist accounts in account slots");
+        }
+        return service;
+    }
+
+    /**
+     * Loads snapshot (if not -1) into target and replays every log file from
+     * that generation on. Returns {customers loaded, records replayed}.
+     */
+    private long[] recover(BankingService target, long snapshot) throws IOException {
+        return recover(target, snapshot, Long.MAX_VALUE);
+    }
+
+    private long[] recover(BankingService target, long snapshot, long lastGeneration) throws IOException {
+        long customers = 0;
+        if (snapshot >= 0) {
+            customers = BankingFiles.loadSnapshot(snapshotPath(snapshot).toFile(), target,
+                                                  Runtime.getRuntime().availableProcessors());
+        }
+        JournalReplayer replayer = new JournalReplayer(target);
+        long records = 0;
+        for (long g : generations(WAL_PREFIX, WAL_SUFFIX)) {
+            if (g >= Math.max(snapshot, 0) && g <= lastGeneration) {
+                records += WriteAheadLog.replay(walPath(g), replayer);
+            }
+        }
+        replayer.finish();
+        return new long[] {customers, records};
+    }
+
+    private void writeSnapshot(List<Customer> customers, long snapshotGeneration) throws IOException {
+        Path target = snapshotPath(snapshotGeneration);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        BankingFiles.saveSnapshot(customers, temporary.toFile());
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        BankingFiles.forceParent(target); // the rename must be durable before older generations are deleted
+    }
+
+    private Path snapshotPath(long g) {
+        return directory.resolve(String.format("%s%08d%s", SNAPSHOT_PREFIX, g, SNAPSHOT_SUFFIX));
+    }
+
+    private Path walPath(long g) {
+        return directory.resolve(String.format("%s%08d%s", WAL_PREFIX, g, WAL_SUFFIX));
+    }
+
+    private long latest(String prefix, String suffix) throws IOException {
+        List<Long> found = generations(prefix, suffix);
+        return found.isEmpty() ? -1 : found.get(found.size() - 1);
+    }
+
+    /**
+     * Generation numbers of the files named prefix + N + suffix, ascending.
+     */
+    private List<Long> generations(String prefix, String suffix) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length(), name.length() - suffix.length());
+                try {
+                    found.add(Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+}
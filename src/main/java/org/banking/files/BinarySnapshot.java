@@ -0,0 +1,715 @@
+package org.banking.files;
+
+import org.banking.model.Account;
+import org.banking.model.CheckpointGate;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.Customer;
+import org.banking.model.HistoryStore;
+import org.banking.model.TransactionLog;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+
+/**
+ * BinarySnapshot is a versioned binary file format for a list of customers
+ * with their accounts and transaction history, replacing Java serialization
+ * of the object graph.
+ *
+ * Layout:
+ *
+ *   header   int magic, int version, int flags (0)
+ *   block*   int length, int crc32c, int customerCount, payload
+ *   trailer  int 0, long totalCustomers, int magic
+ *
+ * length and the checksum cover customerCount and payload. A block closes
+ * once its payload reaches BLOCK_BYTES, so each block holds whole customers,
+ * and the string table restarts with every block, which makes each block
+ * decodable on its own. A missing trailer means the file was cut short.
+ *
+ * Within a payload, integers are unsigned LEB128 varints, or zigzag varints
+ * where they can be negative. Customer IDs are deltas from the previous
+ * customer in the block. Strings are a varint byte length + 1 (0 for null)
+ * and UTF-8 bytes. Repeated values (account type, currency) go through the
+ * string table: the first occurrence is written in full and numbered, later
+ * ones are a reference to that number.
+ *
+ *   customer  zigzag idDelta, firstName, lastName, email, phone, address,
+ *             byte flags (1 verified), varint accountCount, account*
+ *   account   accountNumber, symbol type, symbol currency, zigzag balance,
+ *             zigzag minimumBalance, varint interestRate,
+ *             byte flags (1 inactive, 2 overflow, 4 type index,
+ *             8 archived, 16 limited),
+ *             varint ringCapacity, [varint historyLimit if limited],
+ *             varint firstSequence, varint entryCount, entry*
+ *   entry     byte type, zigzag amount, zigzag balance delta,
+ *             varint timestamp delta
+ *
+ * Entry balances and timestamps are deltas from the previous entry of the
+ * account (the first from 0). Timestamps never decrease within a log, so
+ * that delta is unsigned. For an account whose history overflows into a
+ * HistoryArchive (version 2), firstSequence is how many of its entries the
+ * archive held, and only the entries after them are written. For an
+ * account whose overflow is a ChunkedHistoryStore with a limit (version 3),
+ * firstSequence is the oldest entry it still retained.
+ */
+public final class BinarySnapshot {
+
+    static final int MAGIC = 0x42534e31; // "BSN1"
+    static final int VERSION = 3;
+    static final int BLOCK_BYTES = 256 * 1024;
+
+    private static final int FLAG_VERIFIED = 1;
+    private static final int FLAG_INACTIVE = 1;
+    private static final int FLAG_OVERFLOW = 2;
+    private static final int FLAG_TYPE_INDEX = 4;
+    private static final int FLAG_ARCHIVED = 8;
+    private static final int FLAG_LIMITED = 16;
+    private static final int HISTORY_BATCH = 256;
+    private static final ThreadLocal<Decoder> DECODERS = ThreadLocal.withInitial(Decoder::new);
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Writes the customers to path, replacing any existing file. Returns the
+     * file size in bytes. The file is not forced to disk.
+     */
+    public static long write(List<Customer> customers, Path path) throws IOException {
+        return write(customers, null, path);
+    }
+
+    /**
+     * Writes the customers of a checkpoint cut as of the cut, while they
+     * keep changing. Returns the file size in bytes; the file is not forced.
+     */
+    public static long write(CheckpointGate.Cut cut, Path path) throws IOException {
+        return write(cut.getCustomers(), cut, path);
+    }
+
+    private static long write(List<Customer> customers, CheckpointGate.Cut cut, Path path) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Encoder block = new Encoder(BLOCK_BYTES + 64 * 1024);
+            ByteBuffer frame = ByteBuffer.allocate(12);
+            CRC32C crc = new CRC32C();
+            frame.putInt(MAGIC).putInt(VERSION).putInt(0).flip();
+            writeFully(out, frame);
+
+            HistoryColumns columns = new HistoryColumns();
+            int inBlock = 0;
+            long previousId = 0;
+            for (Customer customer : customers) {
+                writeCustomer(block, customer, cut, customer.getCustomerId() - previousId, columns);
+                previousId = customer.getCustomerId();
+                inBlock++;
+                if (block.size() >= BLOCK_BYTES) {
+                    writeBlock(out, frame, crc, block, inBlock);
+                    inBlock = 0;
+                    previousId = 0;
+                }
+            }
+            if (inBlock > 0) {
+                writeBlock(out, frame, crc, block, inBlock);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(16).putInt(0).putLong(customers.size()).putInt(MAGIC).flip();
+            writeFully(out, trailer);
+            return out.size();
+        }
+    }
+
+    /**
+     * Reads every customer from a file written by write(). The customers and
+     * their accounts are not registered with any service.
+     */
+    public static List<Customer> read(Path path) throws IOException {
+        return readAll(path, null);
+    }
+
+    /**
+     * Reads a file like read(path), restoring the history of accounts that
+     * were archived when it was written over archive (see HistoryArchive).
+     */
+    public static List<Customer> read(Path path, HistoryArchive archive) throws IOException {
+        return readAll(path, archive);
+    }
+
+    private static List<Customer> readAll(Path path, HistoryArchive archive) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer frame = ByteBuffer.allocate(16);
+            readFully(in, frame, 12);
+            if (frame.getInt() != MAGIC) {
+                throw new IOException("not a binary snapshot: " + path);
+            }
+            int version = frame.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            frame.getInt(); // flags
+
+            List<Customer> customers = new ArrayList<>();
+            Decoder block = new Decoder();
+            block.archive = archive;
+            CRC32C crc = new CRC32C();
+            while (true) {
+                readFully(in, frame, 4);
+                int length = frame.getInt();
+                if (length == 0) {
+                    readFully(in, frame, 12);
+                    long total = frame.getLong();
+                    if (frame.getInt() != MAGIC || total != customers.size()) {
+                        throw new IOException("snapshot trailer does not match its blocks");
+                    }
+                    return customers;
+                }
+                if (length < 4) {
+                    throw new IOException("corrupt snapshot block length " + length);
+                }
+                readFully(in, frame, 4);
+                int checksum = frame.getInt();
+                block.load(in, length);
+                crc.reset();
+                crc.update(block.bytes, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("snapshot block checksum mismatch in " + path);
+                }
+                decodeBlock(block, customers);
+            }
+        }
+    }
+
+    /**
+     * Reads a file written by write() like read(path), decoding its blocks
+     * in parallel on pool. The block frames are walked first (one small
+     * positional read per block), then every block is read, checked and
+     * decoded by its own task; the customers come back in file order.
+     */
+    public static List<Customer> read(Path path, ForkJoinPool pool) throws IOException {
+        return read(path, null, pool);
+    }
+
+    /**
+     * read(path, archive) with the blocks decoded in parallel on pool.
+     */
+    public static List<Customer> read(Path path, HistoryArchive archive, ForkJoinPool pool) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer frame = ByteBuffer.allocate(16);
+            readFully(in, 0, frame, 12);
+            if (frame.getInt() != MAGIC) {
+                throw new IOException("not a binary snapshot: " + path);
+            }
+            int version = frame.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+
+            List<ForkJoinTask<List<Customer>>> blocks = new ArrayList<>();
+            long total;
+            List<Customer> customers = new ArrayList<>();
+            try {
+                long position = 12;
+                while (true) {
+                    readFully(in, position, frame, 4);
+                    int length = frame.getInt();
+                    if (length == 0) {
+                        readFully(in, position + 4, frame, 12);
+                        total = frame.getLong();
+                        if (frame.getInt() != MAGIC) {
+                            throw new IOException("snapshot trailer does not match its blocks");
+                        }
+                        break;
+                    }
+                    if (length < 4) {
+                        throw new IOException("corrupt snapshot block length " + length);
+                    }
+                    readFully(in, position + 4, frame, 4);
+                    int checksum = frame.getInt();
+                    long offset = position + 8;
+                    blocks.add(pool.submit(() -> decodeBlockAt(in, offset, length, checksum, path, archive)));
+                    position = offset + length;
+                }
+                for (ForkJoinTask<List<Customer>> block : blocks) {
+                    customers.addAll(block.get());
+                }
+            } catch (InterruptedException e) {
+                cancel(blocks);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("snapshot read interrupted");
+            } catch (ExecutionException e) {
+                cancel(blocks);
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("snapshot block failed to decode", e.getCause());
+            } catch (IOException | RuntimeException e) {
+                // The blocks must not go on reading the channel once it is closed.
+                cancel(blocks);
+                throw e;
+            }
+            if (total != customers.size()) {
+                throw new IOException("snapshot trailer does not match its blocks");
+            }
+            return customers;
+        }
+    }
+
+    private static void cancel(List<ForkJoinTask<List<Customer>>> blocks) {
+        for (ForkJoinTask<List<Customer>> block : blocks) {
+            block.cancel(false);
+        }
+    }
+
+    private static List<Customer> decodeBlockAt(FileChannel in, long offset, int length, int checksum, Path path,
+                                                HistoryArchive archive) throws IOException {
+        Decoder block = DECODERS.get();
+        block.archive = archive;
+        block.load(in, offset, length);
+        CRC32C crc = new CRC32C();
+        crc.update(block.bytes, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("snapshot block checksum mismatch in " + path);
+        }
+        List<Customer> customers = new ArrayList<>();
+        decodeBlock(block, customers);
+        return customers;
+    }
+
+    // ---- Customers and accounts ------------------------------------------
+
+    /**
+     * Writes customer as it is now, or with cut, as it was at the cut.
+     */
+    private static void writeCustomer(Encoder out, Customer customer, CheckpointGate.Cut cut, long idDelta,
+                                      HistoryColumns columns) {
+        out.putZigZag(idDelta);
+        out.putString(customer.getFirstName());
+        out.putString(customer.getLastName());
+        List<Account> accounts;
+        if (cut == null) {
+            out.putString(customer.getEmail());
+            out.putString(customer.getPhone());
+            out.putString(customer.getAddress());
+            out.putByte(customer.isVerified() ? FLAG_VERIFIED : 0);
+            accounts = customer.getAccounts();
+        } else {
+            CheckpointGate.CustomerImage image = cut.read(customer);
+            out.putString(image.getEmail());
+            out.putString(image.getPhone());
+            out.putString(image.getAddress());
+            out.putByte(image.isVerified() ? FLAG_VERIFIED : 0);
+            accounts = image.getAccounts();
+        }
+        out.putVarLong(accounts.size());
+        for (Account account : accounts) {
+            if (cut == null) {
+                writeAccount(out, account, account.getBalanceMinor(), account.getMinimumBalanceMinor(),
+                             account.getInterestRatePpm(), account.isActive(), -1, columns);
+            } else {
+                CheckpointGate.AccountImage image = cut.read(account);
+                writeAccount(out, account, image.getBalanceMinor(), image.getMinimumBalanceMinor(),
+                             image.getInterestRatePpm(), image.isActive(), image.getHistoryEnd(), columns);
+            }
+        }
+    }
+
+    /**
+     * Writes account with the given state; its history up to historyEnd, or
+     * all of it if historyEnd is -1.
+     */
+    private static void writeAccount(Encoder out, Account account, long balanceMinor, long minimumBalance,
+                                     long interestRate, boolean active, int historyEnd, HistoryColumns columns) {
+        TransactionLog log = account.getTransactionLog();
+        HistoryStore overflow = log.getOverflow();
+        int limit = overflow instanceof ChunkedHistoryStore chunked ? chunked.getLimit() : 0;
+        out.putString(account.getAccountNumber());
+        out.putSymbol(account.getAccountType());
+        out.putSymbol(account.getCurrency());
+        out.putZigZag(balanceMinor);
+        out.putZigZag(minimumBalance);
+        out.putVarLong(interestRate);
+        int flags = (active ? 0 : FLAG_INACTIVE)
+                  | (overflow != null ? FLAG_OVERFLOW : 0)
+                  | (log.isTypeIndexed() ? FLAG_TYPE_INDEX : 0)
+                  | (overflow instanceof ArchivedHistoryStore ? FLAG_ARCHIVED : 0)
+                  | (limit > 0 ? FLAG_LIMITED : 0);
+        out.putByte(flags);
+        out.putVarLong(log.getCapacity());
+        if (limit > 0) {
+            out.putVarLong(limit);
+        }
+
+        // Entries are read in batches under the log's lock; one appended in
+        // between is simply not part of this snapshot. A log that discards
+        // entries (no overflow, or a limited one) can do so between batches,
+        // so it is read in one go, and may have discarded some from before
+        // historyEnd already. What it retains only shrinks meanwhile.
+        int end = historyEnd < 0 ? log.size() : historyEnd;
+        boolean bounded = overflow == null || limit > 0;
+        int first;
+        if (bounded) {
+            columns.ensure(end - log.firstRetained());
+            first = log.readBefore(end, columns.types, columns.amounts, columns.balances, columns.timestamps);
+        } else {
+            // Archived entries stay in the archive; aging meanwhile only
+            // moves more of them, which reading through the log hides.
+            first = Math.min(HistoryArchive.getArchivedCount(log), end);
+        }
+        out.putVarLong(first);
+        out.putVarLong(end - first);
+        long balance = 0;
+        long timestamp = 0;
+        int sequence = first;
+        while (sequence < end) {
+            int count = bounded ? end - first
+                                : Math.min(log.read(sequence, columns.types, columns.amounts, columns.balances,
+                                                    columns.timestamps), end - sequence);
+            for (int i = 0; i < count; i++) {
+                out.putByte(columns.types[i]);
+                out.putZigZag(columns.amounts[i]);
+                out.putZigZag(columns.balances[i] - balance);
+                out.putVarLong(columns.timestamps[i] - timestamp);
+                balance = columns.balances[i];
+                timestamp = columns.timestamps[i];
+            }
+            sequence += count;
+        }
+    }
+
+    private static void decodeBlock(Decoder in, List<Customer> customers) throws IOException {
+        int count = in.getInt();
+        long customerId = 0;
+        for (int c = 0; c < count; c++) {
+            customerId += in.getZigZag();
+            Customer customer = new Customer(customerId, in.getString(), in.getString(),
+                                             in.getString(), in.getString(), in.getString());
+            if ((in.getByte() & FLAG_VERIFIED) != 0) {
+                customer.verifyCustomer(customer.getEmail(), customer.getPhone());
+            }
+            long accounts = in.getVarLong();
+            for (long a = 0; a < accounts; a++) {
+                customer.addAccount(readAccount(in, customerId));
+            }
+            customers.add(customer);
+        }
+        if (in.remaining() != 0) {
+            throw new IOException("snapshot block has " + in.remaining() + " trailing bytes");
+        }
+    }
+
+    private static Account readAccount(Decoder in, long customerId) throws IOException {
+        String accountNumber = in.getString();
+        String accountType = in.getSymbol();
+        String currency = in.getSymbol();
+        long balance = in.getZigZag();
+        long minimumBalance = in.getZigZag();
+        long interestRate = in.getVarLong();
+        int flags = in.getByte();
+        int capacity = (int) in.getVarLong();
+        int limit = (flags & FLAG_LIMITED) != 0 ? (int) in.getVarLong() : 0;
+        int first = (int) in.getVarLong();
+        int entries = (int) in.getVarLong();
+
+        HistoryStore overflow = null;
+        if ((flags & FLAG_OVERFLOW) != 0 && limit > 0) {
+            ChunkedHistoryStore limited = new ChunkedHistoryStore(limit);
+            limited.skipTo(first);
+            overflow = limited;
+        } else if ((flags & FLAG_ARCHIVED) != 0 && in.archive != null) {
+            overflow = in.archive.reopen(accountNumber, first);
+        } else if ((flags & FLAG_ARCHIVED) != 0 && first > 0) {
+            throw new IOException("history of account " + accountNumber + " is in a history archive; read the"
+                                  + " snapshot with it");
+        } else if ((flags & FLAG_OVERFLOW) != 0) {
+            overflow = new ChunkedHistoryStore();
+        }
+        TransactionLog log = new TransactionLog(capacity, overflow);
+        if ((flags & FLAG_TYPE_INDEX) != 0) {
+            log.enableTypeIndex();
+        }
+        if (first > 0) {
+            log.skipTo(first);
+        }
+        long entryBalance = 0;
+        long timestamp = 0;
+        for (int i = 0; i < entries; i++) {
+            byte type = in.getByte();
+            long amount = in.getZigZag();
+            entryBalance += in.getZigZag();
+            timestamp += in.getVarLong();
+            log.append(type, amount, entryBalance, timestamp);
+        }
+        return Account.restore(accountNumber, accountType, currency, customerId, balance, minimumBalance,
+                               interestRate, (flags & FLAG_INACTIVE) == 0, log);
+    }
+
+    private static void writeBlock(FileChannel out, ByteBuffer frame, CRC32C crc, Encoder block, int customers)
+            throws IOException {
+        byte[] count = {(byte) (customers >>> 24), (byte) (customers >>> 16), (byte) (customers >>> 8),
+                        (byte) customers};
+        crc.reset();
+        crc.update(count);
+        crc.update(block.bytes, 0, block.size());
+        frame.clear();
+        frame.putInt(4 + block.size()).putInt((int) crc.getValue()).putInt(customers).flip();
+        writeFully(out, frame);
+        writeFully(out, ByteBuffer.wrap(block.bytes, 0, block.size()));
+        block.reset();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel in, long position, ByteBuffer buffer, int bytes) throws IOException {
+        buffer.clear().limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("snapshot is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, int bytes) throws IOException {
+        buffer.clear().limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new EOFException("snapshot is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static final class HistoryColumns {
+        byte[] types = new byte[HISTORY_BATCH];
+        long[] amounts = new long[HISTORY_BATCH];
+        long[] balances = new long[HISTORY_BATCH];
+        long[] timestamps = new long[HISTORY_BATCH];
+
+        void ensure(int entries) {
+            if (types.length < entries) {
+                types = new byte[entries];
+                amounts = new long[entries];
+                balances = new long[entries];
+                timestamps = new long[entries];
+            }
+        }
+    }
+
+    // ---- Encoding ---------------------------------------------------------
+
+    /**
+     * Growable byte array with varint, string and string-table writers.
+     */
+    static final class Encoder {
+        byte[] bytes;
+        private int size;
+        private final Map<String, Integer> symbols = new HashMap<>();
+
+        Encoder(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+            symbols.clear();
+        }
+
+        void putByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void putZigZag(long v) {
+            putVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void putString(String s) {
+            if (s == null) {
+                putVarLong(0);
+                return;
+            }
+            int n = s.length();
+            boolean ascii = true;
+            for (int i = 0; i < n && ascii; i++) {
+                ascii = s.charAt(i) < 0x80;
+            }
+            if (!ascii) {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                putVarLong(utf8.length + 1L);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, bytes, size, utf8.length);
+                size += utf8.length;
+                return;
+            }
+            putVarLong(n + 1L);
+            ensure(n);
+            for (int i = 0; i < n; i++) {
+                bytes[size++] = (byte) s.charAt(i);
+            }
+        }
+
+        /**
+         * A string-table entry: varint 0 for null, 2 * id + 2 for a string
+         * already in the table, or 1 followed by the string for a new one.
+         */
+        void putSymbol(String s) {
+            if (s == null) {
+                putVarLong(0);
+                return;
+            }
+            Integer id = symbols.get(s);
+            if (id != null) {
+                putVarLong(2L * id + 2);
+                return;
+            }
+            symbols.put(s, symbols.size());
+            putVarLong(1);
+            putString(s);
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+            }
+        }
+    }
+
+    /**
+     * Reader over one block's payload, the mirror of Encoder.
+     */
+    static final class Decoder {
+        byte[] bytes = new byte[BLOCK_BYTES + 64 * 1024];
+        private int position;
+        private int limit;
+        private final List<String> symbols = new ArrayList<>();
+        HistoryArchive archive; // for accounts with archived history, null if none
+
+        void load(FileChannel in, int length) throws IOException {
+            load(in, -1, length);
+        }
+
+        /**
+         * Reads length bytes at offset, or at the channel's position if
+         * offset is -1, without moving the position.
+         */
+        void load(FileChannel in, long offset, int length) throws IOException {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            ByteBuffer target = ByteBuffer.wrap(bytes, 0, length);
+            while (target.hasRemaining()) {
+                int read = offset < 0 ? in.read(target) : in.read(target, offset + target.position());
+                if (read < 0) {
+                    throw new EOFException("snapshot is truncated");
+                }
+            }
+            wrap(length);
+        }
+
+        void wrap(int length) {
+            position = 0;
+            limit = length;
+            symbols.clear();
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        int getInt() throws IOException {
+            need(4);
+            int v = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                  | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+            position += 4;
+            return v;
+        }
+
+        byte getByte() throws IOException {
+            need(1);
+            return bytes[position++];
+        }
+
+        long getVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                need(1);
+                byte b = bytes[position++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+            throw new IOException("malformed varint in snapshot");
+        }
+
+        long getZigZag() throws IOException {
+            long v = getVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        String getString() throws IOException {
+            long n = getVarLong();
+            if (n == 0) {
+                return null;
+            }
+            int length = (int) (n - 1);
+            need(length);
+            String s = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+
+        String getSymbol() throws IOException {
+            long tag = getVarLong();
+            if (tag == 0) {
+                return null;
+            }
+            if (tag == 1) {
+                String s = getString();
+                symbols.add(s);
+                return s;
+            }
+            int id = (int) ((tag - 2) / 2);
+            if (id >= symbols.size()) {
+                throw new IOException("unknown string-table entry " + id + " in snapshot");
+            }
+            return symbols.get(id);
+        }
+
+        private void need(int n) throws IOException {
+            if (n < 0 || position + n > limit) {
+                throw new IOException("snapshot block ends inside a record");
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.banking.files;
+
+import org.banking.model.CheckpointGate;
+import org.banking.service.BankingService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpointer writes point-in-time BinarySnapshots of a live BankingService
+ * without stopping its traffic.
+ *
+ * It routes the service's changes through a CheckpointGate. A checkpoint
+ * cuts a consistent view (BankingService.cutCheckpoint), which holds up
+ * changes only while those in flight finish and the customer list is
+ * copied, then encodes the view as of the cut while transactions go on:
+ * the first change to an account after the cut copies its state aside
+ * for the writer. The file goes to a temporary name, is forced and renamed
+ * over the target, so the target always holds a complete checkpoint.
+ *
+ * Each checkpoint records its duration, the bytes written and the pause it
+ * imposed on changes (getLastPauseNanos), which bounds the latency it added
+ * to any one foreground operation; the copy-on-write cost is spread over
+ * the first change to each account while the checkpoint runs.
+ */
+public class Checkpointer implements Closeable {
+
+    private static final String TEMPORARY = ".tmp";
+
+    private final BankingService service;
+    private final Path target;
+    private ScheduledExecutorService writer; // guarded by this
+    private volatile IOException checkpointFailure;
+    private volatile long checkpoints;
+    private volatile long lastCheckpointNanos;
+    private volatile long lastBytes;
+    private volatile long lastPauseNanos;
+    private volatile int lastCustomers;
+
+    private Checkpointer(BankingService service, Path target) {
+        this.service = service;
+        this.target = target;
+        if (service.getCheckpointGate() == null) {
+            service.setCheckpointGate(new CheckpointGate());
+        }
+    }
+
+    /**
+     * Checkpoints service to target, attaching a CheckpointGate to the
+     * service unless it has one. Attach before traffic starts.
+     */
+    public static Checkpointer open(BankingService service, Path target) {
+        return new Checkpointer(service, target);
+    }
+
+    /**
+     * Writes a checkpoint on the calling thread; traffic continues
+     * meanwhile. Returns the bytes written.
+     */
+    public synchronized long checkpoint() throws IOException {
+        long start = System.nanoTime();
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY);
+        long bytes;
+        int customers;
+        long pause;
+        try (CheckpointGate.Cut cut = service.cutCheckpoint()) {
+            pause = cut.getPauseNanos();
+            customers = cut.getCustomers().size();
+            bytes = BinarySnapshot.write(cut, temporary);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        BankingFiles.forceParent(target);
+        lastBytes = bytes;
+        lastCustomers = customers;
+        lastPauseNanos = pause;
+        lastCheckpointNanos = System.nanoTime() - start;
+        checkpoints++;
+        return bytes;
+    }
+
+    /**
+     * Runs checkpoint() every intervalMillis on a background thread. A failed
+     * checkpoint is kept (getCheckpointFailure) and retried next time.
+     */
+    public synchronized void startCheckpoints(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        if (writer != null) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+                checkpointFailure = null;
+            } catch (IOException e) {
+                checkpointFailure = e;
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background checkpoints, waiting for a running one to finish.
+     * The gate stays attached to the service.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = writer;
+            writer = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public Path getTarget() { return target; }
+    public long getCheckpointCount() { return checkpoints; }
+    public long getLastCheckpointNanos() { return lastCheckpointNanos; }
+    public long getLastCheckpointBytes() { return lastBytes; }
+    public long getLastPauseNanos() { return lastPauseNanos; }
+    public int getLastCheckpointCustomerCount() { return lastCustomers; }
+    public IOException getCheckpointFailure() { return checkpointFailure; }
+}
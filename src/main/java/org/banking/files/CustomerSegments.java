@@ -0,0 +1,392 @@
+package org.banking.files;
+
+import org.banking.model.Customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CustomerSegments saves customers incrementally into a directory of
+ * append-only segment files: each save writes only the customers that
+ * changed since they were last saved (Customer.isDirty), so its I/O grows
+ * with the rate of change rather than with the size of the book.
+ *
+ *   segment-N.seg   the customers written by one save, in BinarySnapshot
+ *                   format, N increasing with every save
+ *
+ * A customer's record in a later segment replaces any earlier one, so
+ * load() reads the segments in order and keeps the newest record of each
+ * customer. Segments are written to a temporary file, forced and renamed
+ * into place, so a crash leaves either the whole segment or none of it.
+ *
+ * compact() merges every segment into the newest one, keeping only the
+ * newest record of each customer; startCompaction runs it on a background
+ * thread whenever the segment count passes a threshold. Saves continue
+ * while a compaction runs: they only ever add segments after the ones
+ * being merged. Merging decodes the customers being merged into memory.
+ *
+ * Opened with a base file (open(directory, baseName)), the directory also
+ * holds a full file of customers that load() reads before the segments,
+ * compact() merges the base and every segment into the base instead, and
+ * replace() and restore() can rewrite the directory as a whole; this is
+ * how ShardedFiles keeps each shard.
+ */
+public class CustomerSegments implements Closeable {
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+    private static final String TEMPORARY = ".tmp";
+
+    private final Path directory;
+    private final Path base; // null: compaction keeps the newest segment
+    private final Object compactionLock = new Object();
+    private long nextSegment; // guarded by this
+    private ScheduledExecutorService compactor; // guarded by this
+    private volatile IOException compactionFailure;
+    private volatile int lastSaveCustomers;
+    private volatile long lastSaveBytes;
+
+    private CustomerSegments(Path directory, String baseName) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.base = baseName == null ? null : directory.resolve(baseName);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*" + TEMPORARY)) {
+            for (Path file : leftovers) {
+                Files.delete(file); // a save, compaction or restore that did not finish
+            }
+        }
+        List<Long> segments = segments();
+        this.nextSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+    }
+
+    /**
+     * Opens (creating if needed) the segment directory.
+     */
+    public static CustomerSegments open(Path directory) throws IOException {
+        return new CustomerSegments(directory, null);
+    }
+
+    /**
+     * Opens (creating if needed) a segment directory whose segments are
+     * compacted into the base file baseName in it.
+     */
+    public static CustomerSegments open(Path directory, String baseName) throws IOException {
+        return new CustomerSegments(directory, baseName);
+    }
+
+    /**
+     * Writes the dirty customers among customers to a new segment and marks
+     * them saved. Returns how many were written; with none dirty, no segment
+     * is added.
+     */
+    public synchronized int save(List<Customer> customers) throws IOException {
+        List<Customer> dirty = new ArrayList<>();
+        List<Long> changeCounts = new ArrayList<>();
+        for (Customer customer : customers) {
+            long changes = customer.getChangeCount(); // read before the customer is written
+            if (customer.isDirty()) {
+                dirty.add(customer);
+                changeCounts.add(changes);
+            }
+        }
+        lastSaveCustomers = dirty.size();
+        lastSaveBytes = 0;
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        lastSaveBytes = writeSegment(dirty, segmentPath(nextSegment));
+        nextSegment++;
+        for (int i = 0; i < dirty.size(); i++) {
+            dirty.get(i).markSaved(changeCounts.get(i));
+        }
+        return dirty.size();
+    }
+
+    /**
+     * Reads the newest saved record of every customer, oldest first by when
+     * each customer was first saved. The customers are marked saved.
+     */
+    public List<Customer> load() throws IOException {
+        List<Customer> customers;
+        synchronized (compactionLock) { // a compaction would delete segments being read
+            List<Long> segments;
+            synchronized (this) {
+                segments = segments();
+            }
+            customers = new ArrayList<>(merge(segments).values());
+        }
+        for (Customer customer : customers) {
+            customer.markSaved(customer.getChangeCount());
+        }
+        return customers;
+    }
+
+    /**
+     * Merges every existing segment into the newest one, or into the base
+     * file if there is one. Returns the number of segments merged away.
+     */
+    public int compact() throws IOException {
+        synchronized (compactionLock) {
+            List<Long> segments;
+            synchronized (this) {
+                segments = segments();
+            }
+            if (base != null) {
+                if (segments.isEmpty()) {
+                    return 0;
+                }
+                // A crash before the segments are deleted leaves them to be
+                // merged again, which gives the same records.
+                writeSegment(new ArrayList<>(merge(segments).values()), base);
+                for (long segment : segments) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+                return segments.size();
+            }
+            if (segments.size() < 2) {
+                return 0;
+            }
+            long newest = segments.get(segments.size() - 1);
+            Map<Long, Customer> merged = merge(segments);
+            // Replacing the newest segment keeps the merged records ahead of any
+            // segment saved meanwhile; the older ones are deleted afterwards, and
+            // are harmless if a crash leaves them behind.
+            writeSegment(new ArrayList<>(merged.values()), segmentPath(newest));
+            for (long segment : segments) {
+                if (segment != newest) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            }
+            return segments.size() - 1;
+        }
+    }
+
+    /**
+     * Makes customers the directory's whole content. They are written as a
+     * new segment, which load() applies last, before the base file and the
+     * older segments are deleted and it becomes the base file, so a crash
+     * in between leaves at most records it would have dropped. Needs a base
+     * file.
+     */
+    public void replace(List<Customer> customers) throws IOException {
+        requireBase();
+        long[] changeCounts = new long[customers.size()];
+        for (int i = 0; i < changeCounts.length; i++) {
+            changeCounts[i] = customers.get(i).getChangeCount(); // read before the customer is written
+        }
+        synchronized (compactionLock) {
+            synchronized (this) {
+                long newest = nextSegment++;
+                writeSegment(customers, segmentPath(newest));
+                Files.deleteIfExists(base);
+                for (long segment : segments()) {
+                    if (segment != newest) {
+                        Files.delete(segmentPath(segment));
+                    }
+                }
+                Files.move(segmentPath(newest), base, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        for (int i = 0; i < changeCounts.length; i++) {
+            customers.get(i).markSaved(changeCounts[i]);
+        }
+    }
+
+    /**
+     * Copies the base file and every segment into the directory target
+     * (created if needed), a consistent copy even while saves continue.
+     * Returns the bytes copied.
+     */
+    public long backup(Path target) throws IOException {
+        Files.createDirectories(target);
+        synchronized (compactionLock) { // a compaction would delete segments being copied
+            List<Path> files = new ArrayList<>();
+            synchronized (this) {
+                if (base != null && Files.exists(base)) {
+                    files.add(base);
+                }
+                for (long segment : segments()) {
+                    files.add(segmentPath(segment));
+                }
+            }
+            long bytes = 0;
+            for (Path file : files) {
+                Files.copy(file, target.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                bytes += Files.size(file);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Replaces the directory's content with a copy taken by backup: every
+     * file is copied in under a temporary name first, then the current
+     * files are deleted and the copies renamed into place. If that is
+     * interrupted, run it again. Needs a base file. Returns the number of
+     * files restored.
+     */
+    public int restore(Path backup) throws IOException {
+        requireBase();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(backup)) {
+            for (Path file : found) {
+                String name = file.getFileName().toString();
+                if (file.getFileName().equals(base.getFileName())
+                        || (name.startsWith(PREFIX) && name.endsWith(SUFFIX))) {
+                    files.add(file);
+                }
+            }
+        }
+        synchronized (compactionLock) {
+            synchronized (this) {
+                List<Path> copies = new ArrayList<>();
+                for (Path file : files) {
+                    Path copy = directory.resolve(file.getFileName() + TEMPORARY);
+                    Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                    try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                    copies.add(copy);
+                }
+                Files.deleteIfExists(base);
+                for (long segment : segments()) {
+                    Files.delete(segmentPath(segment));
+                }
+                for (Path copy : copies) {
+                    String name = copy.getFileName().toString();
+                    Files.move(copy, directory.resolve(name.substring(0, name.length() - TEMPORARY.length())),
+                               StandardCopyOption.ATOMIC_MOVE);
+                }
+                List<Long> segments = segments();
+                nextSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+            }
+        }
+        return files.size();
+    }
+
+    private void requireBase() {
+        if (base == null) {
+            throw new IllegalStateException("segment directory " + directory + " has no base file");
+        }
+    }
+
+    /**
+     * Checks every intervalMillis on a background thread and compacts once
+     * there are more than maxSegments segments. A failed compaction is kept
+     * (getCompactionFailure) and retried next time.
+     */
+    public synchronized void startCompaction(long intervalMillis, int maxSegments) {
+        if (intervalMillis <= 0 || maxSegments < 1) {
+            throw new IllegalArgumentException("intervalMillis and maxSegments must be positive");
+        }
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "segment-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                if (getSegmentCount() > maxSegments) {
+                    compact();
+                }
+                compactionFailure = null;
+            } catch (IOException e) {
+                compactionFailure = e;
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background compaction, waiting for a running one to finish.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = compactor;
+            compactor = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public Path getDirectory() { return directory; }
+    public int getLastSaveCustomerCount() { return lastSaveCustomers; }
+    public long getLastSaveBytes() { return lastSaveBytes; }
+    public IOException getCompactionFailure() { return compactionFailure; }
+
+    public synchronized int getSegmentCount() throws IOException {
+        return segments().size();
+    }
+
+    private Map<Long, Customer> merge(List<Long> segments) throws IOException {
+        Map<Long, Customer> newest = new LinkedHashMap<>();
+        if (base != null && Files.exists(base)) {
+            for (Customer customer : BinarySnapshot.read(base)) {
+                newest.put(customer.getCustomerId(), customer);
+            }
+        }
+        for (long segment : segments) {
+            for (Customer customer : BinarySnapshot.read(segmentPath(segment))) {
+                newest.put(customer.getCustomerId(), customer);
+            }
+        }
+        return newest;
+    }
+
+    private static long writeSegment(List<Customer> customers, Path target) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY);
+        long bytes = BinarySnapshot.write(customers, temporary);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        BankingFiles.forceParent(target);
+        return bytes;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * Numbers of the segment files present, ascending.
+     */
+    private List<Long> segments() throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    found.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+}
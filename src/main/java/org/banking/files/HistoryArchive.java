@@ -0,0 +1,544 @@
+package org.banking.files;
+
+import org.banking.model.Account;
+import org.banking.model.Customer;
+import org.banking.model.HistoryStore;
+import org.banking.model.TransactionLog;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * HistoryArchive is cold storage for old transaction history: age() moves
+ * history entries older than a horizon off the heap into a directory of
+ * compressed segment files, and history queries keep reading them as if
+ * nothing had moved.
+ *
+ * An account takes part when its TransactionLog overflows into a store from
+ * newStore(), usually by passing archive::newStore to
+ * BankingService.setHistoryRetention. Entries the log's ring evicts stay in
+ * that store on the heap until they are aged. Reading an archived entry
+ * decodes the whole block holding it, and each thread keeps the block it
+ * decoded last, so a scan through old history (a statement, a HistoryView
+ * or HistoryCursor) streams through the archive one block read at a time.
+ * What an account keeps on the heap is its ring, its history newer than the
+ * horizon and one index entry per archived block.
+ *
+ *   segment-N.har  int magic, int version, block*, index, trailer
+ *   block          deflated: varint count, byte type*, zigzag amount*,
+ *                  zigzag balance delta*, varint timestamp delta*
+ *   index          varint blockCount, then per block: accountNumber,
+ *                  varint firstSequence, varint count, varint offset,
+ *                  varint length, int crc32c of the block
+ *   trailer        long indexOffset, int indexLength, int crc32c of the
+ *                  index, int magic
+ *
+ * A block holds up to BLOCK_ENTRIES consecutive entries of one account, in
+ * columns, with balances and timestamps as deltas from the previous entry
+ * (the first from 0). The index at the end of each segment is that
+ * segment's part of the per-account segment index, so open() reads only
+ * the indexes. A block starting at a sequence an earlier block already
+ * covers replaces the rest of it, so a later segment wins; that happens
+ * when an account restored from an older snapshot is aged again, and the
+ * replaced entries are not reclaimed. Each account should have one store
+ * per archive. Segments are written to a temporary file, forced and renamed
+ * into place before the aged entries leave the heap.
+ *
+ * BinarySnapshot writes only the entries of an archived store that are not
+ * archived yet, so read such a snapshot back with the archive it was
+ * written against (BinarySnapshot.read(path, archive)).
+ */
+public final class HistoryArchive implements Closeable {
+
+    static final int MAGIC = 0x48415231; // "HAR1"
+    static final int VERSION = 1;
+    static final int BLOCK_ENTRIES = 4096;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".har";
+    private static final String TEMPORARY = ".tmp";
+    private static final int HEADER_BYTES = 8;
+    private static final int TRAILER_BYTES = 20;
+
+    private final Path directory;
+    private final Map<String, List<Block>> index = new HashMap<>(); // guarded by this
+    private final Map<Integer, FileChannel> segments = new ConcurrentHashMap<>();
+    private final ThreadLocal<Columns> decoded = ThreadLocal.withInitial(Columns::new);
+    private final ThreadLocal<BinarySnapshot.Decoder> decoders = ThreadLocal.withInitial(BinarySnapshot.Decoder::new);
+    private int nextSegment; // guarded by this
+    private volatile long lastAgeEntries;
+    private volatile long lastAgeBytes;
+
+    private HistoryArchive(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Opens (creating if needed) the archive directory and reads the index
+     * of every segment in it.
+     */
+    public static HistoryArchive open(Path directory) throws IOException {
+        HistoryArchive archive = new HistoryArchive(directory);
+        try {
+            archive.load();
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    /**
+     * A new, empty overflow store for one account's TransactionLog.
+     */
+    public HistoryStore newStore() {
+        return new ArchivedHistoryStore(this, null, List.of(), 0);
+    }
+
+    /**
+     * Number of the log's entries held in an archive (0 unless its overflow
+     * came from newStore()).
+     */
+    public static int getArchivedCount(TransactionLog log) {
+        return log.getOverflow() instanceof ArchivedHistoryStore store ? store.getArchivedCount() : 0;
+    }
+
+    /**
+     * Moves every history entry stamped before horizonMicros out of the
+     * archived stores of customers' accounts into one new segment, and
+     * returns how many entries moved (with none, no segment is written).
+     * The accounts stay in use meanwhile; an entry leaves the heap only
+     * once its segment is on disk.
+     */
+    public synchronized long age(List<Customer> customers, long horizonMicros) throws IOException {
+        int segment = nextSegment;
+        Path target = segmentPath(segment);
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY);
+        List<Aged> aged = new ArrayList<>();
+        long entries = 0;
+        long bytes;
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+            BinarySnapshot.Encoder encoder = new BinarySnapshot.Encoder(64 * 1024);
+            Deflater deflater = new Deflater();
+            CRC32C crc = new CRC32C();
+            long position = HEADER_BYTES;
+            try {
+                for (Customer customer : customers) {
+                    for (Account account : customer.getAccounts()) {
+                        if (!(account.getTransactionLog().getOverflow() instanceof ArchivedHistoryStore store)
+                                || store.archive != this) {
+                            continue;
+                        }
+                        Columns old = store.takeOlderThan(horizonMicros);
+                        if (old == null) {
+                            continue;
+                        }
+                        Aged moved = new Aged(store, account.getAccountNumber(), old.count);
+                        for (int from = 0; from < old.count; from += BLOCK_ENTRIES) {
+                            int count = Math.min(BLOCK_ENTRIES, old.count - from);
+                            byte[] block = encode(old, from, count, encoder, deflater);
+                            crc.reset();
+                            crc.update(block);
+                            writeFully(out, ByteBuffer.wrap(block));
+                            moved.blocks.add(new Block(segment, position, block.length, (int) crc.getValue(),
+                                                       old.first + from, count));
+                            position += block.length;
+                        }
+                        aged.add(moved);
+                        entries += old.count;
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+            if (!aged.isEmpty()) {
+                encoder.reset();
+                int blockCount = 0;
+                for (Aged moved : aged) {
+                    blockCount += moved.blocks.size();
+                }
+                encoder.putVarLong(blockCount);
+                for (Aged moved : aged) {
+                    for (Block block : moved.blocks) {
+                        encoder.putString(moved.accountNumber);
+                        encoder.putVarLong(block.first);
+                        encoder.putVarLong(block.count);
+                        encoder.putVarLong(block.offset);
+                        encoder.putVarLong(block.length);
+                        putInt(encoder, block.checksum);
+                    }
+                }
+                crc.reset();
+                crc.update(encoder.bytes, 0, encoder.size());
+                writeFully(out, ByteBuffer.wrap(encoder.bytes, 0, encoder.size()));
+                writeFully(out, ByteBuffer.allocate(TRAILER_BYTES).putLong(position).putInt(encoder.size())
+                                          .putInt((int) crc.getValue()).putInt(MAGIC).flip());
+                out.force(true);
+            }
+            bytes = out.size();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        lastAgeEntries = entries;
+        if (aged.isEmpty()) {
+            Files.delete(temporary);
+            lastAgeBytes = 0;
+            return 0;
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        BankingFiles.forceParent(target);
+        segments.put(segment, FileChannel.open(target, StandardOpenOption.READ));
+        nextSegment++;
+        lastAgeBytes = bytes;
+        for (Aged moved : aged) {
+            List<Block> blocks = index.computeIfAbsent(moved.accountNumber, k -> new ArrayList<>());
+            for (Block block : moved.blocks) {
+                add(blocks, block);
+            }
+            moved.store.archived(moved.accountNumber, moved.blocks, moved.entries);
+        }
+        return entries;
+    }
+
+    /**
+     * A store over the first archived entries of accountNumber's history,
+     * as recorded by a snapshot. Throws if the archive does not hold them.
+     */
+    synchronized ArchivedHistoryStore reopen(String accountNumber, int archived) throws IOException {
+        List<Block> blocks = index.getOrDefault(accountNumber, List.of());
+        List<Block> view = new ArrayList<>();
+        int covered = 0;
+        for (Block block : blocks) {
+            if (block.first >= archived) {
+                break;
+            }
+            if (block.first > covered) {
+                break;
+            }
+            view.add(block);
+            covered = block.first + block.count;
+        }
+        if (covered < archived) {
+            throw new IOException("history archive " + directory + " holds " + covered + " entries of account "
+                                  + accountNumber + ", not " + archived);
+        }
+        return new ArchivedHistoryStore(this, accountNumber, view, archived);
+    }
+
+    /**
+     * The decoded columns of block, from this thread's last decoded block
+     * if it is the same one.
+     */
+    Columns decode(Block block) throws IOException {
+        Columns columns = decoded.get();
+        if (columns.block == block) {
+            return columns;
+        }
+        columns.block = null;
+        FileChannel in = segments.get(block.segment);
+        if (in == null) {
+            throw new IOException("history archive segment " + block.segment + " is missing");
+        }
+        ByteBuffer compressed = ByteBuffer.allocate(block.length);
+        readFully(in, block.offset, compressed);
+        CRC32C crc = new CRC32C();
+        crc.update(compressed.array(), 0, block.length);
+        if ((int) crc.getValue() != block.checksum) {
+            throw new IOException("history archive block checksum mismatch in segment " + block.segment);
+        }
+
+        BinarySnapshot.Decoder data = decoders.get();
+        // Every varint of an entry takes at most 10 bytes.
+        int limit = 10 + block.count * 31;
+        if (data.bytes.length < limit) {
+            data.bytes = new byte[limit];
+        }
+        Inflater inflater = new Inflater();
+        int length;
+        try {
+            inflater.setInput(compressed.array(), 0, block.length);
+            length = inflater.inflate(data.bytes, 0, limit);
+            if (!inflater.finished()) {
+                throw new IOException("history archive block in segment " + block.segment + " is malformed");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("history archive block in segment " + block.segment + " is malformed", e);
+        } finally {
+            inflater.end();
+        }
+        data.wrap(length);
+        int count = (int) data.getVarLong();
+        if (count != block.count) {
+            throw new IOException("history archive block holds " + count + " entries, not " + block.count);
+        }
+        columns.ensure(count);
+        for (int i = 0; i < count; i++) {
+            columns.types[i] = data.getByte();
+        }
+        for (int i = 0; i < count; i++) {
+            columns.amounts[i] = data.getZigZag();
+        }
+        long balance = 0;
+        for (int i = 0; i < count; i++) {
+            balance += data.getZigZag();
+            columns.balances[i] = balance;
+        }
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            timestamp += data.getVarLong();
+            columns.timestamps[i] = timestamp;
+        }
+        if (data.remaining() != 0) {
+            throw new IOException("history archive block has " + data.remaining() + " trailing bytes");
+        }
+        columns.first = block.first;
+        columns.count = count;
+        columns.block = block;
+        return columns;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : segments.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        segments.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public Path getDirectory() { return directory; }
+    public int getSegmentCount() { return segments.size(); }
+    public long getLastAgeEntryCount() { return lastAgeEntries; }
+    public long getLastAgeBytes() { return lastAgeBytes; }
+
+    private void load() throws IOException {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, PREFIX + "*" + TEMPORARY)) {
+            for (Path file : leftovers) {
+                Files.delete(file); // an aging run that did not finish
+            }
+        }
+        for (int segment : segmentNumbers()) {
+            FileChannel in = FileChannel.open(segmentPath(segment), StandardOpenOption.READ);
+            segments.put(segment, in);
+            readIndex(segment, in);
+            nextSegment = segment + 1;
+        }
+    }
+
+    private void readIndex(int segment, FileChannel in) throws IOException {
+        long size = in.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException("history archive segment " + segment + " is truncated");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(TRAILER_BYTES);
+        readFully(in, 0, frame.limit(HEADER_BYTES));
+        if (frame.getInt(0) != MAGIC || frame.getInt(4) != VERSION) {
+            throw new IOException("not a history archive segment: " + segmentPath(segment));
+        }
+        readFully(in, size - TRAILER_BYTES, frame.clear());
+        long offset = frame.getLong(0);
+        int length = frame.getInt(8);
+        int checksum = frame.getInt(12);
+        if (frame.getInt(16) != MAGIC || offset < HEADER_BYTES || offset + length != size - TRAILER_BYTES) {
+            throw new IOException("history archive segment " + segment + " is truncated");
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(in, offset, bytes);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.array(), 0, length);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("history archive index checksum mismatch in segment " + segment);
+        }
+        BinarySnapshot.Decoder data = new BinarySnapshot.Decoder();
+        data.bytes = bytes.array();
+        data.wrap(length);
+        long blocks = data.getVarLong();
+        for (long b = 0; b < blocks; b++) {
+            String accountNumber = data.getString();
+            int first = (int) data.getVarLong();
+            int count = (int) data.getVarLong();
+            long blockOffset = data.getVarLong();
+            int blockLength = (int) data.getVarLong();
+            int blockChecksum = data.getInt();
+            add(index.computeIfAbsent(accountNumber, k -> new ArrayList<>()),
+                new Block(segment, blockOffset, blockLength, blockChecksum, first, count));
+        }
+    }
+
+    /**
+     * Appends block to an account's blocks, dropping those it replaces.
+     */
+    private static void add(List<Block> blocks, Block block) {
+        int keep = blocks.size();
+        while (keep > 0 && blocks.get(keep - 1).first >= block.first) {
+            keep--;
+        }
+        blocks.subList(keep, blocks.size()).clear();
+        blocks.add(block);
+    }
+
+    private static byte[] encode(Columns columns, int from, int count, BinarySnapshot.Encoder out,
+                                 Deflater deflater) {
+        out.reset();
+        out.putVarLong(count);
+        for (int i = from; i < from + count; i++) {
+            out.putByte(columns.types[i]);
+        }
+        for (int i = from; i < from + count; i++) {
+            out.putZigZag(columns.amounts[i]);
+        }
+        long balance = 0;
+        for (int i = from; i < from + count; i++) {
+            out.putZigZag(columns.balances[i] - balance);
+            balance = columns.balances[i];
+        }
+        long timestamp = 0;
+        for (int i = from; i < from + count; i++) {
+            out.putVarLong(columns.timestamps[i] - timestamp);
+            timestamp = columns.timestamps[i];
+        }
+        deflater.reset();
+        deflater.setInput(out.bytes, 0, out.size());
+        deflater.finish();
+        byte[] compressed = new byte[out.size() / 2 + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return Arrays.copyOf(compressed, length);
+    }
+
+    private static void putInt(BinarySnapshot.Encoder out, int v) {
+        out.putByte(v >>> 24);
+        out.putByte(v >>> 16);
+        out.putByte(v >>> 8);
+        out.putByte(v);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel in, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("history archive segment is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * Numbers of the segment files present, ascending.
+     */
+    private List<Integer> segmentNumbers() throws IOException {
+        List<Integer> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    found.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * Where one block of an account's archived entries is.
+     */
+    static final class Block {
+        final int segment;
+        final long offset;
+        final int length;
+        final int checksum;
+        final int first;
+        final int count;
+
+        Block(int segment, long offset, int length, int checksum, int first, int count) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A run of history entries in columns: entries being aged, or a decoded
+     * block (then block is set).
+     */
+    static final class Columns {
+        Block block;
+        int first;
+        int count;
+        byte[] types = new byte[0];
+        long[] amounts = new long[0];
+        long[] balances = new long[0];
+        long[] timestamps = new long[0];
+
+        void ensure(int entries) {
+            if (types.length < entries) {
+                types = new byte[entries];
+                amounts = new long[entries];
+                balances = new long[entries];
+                timestamps = new long[entries];
+            }
+        }
+    }
+
+    private static final class Aged {
+        final ArchivedHistoryStore store;
+        final String accountNumber;
+        final int entries;
+        final List<Block> blocks = new ArrayList<>();
+
+        Aged(ArchivedHistoryStore store, String accountNumber, int entries) {
+            this.store = store;
+            this.accountNumber = accountNumber;
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.banking.files;
+
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.HistoryStore;
+
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+
+/**
+ * HistoryStore over an account's history columns inside a mapped
+ * MappedSnapshot file, followed by the entries appended since, which go to a
+ * ChunkedHistoryStore. The mapped entries are read in place, so only the
+ * pages of history that are actually read become resident.
+ *
+ * Serializes as a ChunkedHistoryStore holding a copy of every entry, so a
+ * serialized account does not depend on the file.
+ */
+final class MappedHistoryStore implements HistoryStore {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ByteBuffer columns; // types[count], then amounts, balances, timestamps
+    private final transient int count;
+    private final transient ChunkedHistoryStore appended = new ChunkedHistoryStore();
+
+    MappedHistoryStore(ByteBuffer columns, int count) {
+        this.columns = columns;
+        this.count = count;
+    }
+
+    @Override
+    public void append(byte type, long amount, long balanceAfter, long timestampMicros) {
+        appended.append(type, amount, balanceAfter, timestampMicros);
+    }
+
+    @Override
+    public int size() {
+        return count + appended.size();
+    }
+
+    @Override
+    public byte getType(int index) {
+        if (index >= count) {
+            return appended.getType(index - count);
+        }
+        checkIndex(index);
+        return columns.get(index);
+    }
+
+    @Override
+    public long getAmount(int index) {
+        if (index >= count) {
+            return appended.getAmount(index - count);
+        }
+        checkIndex(index);
+        return columns.getLong(count + 8 * index);
+    }
+
+    @Override
+    public long getBalanceAfter(int index) {
+        if (index >= count) {
+            return appended.getBalanceAfter(index - count);
+        }
+        checkIndex(index);
+        return columns.getLong(9 * count + 8 * index);
+    }
+
+    @Override
+    public long getTimestampMicros(int index) {
+        if (index >= count) {
+            return appended.getTimestampMicros(index - count);
+        }
+        checkIndex(index);
+        return columns.getLong(17 * count + 8 * index);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        ChunkedHistoryStore copy = new ChunkedHistoryStore();
+        for (int i = 0; i < size(); i++) {
+            copy.append(getType(i), getAmount(i), getBalanceAfter(i), getTimestampMicros(i));
+        }
+        return copy;
+    }
+}
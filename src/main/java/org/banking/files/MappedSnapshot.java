@@ -0,0 +1,680 @@
+package org.banking.files;
+
+import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.Customer;
+import org.banking.model.CustomerSource;
+import org.banking.model.HistoryStore;
+import org.banking.model.TransactionLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * MappedSnapshot is a snapshot layout made to be opened with
+ * FileChannel.map and read in place. Opening one maps the file and checks
+ * its header; nothing else is read until a customer is asked for, so the
+ * time to open does not depend on the size of the book. As a CustomerSource
+ * (BankingService.setCustomerSource) it lets a service start serving
+ * straight away and build each customer on first access. Account history is
+ * not copied at all: a restored log overflows into a MappedHistoryStore over
+ * the history columns in the file, so only the history pages that are read
+ * become resident.
+ *
+ * Layout (big-endian):
+ *
+ *   header     int magic, int version, int regionShift, int flags (0),
+ *              long customerCount, long accountCount, long totalBalance,
+ *              long customerIndexOffset, long accountIndexOffset,
+ *              long fileLength
+ *   record*    int length, int crc32c, customer (length bytes)
+ *   customer   long customerId, byte flags (1 verified), int accountCount,
+ *              firstName, lastName, email, phone, address, account*
+ *   account    accountNumber, accountType, currency, long balance,
+ *              long minimumBalance, long interestRate,
+ *              byte flags (1 inactive, 2 overflow, 4 type index,
+ *              8 limited), int ringCapacity,
+ *              [int historyLimit if limited (version 2)],
+ *              int firstSequence, int entryCount,
+ *              byte types[entryCount], long amounts[entryCount],
+ *              long balances[entryCount], long timestamps[entryCount]
+ *   customer index   (long customerId, long recordOffset) sorted by ID
+ *   account index    (long hash(accountNumber), long recordOffset) sorted
+ *                    by hash
+ *
+ * Strings are an int byte length (-1 for null) and UTF-8 bytes. The file
+ * is mapped in regions of 2^regionShift bytes (1 GiB by default), since one
+ * mapping holds at most 2 GiB; the writer pads so no record or index entry
+ * crosses a region boundary. A record's checksum is verified when the
+ * customer is built. fileLength detects a truncated file on open.
+ *
+ * The mapping stays in place until the snapshot is garbage collected, and
+ * the file must not be modified while mapped; deleting it is safe on Unix.
+ */
+public final class MappedSnapshot implements CustomerSource {
+
+    static final int MAGIC = 0x4d534e31; // "MSN1"
+    static final int VERSION = 2;
+    static final int DEFAULT_REGION_SHIFT = 30;
+    static final int HEADER_BYTES = 64;
+
+    private static final int FLAG_VERIFIED = 1;
+    private static final int FLAG_INACTIVE = 1;
+    private static final int FLAG_OVERFLOW = 2;
+    private static final int FLAG_TYPE_INDEX = 4;
+    private static final int FLAG_LIMITED = 8;
+    private static final int HISTORY_BATCH = 256;
+
+    private final Path path;
+    private final MappedByteBuffer[] regions;
+    private final int regionShift;
+    private final long regionMask;
+    private final long customerCount;
+    private final long accountCount;
+    private final long totalBalance;
+    private final long customerIndex;
+    private final long accountIndex;
+
+    private MappedSnapshot(Path path, MappedByteBuffer[] regions, int regionShift, ByteBuffer header) {
+        this.path = path;
+        this.regions = regions;
+        this.regionShift = regionShift;
+        this.regionMask = (1L << regionShift) - 1;
+        this.customerCount = header.getLong(16);
+        this.accountCount = header.getLong(24);
+        this.totalBalance = header.getLong(32);
+        this.customerIndex = header.getLong(40);
+        this.accountIndex = header.getLong(48);
+    }
+
+    /**
+     * Writes the customers to path in this layout, replacing any existing
+     * file. Returns the file size in bytes. The file is not forced to disk.
+     */
+    public static long write(List<Customer> customers, Path path) throws IOException {
+        return write(customers, path, DEFAULT_REGION_SHIFT);
+    }
+
+    /**
+     * As write(customers, path), mapping the file in regions of
+     * 2^regionShift bytes (12..30). No customer record may be larger than a
+     * region.
+     */
+    public static long write(List<Customer> customers, Path path, int regionShift) throws IOException {
+        if (regionShift < 12 || regionShift > 30) {
+            throw new IllegalArgumentException("regionShift must be 12..30");
+        }
+        long region = 1L << regionShift;
+        int n = customers.size();
+        long[] customerIds = new long[n];
+        long[] offsets = new long[n];
+        long[] accountHashes = new long[64];
+        long[] accountOffsets = new long[64];
+        int accounts = 0;
+        long balance = 0;
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output file = new Output(out);
+            file.fill(HEADER_BYTES); // header is written last
+            RecordBuffer record = new RecordBuffer();
+            List<String> numbers = new ArrayList<>();
+            CRC32C crc = new CRC32C();
+            for (int c = 0; c < n; c++) {
+                Customer customer = customers.get(c);
+                record.clear();
+                numbers.clear();
+                balance += encodeCustomer(record, customer, numbers);
+                int length = record.size();
+                if (8L + length > region) {
+                    throw new IOException("customer " + customer.getCustomerId() + " does not fit in a "
+                                          + region + "-byte region");
+                }
+                long used = file.position & (region - 1);
+                if (used + 8 + length > region) {
+                    file.fill(region - used);
+                }
+                crc.reset();
+                crc.update(record.bytes(), 0, length);
+                customerIds[c] = customer.getCustomerId();
+                offsets[c] = file.position;
+                file.putInt(length);
+                file.putInt((int) crc.getValue());
+                file.put(record.bytes(), 0, length);
+                for (String number : numbers) {
+                    if (accounts == accountHashes.length) {
+                        accountHashes = Arrays.copyOf(accountHashes, accounts * 2);
+                        accountOffsets = Arrays.copyOf(accountOffsets, accounts * 2);
+                    }
+                    accountHashes[accounts] = hash(number);
+                    accountOffsets[accounts] = offsets[c];
+                    accounts++;
+                }
+            }
+
+            // Index entries are 16 bytes on 16-byte boundaries, so none crosses a region.
+            file.fill((16 - (file.position & 15)) & 15);
+            long customerIndexOffset = file.position;
+            sortPairs(customerIds, offsets, 0, n - 1);
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && customerIds[i] == customerIds[i - 1]) {
+                    throw new IOException("duplicate customer ID " + customerIds[i]);
+                }
+                file.putLong(customerIds[i]);
+                file.putLong(offsets[i]);
+            }
+            long accountIndexOffset = file.position;
+            sortPairs(accountHashes, accountOffsets, 0, accounts - 1);
+            for (int i = 0; i < accounts; i++) {
+                file.putLong(accountHashes[i]);
+                file.putLong(accountOffsets[i]);
+            }
+            file.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(regionShift).putInt(0)
+                  .putLong(n).putLong(accounts).putLong(balance)
+                  .putLong(customerIndexOffset).putLong(accountIndexOffset).putLong(file.position)
+                  .flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            return file.position;
+        }
+    }
+
+    /**
+     * Maps the snapshot at path read-only and checks its header. Customers
+     * are read only when asked for.
+     */
+    public static MappedSnapshot open(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("not a mapped snapshot: " + path);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && in.read(header, header.position()) >= 0) {
+                // keep reading
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("not a mapped snapshot: " + path);
+            }
+            if (header.getInt(4) < 1 || header.getInt(4) > VERSION) {
+                throw new IOException("unsupported snapshot version " + header.getInt(4));
+            }
+            int regionShift = header.getInt(8);
+            if (regionShift < 12 || regionShift > 30) {
+                throw new IOException("corrupt snapshot header in " + path);
+            }
+            if (header.getLong(56) != size) {
+                throw new IOException("snapshot " + path + " is " + size + " bytes, expected "
+                                      + header.getLong(56));
+            }
+            long region = 1L << regionShift;
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + region - 1) >>> regionShift)];
+            for (int r = 0; r < regions.length; r++) {
+                long start = (long) r << regionShift;
+                regions[r] = in.map(FileChannel.MapMode.READ_ONLY, start, Math.min(region, size - start));
+            }
+            return new MappedSnapshot(path, regions, regionShift, header);
+        }
+    }
+
+    public Path getPath() { return path; }
+    @Override public long getCustomerCount() { return customerCount; }
+    @Override public long getAccountCount() { return accountCount; }
+    @Override public long getTotalBalanceMinor() { return totalBalance; }
+
+    @Override
+    public Customer loadCustomer(long customerId) {
+        long lo = 0;
+        long hi = customerCount;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            long id = getLong(customerIndex + 16 * mid);
+            if (id < customerId) {
+                lo = mid + 1;
+            } else if (id > customerId) {
+                hi = mid;
+            } else {
+                return decodeCustomer(getLong(customerIndex + 16 * mid + 8));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long findOwner(String accountNumber) {
+        long h = hash(accountNumber);
+        long lo = 0;
+        long hi = accountCount;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (getLong(accountIndex + 16 * mid) < h) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        byte[] wanted = accountNumber.getBytes(StandardCharsets.UTF_8);
+        for (long i = lo; i < accountCount && getLong(accountIndex + 16 * i) == h; i++) {
+            long offset = getLong(accountIndex + 16 * i + 8);
+            if (hasAccount(offset, wanted)) {
+                return getLong(offset + 8);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void forEachCustomerId(LongConsumer action) {
+        for (long i = 0; i < customerCount; i++) {
+            action.accept(getLong(customerIndex + 16 * i));
+        }
+    }
+
+    // ---- Reading ----------------------------------------------------------
+
+    private long getLong(long offset) {
+        return regions[(int) (offset >>> regionShift)].getLong((int) (offset & regionMask));
+    }
+
+    /**
+     * The region holding the record at offset, positioned at its first
+     * customer byte.
+     */
+    private ByteBuffer record(long offset) {
+        ByteBuffer region = regions[(int) (offset >>> regionShift)];
+        int start = (int) (offset & regionMask);
+        int length = region.getInt(start);
+        return region.slice(start + 8, length);
+    }
+
+    private boolean hasAccount(long offset, byte[] wanted) {
+        ByteBuffer in = record(offset);
+        in.position(9);
+        int accounts = in.getInt();
+        for (int s = 0; s < 5; s++) {
+            skipString(in);
+        }
+        for (int a = 0; a < accounts; a++) {
+            int length = in.getInt();
+            if (length == wanted.length && in.slice(in.position(), length).equals(ByteBuffer.wrap(wanted))) {
+                return true;
+            }
+            in.position(in.position() + Math.max(length, 0));
+            skipString(in);
+            skipString(in);
+            in.position(in.position() + 24);
+            int flags = in.get();
+            in.position(in.position() + ((flags & FLAG_LIMITED) != 0 ? 12 : 8));
+            int entries = in.getInt();
+            in.position(in.position() + 25 * entries);
+        }
+        return false;
+    }
+
+    private Customer decodeCustomer(long offset) {
+        ByteBuffer in = record(offset);
+        int expected = regions[(int) (offset >>> regionShift)].getInt((int) (offset & regionMask) + 4);
+        CRC32C crc = new CRC32C();
+        crc.update(in.duplicate());
+        if ((int) crc.getValue() != expected) {
+            throw new UncheckedIOException(new IOException("snapshot record checksum mismatch at " + offset
+                                                           + " in " + path));
+        }
+        long customerId = in.getLong();
+        int flags = in.get();
+        int accounts = in.getInt();
+        Customer customer = new Customer(customerId, getString(in), getString(in), getString(in),
+                                         getString(in), getString(in));
+        if ((flags & FLAG_VERIFIED) != 0) {
+            customer.verifyCustomer(customer.getEmail(), customer.getPhone());
+        }
+        for (int a = 0; a < accounts; a++) {
+            customer.addAccount(decodeAccount(in, customerId));
+        }
+        return customer;
+    }
+
+    private static Account decodeAccount(ByteBuffer in, long customerId) {
+        String accountNumber = getString(in);
+        String accountType = getString(in);
+        String currency = getString(in);
+        long balance = in.getLong();
+        long minimumBalance = in.getLong();
+        long interestRate = in.getLong();
+        int flags = in.get();
+        int capacity = in.getInt();
+        int limit = (flags & FLAG_LIMITED) != 0 ? in.getInt() : 0;
+        int first = in.getInt();
+        int entries = in.getInt();
+        ByteBuffer columns = in.slice(in.position(), 25 * entries);
+        in.position(in.position() + 25 * entries);
+
+        TransactionLog log;
+        if ((flags & FLAG_OVERFLOW) != 0 && limit == 0) {
+            log = new TransactionLog(capacity, new MappedHistoryStore(columns, entries));
+            log.skipTo(entries);
+        } else {
+            // A log that discards entries retains at most its ring capacity
+            // (plus its overflow's limit), so it is copied in.
+            ChunkedHistoryStore limited = null;
+            if (limit > 0) {
+                limited = new ChunkedHistoryStore(limit);
+                limited.skipTo(first);
+            }
+            log = new TransactionLog(capacity, limited);
+            log.skipTo(first);
+            for (int i = 0; i < entries; i++) {
+                log.append(columns.get(i), columns.getLong(entries + 8 * i), columns.getLong(9 * entries + 8 * i),
+                           columns.getLong(17 * entries + 8 * i));
+            }
+        }
+        if ((flags & FLAG_TYPE_INDEX) != 0) {
+            log.enableTypeIndex();
+        }
+        return Account.restore(accountNumber, accountType, currency, customerId, balance, minimumBalance,
+                               interestRate, (flags & FLAG_INACTIVE) == 0, log);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = in.getInt();
+        in.position(in.position() + Math.max(length, 0));
+    }
+
+    /**
+     * Sorts keys[lo..hi] ascending, moving values along with them.
+     */
+    private static void sortPairs(long[] keys, long[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivot = Math.max(Math.min(keys[lo], keys[mid]), Math.min(Math.max(keys[lo], keys[mid]), keys[hi]));
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // Recurse into the smaller side, loop on the larger.
+            if (j - lo < hi - i) {
+                sortPairs(keys, values, lo, j);
+                lo = i;
+            } else {
+                sortPairs(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) {
+                swap(keys, values, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, long[] values, int a, int b) {
+        long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        long v = values[a];
+        values[a] = values[b];
+        values[b] = v;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, for the account index.
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // ---- Writing ----------------------------------------------------------
+
+    /**
+     * Encodes one customer record, adding its account numbers to numbers.
+     * Returns the total balance of its active accounts as encoded, which
+     * feeds the header totals.
+     */
+    private static long encodeCustomer(RecordBuffer out, Customer customer, List<String> numbers) {
+        List<Account> accounts = new ArrayList<>(customer.getAccounts());
+        out.putLong(customer.getCustomerId());
+        out.put(customer.isVerified() ? FLAG_VERIFIED : 0);
+        out.putInt(accounts.size());
+        out.putString(customer.getFirstName());
+        out.putString(customer.getLastName());
+        out.putString(customer.getEmail());
+        out.putString(customer.getPhone());
+        out.putString(customer.getAddress());
+        long activeBalance = 0;
+        for (Account account : accounts) {
+            long balance = account.getBalanceMinor();
+            if (account.isActive()) {
+                activeBalance += balance;
+            }
+            encodeAccount(out, account, balance);
+            numbers.add(account.getAccountNumber());
+        }
+        return activeBalance;
+    }
+
+    private static void encodeAccount(RecordBuffer out, Account account, long balance) {
+        TransactionLog log = account.getTransactionLog();
+        HistoryStore overflow = log.getOverflow();
+        int limit = overflow instanceof ChunkedHistoryStore chunked ? chunked.getLimit() : 0;
+        out.putString(account.getAccountNumber());
+        out.putString(account.getAccountType());
+        out.putString(account.getCurrency());
+        out.putLong(balance);
+        out.putLong(account.getMinimumBalanceMinor());
+        out.putLong(account.getInterestRatePpm());
+        out.put((account.isActive() ? 0 : FLAG_INACTIVE)
+                | (overflow != null ? FLAG_OVERFLOW : 0)
+                | (log.isTypeIndexed() ? FLAG_TYPE_INDEX : 0)
+                | (limit > 0 ? FLAG_LIMITED : 0));
+        out.putInt(log.getCapacity());
+        if (limit > 0) {
+            out.putInt(limit);
+        }
+
+        // Entries appended after first/end are read are not part of this
+        // snapshot. A log that discards entries (no overflow, or a limited
+        // one) can do so between batches, so it is read in one go.
+        int end = log.size();
+        int first = log.firstRetained();
+        boolean discards = overflow == null || limit > 0;
+        int batch = discards ? Math.max(end - first, 0) : HISTORY_BATCH;
+        byte[] types = new byte[batch];
+        long[] amounts = new long[batch];
+        long[] balances = new long[batch];
+        long[] timestamps = new long[batch];
+        if (discards) {
+            first = log.readBefore(end, types, amounts, balances, timestamps);
+        }
+        int entries = end - first;
+        out.putInt(first);
+        out.putInt(entries);
+        int base = out.reserve(25 * entries);
+        ByteBuffer columns = out.buffer;
+        int done = 0;
+        while (done < entries) {
+            int count = discards ? entries
+                                 : Math.min(log.read(first + done, types, amounts, balances, timestamps),
+                                            entries - done);
+            for (int i = 0; i < count; i++) {
+                int k = done + i;
+                columns.put(base + k, types[i]);
+                columns.putLong(base + entries + 8 * k, amounts[i]);
+                columns.putLong(base + 9 * entries + 8 * k, balances[i]);
+                columns.putLong(base + 17 * entries + 8 * k, timestamps[i]);
+            }
+            done += count;
+        }
+    }
+
+    /**
+     * Growable heap buffer one customer record is encoded into.
+     */
+    private static final class RecordBuffer {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        void clear() {
+            buffer.clear();
+        }
+
+        int size() {
+            return buffer.position();
+        }
+
+        byte[] bytes() {
+            return buffer.array();
+        }
+
+        void put(int b) {
+            ensure(1);
+            buffer.put((byte) b);
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            buffer.putInt(v);
+        }
+
+        void putLong(long v) {
+            ensure(8);
+            buffer.putLong(v);
+        }
+
+        void putString(String s) {
+            if (s == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            putInt(utf8.length);
+            ensure(utf8.length);
+            buffer.put(utf8);
+        }
+
+        /**
+         * Skips n bytes to be filled by absolute puts; returns where they start.
+         */
+        int reserve(int n) {
+            ensure(n);
+            int start = buffer.position();
+            buffer.position(start + n);
+            return start;
+        }
+
+        private void ensure(int n) {
+            if (buffer.remaining() < n) {
+                long needed = (long) buffer.position() + n;
+                if (needed > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("customer record exceeds 2 GiB");
+                }
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * buffer.capacity()));
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+    }
+
+    /**
+     * Buffered sequential writer that tracks the file position.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int v) throws IOException {
+            room(4);
+            buffer.putInt(v);
+            position += 4;
+        }
+
+        void putLong(long v) throws IOException {
+            room(8);
+            buffer.putLong(v);
+            position += 8;
+        }
+
+        void put(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.capacity()) {
+                flush();
+                ByteBuffer direct = ByteBuffer.wrap(bytes, offset, length);
+                while (direct.hasRemaining()) {
+                    channel.write(direct);
+                }
+            } else {
+                room(length);
+                buffer.put(bytes, offset, length);
+            }
+            position += length;
+        }
+
+        void fill(long zeros) throws IOException {
+            while (zeros > 0) {
+                room(1);
+                int n = (int) Math.min(zeros, buffer.remaining());
+                Arrays.fill(buffer.array(), buffer.position(), buffer.position() + n, (byte) 0);
+                buffer.position(buffer.position() + n);
+                zeros -= n;
+                position += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void room(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+    }
+}
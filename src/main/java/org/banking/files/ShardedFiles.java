@@ -0,0 +1,242 @@
+package org.banking.files;
+
+import org.banking.model.Customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * ShardedFiles partitions a book's data directory by customer-ID hash into
+ * a fixed number of shards, each a directory of its own customers and
+ * accounts, so that saving, loading, compaction and backup can run per
+ * shard, in parallel, and for one shard alone:
+ *
+ *   shards                  the shard count, fixed when the directory is created
+ *   shard-NN/accounts.dat   the shard's customers as of its last compaction
+ *                           (BinarySnapshot format)
+ *   shard-NN/segment-M.seg  customers of the shard saved since, a log of
+ *                           incremental saves (see CustomerSegments)
+ *
+ * save() writes each shard's changed customers (Customer.isDirty) to a new
+ * segment of that shard only, so a shard without changes is not touched.
+ * The methods for all shards run them in parallel on the common fork-join
+ * pool; the ones taking a shard number work on that shard alone, which is
+ * how a damaged shard is repaired without rewriting the rest of the book:
+ * restore(shard, backup) puts back a backup of it, and replace(shard,
+ * customers) rewrites it from customers still in memory.
+ */
+public final class ShardedFiles implements Closeable {
+
+    private static final String COUNT_FILE = "shards";
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final Path directory;
+    private final CustomerSegments[] shards;
+
+    private ShardedFiles(Path directory, CustomerSegments[] shards) {
+        this.directory = directory;
+        this.shards = shards;
+    }
+
+    /**
+     * Opens (creating if needed) a data directory of shardCount shards. A
+     * directory created with another shard count is not repartitioned; it
+     * fails to open.
+     */
+    public static ShardedFiles open(Path directory, int shardCount) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        Files.createDirectories(directory);
+        Path countFile = directory.resolve(COUNT_FILE);
+        if (Files.exists(countFile)) {
+            int existing = Integer.parseInt(Files.readString(countFile, StandardCharsets.US_ASCII).trim());
+            if (existing != shardCount) {
+                throw new IOException(directory + " has " + existing + " shards, not " + shardCount);
+            }
+        } else {
+            Files.writeString(countFile, shardCount + "\n", StandardCharsets.US_ASCII);
+        }
+        CustomerSegments[] shards = new CustomerSegments[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = CustomerSegments.open(directory.resolve(String.format("%s%02d", SHARD_PREFIX, i)),
+                                              BankingFiles.ACCOUNTS_FILE);
+        }
+        return new ShardedFiles(directory, shards);
+    }
+
+    public Path getDirectory() { return directory; }
+    public int getShardCount() { return shards.length; }
+
+    public Path getShardDirectory(int shard) {
+        return shards[shard].getDirectory();
+    }
+
+    /**
+     * The shard holding customerId.
+     */
+    public int shardOf(long customerId) {
+        long h = customerId * 0x9E3779B97F4A7C15L; // spreads sequential IDs evenly
+        return (int) ((h >>> 32) % shards.length);
+    }
+
+    /**
+     * Saves the changed customers among customers, each to its own shard,
+     * in parallel. Returns how many were written.
+     */
+    public int save(List<Customer> customers) throws IOException {
+        List<List<Customer>> parts = partition(customers);
+        return sum(shard -> shards[shard].save(parts.get(shard)));
+    }
+
+    /**
+     * Saves the changed customers of one shard, ignoring customers that
+     * belong to other shards. Returns how many were written.
+     */
+    public int save(int shard, List<Customer> customers) throws IOException {
+        return shards[shard].save(partition(customers).get(shard));
+    }
+
+    /**
+     * Reads every shard in parallel; the customers come back shard by shard.
+     */
+    public List<Customer> load() throws IOException {
+        List<List<Customer>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(null);
+        }
+        sum(shard -> {
+            List<Customer> loaded = shards[shard].load();
+            parts.set(shard, loaded);
+            return loaded.size();
+        });
+        List<Customer> customers = new ArrayList<>();
+        for (List<Customer> part : parts) {
+            customers.addAll(part);
+        }
+        return customers;
+    }
+
+    public List<Customer> load(int shard) throws IOException {
+        return shards[shard].load();
+    }
+
+    /**
+     * Merges every shard's segments into its accounts.dat, in parallel.
+     * Returns the number of segments merged away.
+     */
+    public int compact() throws IOException {
+        return sum(shard -> shards[shard].compact());
+    }
+
+    public int compact(int shard) throws IOException {
+        return shards[shard].compact();
+    }
+
+    /**
+     * Copies every shard, in parallel, into a directory of the same layout
+     * under target. Returns the bytes copied.
+     */
+    public long backup(Path target) throws IOException {
+        Files.createDirectories(target);
+        Files.copy(directory.resolve(COUNT_FILE), target.resolve(COUNT_FILE),
+                   StandardCopyOption.REPLACE_EXISTING);
+        long[] bytes = new long[shards.length];
+        sum(shard -> {
+            bytes[shard] = backup(shard, target);
+            return 0;
+        });
+        long total = 0;
+        for (long b : bytes) {
+            total += b;
+        }
+        return total;
+    }
+
+    /**
+     * Copies one shard into its directory under target (the layout backup
+     * writes). Returns the bytes copied.
+     */
+    public long backup(int shard, Path target) throws IOException {
+        return shards[shard].backup(target.resolve(getShardDirectory(shard).getFileName()));
+    }
+
+    /**
+     * Replaces one shard with its copy in a backup taken by backup(). The
+     * other shards are not touched. Customers loaded before are stale.
+     */
+    public void restore(int shard, Path backup) throws IOException {
+        Path copy = backup.resolve(getShardDirectory(shard).getFileName());
+        if (!Files.isDirectory(copy)) {
+            throw new IOException("backup " + backup + " has no copy of shard " + shard);
+        }
+        shards[shard].restore(copy);
+    }
+
+    /**
+     * Rewrites one shard from customers (those of it among them; usually
+     * the live ones), dropping its segments. The other shards are not
+     * touched.
+     */
+    public void replace(int shard, List<Customer> customers) throws IOException {
+        shards[shard].replace(partition(customers).get(shard));
+    }
+
+    public int getSegmentCount(int shard) throws IOException {
+        return shards[shard].getSegmentCount();
+    }
+
+    @Override
+    public void close() {
+        for (CustomerSegments shard : shards) {
+            shard.close();
+        }
+    }
+
+    private List<List<Customer>> partition(List<Customer> customers) {
+        List<List<Customer>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (Customer customer : customers) {
+            parts.get(shardOf(customer.getCustomerId())).add(customer);
+        }
+        return parts;
+    }
+
+    /**
+     * Runs task for every shard in parallel and sums the results. Every
+     * shard is attempted; the first failure is thrown afterwards.
+     */
+    private int sum(ShardTask task) throws IOException {
+        IOException[] failures = new IOException[shards.length];
+        int total = IntStream.range(0, shards.length).parallel().map(shard -> {
+            try {
+                return task.run(shard);
+            } catch (IOException e) {
+                failures[shard] = e;
+            } catch (UncheckedIOException e) {
+                failures[shard] = e.getCause();
+            }
+            return 0;
+        }).sum();
+        for (IOException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        return total;
+    }
+
+    private interface ShardTask {
+        int run(int shard) throws IOException;
+    }
+}
@@ -0,0 +1,768 @@
+package org.banking.files;
+
+import org.banking.model.BankingJournal;
+import org.banking.model.JournalUnavailableException;
+import org.banking.utils.EpochClock;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * WriteAheadLog is an append-only file of binary mutation records written
+ * through a FileChannel. Attached to a BankingService (setJournal), it
+ * records every registration, account opening, posting, transfer and
+ * closing, so changes made since the last full save survive a crash.
+ *
+ * File layout: an 8-byte header (magic, version), then records of
+ *
+ *   int length | int crc32c | byte kind | long micros | payload
+ *
+ * where length and the checksum cover kind, micros and payload. Posting
+ * kinds are TransactionType codes; amounts and balances are minor units.
+ * Strings are an unsigned short UTF-8 byte length (0xFFFF for null), then
+ * the bytes; a string longer than MAX_STRING_BYTES is rejected.
+ * A record that is cut short or fails its checksum marks the end of the
+ * log: it was being written when the process died, so readers stop there
+ * and reopening the log truncates it.
+ *
+ * Records are encoded into an in-memory buffer under a short lock and
+ * reach the file according to the Durability setting:
+ *
+ *   PER_OPERATION  commit() writes and forces what is buffered while
+ *                  holding the lock, so no other operation shares the
+ *                  force; one fsync per committed operation.
+ *   PER_BATCH      group commit. commit() blocks until everything appended
+ *                  so far is forced. The first waiting caller writes and
+ *                  forces the whole buffer; callers arriving meanwhile
+ *                  queue up behind it and share the next force.
+ *   PER_INTERVAL   commit() returns at once; a background thread writes and
+ *                  forces the buffer every interval, so a crash loses at
+ *                  most the last interval of changes.
+ *
+ * Appending never does I/O. In every mode checkAvailable() flushes the
+ * buffer itself once more than MAX_PENDING_BYTES are waiting, so memory
+ * stays bounded when the disk falls behind, and the push back lands before
+ * a change is applied.
+ *
+ * An I/O failure is sticky: every later checkAvailable() or commit() throws
+ * JournalUnavailableException, and records of changes admitted before the
+ * failure are dropped, since nothing more can reach the file. Appending to
+ * a closed log throws JournalUnavailableException.
+ */
+public class WriteAheadLog implements BankingJournal, Closeable {
+
+    public enum Durability { PER_OPERATION, PER_BATCH, PER_INTERVAL }
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 10L;
+
+    static final int MAGIC = 0x42574c31; // "BWL1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 8;
+    static final int MAX_RECORD_BYTES = 1 << 20;
+    static final int MAX_PENDING_BYTES = 4 << 20;
+    static final int MAX_STRING_BYTES = 0xFFFE;
+    private static final int NULL_STRING = 0xFFFF;
+
+    static final byte KIND_REGISTER = 16;
+    static final byte KIND_CREATE_ACCOUNT = 17;
+    static final byte KIND_TRANSFER = 18;
+    static final byte KIND_CLOSE = 19;
+
+    private Path path;             // changes only in roll(), with the lock held
+    private FileChannel channel;
+    private final Durability durability;
+    private final long intervalMillis;
+    private final ReentrantLock lock;
+    private final Condition flushed;
+    private final CRC32C crc;
+    private final Thread flusher; // PER_INTERVAL only
+    private ByteBuffer pending;    // encoded records not yet written
+    private ByteBuffer spare;      // the other buffer, null while a flush owns it
+    private long appended;         // file offset after the last appended record
+    private long durable;          // file offset up to which the file is forced
+    private int recordStart;       // offset in pending of the record being encoded
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+    private long records;
+    private long forces;
+
+    /**
+     * Opens (or creates) the log at path for appending, using PER_BATCH.
+     */
+    public WriteAheadLog(Path path) throws IOException {
+        this(path, Durability.PER_BATCH, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens (or creates) the log at path for appending. A torn record left
+     * at the end by a crash is cut off. intervalMillis only matters for
+     * PER_INTERVAL.
+     */
+    public WriteAheadLog(Path path, Durability durability, long intervalMillis) throws IOException {
+        if (durability == null) {
+            throw new IllegalArgumentException("durability is required");
+        }
+        if (durability == Durability.PER_INTERVAL && intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        this.path = path;
+        this.durability = durability;
+        this.intervalMillis = intervalMillis;
+        this.lock = new ReentrantLock();
+        this.flushed = lock.newCondition();
+        this.crc = new CRC32C();
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.spare = ByteBuffer.allocate(64 * 1024);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        try {
+            long end = prepare(channel);
+            this.appended = end;
+            this.durable = end;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (durability == Durability.PER_INTERVAL) {
+            this.flusher = new Thread(this::flushPeriodically, "wal-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Writes the header of an empty log, or validates an existing one and
+     * cuts off a torn tail. Returns the offset to append at.
+     */
+    private static long prepare(FileChannel channel) throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+            return HEADER_BYTES;
+        }
+        long end = scan(channel, null).validEnd;
+        if (end < channel.size()) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+        return end;
+    }
+
+    // ---- BankingJournal -------------------------------------------------
+
+    @Override
+    public void customerRegistered(long customerId, String firstName, String lastName,
+                                   String email, String phone, String address) {
+        lock.lock();
+        try {
+            ByteBuffer b = begin(KIND_REGISTER, EpochClock.nowMicros(),
+                                 8 + size(firstName) + size(lastName) + size(email) + size(phone) + size(address));
+            if (b == null) {
+                return;
+            }
+            b.putLong(customerId);
+            putString(b, firstName);
+            putString(b, lastName);
+            putString(b, email);
+            putString(b, phone);
+            putString(b, address);
+            end(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void accountCreated(long customerId, String accountNumber, String accountType,
+                               long balance, long minimumBalance, long interestRate) {
+        lock.lock();
+        try {
+            ByteBuffer b = begin(KIND_CREATE_ACCOUNT, EpochClock.nowMicros(),
+                                 8 + size(accountNumber) + size(accountType) + 24);
+            if (b == null) {
+                return;
+            }
+            b.putLong(customerId);
+            putString(b, accountNumber);
+            putString(b, accountType);
+            b.putLong(balance).putLong(minimumBalance).putLong(interestRate);
+            end(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void posted(String accountNumber, byte type, long amount, long balanceAfter, long timestampMicros) {
+        lock.lock();
+        try {
+            ByteBuffer b = begin(type, timestampMicros, size(accountNumber) + 16);
+            if (b == null) {
+                return;
+            }
+            putString(b, accountNumber);
+            b.putLong(amount).putLong(balanceAfter);
+            end(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void transferred(String fromAccountNumber, String toAccountNumber, long amount,
+                            long fromBalanceAfter, long toBalanceAfter, long timestampMicros) {
+        lock.lock();
+        try {
+            ByteBuffer b = begin(KIND_TRANSFER, timestampMicros, size(fromAccountNumber) + size(toAccountNumber) + 24);
+            if (b == null) {
+                return;
+            }
+            putString(b, fromAccountNumber);
+            putString(b, toAccountNumber);
+            b.putLong(amount).putLong(fromBalanceAfter).putLong(toBalanceAfter);
+            end(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void accountClosed(long customerId, String accountNumber) {
+        lock.lock();
+        try {
+            ByteBuffer b = begin(KIND_CLOSE, EpochClock.nowMicros(), 8 + size(accountNumber));
+            if (b == null) {
+                return;
+            }
+            b.putLong(customerId);
+            putString(b, accountNumber);
+            end(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws JournalUnavailableException if the log has failed or is closed.
+     * Flushes the buffer first if more than MAX_PENDING_BYTES are waiting.
+     */
+    @Override
+    public void checkAvailable() {
+        lock.lock();
+        try {
+            checkFailure();
+            if (closed) {
+                throw new JournalUnavailableException("write-ahead log " + path + " is closed");
+            }
+            if (pending.position() >= MAX_PENDING_BYTES) {
+                flushTo(appended); // the disk is falling behind: push back on appenders
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record appended so far is forced to disk, except in
+     * PER_INTERVAL mode, where it returns at once.
+     */
+    @Override
+    public void commit() {
+        if (durability == Durability.PER_INTERVAL) {
+            lock.lock();
+            try {
+                checkFailure();
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+        if (durability == Durability.PER_BATCH) {
+            sync();
+            return;
+        }
+        lock.lock();
+        try {
+            writeAndForce();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- Durability -----------------------------------------------------
+
+    /**
+     * Writes and forces every record appended so far, whatever the mode.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            flushTo(appended);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            lock.lock();
+            try {
+                flushTo(appended);
+            } finally {
+                lock.unlock();
+            }
+        } catch (JournalUnavailableException e) {
+            channel.close();
+            throw (IOException) e.getCause();
+        }
+        channel.close();
+    }
+
+    /**
+     * Seals the current file and continues the log in next: everything
+     * appended so far is forced to the current file, and every later record
+     * goes to next (created if absent). Appenders wait only for the force.
+     */
+    public void roll(Path next) throws IOException {
+        FileChannel fresh = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                             StandardOpenOption.WRITE);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("write-ahead log " + path + " is closed");
+            }
+            flushTo(appended);
+            long end = prepare(fresh);
+            channel.close();
+            channel = fresh;
+            path = next;
+            appended = end;
+            durable = end;
+        } catch (IOException | RuntimeException e) {
+            fresh.close();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path getPath() {
+        lock.lock();
+        try {
+            return path;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Durability getDurability() { return durability; }
+
+    /**
+     * Size of the log including records not yet written.
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDurableSize() {
+        lock.lock();
+        try {
+            return durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRecordCount() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of fsyncs issued; records / forces is the group commit factor.
+     */
+    public long getForceCount() {
+        lock.lock();
+        try {
+            return forces;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes [durable, target) durable. Called with the lock held; the lock is
+     * released while this thread writes and forces.
+     */
+    private void flushTo(long target) {
+        while (durable < target) {
+            checkFailure();
+            if (flushing) {
+                flushed.awaitUninterruptibly();
+                continue;
+            }
+            flushing = true;
+            ByteBuffer batch = pending;
+            pending = spare;
+            spare = null;
+            long start = appended - batch.position();
+            long end = appended;
+            FileChannel out = channel;
+            IOException error = null;
+            lock.unlock();
+            try {
+                batch.flip();
+                writeFully(out, batch, start);
+                out.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                lock.lock();
+                batch.clear();
+                spare = batch;
+                flushing = false;
+                forces++;
+                if (error == null) {
+                    durable = Math.max(durable, end);
+                } else if (failure == null) {
+                    failure = error;
+                }
+                flushed.signalAll();
+            }
+        }
+        checkFailure();
+    }
+
+    private void flushPeriodically() {
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                flushTo(appended);
+            } catch (JournalUnavailableException e) {
+                return; // recorded in failure, reported to the next caller
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new JournalUnavailableException("write-ahead log " + path + " failed", failure);
+        }
+    }
+
+    // ---- Encoding -------------------------------------------------------
+
+    /**
+     * Reserves room for a record with a body of kind, micros and
+     * payloadBytes, and writes the body prefix. Returns null, dropping the
+     * record, if the log has failed. Called with the lock held.
+     */
+    private ByteBuffer begin(byte kind, long micros, int payloadBytes) {
+        if (failure != null) {
+            return null;
+        }
+        if (closed) {
+            throw new JournalUnavailableException("write-ahead log " + path + " is closed");
+        }
+        int recordBytes = RECORD_HEADER_BYTES + 9 + payloadBytes;
+        if (recordBytes > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("record of " + recordBytes + " bytes exceeds the limit");
+        }
+        if (pending.remaining() < recordBytes) {
+            int capacity = Math.max(pending.capacity() * 2, pending.position() + recordBytes);
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        ByteBuffer b = pending;
+        recordStart = b.position();
+        b.putInt(9 + payloadBytes);
+        b.putInt(0); // checksum, filled in by end()
+        b.put(kind).putLong(micros);
+        return b;
+    }
+
+    /**
+     * Fills in the checksum of the record begin() started.
+     */
+    private void end(ByteBuffer b) {
+        int recordEnd = b.position();
+        crc.reset();
+        crc.update(b.array(), recordStart + RECORD_HEADER_BYTES, recordEnd - recordStart - RECORD_HEADER_BYTES);
+        b.putInt(recordStart + 4, (int) crc.getValue());
+        appended += recordEnd - recordStart;
+        records++;
+    }
+
+    /**
+     * PER_OPERATION commit: writes and forces the pending records while
+     * holding the lock, so no other operation can share the force. Called
+     * with the lock held.
+     */
+    private void writeAndForce() {
+        while (flushing) {
+            flushed.awaitUninterruptibly(); // a sync() owns the other buffer
+        }
+        checkFailure();
+        if (durable == appended) {
+            return;
+        }
+        ByteBuffer batch = pending;
+        long start = appended - batch.position();
+        try {
+            batch.flip();
+            writeFully(channel, batch, start);
+            channel.force(false);
+            durable = appended;
+            forces++;
+        } catch (IOException e) {
+            failure = e;
+            checkFailure();
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Encoded size of a string. Called before a record is begun, so a string
+     * too long for its length field is rejected before anything is written.
+     */
+    private static int size(String s) {
+        if (s == null) {
+            return 2;
+        }
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            if (s.charAt(i) >= 0x80) {
+                n = s.getBytes(StandardCharsets.UTF_8).length;
+                break;
+            }
+        }
+        if (n > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("string of " + n + " bytes exceeds the limit of "
+                                               + MAX_STRING_BYTES);
+        }
+        return 2 + n;
+    }
+
+    private static void putString(ByteBuffer b, String s) {
+        if (s == null) {
+            b.putShort((short) NULL_STRING);
+            return;
+        }
+        int n = s.length();
+        boolean ascii = true;
+        for (int i = 0; i < n && ascii; i++) {
+            ascii = s.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            b.putShort((short) bytes.length).put(bytes);
+            return;
+        }
+        b.putShort((short) n);
+        for (int i = 0; i < n; i++) {
+            b.put((byte) s.charAt(i));
+        }
+    }
+
+    private static String getString(ByteBuffer b) {
+        int n = b.getShort() & 0xFFFF;
+        if (n == NULL_STRING) {
+            return null;
+        }
+        String s = new String(b.array(), b.arrayOffset() + b.position(), n, StandardCharsets.UTF_8);
+        b.position(b.position() + n);
+        return s;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // ---- Reading --------------------------------------------------------
+
+    /**
+     * Reads the log at path from the start and hands every complete record to
+     * target, in log order. Stops at the end of the file or at the first torn
+     * or corrupt record. Returns the number of records read.
+     */
+    public static long replay(Path path, BankingJournal target) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(in, target).records;
+        }
+    }
+
+    private static final class ScanResult {
+        long validEnd;
+        long records;
+    }
+
+    private static ScanResult scan(FileChannel in, BankingJournal target) throws IOException {
+        ScanResult result = new ScanResult();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (readFully(in, header, 0) < HEADER_BYTES) {
+            throw new EOFException("write-ahead log header is incomplete");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not a write-ahead log");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported write-ahead log version " + version);
+        }
+        CRC32C check = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+        long position = HEADER_BYTES;
+        long fileSize = in.size();
+        buffer.limit(0);
+        while (true) {
+            if (buffer.remaining() < RECORD_HEADER_BYTES && !refill(in, buffer, position, RECORD_HEADER_BYTES, fileSize)) {
+                break;
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < 9 || length > MAX_RECORD_BYTES) {
+                break;
+            }
+            if (buffer.remaining() < RECORD_HEADER_BYTES + length) {
+                if (buffer.capacity() < RECORD_HEADER_BYTES + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+                    larger.put(buffer).flip();
+                    buffer = larger;
+                }
+                if (!refill(in, buffer, position, RECORD_HEADER_BYTES + length, fileSize)) {
+                    break;
+                }
+            }
+            int start = buffer.position();
+            int checksum = buffer.getInt(start + 4);
+            check.reset();
+            check.update(buffer.array(), start + RECORD_HEADER_BYTES, length);
+            if ((int) check.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer body = buffer.slice(start + RECORD_HEADER_BYTES, length);
+            if (target != null) {
+                dispatch(body, target);
+            }
+            buffer.position(start + RECORD_HEADER_BYTES + length);
+            position += RECORD_HEADER_BYTES + length;
+            result.records++;
+        }
+        result.validEnd = position;
+        return result;
+    }
+
+    /**
+     * Compacts the buffer and reads more of the file after it, until at least
+     * needed bytes are buffered. position is the file offset of the buffer's
+     * current position. Returns false if the file ends first.
+     */
+    private static boolean refill(FileChannel in, ByteBuffer buffer, long position, int needed, long fileSize)
+            throws IOException {
+        int buffered = buffer.remaining();
+        buffer.compact();
+        long readAt = position + buffered;
+        while (buffer.position() < needed && readAt < fileSize) {
+            int n = in.read(buffer, readAt);
+            if (n < 0) {
+                break;
+            }
+            readAt += n;
+        }
+        buffer.flip();
+        return buffer.remaining() >= needed;
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static void dispatch(ByteBuffer body, BankingJournal target) throws IOException {
+        byte kind = body.get();
+        long micros = body.getLong();
+        switch (kind) {
+            case KIND_REGISTER:
+                target.customerRegistered(body.getLong(), getString(body), getString(body),
+                                          getString(body), getString(body), getString(body));
+                break;
+            case KIND_CREATE_ACCOUNT:
+                target.accountCreated(body.getLong(), getString(body), getString(body),
+                                      body.getLong(), body.getLong(), body.getLong());
+                break;
+            case KIND_TRANSFER:
+                target.transferred(getString(body), getString(body), body.getLong(),
+                                   body.getLong(), body.getLong(), micros);
+                break;
+            case KIND_CLOSE:
+                target.accountClosed(body.getLong(), getString(body));
+                break;
+            default:
+                target.posted(getString(body), kind, body.getLong(), body.getLong(), micros);
+                break;
+        }
+    }
+}
@@ -1,159 +1,716 @@
 package org.banking.model;
 
+import org.banking.utils.EpochClock;
+import org.banking.utils.Money;
+import org.banking.utils.StripedLocks;
+
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Account class represents a bank account with balance and transaction history.
  * This class demonstrates complex data flow with multiple operations.
+ *
+ * Amounts are fixed-point minor units (see Money); the double-based methods
+ * convert at the boundary. The balance and the active flag share one
+ * AtomicLong (balance * 2, plus 1 while inactive), so balances are limited to
+ * +/-2^62 minor units (Money.MAX_BALANCE); a posting that would leave that
+ * range is refused like any other. Single-account operations update it with a
+ * compare-and-swap loop that checks the flag and the minimum balance in the
+ * same swap, so they never lock, and a posting racing deactivation either
+ * lands before it (and leaves with the balance it takes out of the totals)
+ * or is refused. Each history entry records the exact
+ * balance its own update produced; entries of racing operations may be appended
+ * in either order. Transfers additionally lock both accounts' stripes (keyed by
+ * account number) in canonical order.
+ *
+ * History is kept in a columnar TransactionLog; Transaction objects are only
+ * created when history is read, and history getters return views, not copies.
+ *
+ * With a journal attached, each operation checks that it is available
+ * before changing anything, so a failed journal refuses the change
+ * (JournalUnavailableException) instead of memory running ahead of the log.
+ *
+ * With a CheckpointGate attached, every change passes through it (entered
+ * before any stripe lock is taken), so checkpoints can cut a consistent view.
  */
 public class Account implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 4L;
+    
+    private static final StripedLocks LOCKS = new StripedLocks(1024);
+    private static final long FAILED = Long.MIN_VALUE;
+    public static final long REFUSED = FAILED; // transfer leg result: the leg was not applied
+    private static final long INACTIVE = 1L; // low bit of state
     
     private String accountNumber;
     private String accountType; // SAVINGS, CHECKING, CREDIT
-    private double balance;
-    private double minimumBalance;
-    private double interestRate;
-    private boolean isActive;
-    private List<Transaction> transactions;
+    private final AtomicLong state; // balance in minor units * 2, | INACTIVE
+    private volatile long minimumBalance; // minor units
+    private volatile long interestRate; // parts per million, see Money.RATE_SCALE
+    private final TransactionLog history;
     private long customerId;
     private String currency;
+    private volatile BalanceAggregate aggregate; // owner's running totals, null until added to a customer
+    private transient volatile BankingJournal journal; // null unless the bank keeps a journal
+    private transient volatile CheckpointGate gate; // null unless the bank takes checkpoints
     
     public Account(String accountNumber, String accountType, double balance, long customerId) {
+        this(accountNumber, accountType, balance, customerId, new TransactionLog());
+    }
+    
+    /**
+     * Creates an account recording into the given history log, which sets how
+     * many recent entries stay in memory and where older ones go.
+     */
+    public Account(String accountNumber, String accountType, double balance, long customerId,
+                   TransactionLog history) {
         this.accountNumber = accountNumber;
         this.accountType = accountType;
-        this.balance = balance;
+        this.state = new AtomicLong(stateOf(Money.of(balance), true));
         this.customerId = customerId;
-        this.isActive = true;
-        this.transactions = new ArrayList<>();
+        this.history = history;
         this.currency = "USD";
-        this.minimumBalance = 100.0;
-        this.interestRate = 0.02;
+        this.minimumBalance = Money.ofUnits(100);
+        this.interestRate = Money.rateOf(0.02);
+    }
+    
+    /**
+     * Rebuilds an account from a journal record: balance, minimum balance and
+     * interest rate are taken as recorded, in minor units and parts per million.
+     */
+    public static Account restore(String accountNumber, String accountType, long customerId, long balance,
+                                  long minimumBalance, long interestRate, TransactionLog history) {
+        return restore(accountNumber, accountType, "USD", customerId, balance, minimumBalance, interestRate,
+                       true, history);
+    }
+    
+    /**
+     * Rebuilds an account from a snapshot record, including its currency and
+     * whether it was active.
+     */
+    public static Account restore(String accountNumber, String accountType, String currency, long customerId,
+                                  long balance, long minimumBalance, long interestRate, boolean active,
+                                  TransactionLog history) {
+        Account account = new Account(accountNumber, accountType, 0.0, customerId, history);
+        account.state.set(stateOf(balance, active));
+        account.minimumBalance = minimumBalance;
+        account.interestRate = interestRate;
+        account.currency = currency;
+        return account;
     }
     
     public boolean deposit(double amount) {
+        return depositMinor(Money.of(amount));
+    }
+    
+    public boolean depositMinor(long amount) {
         if (amount <= 0) {
             return false;
         }
-        if (!isActive) {
+        checkJournal();
+        CheckpointGate g = beginChange();
+        try {
+            return applyDeposit(amount);
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    private boolean applyDeposit(long amount) {
+        long after = credit(amount, true);
+        if (after == FAILED) {
             return false;
         }
-        this.balance += amount;
-        transactions.add(new Transaction("DEPOSIT", amount, this.balance));
+        record(TransactionType.DEPOSIT, amount, after);
         return true;
     }
     
     public boolean withdraw(double amount) {
+        return withdrawMinor(Money.of(amount));
+    }
+    
+    public boolean withdrawMinor(long amount) {
         if (amount <= 0) {
             return false;
         }
-        if (!isActive) {
-            return false;
+        checkJournal();
+        CheckpointGate g = beginChange();
+        try {
+            return applyWithdrawal(amount);
+        } finally {
+            endChange(g);
         }
-        if (this.balance - amount < minimumBalance) {
+    }
+    
+    private boolean applyWithdrawal(long amount) {
+        long after = debit(amount, minimumBalance);
+        if (after == FAILED) {
             return false;
         }
-        this.balance -= amount;
-        transactions.add(new Transaction("WITHDRAWAL", amount, this.balance));
+        record(TransactionType.WITHDRAWAL, amount, after);
         return true;
     }
     
     public boolean transfer(Account targetAccount, double amount) {
+        return transferMinor(targetAccount, Money.of(amount));
+    }
+    
+    public boolean transferMinor(Account targetAccount, long amount) {
         if (amount <= 0) {
             return false;
         }
         if (targetAccount == null) {
             return false;
         }
-        if (!isActive || !targetAccount.isActive) {
-            return false;
+        checkJournal();
+        CheckpointGate g = beginChange();
+        if (g != null) {
+            g.alsoChanging(targetAccount);
         }
-        if (this.balance - amount < minimumBalance) {
-            return false;
+        LOCKS.lockBoth(accountNumber, targetAccount.accountNumber);
+        try {
+            if (!targetAccount.isActive()) {
+                return false;
+            }
+            long after = debit(amount, minimumBalance);
+            if (after == FAILED) {
+                return false;
+            }
+            // The target's stripe is held, so it cannot be deactivated meanwhile.
+            long targetAfter = targetAccount.credit(amount, false);
+            if (targetAfter == FAILED) {
+                credit(amount, false); // the target's balance cannot take it: put the money back
+                return false;
+            }
+            long micros = EpochClock.nowMicros();
+            this.history.append(TransactionType.TRANSFER_OUT, amount, after, micros);
+            targetAccount.history.append(TransactionType.TRANSFER_IN, amount, targetAfter, micros);
+            this.changed();
+            targetAccount.changed();
+            BankingJournal target = journal;
+            if (target != null) {
+                target.transferred(accountNumber, targetAccount.accountNumber, amount, after, targetAfter, micros);
+            }
+            return true;
+        } finally {
+            LOCKS.unlockBoth(accountNumber, targetAccount.accountNumber);
+            endChange(g);
+        }
+    }
+    
+    /**
+     * Debit leg of a transfer whose credit leg is applied separately (for
+     * example by another shard of TransactionPipeline). Returns the balance
+     * after the debit, or REFUSED. The history records TRANSFER_OUT, but the
+     * journal is only checked: the caller reports the whole transfer
+     * (BankingJournal.transferred) once the credit leg is in, so a crash
+     * between the legs leaves neither in the journal.
+     */
+    public long transferOutMinor(long amount) {
+        if (amount <= 0) {
+            return REFUSED;
+        }
+        checkJournal();
+        CheckpointGate g = beginChange();
+        try {
+            long after = debit(amount, minimumBalance);
+            if (after != FAILED) {
+                recordLeg(TransactionType.TRANSFER_OUT, amount, after);
+            }
+            return after;
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    /**
+     * Credit leg matching transferOutMinor. Returns the balance after the
+     * credit, or REFUSED. The history records TRANSFER_IN; the journal is
+     * neither checked (the debit leg's check admitted the transfer) nor told.
+     */
+    public long transferInMinor(long amount) {
+        if (amount <= 0) {
+            return REFUSED;
+        }
+        CheckpointGate g = beginChange();
+        try {
+            long after = credit(amount, true);
+            if (after != FAILED) {
+                recordLeg(TransactionType.TRANSFER_IN, amount, after);
+            }
+            return after;
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    /**
+     * Returns money debited by transferOutMinor when the credit leg could not
+     * be applied. Skips the active check, since the funds must come back.
+     * The history records TRANSFER_IN; the journal, which never saw the
+     * debit, is not told. Throws ArithmeticException if deposits since the
+     * debit leave no room.
+     */
+    public void reverseTransferOutMinor(long amount) {
+        CheckpointGate g = beginChange();
+        try {
+            long after = credit(amount, false);
+            if (after == FAILED) {
+                throw new ArithmeticException("balance of " + accountNumber + " cannot take the refund");
+            }
+            recordLeg(TransactionType.TRANSFER_IN, amount, after);
+        } finally {
+            endChange(g);
         }
-        
-        this.balance -= amount;
-        targetAccount.balance += amount;
-        this.transactions.add(new Transaction("TRANSFER_OUT", amount, this.balance));
-        targetAccount.transactions.add(new Transaction("TRANSFER_IN", amount, targetAccount.balance));
-        return true;
     }
     
     public double calculateInterest() {
-        if (!isActive) {
-            return 0;
+        return Money.toDouble(calculateInterestMinor());
+    }
+    
+    /**
+     * Posts one month of interest (annual rate / 12, rounded half-even to the
+     * cent) and returns it in minor units.
+     */
+    public long calculateInterestMinor() {
+        checkJournal();
+        CheckpointGate g = beginChange();
+        try {
+            return applyInterest();
+        } finally {
+            endChange(g);
         }
-        if (this.balance <= 0) {
-            return 0;
+    }
+    
+    private long applyInterest() {
+        while (true) {
+            long current = state.get();
+            long balance = balanceOf(current);
+            if (!isActive(current) || balance <= 0) {
+                return 0;
+            }
+            long interest = Money.applyRate(balance, interestRate, 12);
+            if (interest <= 0) {
+                return 0;
+            }
+            long after = Money.addToBalance(balance, interest);
+            if (after == Money.OUT_OF_RANGE) {
+                return 0;
+            }
+            if (state.compareAndSet(current, stateOf(after, true))) {
+                posted(interest);
+                record(TransactionType.INTEREST, interest, after);
+                return interest;
+            }
         }
-        double interest = this.balance * this.interestRate / 12;
-        this.balance += interest;
-        transactions.add(new Transaction("INTEREST", interest, this.balance));
-        return interest;
     }
     
     public boolean applyMonthlyCharge(double charge) {
+        return applyMonthlyChargeMinor(Money.of(charge));
+    }
+    
+    public boolean applyMonthlyChargeMinor(long charge) {
         if (charge < 0) {
             return false;
         }
-        if (!isActive) {
-            return false;
+        checkJournal();
+        CheckpointGate g = beginChange();
+        try {
+            return applyCharge(charge);
+        } finally {
+            endChange(g);
         }
-        if (this.balance - charge < 0) {
+    }
+    
+    private boolean applyCharge(long charge) {
+        long after = debit(charge, 0);
+        if (after == FAILED) {
             return false;
         }
-        this.balance -= charge;
-        transactions.add(new Transaction("MONTHLY_CHARGE", charge, this.balance));
+        record(TransactionType.MONTHLY_CHARGE, charge, after);
         return true;
     }
     
-    public List<Transaction> getTransactionHistory(int lastNTransactions) {
-        List<Transaction> history = new ArrayList<>();
-        int startIndex = Math.max(0, transactions.size() - lastNTransactions);
-        for (int i = startIndex; i < transactions.size(); i++) {
-            history.add(transactions.get(i));
+    /**
+     * Applies the batch entries listed in order[from..to), all of which target
+     * this account, under a single hold of the account's stripe lock. Writes a
+     * TransactionBatch result code for each entry; an entry that would take
+     * the balance out of range is REJECTED and the rest still applied. The
+     * journal is not checked; BankingService checks it once per batch.
+     */
+    public void applyBatch(TransactionBatch batch, int[] order, int from, int to, byte[] results) {
+        CheckpointGate g = beginChange();
+        LOCKS.lock(accountNumber);
+        try {
+            for (int i = from; i < to; i++) {
+                int entry = order[i];
+                if (!isActive()) {
+                    results[entry] = TransactionBatch.INACTIVE;
+                    continue;
+                }
+                long amount = batch.getAmount(entry);
+                boolean ok;
+                switch (batch.getType(entry)) {
+                    case TransactionType.DEPOSIT: ok = amount > 0 && applyDeposit(amount); break;
+                    case TransactionType.WITHDRAWAL: ok = amount > 0 && applyWithdrawal(amount); break;
+                    case TransactionType.INTEREST: applyInterest(); ok = true; break;
+                    case TransactionType.MONTHLY_CHARGE: ok = amount >= 0 && applyCharge(amount); break;
+                    default:
+                        results[entry] = TransactionBatch.INVALID_TYPE;
+                        continue;
+                }
+                results[entry] = ok ? TransactionBatch.OK : TransactionBatch.REJECTED;
+            }
+        } finally {
+            LOCKS.unlock(accountNumber);
+            endChange(g);
+        }
+    }
+    
+    /**
+     * Re-applies a posting read back from a journal: the balance moves by the
+     * posting's amount, without limit checks, and the entry is recorded with
+     * its original balance and timestamp. Not reported to the journal.
+     */
+    public void restorePosting(byte type, long amount, long balanceAfter, long timestampMicros) {
+        long delta;
+        switch (type) {
+            case TransactionType.DEPOSIT:
+            case TransactionType.TRANSFER_IN:
+            case TransactionType.INTEREST:
+                delta = amount;
+                break;
+            case TransactionType.WITHDRAWAL:
+            case TransactionType.TRANSFER_OUT:
+            case TransactionType.MONTHLY_CHARGE:
+                delta = -amount;
+                break;
+            default:
+                throw new IllegalArgumentException("not a posting type: " + type);
+        }
+        CheckpointGate g = beginChange();
+        try {
+            if (credit(delta, false) == FAILED) {
+                throw new IllegalArgumentException("posting takes the balance of " + accountNumber + " out of range");
+            }
+            history.append(type, amount, balanceAfter, timestampMicros);
+            changed();
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    /**
+     * Appends a posting to the history and reports it to the journal.
+     */
+    /**
+     * Appends a transfer leg to the history without reporting it to the
+     * journal.
+     */
+    private void recordLeg(byte type, long amount, long after) {
+        history.append(type, amount, after, EpochClock.nowMicros());
+        changed();
+    }
+    
+    private void record(byte type, long amount, long after) {
+        long micros = EpochClock.nowMicros();
+        history.append(type, amount, after, micros);
+        changed();
+        BankingJournal target = journal;
+        if (target != null) {
+            target.posted(accountNumber, type, amount, after, micros);
         }
-        return history;
+    }
+    
+    /**
+     * Throws JournalUnavailableException if the attached journal cannot
+     * record the change about to be made.
+     */
+    private void checkJournal() {
+        BankingJournal target = journal;
+        if (target != null) {
+            target.checkAvailable();
+        }
+    }
+    
+    /**
+     * Sets the journal this account reports its postings to (null for none).
+     * Not serialized; BankingService attaches it when the account joins.
+     */
+    public void attachJournal(BankingJournal journal) {
+        this.journal = journal;
+    }
+    
+    /**
+     * Sets the checkpoint gate changes pass through (null for none). Not
+     * serialized; Customer attaches its own when the account is added. Set
+     * it while no change to this account is in progress.
+     */
+    public void attachCheckpointGate(CheckpointGate gate) {
+        this.gate = gate;
+    }
+    
+    /**
+     * Enters the checkpoint gate, if any, for a change to this account.
+     * Returns the gate to pass to endChange.
+     */
+    private CheckpointGate beginChange() {
+        CheckpointGate g = gate;
+        if (g != null) {
+            g.enter(this);
+        }
+        return g;
+    }
+    
+    private static void endChange(CheckpointGate g) {
+        if (g != null) {
+            g.exit();
+        }
+    }
+    
+    /**
+     * Forwards a balance change to the owner's running totals.
+     */
+    private void posted(long delta) {
+        BalanceAggregate target = aggregate;
+        if (target != null) {
+            target.addBalance(delta);
+        }
+    }
+    
+    /**
+     * Counts a change to this account against its owner, so the next
+     * incremental save writes the owner.
+     */
+    private void changed() {
+        BalanceAggregate target = aggregate;
+        if (target != null) {
+            target.markChanged();
+        }
+    }
+    
+    /**
+     * Moves this account's contribution (one account, plus its balance while
+     * active) from the current aggregate to the given one. Called by Customer.
+     */
+    void attachAggregate(BalanceAggregate target) {
+        LOCKS.lock(accountNumber);
+        try {
+            long current = state.get();
+            BalanceAggregate previous = aggregate;
+            if (previous != null) {
+                previous.addAccounts(-1);
+                if (isActive(current)) {
+                    previous.addBalance(-balanceOf(current));
+                }
+            }
+            aggregate = target;
+            if (target != null) {
+                target.addAccounts(1);
+                if (isActive(current)) {
+                    target.addBalance(balanceOf(current));
+                }
+            }
+        } finally {
+            LOCKS.unlock(accountNumber);
+        }
+    }
+    
+    /**
+     * Adds amount (which may be negative) to the balance and, if the account
+     * is active, to the owner's totals. With activeOnly an inactive account
+     * is left alone. Returns the new balance, or FAILED (also if the balance
+     * would leave Money's balance range).
+     */
+    private long credit(long amount, boolean activeOnly) {
+        while (true) {
+            long current = state.get();
+            if (activeOnly && !isActive(current)) {
+                return FAILED;
+            }
+            long after = Money.addToBalance(balanceOf(current), amount);
+            if (after == Money.OUT_OF_RANGE) {
+                return FAILED;
+            }
+            if (state.compareAndSet(current, stateOf(after, isActive(current)))) {
+                if (isActive(current)) {
+                    posted(amount);
+                }
+                return after;
+            }
+        }
+    }
+    
+    /**
+     * Subtracts amount from an active account unless that would take the
+     * balance below floor, and from the owner's totals. Returns the new
+     * balance, or FAILED if the account is inactive or the floor check (or
+     * the balance range) rejected it. amount must not be negative.
+     */
+    private long debit(long amount, long floor) {
+        while (true) {
+            long current = state.get();
+            if (!isActive(current)) {
+                return FAILED;
+            }
+            long after = Money.addToBalance(balanceOf(current), -amount);
+            if (after == Money.OUT_OF_RANGE || after < floor) {
+                return FAILED;
+            }
+            if (state.compareAndSet(current, stateOf(after, true))) {
+                posted(-amount);
+                return after;
+            }
+        }
+    }
+    
+    private static long stateOf(long balance, boolean active) {
+        return Math.multiplyExact(balance, 2) | (active ? 0 : INACTIVE);
+    }
+    
+    private static long balanceOf(long state) {
+        return state >> 1;
+    }
+    
+    private static boolean isActive(long state) {
+        return (state & INACTIVE) == 0;
+    }
+    
+    public HistoryView getTransactionHistory(int lastNTransactions) {
+        return history.last(lastNTransactions);
+    }
+    
+    /**
+     * Retained transactions stamped in [from, to), oldest first.
+     */
+    public HistoryView getTransactionsBetween(LocalDateTime from, LocalDateTime to) {
+        return history.between(EpochClock.toEpochMicros(from), EpochClock.toEpochMicros(to));
+    }
+    
+    /**
+     * Lazy cursor over retained transactions of one type stamped in [from, to).
+     */
+    public HistoryCursor getTransactionsBetween(LocalDateTime from, LocalDateTime to, String transactionType) {
+        return history.between(EpochClock.toEpochMicros(from), EpochClock.toEpochMicros(to),
+                               TransactionType.codeOf(transactionType));
     }
     
     public void deactivateAccount() {
-        if (this.balance > 0) {
-            this.isActive = false;
+        CheckpointGate g = beginChange();
+        LOCKS.lock(accountNumber);
+        try {
+            while (true) {
+                long current = state.get();
+                if (balanceOf(current) <= 0 || !isActive(current)) {
+                    break;
+                }
+                if (state.compareAndSet(current, current | INACTIVE)) {
+                    posted(-balanceOf(current));
+                    changed();
+                    break;
+                }
+            }
+        } finally {
+            LOCKS.unlock(accountNumber);
+            endChange(g);
+        }
+    }
+    
+    /**
+     * Deactivates the account unless its balance is positive, checking the
+     * balance in the same swap, so no posting can land between the check
+     * and the deactivation. Returns false, changing nothing, if the balance
+     * is positive. Used to close an account.
+     */
+    public boolean deactivateIfEmpty() {
+        CheckpointGate g = beginChange();
+        LOCKS.lock(accountNumber);
+        try {
+            while (true) {
+                long current = state.get();
+                if (balanceOf(current) > 0) {
+                    return false;
+                }
+                if (!isActive(current)) {
+                    return true;
+                }
+                if (state.compareAndSet(current, current | INACTIVE)) {
+                    posted(-balanceOf(current));
+                    changed();
+                    return true;
+                }
+            }
+        } finally {
+            LOCKS.unlock(accountNumber);
+            endChange(g);
         }
     }
     
     public void activateAccount() {
-        this.isActive = true;
+        CheckpointGate g = beginChange();
+        LOCKS.lock(accountNumber);
+        try {
+            while (true) {
+                long current = state.get();
+                if (isActive(current)) {
+                    break;
+                }
+                if (state.compareAndSet(current, current & ~INACTIVE)) {
+                    posted(balanceOf(current));
+                    changed();
+                    break;
+                }
+            }
+        } finally {
+            LOCKS.unlock(accountNumber);
+            endChange(g);
+        }
     }
     
     // Getters and Setters
     public String getAccountNumber() { return accountNumber; }
     public String getAccountType() { return accountType; }
-    public double getBalance() { return balance; }
-    public boolean isActive() { return isActive; }
-    public List<Transaction> getTransactions() { return transactions; }
+    public double getBalance() { return Money.toDouble(getBalanceMinor()); }
+    public long getBalanceMinor() { return balanceOf(state.get()); }
+    public boolean isActive() { return isActive(state.get()); }
+    public HistoryView getTransactions() { return history.toList(); }
+    public TransactionLog getTransactionLog() { return history; }
+    public int getTransactionCount() { return history.size(); }
     public long getCustomerId() { return customerId; }
     public String getCurrency() { return currency; }
-    public double getMinimumBalance() { return minimumBalance; }
-    public double getInterestRate() { return interestRate; }
+    public double getMinimumBalance() { return Money.toDouble(minimumBalance); }
+    public long getMinimumBalanceMinor() { return minimumBalance; }
+    public double getInterestRate() { return Money.rateToDouble(interestRate); }
+    public long getInterestRatePpm() { return interestRate; }
     
     public void setMinimumBalance(double minimumBalance) { 
         if (minimumBalance >= 0) {
-            this.minimumBalance = minimumBalance; 
+            CheckpointGate g = beginChange();
+            try {
+                this.minimumBalance = Money.of(minimumBalance); 
+                changed();
+            } finally {
+                endChange(g);
+            }
         }
     }
     
     public void setInterestRate(double interestRate) { 
         if (interestRate >= 0 && interestRate <= 1) {
-            this.interestRate = interestRate; 
+            CheckpointGate g = beginChange();
+            try {
+                this.interestRate = Money.rateOf(interestRate); 
+                changed();
+            } finally {
+                endChange(g);
+            }
         }
     }
     
     @Override
     public String toString() {
-        return String.format("Account{accountNumber='%s', accountType='%s', balance=%.2f, isActive=%s}", 
-                             accountNumber, accountType, balance, isActive);
+        return String.format("Account{accountNumber='%s', accountType='%s', balance=%s, isActive=%s}", 
+                             accountNumber, accountType, Money.format(getBalanceMinor()), isActive());
     }
 }
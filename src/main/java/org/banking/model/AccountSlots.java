@@ -0,0 +1,666 @@
+package org.banking.model;
+
+import org.banking.utils.EpochClock;
+import org.banking.utils.LongHashIndex;
+import org.banking.utils.Money;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AccountSlots keeps accounts off the Java heap, in fixed-width 64-byte
+ * slots of direct ByteBuffers, for books of tens of millions of accounts
+ * whose Account objects would otherwise fill the heap and lengthen every
+ * collection that traces it. A slot holds:
+ *
+ *   0   state             long, balance in minor units * 2, | CLOSED
+ *   8   minimum balance   long, minor units
+ *   16  interest rate     long, parts per million
+ *   24  owner             long, customer ID
+ *   32  hash              int, of the account number
+ *   36  owner number      int, the owner's running total in ownerBalances
+ *   40  type              byte, index into TYPES
+ *   41  number length     byte
+ *   42  account number    up to MAX_NUMBER_LENGTH ASCII characters
+ *
+ * An open-addressing table of slot numbers, also off the heap and at most
+ * half full, indexes the slots by account number. Lookups hash and compare
+ * the String's characters in place, so no operation here allocates. Slot
+ * pages are allocated as they fill; the table when the store is created.
+ * Every posting also adds its change to the running total of the bank and
+ * of the account's owner, as BalanceAggregate does for Account objects, so
+ * both totals are read without visiting the slots.
+ *
+ * Postings follow Account's rules (withdrawals keep the minimum balance,
+ * charges only a zero balance, interest is a month at rate / 12) but keep
+ * no history; with a journal attached they are checked against it and
+ * reported to it as Account does. Balances change by compare-and-swap, so postings never
+ * lock, and a transfer debits one slot before crediting the other. Opening
+ * and closing accounts is serialized by the store. Closing sets a bit of
+ * the word postings swap (which limits balances to +/-2^62 minor units, and
+ * a posting that would leave that range is refused) in the same swap that
+ * checks the balance, so a posting either lands before the close, and a
+ * positive balance then refuses the close, or is refused. A closed
+ * account's slot is kept, and reused if its number is opened again.
+ */
+public final class AccountSlots {
+
+    public static final int MAX_NUMBER_LENGTH = 22;
+    public static final int TAKEN = -1; // open() result: the number is in use
+    public static final int NO_ROOM = -2; // open() result: no free slot, or the number does not fit one
+    public static final long REFUSED = Long.MIN_VALUE; // transfer leg result: the leg was not applied
+
+    private static final String[] TYPES = { "SAVINGS", "CHECKING", "CREDIT" };
+
+    private static final int SLOT_BYTES = 64;
+    private static final int BALANCE = 0;
+    private static final int MINIMUM = 8;
+    private static final int RATE = 16;
+    private static final int OWNER = 24;
+    private static final int HASH = 32;
+    private static final int OWNER_NUMBER = 36;
+    private static final int TYPE = 40;
+    private static final int LENGTH = 41;
+    private static final int NUMBER = 42;
+
+    private static final long CLOSED = 1L; // low bit of the state word
+
+    private static final int MAX_PAGE_SHIFT = 20; // a million slots, 64 MB, per page
+    private static final int MAX_INDEX_SHIFT = 24; // 16M entries, 64 MB, per index page
+    private static final long FAILED = Long.MIN_VALUE;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final int capacity;
+    private final int pageShift;
+    private final ByteBuffer[] pages; // allocated as slots are taken
+    private final int indexShift;
+    private final int indexMask;
+    private final ByteBuffer[] index; // slot + 1 per entry, 0 when empty
+    private volatile int slotCount; // slots taken, open or closed
+    private final LongAdder openAccounts = new LongAdder();
+    private final LongAdder openBalance = new LongAdder(); // minor units
+    private final LongHashIndex<Integer> ownerNumbers = new LongHashIndex<>(); // by customer ID; guarded by this
+    private volatile LongAdder[] ownerBalances = new LongAdder[16]; // by owner number, grown under this
+    private int ownerCount; // guarded by this
+    private volatile BankingJournal journal; // null unless postings are journaled
+
+    /**
+     * Creates a store for up to capacity accounts (at most 2^29).
+     */
+    public AccountSlots(int capacity) {
+        if (capacity < 1 || capacity > (1 << 29)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^29");
+        }
+        this.capacity = capacity;
+        int slotBits = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        this.pageShift = Math.min(slotBits, MAX_PAGE_SHIFT);
+        this.pages = new ByteBuffer[((capacity - 1) >>> pageShift) + 1];
+        int tableBits = Math.max(slotBits + 1, 4);
+        this.indexShift = Math.min(tableBits, MAX_INDEX_SHIFT);
+        this.indexMask = (1 << tableBits) - 1;
+        this.index = new ByteBuffer[1 << (tableBits - indexShift)];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = ByteBuffer.allocateDirect(4 << indexShift).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Whether an account number fits a slot: 1 to MAX_NUMBER_LENGTH ASCII
+     * characters.
+     */
+    public static boolean fits(String accountNumber) {
+        if (accountNumber == null || accountNumber.isEmpty() || accountNumber.length() > MAX_NUMBER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < accountNumber.length(); i++) {
+            if (accountNumber.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens an account (accountType SAVINGS, CHECKING or CREDIT) in a free
+     * slot, or in the slot it had before it was closed. Returns the slot,
+     * TAKEN if an open account has the number, or NO_ROOM if the store is
+     * full or the number does not fit a slot. Not reported to the journal.
+     */
+    public synchronized int open(String accountNumber, String accountType, long customerId, long balance,
+                                 long minimumBalance, long interestRate) {
+        byte type = typeCode(accountType);
+        if (type < 0) {
+            throw new IllegalArgumentException("unknown account type: " + accountType);
+        }
+        if (!fits(accountNumber)) {
+            return NO_ROOM;
+        }
+        long state = stateOf(balance);
+        int owner = ownerNumber(customerId);
+        int hash = hash(accountNumber);
+        int entry = hash & indexMask;
+        int slot;
+        while (true) {
+            int stored = (int) INTS.getAcquire(index[entry >>> indexShift], indexOffset(entry));
+            if (stored == 0) {
+                slot = -1;
+                break;
+            }
+            if (matches(stored - 1, accountNumber, hash)) {
+                slot = stored - 1;
+                break;
+            }
+            entry = (entry + 1) & indexMask;
+        }
+        if (slot >= 0) {
+            ByteBuffer page = pages[slot >>> pageShift];
+            if (isOpen((long) LONGS.getAcquire(page, slotOffset(slot) + BALANCE))) {
+                return TAKEN;
+            }
+            fill(page, slotOffset(slot), type, customerId, owner, state, minimumBalance, interestRate);
+        } else {
+            slot = slotCount;
+            if (slot == capacity) {
+                return NO_ROOM;
+            }
+            ByteBuffer page = pages[slot >>> pageShift];
+            if (page == null) {
+                page = ByteBuffer.allocateDirect(SLOT_BYTES << pageShift).order(ByteOrder.nativeOrder());
+                pages[slot >>> pageShift] = page;
+            }
+            int at = slotOffset(slot);
+            page.putInt(at + HASH, hash);
+            page.put(at + LENGTH, (byte) accountNumber.length());
+            for (int i = 0; i < accountNumber.length(); i++) {
+                page.put(at + NUMBER + i, (byte) accountNumber.charAt(i));
+            }
+            fill(page, at, type, customerId, owner, state, minimumBalance, interestRate);
+            INTS.setRelease(index[entry >>> indexShift], indexOffset(entry), slot + 1);
+            slotCount = slot + 1;
+        }
+        openAccounts.increment();
+        counted(pages[slot >>> pageShift], slotOffset(slot), balance);
+        return slot;
+    }
+
+    /**
+     * Closes an open account unless its balance is positive, checking the
+     * balance in the same swap that closes it, as Account.deactivateIfEmpty
+     * does, so no deposit or transfer can land between the check and the
+     * close. The account no longer counts towards the totals. Returns false,
+     * changing nothing, if there is no such account or it holds money. Not
+     * reported to the journal.
+     */
+    public synchronized boolean close(String accountNumber) {
+        int slot = find(accountNumber);
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer page = pages[slot >>> pageShift];
+        int at = slotOffset(slot);
+        while (true) {
+            long current = (long) LONGS.getVolatile(page, at + BALANCE);
+            if (!isOpen(current) || balanceOf(current) > 0) {
+                return false;
+            }
+            if (LONGS.compareAndSet(page, at + BALANCE, current, current | CLOSED)) {
+                openAccounts.decrement();
+                counted(page, at, -balanceOf(current));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The slot of the open account with this number, or -1.
+     */
+    public int find(String accountNumber) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        int hash = hash(accountNumber);
+        for (int entry = hash & indexMask; ; entry = (entry + 1) & indexMask) {
+            int stored = (int) INTS.getAcquire(index[entry >>> indexShift], indexOffset(entry));
+            if (stored == 0) {
+                return -1;
+            }
+            int slot = stored - 1;
+            if (matches(slot, accountNumber, hash)) {
+                long state = (long) LONGS.getAcquire(pages[slot >>> pageShift], slotOffset(slot) + BALANCE);
+                return isOpen(state) ? slot : -1;
+            }
+        }
+    }
+
+    /**
+     * Applies a DEPOSIT, WITHDRAWAL or MONTHLY_CHARGE posting (a
+     * TransactionType code) to an open account. Returns false if there is
+     * no such account or the posting is refused.
+     */
+    public boolean post(String accountNumber, byte type, long amount) {
+        int slot = find(accountNumber);
+        if (slot < 0) {
+            return false;
+        }
+        checkJournal();
+        ByteBuffer page = pages[slot >>> pageShift];
+        int at = slotOffset(slot);
+        long after;
+        switch (type) {
+            case TransactionType.DEPOSIT:
+                if (amount <= 0) {
+                    return false;
+                }
+                after = credit(page, at, amount);
+                break;
+            case TransactionType.WITHDRAWAL:
+                if (amount <= 0) {
+                    return false;
+                }
+                after = debit(page, at, amount, page.getLong(at + MINIMUM));
+                break;
+            case TransactionType.MONTHLY_CHARGE:
+                if (amount < 0) {
+                    return false;
+                }
+                after = debit(page, at, amount, 0);
+                break;
+            default:
+                throw new IllegalArgumentException("not a posting type: " + type);
+        }
+        if (after == FAILED) {
+            return false;
+        }
+        record(accountNumber, type, amount, after);
+        return true;
+    }
+
+    /**
+     * Posts one month of interest to an open account with a positive
+     * balance, as Account.calculateInterestMinor does. Returns the interest
+     * in minor units (0 if none was posted).
+     */
+    public long addInterest(String accountNumber) {
+        int slot = find(accountNumber);
+        if (slot < 0) {
+            return 0;
+        }
+        checkJournal();
+        ByteBuffer page = pages[slot >>> pageShift];
+        int at = slotOffset(slot);
+        long rate = page.getLong(at + RATE);
+        while (true) {
+            long current = (long) LONGS.getVolatile(page, at + BALANCE);
+            long balance = balanceOf(current);
+            if (!isOpen(current) || balance <= 0) {
+                return 0;
+            }
+            long interest = Money.applyRate(balance, rate, 12);
+            if (interest <= 0) {
+                return 0;
+            }
+            long after = Money.addToBalance(balance, interest);
+            if (after == Money.OUT_OF_RANGE) {
+                return 0;
+            }
+            if (LONGS.compareAndSet(page, at + BALANCE, current, stateOf(after))) {
+                counted(page, at, interest);
+                record(accountNumber, TransactionType.INTEREST, interest, after);
+                return interest;
+            }
+        }
+    }
+
+    /**
+     * Moves amount between two open accounts, keeping the source's minimum
+     * balance. The credit follows the debit; readers in between see the
+     * money in neither account. If the target is closed in between, the
+     * debit is returned and the transfer refused.
+     */
+    public boolean transfer(String fromAccountNumber, String toAccountNumber, long amount) {
+        if (amount <= 0) {
+            return false;
+        }
+        int from = find(fromAccountNumber);
+        int to = find(toAccountNumber);
+        if (from < 0 || to < 0) {
+            return false;
+        }
+        checkJournal();
+        ByteBuffer fromPage = pages[from >>> pageShift];
+        int fromAt = slotOffset(from);
+        long after = debit(fromPage, fromAt, amount, fromPage.getLong(fromAt + MINIMUM));
+        if (after == FAILED) {
+            return false;
+        }
+        long targetAfter = credit(pages[to >>> pageShift], slotOffset(to), amount);
+        if (targetAfter == FAILED) {
+            refund(fromPage, fromAt, amount);
+            return false;
+        }
+        BankingJournal target = journal;
+        if (target != null) {
+            target.transferred(fromAccountNumber, toAccountNumber, amount, after, targetAfter,
+                               EpochClock.nowMicros());
+        }
+        return true;
+    }
+
+    /**
+     * Debit leg of a transfer to an account outside the slots, as
+     * Account.transferOutMinor: takes amount from an open account, keeping
+     * its minimum balance. Returns the new balance, or REFUSED. The journal
+     * is checked but not told; the caller reports the whole transfer once
+     * the credit leg is in.
+     */
+    public long transferOut(String accountNumber, long amount) {
+        int slot = find(accountNumber);
+        if (slot < 0 || amount <= 0) {
+            return REFUSED;
+        }
+        checkJournal();
+        ByteBuffer page = pages[slot >>> pageShift];
+        int at = slotOffset(slot);
+        long after = debit(page, at, amount, page.getLong(at + MINIMUM));
+        return after == FAILED ? REFUSED : after;
+    }
+
+    /**
+     * Credit leg of a transfer from an account outside the slots, as
+     * Account.transferInMinor. Returns the new balance, or REFUSED. The
+     * journal is neither checked (the debit leg's check admitted the
+     * transfer) nor told.
+     */
+    public long transferIn(String accountNumber, long amount) {
+        int slot = find(accountNumber);
+        if (slot < 0 || amount <= 0) {
+            return REFUSED;
+        }
+        long after = credit(pages[slot >>> pageShift], slotOffset(slot), amount);
+        return after == FAILED ? REFUSED : after;
+    }
+
+    /**
+     * Returns money debited by transferOut whose credit leg could not be
+     * applied, as Account.reverseTransferOutMinor does; the account may have
+     * been closed since. Not reported to the journal, which never saw the
+     * debit. Throws ArithmeticException if deposits since the debit leave
+     * no room.
+     */
+    public void reverseTransferOut(String accountNumber, long amount) {
+        int slot = locate(accountNumber);
+        if (slot < 0) {
+            throw new IllegalArgumentException("no slot for account " + accountNumber);
+        }
+        long after = refund(pages[slot >>> pageShift], slotOffset(slot), amount);
+        if (after == FAILED) {
+            throw new ArithmeticException("balance of " + accountNumber + " cannot take the refund");
+        }
+    }
+
+    /**
+     * Sets the journal postings are reported to (null for none).
+     */
+    public void attachJournal(BankingJournal journal) {
+        this.journal = journal;
+    }
+
+    public long getBalanceMinor(int slot) {
+        return balanceOf((long) LONGS.getVolatile(pages[slot >>> pageShift], slotOffset(slot) + BALANCE));
+    }
+
+    public long getMinimumBalanceMinor(int slot) {
+        return pages[slot >>> pageShift].getLong(slotOffset(slot) + MINIMUM);
+    }
+
+    public long getInterestRatePpm(int slot) {
+        return pages[slot >>> pageShift].getLong(slotOffset(slot) + RATE);
+    }
+
+    public long getCustomerId(int slot) {
+        return pages[slot >>> pageShift].getLong(slotOffset(slot) + OWNER);
+    }
+
+    public String getAccountType(int slot) {
+        return TYPES[pages[slot >>> pageShift].get(slotOffset(slot) + TYPE)];
+    }
+
+    /**
+     * The account number in a slot, as a new String.
+     */
+    public String getAccountNumber(int slot) {
+        ByteBuffer page = pages[slot >>> pageShift];
+        int at = slotOffset(slot);
+        char[] chars = new char[page.get(at + LENGTH)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) page.get(at + NUMBER + i);
+        }
+        return new String(chars);
+    }
+
+    public int getCapacity() { return capacity; }
+    public int getSlotCount() { return slotCount; }
+    public long getAccountCount() { return openAccounts.sum(); }
+
+    /**
+     * Sum of the open accounts' balances, read in constant time.
+     */
+    public long getTotalBalanceMinor() {
+        return openBalance.sum();
+    }
+
+    /**
+     * Sum of the balances of one customer's open accounts, read from the
+     * customer's running total.
+     */
+    public long getCustomerBalanceMinor(long customerId) {
+        Integer owner;
+        synchronized (this) {
+            owner = ownerNumbers.get(customerId);
+        }
+        return owner == null ? 0 : ownerBalances[owner].sum();
+    }
+
+    /**
+     * Direct memory held: the index and the slot pages allocated so far.
+     */
+    public long getOffHeapBytes() {
+        long bytes = (long) index.length << (indexShift + 2);
+        for (ByteBuffer page : pages) {
+            if (page != null) {
+                bytes += page.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    private void fill(ByteBuffer page, int at, byte type, long customerId, int owner, long state,
+                      long minimumBalance, long interestRate) {
+        page.putLong(at + MINIMUM, minimumBalance);
+        page.putLong(at + RATE, interestRate);
+        page.putLong(at + OWNER, customerId);
+        page.putInt(at + OWNER_NUMBER, owner);
+        page.put(at + TYPE, type);
+        LONGS.setRelease(page, at + BALANCE, state);
+    }
+
+    /**
+     * The owner number of customerId, assigning the next one (and its
+     * running total) to a new owner. Called under this.
+     */
+    private int ownerNumber(long customerId) {
+        Integer known = ownerNumbers.get(customerId);
+        if (known != null) {
+            return known;
+        }
+        int owner = ownerCount++;
+        LongAdder[] balances = ownerBalances;
+        if (owner == balances.length) {
+            balances = Arrays.copyOf(balances, owner * 2);
+        }
+        balances[owner] = new LongAdder();
+        ownerBalances = balances;
+        ownerNumbers.putIfAbsent(customerId, owner);
+        return owner;
+    }
+
+    /**
+     * Adds a change of an open account's balance to the bank's and its
+     * owner's running totals.
+     */
+    private void counted(ByteBuffer page, int at, long delta) {
+        openBalance.add(delta);
+        ownerBalances[page.getInt(at + OWNER_NUMBER)].add(delta);
+    }
+
+    /**
+     * The slot of this number, open or closed, or -1.
+     */
+    private int locate(String accountNumber) {
+        int hash = hash(accountNumber);
+        for (int entry = hash & indexMask; ; entry = (entry + 1) & indexMask) {
+            int stored = (int) INTS.getAcquire(index[entry >>> indexShift], indexOffset(entry));
+            if (stored == 0) {
+                return -1;
+            }
+            if (matches(stored - 1, accountNumber, hash)) {
+                return stored - 1;
+            }
+        }
+    }
+
+    private boolean matches(int slot, String accountNumber, int hash) {
+        ByteBuffer page = pages[slot >>> pageShift];
+        int at = slotOffset(slot);
+        if (page.getInt(at + HASH) != hash || page.get(at + LENGTH) != accountNumber.length()) {
+            return false;
+        }
+        for (int i = 0; i < accountNumber.length(); i++) {
+            if (page.get(at + NUMBER + i) != accountNumber.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds amount to an open account. Returns the new balance, or FAILED if
+     * the account is closed or the balance would leave Money's balance range.
+     */
+    private long credit(ByteBuffer page, int at, long amount) {
+        while (true) {
+            long current = (long) LONGS.getVolatile(page, at + BALANCE);
+            if (!isOpen(current)) {
+                return FAILED;
+            }
+            long after = Money.addToBalance(balanceOf(current), amount);
+            if (after == Money.OUT_OF_RANGE) {
+                return FAILED;
+            }
+            if (LONGS.compareAndSet(page, at + BALANCE, current, stateOf(after))) {
+                counted(page, at, amount);
+                return after;
+            }
+        }
+    }
+
+    /**
+     * Subtracts amount from an open account unless that would take the
+     * balance below floor. Returns the new balance, or FAILED if the account
+     * is closed or the floor check (or the balance range) rejected it.
+     */
+    private long debit(ByteBuffer page, int at, long amount, long floor) {
+        while (true) {
+            long current = (long) LONGS.getVolatile(page, at + BALANCE);
+            if (!isOpen(current)) {
+                return FAILED;
+            }
+            long after = Money.addToBalance(balanceOf(current), -amount);
+            if (after == Money.OUT_OF_RANGE || after < floor) {
+                return FAILED;
+            }
+            if (LONGS.compareAndSet(page, at + BALANCE, current, stateOf(after))) {
+                counted(page, at, -amount);
+                return after;
+            }
+        }
+    }
+
+    /**
+     * Returns a debited amount, whether or not the account has been closed
+     * since; it counts towards the totals only if the account is open.
+     * Returns the new balance, or FAILED if it would leave the balance range.
+     */
+    private long refund(ByteBuffer page, int at, long amount) {
+        while (true) {
+            long current = (long) LONGS.getVolatile(page, at + BALANCE);
+            long after = Money.addToBalance(balanceOf(current), amount);
+            if (after == Money.OUT_OF_RANGE) {
+                return FAILED;
+            }
+            if (LONGS.compareAndSet(page, at + BALANCE, current, stateOf(after) | (current & CLOSED))) {
+                if (isOpen(current)) {
+                    counted(page, at, amount);
+                }
+                return after;
+            }
+        }
+    }
+
+    private void checkJournal() {
+        BankingJournal target = journal;
+        if (target != null) {
+            target.checkAvailable();
+        }
+    }
+
+    private void record(String accountNumber, byte type, long amount, long after) {
+        BankingJournal target = journal;
+        if (target != null) {
+            target.posted(accountNumber, type, amount, after, EpochClock.nowMicros());
+        }
+    }
+
+    private static long stateOf(long balance) {
+        return Math.multiplyExact(balance, 2);
+    }
+
+    private static long balanceOf(long state) {
+        return state >> 1;
+    }
+
+    private static boolean isOpen(long state) {
+        return (state & CLOSED) == 0;
+    }
+
+    private int slotOffset(int slot) {
+        return (slot & ((1 << pageShift) - 1)) * SLOT_BYTES;
+    }
+
+    private int indexOffset(int entry) {
+        return (entry & ((1 << indexShift) - 1)) << 2;
+    }
+
+    private static int hash(String accountNumber) {
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private static byte typeCode(String accountType) {
+        for (byte i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(accountType)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
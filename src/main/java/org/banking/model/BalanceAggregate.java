@@ -0,0 +1,87 @@
+package org.banking.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BalanceAggregate keeps running totals (balance in minor units of active
+ * accounts, and number of accounts) that account mutations update in O(1).
+ * Totals use LongAdder so concurrent updates from different accounts do not
+ * contend on one counter. A customer's aggregate forwards every change to
+ * its parent, which lets BankingService keep bank-wide totals the same way.
+ *
+ * Totals are exact once the postings in flight have been applied, also
+ * when they race an account's deactivation: Account switches its active
+ * flag in the same compare-and-swap as its balance.
+ *
+ * An aggregate also counts changes to its owner (postings, settings,
+ * accounts opened or closed), which is not forwarded to the parent; a
+ * customer's count tells incremental saves whether it needs writing.
+ */
+public class BalanceAggregate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final LongAdder balance;
+    private final LongAdder accountCount;
+    private transient LongAdder changes; // restarts at 1 (unsaved) when deserialized
+    private transient BalanceAggregate parent;
+
+    public BalanceAggregate() {
+        this.balance = new LongAdder();
+        this.accountCount = new LongAdder();
+        this.changes = new LongAdder();
+    }
+
+    void addBalance(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        balance.add(delta);
+        BalanceAggregate p = parent;
+        if (p != null) {
+            p.addBalance(delta);
+        }
+    }
+
+    void addAccounts(int delta) {
+        accountCount.add(delta);
+        BalanceAggregate p = parent;
+        if (p != null) {
+            p.addAccounts(delta);
+        }
+    }
+
+    void markChanged() {
+        changes.increment();
+    }
+
+    /**
+     * Links this aggregate under a parent and folds its current totals into it.
+     * Any previous parent has the same totals taken back out.
+     */
+    void attachTo(BalanceAggregate newParent) {
+        long currentBalance = balance.sum();
+        int currentAccounts = (int) accountCount.sum();
+        if (parent != null) {
+            parent.addBalance(-currentBalance);
+            parent.addAccounts(-currentAccounts);
+        }
+        parent = newParent;
+        if (newParent != null) {
+            newParent.addBalance(currentBalance);
+            newParent.addAccounts(currentAccounts);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        changes = new LongAdder();
+        changes.increment();
+    }
+
+    public long getBalanceMinor() { return balance.sum(); }
+    public long getAccountCount() { return accountCount.sum(); }
+    public long getChangeCount() { return changes.sum(); }
+}
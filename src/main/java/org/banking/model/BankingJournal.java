@@ -0,0 +1,54 @@
+package org.banking.model;
+
+/**
+ * Receives every state change of the bank as it happens, in the order the
+ * changes are applied, for example to append them to a write-ahead log.
+ *
+ * Before a change is applied, checkAvailable() is called; a journal that
+ * can no longer record changes throws there, and the change is refused
+ * without touching memory. Accounts then report postings (deposit,
+ * withdrawal, charge, interest) and transfers once their balance has been
+ * updated. A transfer applied in two legs (by TransactionPipeline, or
+ * between an Account and an account slot) is reported once, after both
+ * legs, so a journal never holds one leg without the other; a refused
+ * credit leg, whose debit is returned, is not reported at all.
+ * BankingService reports registrations, account openings and closings. All of these only record
+ * the change: they must not block on I/O, and must not throw for a change
+ * checkAvailable() admitted, since it has already been applied. commit() is
+ * called by BankingService before an operation returns and is where a
+ * journal waits for the changes recorded so far to become durable.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface BankingJournal {
+
+    void customerRegistered(long customerId, String firstName, String lastName,
+                            String email, String phone, String address);
+
+    void accountCreated(long customerId, String accountNumber, String accountType,
+                        long balance, long minimumBalance, long interestRate);
+
+    /**
+     * A single-account posting; type is a TransactionType code.
+     */
+    void posted(String accountNumber, byte type, long amount, long balanceAfter, long timestampMicros);
+
+    void transferred(String fromAccountNumber, String toAccountNumber, long amount,
+                     long fromBalanceAfter, long toBalanceAfter, long timestampMicros);
+
+    void accountClosed(long customerId, String accountNumber);
+
+    /**
+     * Throws JournalUnavailableException if the journal cannot record
+     * changes any more. Called before a change is applied.
+     */
+    default void checkAvailable() {
+    }
+
+    /**
+     * Waits, as the journal's durability setting requires, until everything
+     * recorded so far is durable.
+     */
+    default void commit() {
+    }
+}
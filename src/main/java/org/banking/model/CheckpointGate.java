@@ -0,0 +1,288 @@
+package org.banking.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * CheckpointGate takes consistent point-in-time views (cuts) of a bank's
+ * live customers and accounts while traffic continues, so they can be
+ * written out in the background.
+ *
+ * Every change to an attached Account or Customer passes through the gate:
+ * it counts itself in for the duration of the change (an increment and a
+ * decrement on a per-thread slot, so threads do not contend), and while a
+ * cut is open, first preserves the state the object had at the cut. A cut
+ * closes the gate only for the instant it takes: changes in flight finish,
+ * new ones wait, the customer list is copied, and the gate reopens. After
+ * that, copy-on-write keeps the cut intact: the first change to an object
+ * copies its state (balances, settings, history length, account list) into
+ * the cut. The reader of the cut reads an object's live state and then
+ * marks the object read; if a change got there first, it takes that
+ * change's copy instead, and changes after the mark no longer copy. So
+ * only objects changed before the reader reaches them are copied. A
+ * transfer counts in once for both accounts, so it is entirely inside or
+ * outside the cut.
+ *
+ * History is append-only, so a cut only records each account's history
+ * length; entries a bounded history discards before the cut is read are
+ * missing from it. The copies and marks are held until the cut is closed.
+ */
+public final class CheckpointGate {
+
+    private static final int SLOTS = 64;
+    private static final int STRIDE = 16; // longs per slot, one slot per 128 bytes
+
+    private final AtomicLongArray inFlight = new AtomicLongArray(SLOTS * STRIDE);
+    private volatile boolean closing;
+    private volatile Cut open; // null unless a cut is being read
+
+    /**
+     * Counts a change in, waiting while a cut is being taken, and preserves
+     * account's state for the open cut.
+     */
+    void enter(Account account) {
+        enter();
+        Cut cut = open;
+        if (cut != null) {
+            cut.preserve(account);
+        }
+    }
+
+    void enter(Customer customer) {
+        enter();
+        Cut cut = open;
+        if (cut != null) {
+            cut.preserve(customer);
+        }
+    }
+
+    /**
+     * Preserves another account's state within a change already counted in
+     * (the target of a transfer).
+     */
+    void alsoChanging(Account account) {
+        Cut cut = open;
+        if (cut != null) {
+            cut.preserve(account);
+        }
+    }
+
+    void exit() {
+        inFlight.decrementAndGet(slot());
+    }
+
+    private void enter() {
+        int slot = slot();
+        while (true) {
+            inFlight.incrementAndGet(slot);
+            if (!closing) {
+                return;
+            }
+            inFlight.decrementAndGet(slot);
+            synchronized (this) {
+                while (closing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a cut: waits for changes in flight, lists the customers with
+     * registry while no change can start, and opens the cut. Callers that
+     * guard their customer list with a lock must hold it around this call.
+     * Only one cut can be open at a time.
+     */
+    public synchronized Cut cut(Supplier<List<Customer>> registry) {
+        if (open != null) {
+            throw new IllegalStateException("a cut is already open");
+        }
+        long start = System.nanoTime();
+        closing = true;
+        try {
+            while (!drained()) {
+                Thread.onSpinWait();
+            }
+            Cut cut = new Cut(this, registry.get());
+            open = cut;
+            cut.pauseNanos = System.nanoTime() - start;
+            return cut;
+        } finally {
+            closing = false;
+            notifyAll();
+        }
+    }
+
+    public boolean isCutOpen() {
+        return open != null;
+    }
+
+    private boolean drained() {
+        for (int i = 0; i < SLOTS; i++) {
+            if (inFlight.get(i * STRIDE) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slot() {
+        long id = Thread.currentThread().threadId();
+        return (int) ((id ^ (id >>> 7)) & (SLOTS - 1)) * STRIDE;
+    }
+
+    /**
+     * A consistent view of the customers registered at one instant. Read
+     * each customer and account once with read; close the cut when done so
+     * changes stop being copied.
+     */
+    public static final class Cut implements AutoCloseable {
+        private final CheckpointGate gate;
+        private final List<Customer> customers;
+        private final Map<Customer, CustomerImage> customerImages;
+        private final Map<Account, AccountImage> accountImages;
+        private long pauseNanos;
+
+        private Cut(CheckpointGate gate, List<Customer> customers) {
+            this.gate = gate;
+            this.customers = customers;
+            // Sized for one account per customer, as every object gets read.
+            this.customerImages = new ConcurrentHashMap<>(customers.size());
+            this.accountImages = new ConcurrentHashMap<>(customers.size());
+        }
+
+        public List<Customer> getCustomers() {
+            return customers;
+        }
+
+        /**
+         * How long the gate was closed, which is the most a change waited
+         * for this cut.
+         */
+        public long getPauseNanos() {
+            return pauseNanos;
+        }
+
+        /**
+         * The customer's state as of the cut. Its live state is read before
+         * the customer is marked read, so a change that comes after the mark
+         * cannot have torn it, and one that came before left its copy.
+         */
+        public CustomerImage read(Customer customer) {
+            CustomerImage live = new CustomerImage(customer);
+            CustomerImage preserved = customerImages.putIfAbsent(customer, CustomerImage.READ);
+            if (preserved == CustomerImage.READ) {
+                throw new IllegalStateException("customer already read from this cut");
+            }
+            return preserved == null ? live : preserved;
+        }
+
+        public AccountImage read(Account account) {
+            AccountImage live = new AccountImage(account);
+            AccountImage preserved = accountImages.putIfAbsent(account, AccountImage.READ);
+            if (preserved == AccountImage.READ) {
+                throw new IllegalStateException("account already read from this cut");
+            }
+            return preserved == null ? live : preserved;
+        }
+
+        void preserve(Customer customer) {
+            customerImages.computeIfAbsent(customer, CustomerImage::new);
+        }
+
+        void preserve(Account account) {
+            accountImages.computeIfAbsent(account, AccountImage::new);
+        }
+
+        @Override
+        public void close() {
+            synchronized (gate) {
+                if (gate.open == this) {
+                    gate.open = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A customer's details and account list as of a cut.
+     */
+    public static final class CustomerImage {
+        static final CustomerImage READ = new CustomerImage();
+
+        private final String email;
+        private final String phone;
+        private final String address;
+        private final boolean verified;
+        private final List<Account> accounts;
+
+        private CustomerImage(Customer customer) {
+            this.email = customer.getEmail();
+            this.phone = customer.getPhone();
+            this.address = customer.getAddress();
+            this.verified = customer.isVerified();
+            this.accounts = new ArrayList<>(customer.getAccounts());
+        }
+
+        private CustomerImage() {
+            this.email = null;
+            this.phone = null;
+            this.address = null;
+            this.verified = false;
+            this.accounts = List.of();
+        }
+
+        public String getEmail() { return email; }
+        public String getPhone() { return phone; }
+        public String getAddress() { return address; }
+        public boolean isVerified() { return verified; }
+        public List<Account> getAccounts() { return accounts; }
+    }
+
+    /**
+     * An account's balance, settings and history length as of a cut.
+     */
+    public static final class AccountImage {
+        static final AccountImage READ = new AccountImage();
+
+        private final long balance;
+        private final long minimumBalance;
+        private final long interestRate;
+        private final boolean active;
+        private final int historyEnd;
+
+        private AccountImage(Account account) {
+            this.balance = account.getBalanceMinor();
+            this.minimumBalance = account.getMinimumBalanceMinor();
+            this.interestRate = account.getInterestRatePpm();
+            this.active = account.isActive();
+            this.historyEnd = account.getTransactionLog().size();
+        }
+
+        private AccountImage() {
+            this.balance = 0;
+            this.minimumBalance = 0;
+            this.interestRate = 0;
+            this.active = false;
+            this.historyEnd = 0;
+        }
+
+        public long getBalanceMinor() { return balance; }
+        public long getMinimumBalanceMinor() { return minimumBalance; }
+        public long getInterestRatePpm() { return interestRate; }
+        public boolean isActive() { return active; }
+
+        /**
+         * Sequence number after the last history entry at the cut.
+         */
+        public int getHistoryEnd() { return historyEnd; }
+    }
+}
@@ -0,0 +1,209 @@
+package org.banking.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ * In-memory HistoryStore with primitive columns split into fixed-size chunks,
+ * about 25 bytes an entry, so growing a long history never copies it. The
+ * first chunk starts small and doubles up to the chunk size, and nothing is
+ * allocated until the first append.
+ *
+ * A store created with a limit keeps at least the most recent limit
+ * entries and discards older ones a whole chunk at a time, so it holds at
+ * most limit + 2 * 4096 of them; indexes stay those of a store that kept
+ * everything, and firstRetained() is the oldest one left. This is the
+ * default overflow of a TransactionLog, limited to
+ * TransactionLog.DEFAULT_HISTORY_LIMIT. A store created without a limit
+ * keeps every entry and grows without bound.
+ */
+public final class ChunkedHistoryStore implements HistoryStore {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int limit; // 0 keeps every entry
+    private int start;       // index of the oldest retained entry
+    private transient byte[][] types;
+    private transient long[][] amounts;
+    private transient long[][] balances;
+    private transient long[][] timestamps;
+    private transient int chunkCount;
+    private transient int size;
+
+    /**
+     * Creates a store that keeps every entry.
+     */
+    public ChunkedHistoryStore() {
+        this.limit = 0;
+    }
+
+    /**
+     * Creates a store that keeps at least the most recent limit entries.
+     */
+    public ChunkedHistoryStore(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Makes an empty store start at index, as if that many entries had been
+     * appended and discarded; used to restore a log that had discarded them.
+     */
+    public void skipTo(int index) {
+        if (size != 0) {
+            throw new IllegalStateException("skipTo needs an empty store");
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("index must not be negative");
+        }
+        start = index;
+        size = index;
+    }
+
+    /**
+     * Number of recent entries the store keeps at least, 0 if it keeps all.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void append(byte type, long amount, long balanceAfter, long timestampMicros) {
+        int position = size - start;
+        int chunk = position >>> CHUNK_SHIFT;
+        int offset = position & CHUNK_MASK;
+        if (chunk == chunkCount) {
+            if (limit > 0 && position - CHUNK_SIZE >= limit) {
+                dropFirstChunk();
+                chunk--;
+            }
+            addChunk();
+        } else if (offset == types[chunk].length) {
+            growFirstChunk();
+        }
+        types[chunk][offset] = type;
+        amounts[chunk][offset] = amount;
+        balances[chunk][offset] = balanceAfter;
+        timestamps[chunk][offset] = timestampMicros;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int firstRetained() {
+        return start;
+    }
+
+    @Override
+    public byte getType(int index) {
+        checkIndex(index);
+        int position = index - start;
+        return types[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+    }
+
+    @Override
+    public long getAmount(int index) {
+        checkIndex(index);
+        int position = index - start;
+        return amounts[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+    }
+
+    @Override
+    public long getBalanceAfter(int index) {
+        checkIndex(index);
+        int position = index - start;
+        return balances[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+    }
+
+    @Override
+    public long getTimestampMicros(int index) {
+        checkIndex(index);
+        int position = index - start;
+        return timestamps[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+    }
+
+    private void addChunk() {
+        if (types == null) {
+            types = new byte[1][];
+            amounts = new long[1][];
+            balances = new long[1][];
+            timestamps = new long[1][];
+        } else if (chunkCount == types.length) {
+            int directory = chunkCount << 1;
+            types = Arrays.copyOf(types, directory);
+            amounts = Arrays.copyOf(amounts, directory);
+            balances = Arrays.copyOf(balances, directory);
+            timestamps = Arrays.copyOf(timestamps, directory);
+        }
+        int capacity = (chunkCount == 0) ? INITIAL_CAPACITY : CHUNK_SIZE;
+        types[chunkCount] = new byte[capacity];
+        amounts[chunkCount] = new long[capacity];
+        balances[chunkCount] = new long[capacity];
+        timestamps[chunkCount] = new long[capacity];
+        chunkCount++;
+    }
+
+    // Only called with the first chunk full, so the rest still starts at a
+    // chunk boundary.
+    private void dropFirstChunk() {
+        System.arraycopy(types, 1, types, 0, chunkCount - 1);
+        System.arraycopy(amounts, 1, amounts, 0, chunkCount - 1);
+        System.arraycopy(balances, 1, balances, 0, chunkCount - 1);
+        System.arraycopy(timestamps, 1, timestamps, 0, chunkCount - 1);
+        chunkCount--;
+        types[chunkCount] = null;
+        amounts[chunkCount] = null;
+        balances[chunkCount] = null;
+        timestamps[chunkCount] = null;
+        start += CHUNK_SIZE;
+    }
+
+    private void growFirstChunk() {
+        int capacity = Math.min(types[0].length << 1, CHUNK_SIZE);
+        types[0] = Arrays.copyOf(types[0], capacity);
+        amounts[0] = Arrays.copyOf(amounts[0], capacity);
+        balances[0] = Arrays.copyOf(balances[0], capacity);
+        timestamps[0] = Arrays.copyOf(timestamps[0], capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < start || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", retained: " + start + ".." + size);
+        }
+    }
+
+    // Only the retained, used part of each column is written.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size - start);
+        for (int i = 0; i < size - start; i++) {
+            int chunk = i >>> CHUNK_SHIFT;
+            int offset = i & CHUNK_MASK;
+            out.writeByte(types[chunk][offset]);
+            out.writeLong(amounts[chunk][offset]);
+            out.writeLong(balances[chunk][offset]);
+            out.writeLong(timestamps[chunk][offset]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        size = start;
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            append(in.readByte(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package org.banking.model;
 
+import org.banking.utils.Money;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Customer class represents a bank customer with multiple accounts.
  */
 public class Customer implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     private long customerId;
     private String firstName;
@@ -18,15 +21,18 @@ public class Customer implements Serializable {
     private String address;
     private List<Account> accounts;
     private boolean isVerified;
-    private double totalBalance;
+    private BalanceAggregate totals; // running totals of this customer's accounts
+    private transient volatile long savedChanges; // change count as of the last save, 0 if never saved
+    private transient volatile CheckpointGate gate; // null unless the bank takes checkpoints
     
     public Customer(long customerId, String firstName, String lastName) {
         this.customerId = customerId;
         this.firstName = firstName;
         this.lastName = lastName;
-        this.accounts = new ArrayList<>();
+        this.accounts = new CopyOnWriteArrayList<>(); // safe to iterate while accounts are opened/closed
         this.isVerified = false;
-        this.totalBalance = 0;
+        this.totals = new BalanceAggregate();
+        totals.markChanged(); // a new customer is unsaved
     }
     
     public Customer(long customerId, String firstName, String lastName, 
@@ -49,9 +55,16 @@ public class Customer implements Serializable {
                 return false;
             }
         }
-        accounts.add(account);
-        updateTotalBalance();
-        return true;
+        CheckpointGate g = beginChange();
+        try {
+            accounts.add(account);
+            account.attachAggregate(totals);
+            account.attachCheckpointGate(g);
+            totals.markChanged();
+            return true;
+        } finally {
+            endChange(g);
+        }
     }
     
     public Account getAccount(String accountNumber) {
@@ -66,27 +79,31 @@ public class Customer implements Serializable {
     public boolean removeAccount(String accountNumber) {
         for (int i = 0; i < accounts.size(); i++) {
             if (accounts.get(i).getAccountNumber().equals(accountNumber)) {
-                accounts.remove(i);
-                updateTotalBalance();
-                return true;
+                CheckpointGate g = beginChange();
+                try {
+                    Account removed = accounts.remove(i);
+                    removed.attachAggregate(null);
+                    removed.attachCheckpointGate(null);
+                    totals.markChanged();
+                    return true;
+                } finally {
+                    endChange(g);
+                }
             }
         }
         return false;
     }
     
-    private void updateTotalBalance() {
-        this.totalBalance = 0;
-        for (Account acc : accounts) {
-            if (acc.isActive()) {
-                this.totalBalance += acc.getBalance();
-            }
-        }
-    }
-    
     public boolean verifyCustomer(String email, String phone) {
         if (this.email != null && this.email.equals(email) && 
             this.phone != null && this.phone.equals(phone)) {
-            this.isVerified = true;
+            CheckpointGate g = beginChange();
+            try {
+                this.isVerified = true;
+                totals.markChanged();
+            } finally {
+                endChange(g);
+            }
             return true;
         }
         return false;
@@ -120,13 +137,99 @@ public class Customer implements Serializable {
     public List<Account> getAccounts() { return accounts; }
     public boolean isVerified() { return isVerified; }
     public double getTotalBalance() { 
-        updateTotalBalance();
-        return totalBalance; 
+        return Money.toDouble(getTotalBalanceMinor()); 
+    }
+    public long getTotalBalanceMinor() { 
+        return totals.getBalanceMinor(); 
+    }
+    public long getAccountCount() { return totals.getAccountCount(); }
+    
+    /**
+     * Links this customer's running totals under a bank-wide aggregate.
+     */
+    public void attachTotals(BalanceAggregate bankTotals) {
+        totals.attachTo(bankTotals);
+    }
+    
+    /**
+     * Sets the checkpoint gate changes to this customer and its accounts
+     * pass through (null for none). Set it before the customer sees traffic.
+     */
+    public void attachCheckpointGate(CheckpointGate gate) {
+        this.gate = gate;
+        for (Account acc : accounts) {
+            acc.attachCheckpointGate(gate);
+        }
+    }
+    
+    /**
+     * Number of changes made to this customer and its accounts, counting
+     * its creation as the first. Only ever grows.
+     */
+    public long getChangeCount() {
+        return totals.getChangeCount();
     }
     
-    public void setEmail(String email) { this.email = email; }
-    public void setPhone(String phone) { this.phone = phone; }
-    public void setAddress(String address) { this.address = address; }
+    /**
+     * True if the customer changed since markSaved, or was never saved
+     * (including after deserialization).
+     */
+    public boolean isDirty() {
+        return totals.getChangeCount() != savedChanges;
+    }
+    
+    /**
+     * Records that the customer is saved as of changeCount, which the saver
+     * must read (getChangeCount) before it reads the customer, so a change
+     * made while saving keeps the customer dirty.
+     */
+    public void markSaved(long changeCount) {
+        this.savedChanges = changeCount;
+    }
+    
+    public void setEmail(String email) {
+        CheckpointGate g = beginChange();
+        try {
+            this.email = email;
+            totals.markChanged();
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    public void setPhone(String phone) {
+        CheckpointGate g = beginChange();
+        try {
+            this.phone = phone;
+            totals.markChanged();
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    public void setAddress(String address) {
+        CheckpointGate g = beginChange();
+        try {
+            this.address = address;
+            totals.markChanged();
+        } finally {
+            endChange(g);
+        }
+    }
+    
+    private CheckpointGate beginChange() {
+        CheckpointGate g = gate;
+        if (g != null) {
+            g.enter(this);
+        }
+        return g;
+    }
+    
+    private static void endChange(CheckpointGate g) {
+        if (g != null) {
+            g.exit();
+        }
+    }
     
     @Override
     public String toString() {
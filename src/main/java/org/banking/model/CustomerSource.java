@@ -0,0 +1,41 @@
+package org.banking.model;
+
+import java.util.function.LongConsumer;
+
+/**
+ * CustomerSource supplies customers that are not in memory yet, such as a
+ * snapshot file opened for lazy loading. BankingService consults it when a
+ * lookup misses and keeps what it returns, so each customer is built at most
+ * once per service.
+ *
+ * Implementations must be safe for concurrent use. Failures to read the
+ * underlying storage are thrown as UncheckedIOException.
+ */
+public interface CustomerSource {
+
+    /**
+     * Builds the customer with its accounts and history, or returns null if
+     * the source has no such customer. Every call returns a new object.
+     */
+    Customer loadCustomer(long customerId);
+
+    /**
+     * ID of the customer owning the account, or -1 if no customer in the
+     * source has it.
+     */
+    long findOwner(String accountNumber);
+
+    /**
+     * Calls action with the ID of every customer in the source.
+     */
+    void forEachCustomerId(LongConsumer action);
+
+    long getCustomerCount();
+
+    long getAccountCount();
+
+    /**
+     * Sum of the balances of all active accounts in the source, in minor units.
+     */
+    long getTotalBalanceMinor();
+}
@@ -0,0 +1,88 @@
+package org.banking.model;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy, forward-only cursor over the entries of one type in a range of a
+ * TransactionLog. Nothing is collected up front: each step finds the next
+ * matching sequence number, either by scanning the range or, when the log
+ * keeps a type index, by walking that type's index positions.
+ *
+ * next() builds the Transaction; nextSequence() returns only the sequence
+ * number, for reading columns through the log's primitive getters. If the
+ * log discards entries the cursor has not reached yet, advancing throws
+ * ConcurrentModificationException.
+ */
+public final class HistoryCursor implements Iterator<Transaction> {
+
+    private final TransactionLog log;
+    private final byte type;
+    private final boolean indexed;
+    private final int end;
+    private int position; // sequence number, or index position when indexed
+    private int pending;  // next matching sequence, -1 if not looked up yet
+
+    HistoryCursor(TransactionLog log, int from, int to, byte type, boolean indexed) {
+        this.log = log;
+        this.type = type;
+        this.indexed = indexed;
+        this.position = from;
+        this.end = to;
+        this.pending = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending >= 0) {
+            return true;
+        }
+        if (indexed) {
+            if (position < end) {
+                pending = log.indexedSequence(type, position++);
+            }
+            return pending >= 0;
+        }
+        while (position < end) {
+            int sequence = position++;
+            if (sequence < log.firstRetained()) {
+                throw new ConcurrentModificationException("history entry " + sequence + " is no longer retained");
+            }
+            if (log.getType(sequence) == type) {
+                pending = sequence;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Transaction next() {
+        return log.get(nextSequence());
+    }
+
+    /**
+     * Advances and returns the sequence number of the next matching entry.
+     */
+    public int nextSequence() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int sequence = pending;
+        pending = -1;
+        return sequence;
+    }
+
+    /**
+     * Counts the remaining matching entries, consuming the cursor.
+     */
+    public int skipAll() {
+        int count = 0;
+        while (hasNext()) {
+            pending = -1;
+            count++;
+        }
+        return count;
+    }
+}
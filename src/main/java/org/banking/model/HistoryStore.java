@@ -0,0 +1,36 @@
+package org.banking.model;
+
+import java.io.Serializable;
+
+/**
+ * HistoryStore is an append-only, index-addressed store of history entries
+ * in columnar form: a TransactionType code, the amount and resulting balance
+ * in minor units, and an epoch-microsecond timestamp. Index 0 is the oldest
+ * entry the store has received; a store may discard its oldest entries,
+ * which keep their indexes, and then reads start at firstRetained().
+ *
+ * TransactionLog uses a HistoryStore as the overflow for entries that no
+ * longer fit in its in-memory ring. Implementations must be safe for use by
+ * one log at a time; the log serializes access under its own lock.
+ */
+public interface HistoryStore extends Serializable {
+
+    void append(byte type, long amount, long balanceAfter, long timestampMicros);
+
+    int size();
+
+    /**
+     * Index of the oldest entry that can still be read.
+     */
+    default int firstRetained() {
+        return 0;
+    }
+
+    byte getType(int index);
+
+    long getAmount(int index);
+
+    long getBalanceAfter(int index);
+
+    long getTimestampMicros(int index);
+}
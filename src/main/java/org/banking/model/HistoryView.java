@@ -0,0 +1,94 @@
+package org.banking.model;
+
+import org.banking.utils.EpochClock;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view over a fixed range of sequence numbers in a TransactionLog.
+ * Nothing is copied when the view is created; get(i) builds the Transaction
+ * for one entry, and the primitive accessors read columns without allocating.
+ *
+ * Entries appended after the view was created are not part of it. If the log
+ * discards entries the view still covers, reading them throws
+ * ConcurrentModificationException.
+ */
+public final class HistoryView extends AbstractList<Transaction> implements RandomAccess {
+
+    private final TransactionLog log;
+    private final int from;
+    private final int to;
+
+    HistoryView(TransactionLog log, int from, int to) {
+        this.log = log;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        return log.get(sequence(index));
+    }
+
+    public byte getTypeCode(int index) {
+        return log.getType(sequence(index));
+    }
+
+    public long getAmountMinor(int index) {
+        return log.getAmount(sequence(index));
+    }
+
+    public long getBalanceAfterMinor(int index) {
+        return log.getBalanceAfter(sequence(index));
+    }
+
+    public long getTimestampMicros(int index) {
+        return log.getTimestampMicros(sequence(index));
+    }
+
+    public LocalDateTime getTimestamp(int index) {
+        return EpochClock.toLocalDateTime(getTimestampMicros(index));
+    }
+
+    /**
+     * Copies entries of this view, starting at index, into the given column
+     * arrays (see TransactionLog.read), stopping at the end of the view.
+     * Returns the number of entries copied.
+     */
+    public int read(int index, byte[] types, long[] amounts, long[] balances, long[] timestamps) {
+        if (index < 0 || index > to - from) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+        }
+        if (from + index < log.firstRetained()) {
+            throw new ConcurrentModificationException("history entry " + (from + index) + " is no longer retained");
+        }
+        int count = log.read(from + index, types, amounts, balances, timestamps);
+        return Math.min(count, to - from - index);
+    }
+
+    /**
+     * Sequence number in the log of the first entry of this view.
+     */
+    public int getFirstSequence() {
+        return from;
+    }
+
+    private int sequence(int index) {
+        if (index < 0 || index >= to - from) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+        }
+        int sequence = from + index;
+        if (sequence < log.firstRetained()) {
+            throw new ConcurrentModificationException("history entry " + sequence + " is no longer retained");
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,20 @@
+package org.banking.model;
+
+/**
+ * Thrown when a BankingJournal can no longer record changes, because it
+ * failed or was closed. BankingService and Account check the journal before
+ * they apply a change, so a change refused with this exception has not been
+ * applied and may be retried once the journal is available again.
+ */
+public class JournalUnavailableException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JournalUnavailableException(String message) {
+        super(message);
+    }
+
+    public JournalUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package org.banking.model;
+
+/**
+ * Thrown when a change has been applied but the BankingJournal failed while
+ * making it durable. Unlike JournalUnavailableException, the change is
+ * visible in memory and must not be retried as if it had been refused; a
+ * crash may still lose it. The journal refuses every change after it.
+ */
+public class NotDurableException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public NotDurableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
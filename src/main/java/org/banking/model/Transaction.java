@@ -1,27 +1,31 @@
 package org.banking.model;
 
+import org.banking.utils.EpochClock;
+import org.banking.utils.Money;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Transaction class represents a single transaction in an account.
+ * Amounts are stored as fixed-point minor units (see Money). The timestamp is
+ * kept as epoch microseconds from EpochClock; the LocalDateTime is only built
+ * when getTimestamp() is first called.
  */
 public class Transaction implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 3L;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
     private String transactionType;
-    private double amount;
-    private double balanceAfter;
-    private LocalDateTime timestamp;
+    private long amount; // minor units
+    private long balanceAfter; // minor units
+    private long timestampMicros; // epoch microseconds, see EpochClock
+    private transient LocalDateTime timestamp; // built on first use
     private String description;
     
     public Transaction(String transactionType, double amount, double balanceAfter) {
-        this.transactionType = transactionType;
-        this.amount = amount;
-        this.balanceAfter = balanceAfter;
-        this.timestamp = LocalDateTime.now();
-        this.description = "";
+        this(transactionType, Money.of(amount), Money.of(balanceAfter), "");
     }
     
     public Transaction(String transactionType, double amount, double balanceAfter, String description) {
@@ -29,17 +33,58 @@ public class Transaction implements Serializable {
         this.description = description;
     }
     
+    private Transaction(String transactionType, long amount, long balanceAfter, String description) {
+        this(transactionType, amount, balanceAfter, EpochClock.nowMicros(), description);
+    }
+    
+    private Transaction(String transactionType, long amount, long balanceAfter,
+                        long timestampMicros, String description) {
+        this.transactionType = transactionType;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.timestampMicros = timestampMicros;
+        this.description = description;
+    }
+    
+    /**
+     * Creates a transaction from amounts already in minor units.
+     */
+    public static Transaction ofMinor(String transactionType, long amount, long balanceAfter) {
+        return new Transaction(transactionType, amount, balanceAfter, "");
+    }
+    
+    /**
+     * Rebuilds a transaction recorded in a TransactionLog.
+     */
+    static Transaction restore(String transactionType, long amount, long balanceAfter, long timestampMicros) {
+        return new Transaction(transactionType, amount, balanceAfter, timestampMicros, "");
+    }
+    
     // Getters
     public String getTransactionType() { return transactionType; }
-    public double getAmount() { return amount; }
-    public double getBalanceAfter() { return balanceAfter; }
-    public LocalDateTime getTimestamp() { return timestamp; }
+    public double getAmount() { return Money.toDouble(amount); }
+    public double getBalanceAfter() { return Money.toDouble(balanceAfter); }
+    public long getAmountMinor() { return amount; }
+    public long getBalanceAfterMinor() { return balanceAfter; }
+    public long getTimestampMicros() { return timestampMicros; }
     public String getDescription() { return description; }
     
+    public LocalDateTime getTimestamp() {
+        LocalDateTime t = timestamp;
+        if (t == null) {
+            t = EpochClock.toLocalDateTime(timestampMicros);
+            timestamp = t;
+        }
+        return t;
+    }
+    
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return String.format("[%s] %s: Amount=%.2f, Balance=%.2f", 
-                             timestamp.format(formatter), transactionType, amount, balanceAfter);
+        StringBuilder sb = new StringBuilder(64);
+        sb.append('[');
+        TIMESTAMP_FORMAT.formatTo(getTimestamp(), sb);
+        sb.append("] ").append(transactionType).append(": Amount=");
+        Money.appendTo(sb, amount).append(", Balance=");
+        return Money.appendTo(sb, balanceAfter).toString();
     }
 }
@@ -0,0 +1,71 @@
+package org.banking.model;
+
+import org.banking.utils.Money;
+
+import java.util.Arrays;
+
+/**
+ * TransactionBatch holds single-account transactions (deposit, withdrawal,
+ * interest, charge) in parallel primitive arrays, so building and processing
+ * a batch of tens of thousands of entries does not allocate per entry.
+ * A batch can be cleared and reused.
+ */
+public class TransactionBatch {
+
+    // Per-entry result codes returned by BankingService.processTransactions
+    public static final byte OK = 0;
+    public static final byte UNKNOWN_ACCOUNT = 1;
+    public static final byte REJECTED = 2; // invalid amount, insufficient funds, balance out of range
+    public static final byte INACTIVE = 3;
+    public static final byte INVALID_TYPE = 4;
+
+    private String[] accountNumbers;
+    private byte[] types;
+    private long[] amounts; // minor units
+    private int size;
+
+    public TransactionBatch() {
+        this(64);
+    }
+
+    public TransactionBatch(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        this.accountNumbers = new String[capacity];
+        this.types = new byte[capacity];
+        this.amounts = new long[capacity];
+    }
+
+    public void add(String accountNumber, String transactionType, double amount) {
+        add(accountNumber, TransactionType.codeOf(transactionType), Money.of(amount));
+    }
+
+    public void add(String accountNumber, byte transactionType, long amountMinor) {
+        if (size == types.length) {
+            int capacity = size << 1;
+            accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+            types = Arrays.copyOf(types, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        accountNumbers[size] = accountNumber;
+        types[size] = transactionType;
+        amounts[size] = amountMinor;
+        size++;
+    }
+
+    public void clear() {
+        Arrays.fill(accountNumbers, 0, size, null);
+        size = 0;
+    }
+
+    public static boolean isSupported(byte transactionType) {
+        return transactionType == TransactionType.DEPOSIT
+            || transactionType == TransactionType.WITHDRAWAL
+            || transactionType == TransactionType.INTEREST
+            || transactionType == TransactionType.MONTHLY_CHARGE;
+    }
+
+    public int size() { return size; }
+    public String getAccountNumber(int index) { return accountNumbers[index]; }
+    public byte getType(int index) { return types[index]; }
+    public long getAmount(int index) { return amounts[index]; }
+}
@@ -0,0 +1,504 @@
+package org.banking.model;
+
+import org.banking.utils.EpochClock;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+/**
+ * TransactionLog is an append-only account history stored column by column:
+ * a byte type code (see TransactionType), the amount and resulting balance in
+ * minor units, and an epoch-microsecond timestamp per entry, about 25 bytes
+ * an entry. Transaction objects are only built when history is read.
+ *
+ * The most recent entries live in a ring of bounded capacity, which starts
+ * small and doubles until it reaches that capacity. When the ring is full the
+ * oldest entry is handed to an overflow HistoryStore before it is
+ * overwritten; with no overflow it is dropped. Entries keep their sequence
+ * number (0 for the first entry ever appended) wherever they live, so
+ * last(n) and toList() are views over a range of sequence numbers and never
+ * copy the history.
+ *
+ * The no-argument constructor (and BankingService by default) overflows
+ * into a ChunkedHistoryStore limited to DEFAULT_HISTORY_LIMIT entries, so
+ * an account keeps about that much of its recent history on the heap and
+ * entries older than that are discarded. For the full history, pass an
+ * archive-backed store (HistoryArchive.newStore, aged regularly) or, on
+ * the heap and unbounded, a ChunkedHistoryStore without a limit; a null
+ * overflow keeps only the ring. BankingService.setHistoryRetention sets
+ * this for new accounts.
+ *
+ * Timestamps never go backwards within a log: an entry stamped earlier than
+ * its predecessor (racing postings, a clock step) takes the predecessor's
+ * timestamp. History is therefore ordered by time as well as by sequence,
+ * and between() finds a time range by binary search. An optional per-type
+ * index (enableTypeIndex) records the sequence numbers of each type's
+ * entries, so type-filtered queries visit only matching entries.
+ *
+ * All methods are synchronized on the log.
+ */
+public final class TransactionLog implements HistoryStore {
+    private static final long serialVersionUID = 2L;
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int DEFAULT_HISTORY_LIMIT = 1 << 16;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int capacity;
+    private final HistoryStore overflow;
+    private int size;       // entries ever appended
+    private int ringStart;  // sequence of the oldest entry in the ring
+    private boolean typeIndexed;
+    private transient long lastTimestamp = Long.MIN_VALUE;
+    private transient SequenceList[] typeIndex; // by type code, null unless typeIndexed
+    private transient byte[] types;
+    private transient long[] amounts;
+    private transient long[] balances;
+    private transient long[] timestamps;
+
+    /**
+     * Creates a log with the default ring capacity that overflows into a
+     * ChunkedHistoryStore keeping the last DEFAULT_HISTORY_LIMIT entries.
+     */
+    public TransactionLog() {
+        this(DEFAULT_CAPACITY, new ChunkedHistoryStore(DEFAULT_HISTORY_LIMIT));
+    }
+
+    /**
+     * Creates a log whose ring holds at least ringCapacity entries (rounded up
+     * to a power of two). Older entries go to overflow, or are discarded if
+     * overflow is null.
+     */
+    public TransactionLog(int ringCapacity, HistoryStore overflow) {
+        if (ringCapacity <= 0) {
+            throw new IllegalArgumentException("ringCapacity must be positive");
+        }
+        int c = 1;
+        while (c < ringCapacity) {
+            c <<= 1;
+        }
+        this.capacity = c;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Appends an entry stamped with the current EpochClock time.
+     */
+    public void append(byte type, long amount, long balanceAfter) {
+        append(type, amount, balanceAfter, EpochClock.nowMicros());
+    }
+
+    @Override
+    public synchronized void append(byte type, long amount, long balanceAfter, long timestampMicros) {
+        if (timestampMicros < lastTimestamp) {
+            timestampMicros = lastTimestamp;
+        }
+        lastTimestamp = timestampMicros;
+        if (typeIndex != null) {
+            index(type, size);
+        }
+        if (types == null) {
+            allocate(Math.min(INITIAL_CAPACITY, capacity));
+        } else if (size - ringStart == types.length) {
+            if (types.length < capacity) {
+                grow();
+            } else {
+                evictOldest();
+            }
+        }
+        int slot = size & (types.length - 1);
+        types[slot] = type;
+        amounts[slot] = amount;
+        balances[slot] = balanceAfter;
+        timestamps[slot] = timestampMicros;
+        size++;
+    }
+
+    /**
+     * Number of entries ever appended, including any no longer retained.
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Sequence number of the oldest entry that can still be read.
+     */
+    @Override
+    public synchronized int firstRetained() {
+        return overflow != null ? overflow.firstRetained() : ringStart;
+    }
+
+    /**
+     * Starts an empty ring at the given sequence number. Without overflow the
+     * entries before it count as appended and discarded, which restores a
+     * bounded log whose oldest entries were already dropped. With overflow
+     * they must be exactly the entries the overflow already holds or has
+     * discarded, which restores a log over a prefilled (for example
+     * file-backed) store.
+     */
+    public synchronized void skipTo(int sequence) {
+        if (size != 0) {
+            throw new IllegalStateException("skipTo needs an empty log");
+        }
+        if (sequence < 0) {
+            throw new IllegalArgumentException("sequence must not be negative");
+        }
+        if (overflow != null && overflow.size() != sequence) {
+            throw new IllegalArgumentException("overflow holds " + overflow.size() + " entries, not " + sequence);
+        }
+        size = sequence;
+        ringStart = sequence;
+        if (overflow != null && sequence > overflow.firstRetained()) {
+            lastTimestamp = overflow.getTimestampMicros(sequence - 1);
+        }
+        if (typeIndex != null) {
+            buildTypeIndex();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public HistoryStore getOverflow() {
+        return overflow;
+    }
+
+    @Override
+    public synchronized byte getType(int sequence) {
+        checkSequence(sequence);
+        return sequence >= ringStart ? types[slot(sequence)] : overflow.getType(sequence);
+    }
+
+    @Override
+    public synchronized long getAmount(int sequence) {
+        checkSequence(sequence);
+        return sequence >= ringStart ? amounts[slot(sequence)] : overflow.getAmount(sequence);
+    }
+
+    @Override
+    public synchronized long getBalanceAfter(int sequence) {
+        checkSequence(sequence);
+        return sequence >= ringStart ? balances[slot(sequence)] : overflow.getBalanceAfter(sequence);
+    }
+
+    @Override
+    public synchronized long getTimestampMicros(int sequence) {
+        checkSequence(sequence);
+        return sequence >= ringStart ? timestamps[slot(sequence)] : overflow.getTimestampMicros(sequence);
+    }
+
+    public synchronized Transaction get(int sequence) {
+        checkSequence(sequence);
+        if (sequence >= ringStart) {
+            int slot = slot(sequence);
+            return Transaction.restore(TransactionType.nameOf(types[slot]), amounts[slot], balances[slot],
+                                       timestamps[slot]);
+        }
+        return Transaction.restore(TransactionType.nameOf(overflow.getType(sequence)),
+                                   overflow.getAmount(sequence), overflow.getBalanceAfter(sequence),
+                                   overflow.getTimestampMicros(sequence));
+    }
+
+    /**
+     * Copies up to types.length entries starting at sequence from into the
+     * given column arrays, under one hold of the lock. Returns the number of
+     * entries copied, 0 once from reaches size().
+     */
+    public synchronized int read(int from, byte[] types, long[] amounts, long[] balances, long[] timestamps) {
+        if (from < firstRetained() || from > size) {
+            throw new IndexOutOfBoundsException("Sequence: " + from + ", retained: "
+                                                + firstRetained() + ".." + size);
+        }
+        int count = Math.min(types.length, size - from);
+        for (int i = 0; i < count; i++) {
+            int sequence = from + i;
+            if (sequence >= ringStart) {
+                int slot = slot(sequence);
+                types[i] = this.types[slot];
+                amounts[i] = this.amounts[slot];
+                balances[i] = this.balances[slot];
+                timestamps[i] = this.timestamps[slot];
+            } else {
+                types[i] = overflow.getType(sequence);
+                amounts[i] = overflow.getAmount(sequence);
+                balances[i] = overflow.getBalanceAfter(sequence);
+                timestamps[i] = overflow.getTimestampMicros(sequence);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the retained entries before sequence end, at most types.length
+     * of the most recent ones, under one hold of the lock, so entries a
+     * bounded log discards meanwhile cannot get in the way. Returns the
+     * sequence number of the first entry copied; end - that many were.
+     */
+    public synchronized int readBefore(int end, byte[] types, long[] amounts, long[] balances, long[] timestamps) {
+        int from = Math.max(firstRetained(), end - types.length);
+        if (from >= end) {
+            return end;
+        }
+        read(from, types, amounts, balances, timestamps);
+        return from;
+    }
+
+    /**
+     * Read-only view of the retained entries with fromMicros <= timestamp <
+     * toMicros, oldest first, found by binary search.
+     */
+    public synchronized HistoryView between(long fromMicros, long toMicros) {
+        int from = lowerBound(fromMicros);
+        int to = Math.max(from, lowerBound(toMicros));
+        return new HistoryView(this, from, to);
+    }
+
+    /**
+     * Lazy cursor over the retained entries of one type with fromMicros <=
+     * timestamp < toMicros. With the type index enabled it visits only
+     * entries of that type; otherwise it scans the time range.
+     */
+    public synchronized HistoryCursor between(long fromMicros, long toMicros, byte type) {
+        int from = lowerBound(fromMicros);
+        int to = Math.max(from, lowerBound(toMicros));
+        if (typeIndex == null) {
+            return new HistoryCursor(this, from, to, type, false);
+        }
+        SequenceList list = typeIndex[type & 0xFF];
+        if (list == null) {
+            return new HistoryCursor(this, 0, 0, type, true);
+        }
+        return new HistoryCursor(this, list.positionOf(from), list.positionOf(to), type, true);
+    }
+
+    /**
+     * Starts maintaining the per-type index, building it from the retained
+     * history. Costs 4 bytes per entry.
+     */
+    public synchronized void enableTypeIndex() {
+        typeIndexed = true;
+        if (typeIndex == null) {
+            buildTypeIndex();
+        }
+    }
+
+    public synchronized boolean isTypeIndexed() {
+        return typeIndexed;
+    }
+
+    /**
+     * Sequence number of the entry at an absolute position of a type's index.
+     */
+    synchronized int indexedSequence(byte type, int position) {
+        int sequence = typeIndex[type & 0xFF].get(position);
+        if (sequence < firstRetained()) {
+            throw new ConcurrentModificationException("history entry " + sequence + " is no longer retained");
+        }
+        return sequence;
+    }
+
+    /**
+     * First retained sequence whose timestamp is at least micros (size() if none).
+     */
+    private int lowerBound(long micros) {
+        int lo = firstRetained();
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestampAt(mid) < micros) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private long timestampAt(int sequence) {
+        return sequence >= ringStart ? timestamps[slot(sequence)] : overflow.getTimestampMicros(sequence);
+    }
+
+    private void index(byte type, int sequence) {
+        SequenceList list = typeIndex[type & 0xFF];
+        if (list == null) {
+            list = new SequenceList();
+            typeIndex[type & 0xFF] = list;
+        }
+        list.add(sequence, firstRetained());
+    }
+
+    private void buildTypeIndex() {
+        typeIndex = new SequenceList[256];
+        for (int sequence = firstRetained(); sequence < size; sequence++) {
+            index(sequence >= ringStart ? types[slot(sequence)] : overflow.getType(sequence), sequence);
+        }
+    }
+
+    /**
+     * Read-only view of the most recent n retained entries, oldest first.
+     */
+    public synchronized HistoryView last(int n) {
+        int from = Math.max(firstRetained(), size - Math.max(n, 0));
+        return new HistoryView(this, from, size);
+    }
+
+    /**
+     * Read-only view of every retained entry, oldest first.
+     */
+    public synchronized HistoryView toList() {
+        return new HistoryView(this, firstRetained(), size);
+    }
+
+    private int slot(int sequence) {
+        return sequence & (types.length - 1);
+    }
+
+    private void checkSequence(int sequence) {
+        if (sequence < firstRetained() || sequence >= size) {
+            throw new IndexOutOfBoundsException("Sequence: " + sequence + ", retained: "
+                                                + firstRetained() + ".." + size);
+        }
+    }
+
+    private void allocate(int length) {
+        types = new byte[length];
+        amounts = new long[length];
+        balances = new long[length];
+        timestamps = new long[length];
+    }
+
+    // Only called before the ring has wrapped. From sequence 0 the slots are
+    // 0..size-1 in order and are copied as is; after skipTo each entry moves
+    // to its slot for the new length.
+    private void grow() {
+        int length = types.length << 1;
+        if (ringStart == 0) {
+            types = Arrays.copyOf(types, length);
+            amounts = Arrays.copyOf(amounts, length);
+            balances = Arrays.copyOf(balances, length);
+            timestamps = Arrays.copyOf(timestamps, length);
+            return;
+        }
+        byte[] oldTypes = types;
+        long[] oldAmounts = amounts;
+        long[] oldBalances = balances;
+        long[] oldTimestamps = timestamps;
+        allocate(length);
+        for (int sequence = ringStart; sequence < size; sequence++) {
+            int from = sequence & (oldTypes.length - 1);
+            int to = sequence & (length - 1);
+            types[to] = oldTypes[from];
+            amounts[to] = oldAmounts[from];
+            balances[to] = oldBalances[from];
+            timestamps[to] = oldTimestamps[from];
+        }
+    }
+
+    private void evictOldest() {
+        if (overflow != null) {
+            int slot = slot(ringStart);
+            overflow.append(types[slot], amounts[slot], balances[slot], timestamps[slot]);
+        }
+        ringStart++;
+    }
+
+    // The ring is written oldest first, without its unused slots.
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int sequence = ringStart; sequence < size; sequence++) {
+            int slot = slot(sequence);
+            out.writeByte(types[slot]);
+            out.writeLong(amounts[slot]);
+            out.writeLong(balances[slot]);
+            out.writeLong(timestamps[slot]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lastTimestamp = Long.MIN_VALUE;
+        int count = size - ringStart;
+        if (count == 0) {
+            if (typeIndexed) {
+                buildTypeIndex();
+            }
+            return;
+        }
+        int length = Math.min(INITIAL_CAPACITY, capacity);
+        while (length < count) {
+            length <<= 1;
+        }
+        allocate(length);
+        for (int sequence = ringStart; sequence < size; sequence++) {
+            int slot = slot(sequence);
+            types[slot] = in.readByte();
+            amounts[slot] = in.readLong();
+            balances[slot] = in.readLong();
+            timestamps[slot] = in.readLong();
+        }
+        lastTimestamp = timestamps[slot(size - 1)];
+        if (typeIndexed) {
+            buildTypeIndex();
+        }
+    }
+
+    /**
+     * Growable list of increasing sequence numbers for one entry type.
+     * Positions are absolute (counting entries ever added), so they stay
+     * valid when the prefix of dropped sequences is compacted away.
+     */
+    private static final class SequenceList {
+        private int[] data = new int[8];
+        private int base;  // absolute position of data[0]
+        private int head;  // offset of the first sequence still retained
+        private int end;   // offset one past the last sequence
+
+        void add(int sequence, int firstRetained) {
+            while (head < end && data[head] < firstRetained) {
+                head++;
+            }
+            if (end == data.length) {
+                if (head > data.length >> 1) {
+                    System.arraycopy(data, head, data, 0, end - head);
+                    base += head;
+                    end -= head;
+                    head = 0;
+                } else {
+                    data = Arrays.copyOf(data, data.length << 1);
+                }
+            }
+            data[end++] = sequence;
+        }
+
+        int get(int position) {
+            int offset = position - base;
+            if (offset < head || offset >= end) {
+                throw new ConcurrentModificationException("index position " + position + " is no longer retained");
+            }
+            return data[offset];
+        }
+
+        /**
+         * Absolute position of the first sequence >= the given one.
+         */
+        int positionOf(int sequence) {
+            int lo = head;
+            int hi = end;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (data[mid] < sequence) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return base + lo;
+        }
+    }
+}
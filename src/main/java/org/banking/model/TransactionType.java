@@ -0,0 +1,50 @@
+package org.banking.model;
+
+/**
+ * TransactionType maps transaction type names to compact byte codes, so hot
+ * paths can dispatch on a byte instead of comparing strings.
+ */
+public final class TransactionType {
+
+    public static final byte UNKNOWN = 0;
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAWAL = 2;
+    public static final byte TRANSFER_OUT = 3;
+    public static final byte TRANSFER_IN = 4;
+    public static final byte INTEREST = 5;
+    public static final byte MONTHLY_CHARGE = 6;
+
+    private static final String[] NAMES = {
+        "UNKNOWN", "DEPOSIT", "WITHDRAWAL", "TRANSFER_OUT", "TRANSFER_IN", "INTEREST", "MONTHLY_CHARGE"
+    };
+
+    private TransactionType() {
+    }
+
+    /**
+     * Returns the code for a type name. BankingService's "CHARGE" operation
+     * maps to MONTHLY_CHARGE; unrecognised names map to UNKNOWN.
+     */
+    public static byte codeOf(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        switch (name) {
+            case "DEPOSIT": return DEPOSIT;
+            case "WITHDRAWAL": return WITHDRAWAL;
+            case "TRANSFER_OUT": return TRANSFER_OUT;
+            case "TRANSFER_IN": return TRANSFER_IN;
+            case "INTEREST": return INTEREST;
+            case "CHARGE":
+            case "MONTHLY_CHARGE": return MONTHLY_CHARGE;
+            default: return UNKNOWN;
+        }
+    }
+
+    public static String nameOf(byte code) {
+        if (code < 0 || code >= NAMES.length) {
+            return NAMES[UNKNOWN];
+        }
+        return NAMES[code];
+    }
+}
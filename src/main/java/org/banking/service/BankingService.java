@@ -1,48 +1,245 @@
 package org.banking.service;
 
 import org.banking.model.Account;
+import org.banking.model.AccountSlots;
+import org.banking.model.BalanceAggregate;
+import org.banking.model.BankingJournal;
+import org.banking.model.CheckpointGate;
+import org.banking.model.ChunkedHistoryStore;
 import org.banking.model.Customer;
+import org.banking.model.CustomerSource;
+import org.banking.model.HistoryStore;
+import org.banking.model.HistoryView;
+import org.banking.model.JournalUnavailableException;
+import org.banking.model.NotDurableException;
+import org.banking.model.TransactionBatch;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.banking.utils.EpochClock;
+import org.banking.utils.LongHashIndex;
+import org.banking.utils.Money;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * BankingService class provides core banking operations with complex control flow.
  * This class contains multiple decision points and data flow for testing.
+ *
+ * In concurrent mode the customer registry is guarded by a StampedLock (lookups
+ * use optimistic reads), the account index is a ConcurrentHashMap, and account
+ * mutations rely on Account's per-account-number lock striping.
+ *
+ * With a journal set (setJournal), every change is reported to it as it is
+ * applied, and each mutating operation commits the journal before it returns,
+ * so a change is as durable as the journal's setting once its call returns.
+ * A change is checked against the journal before it is applied: once the
+ * journal has failed, every change is refused with
+ * JournalUnavailableException and nothing in memory moves. A change the
+ * journal fails under while committing has been applied but is not durable:
+ * its call throws NotDurableException instead of returning, and the changes
+ * after it are refused.
+ *
+ * With a customer source set (setCustomerSource), customers are loaded from
+ * it on first access instead of being registered up front.
+ *
+ * With a checkpoint gate set (setCheckpointGate), cutCheckpoint takes a
+ * consistent view of every customer and account while traffic continues.
+ *
+ * With account slots set (setAccountSlots), new accounts are opened in that
+ * off-heap store rather than as Account objects, and operations on them by
+ * account number run against their slots. Such accounts are not returned by
+ * getAccount or Customer.getAccounts, so saves and snapshots do not include
+ * them, and slots and a checkpoint gate exclude each other; a journal does
+ * record them. Use the methods taking an account number to reach them.
  */
 public class BankingService {
     
-    private List<Customer> customers;
-    private double dailyTransferLimit;
-    private double monthlyWithdrawalLimit;
-    private int minimumAccountBalance;
+    public static final long NO_BALANCE = Long.MIN_VALUE; // getAccountBalanceMinor: there is no such account
+    
+    private static final int SLOT_GROUP = -2; // processTransactions: the account is in the account slots
+    
+    private List<Customer> customers; // registration order, backs getAllCustomers
+    private LongHashIndex<Customer> customerIndex;
+    private Map<String, Account> accountIndex; // bank-wide, account number -> account
+    private final StampedLock registryLock; // null unless concurrent
+    private final BalanceAggregate bankTotals; // fed by every customer's running totals
+    private long dailyTransferLimit; // minor units
+    private long monthlyWithdrawalLimit; // minor units
+    private long minimumAccountBalance; // minor units
+    private volatile int historyCapacity; // in-memory history ring size per new account
+    private volatile Supplier<HistoryStore> historyOverflow; // null discards older history
+    private volatile BankingJournal journal; // null unless changes are journaled
+    private volatile CustomerSource source; // null unless customers load lazily
+    private volatile CheckpointGate checkpointGate; // null unless checkpoints are cut
+    private volatile AccountSlots accountSlots; // null unless new accounts live off the heap
+    private final AtomicLong sourceAccounts = new AtomicLong(); // accounts still only in source
+    private final AtomicLong sourceBalance = new AtomicLong(); // their active balance, minor units
     
     public BankingService() {
+        this(false);
+    }
+    
+    public BankingService(boolean concurrent) {
         this.customers = new ArrayList<>();
-        this.dailyTransferLimit = 10000.0;
-        this.monthlyWithdrawalLimit = 50000.0;
-        this.minimumAccountBalance = 100;
+        this.customerIndex = new LongHashIndex<>();
+        this.accountIndex = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.registryLock = concurrent ? new StampedLock() : null;
+        this.bankTotals = new BalanceAggregate();
+        this.dailyTransferLimit = Money.ofUnits(10000);
+        this.monthlyWithdrawalLimit = Money.ofUnits(50000);
+        this.minimumAccountBalance = Money.ofUnits(100);
+        this.historyCapacity = TransactionLog.DEFAULT_CAPACITY;
+        this.historyOverflow = () -> new ChunkedHistoryStore(TransactionLog.DEFAULT_HISTORY_LIMIT);
     }
     
     public boolean registerCustomer(Customer customer) {
         if (customer == null) {
             return false;
         }
-        for (Customer c : customers) {
-            if (c.getCustomerId() == customer.getCustomerId()) {
+        if (source != null && getCustomer(customer.getCustomerId()) != null) {
+            return false;
+        }
+        checkJournal();
+        long stamp = lockRegistry();
+        try {
+            if (!customerIndex.putIfAbsent(customer.getCustomerId(), customer)) {
                 return false;
             }
+            customers.add(customer);
+            customer.attachTotals(bankTotals);
+            customer.attachCheckpointGate(checkpointGate);
+            BankingJournal target = journal;
+            if (target != null) {
+                target.customerRegistered(customer.getCustomerId(), customer.getFirstName(), customer.getLastName(),
+                                          customer.getEmail(), customer.getPhone(), customer.getAddress());
+            }
+            for (Account acc : customer.getAccounts()) {
+                if (target != null) {
+                    journalAccount(target, acc);
+                }
+                accountIndex.putIfAbsent(acc.getAccountNumber(), acc);
+            }
+        } finally {
+            unlockRegistry(stamp);
         }
-        customers.add(customer);
-        return true;
+        return committed(true);
     }
     
-    public Customer getCustomer(long customerId) {
-        for (Customer c : customers) {
-            if (c.getCustomerId() == customerId) {
-                return c;
+    /**
+     * Registers many customers at once, for example ones just loaded from a
+     * snapshot, with the same result as registerCustomer on each in order
+     * (customers whose ID is taken are skipped; if two share an account
+     * number, which one the account index keeps is not defined). The
+     * registry is updated in one hold of its lock; in concurrent mode the
+     * accounts are then indexed and linked to the bank totals in parallel,
+     * on the fork-join pool the call runs in (the common pool outside one).
+     * Returns how many customers were registered.
+     */
+    public int registerAll(List<Customer> loaded) {
+        checkJournal();
+        if (source != null) {
+            int registered = 0;
+            for (Customer customer : loaded) {
+                if (registerCustomer(customer)) {
+                    registered++;
+                }
+            }
+            return registered;
+        }
+        List<Customer> added = new ArrayList<>(loaded.size());
+        long stamp = lockRegistry();
+        try {
+            BankingJournal target = journal;
+            CheckpointGate gate = checkpointGate;
+            for (Customer customer : loaded) {
+                if (customer == null || !customerIndex.putIfAbsent(customer.getCustomerId(), customer)) {
+                    continue;
+                }
+                customers.add(customer);
+                added.add(customer);
+                if (target != null) {
+                    target.customerRegistered(customer.getCustomerId(), customer.getFirstName(),
+                                              customer.getLastName(), customer.getEmail(), customer.getPhone(),
+                                              customer.getAddress());
+                    for (Account acc : customer.getAccounts()) {
+                        journalAccount(target, acc);
+                    }
+                }
             }
+            (isConcurrent() ? added.parallelStream() : added.stream()).forEach(customer -> {
+                customer.attachTotals(bankTotals);
+                customer.attachCheckpointGate(gate);
+                for (Account acc : customer.getAccounts()) {
+                    accountIndex.putIfAbsent(acc.getAccountNumber(), acc);
+                }
+            });
+        } finally {
+            unlockRegistry(stamp);
+        }
+        committed(!added.isEmpty());
+        return added.size();
+    }
+    
+    public Customer getCustomer(long customerId) {
+        Customer customer = lookupCustomer(customerId);
+        if (customer == null && source != null) {
+            customer = materialize(customerId);
+        }
+        return customer;
+    }
+    
+    private Customer lookupCustomer(long customerId) {
+        if (registryLock == null) {
+            return customerIndex.get(customerId);
+        }
+        long stamp = registryLock.tryOptimisticRead();
+        Customer customer = customerIndex.get(customerId);
+        if (registryLock.validate(stamp)) {
+            return customer;
+        }
+        stamp = registryLock.readLock();
+        try {
+            return customerIndex.get(customerId);
+        } finally {
+            registryLock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Resolves an account directly by its bank-wide account number.
+     */
+    public Account getAccount(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        Account account = accountIndex.get(accountNumber);
+        if (account == null && source != null) {
+            account = materializeOwner(accountNumber);
         }
-        return null;
+        return account;
+    }
+    
+    /**
+     * Resolves an account and verifies that it belongs to the given customer.
+     */
+    public Account getAccount(long customerId, String accountNumber) {
+        Account account = getAccount(accountNumber);
+        if (account == null || account.getCustomerId() != customerId) {
+            return null;
+        }
+        return account;
+    }
+    
+    public boolean isAccountOwner(long customerId, String accountNumber) {
+        return getAccount(customerId, accountNumber) != null || slotOf(customerId, accountNumber) >= 0;
     }
     
     public boolean createAccount(long customerId, String accountNumber, String accountType, double initialBalance) {
@@ -51,7 +248,7 @@ public class BankingService {
             return false;
         }
         
-        if (initialBalance < minimumAccountBalance) {
+        if (Money.of(initialBalance) < minimumAccountBalance || !Money.isBalance(Money.of(initialBalance))) {
             return false;
         }
         
@@ -59,14 +256,47 @@ public class BankingService {
             return false;
         }
         
-        Account account = new Account(accountNumber, accountType, initialBalance, customerId);
+        if (accountNumber == null) {
+            return false;
+        }
+        
+        if (source != null && getAccount(accountNumber) != null) {
+            return false;
+        }
+        
+        checkJournal();
+        AccountSlots slots = accountSlots;
+        if (slots != null) {
+            int slot = openSlot(slots, customerId, accountNumber, accountType, Money.of(initialBalance));
+            if (slot != AccountSlots.NO_ROOM) {
+                return committed(slot >= 0);
+            }
+        }
+        
+        Account account = new Account(accountNumber, accountType, initialBalance, customerId, newHistory());
         if (accountType.equals("SAVINGS")) {
             account.setInterestRate(0.03);
         } else if (accountType.equals("CREDIT")) {
             account.setInterestRate(0.15);
         }
         
-        return customer.addAccount(account);
+        long stamp = lockRegistry();
+        try {
+            if (accountIndex.containsKey(accountNumber) || (slots != null && slots.find(accountNumber) >= 0)) {
+                return false;
+            }
+            if (!customer.addAccount(account)) {
+                return false;
+            }
+            BankingJournal target = journal;
+            if (target != null) {
+                journalAccount(target, account);
+            }
+            accountIndex.put(accountNumber, account);
+        } finally {
+            unlockRegistry(stamp);
+        }
+        return committed(true);
     }
     
     public boolean processTransaction(long customerId, String accountNumber, String transactionType, double amount) {
@@ -74,25 +304,176 @@ public class BankingService {
         if (customer == null) {
             return false;
         }
-        
-        Account account = customer.getAccount(accountNumber);
+        Account account = getAccount(customerId, accountNumber);
+        if (account == null && slotOf(customerId, accountNumber) >= 0) {
+            return committed(applySlotTransaction(accountNumber, transactionType, Money.of(amount)));
+        }
+        return committed(applyTransaction(account, transactionType, Money.of(amount)));
+    }
+    
+    public boolean processTransaction(String accountNumber, String transactionType, double amount) {
+        Account account = getAccount(accountNumber);
+        if (account == null && accountSlots != null) {
+            return committed(applySlotTransaction(accountNumber, transactionType, Money.of(amount)));
+        }
+        return committed(applyTransaction(account, transactionType, Money.of(amount)));
+    }
+    
+    private boolean applyTransaction(Account account, String transactionType, long amount) {
         if (account == null) {
             return false;
         }
         
         if (transactionType.equals("DEPOSIT")) {
-            return account.deposit(amount);
+            return account.depositMinor(amount);
         } else if (transactionType.equals("WITHDRAWAL")) {
-            return account.withdraw(amount);
+            return account.withdrawMinor(amount);
         } else if (transactionType.equals("INTEREST")) {
             account.calculateInterest();
             return true;
         } else if (transactionType.equals("CHARGE")) {
-            return account.applyMonthlyCharge(amount);
+            return account.applyMonthlyChargeMinor(amount);
         }
         return false;
     }
     
+    private boolean applySlotTransaction(String accountNumber, String transactionType, long amount) {
+        if (transactionType.equals("DEPOSIT")) {
+            return postToSlot(accountNumber, TransactionType.DEPOSIT, amount);
+        } else if (transactionType.equals("WITHDRAWAL")) {
+            return postToSlot(accountNumber, TransactionType.WITHDRAWAL, amount);
+        } else if (transactionType.equals("INTEREST")) {
+            return postToSlot(accountNumber, TransactionType.INTEREST, 0);
+        } else if (transactionType.equals("CHARGE")) {
+            return postToSlot(accountNumber, TransactionType.MONTHLY_CHARGE, amount);
+        }
+        return false;
+    }
+    
+    /**
+     * Applies a DEPOSIT, WITHDRAWAL, MONTHLY_CHARGE or INTEREST (amount
+     * ignored) to the account with this number in the account slots. Returns
+     * false if there is none or the posting is refused. Does not commit the
+     * journal; also used by TransactionPipeline.
+     */
+    boolean postToSlot(String accountNumber, byte type, long amount) {
+        AccountSlots slots = accountSlots;
+        if (slots == null) {
+            return false;
+        }
+        switch (type) {
+            case TransactionType.DEPOSIT:
+            case TransactionType.WITHDRAWAL:
+            case TransactionType.MONTHLY_CHARGE:
+                return slots.post(accountNumber, type, amount);
+            case TransactionType.INTEREST:
+                slots.addInterest(accountNumber);
+                return slots.find(accountNumber) >= 0;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Applies a batch of single-account transactions. Entries are grouped by
+     * account, each account is resolved once, and each group is applied under
+     * one hold of that account's lock, preserving the batch order within the
+     * group. In concurrent mode groups run in parallel. Entries for accounts
+     * in the account slots are applied in batch order as they are met.
+     *
+     * Returns one TransactionBatch result code per entry. The journal is
+     * checked once, before any entry is applied.
+     */
+    public byte[] processTransactions(TransactionBatch batch) {
+        checkJournal();
+        int size = batch.size();
+        byte[] results = new byte[size];
+        int[] groupOf = new int[size];
+        Map<String, Integer> groupIds = new HashMap<>();
+        List<Account> groupAccounts = new ArrayList<>();
+        AccountSlots slots = accountSlots;
+        boolean slotsChanged = false;
+        
+        for (int i = 0; i < size; i++) {
+            groupOf[i] = -1;
+            if (!TransactionBatch.isSupported(batch.getType(i))) {
+                results[i] = TransactionBatch.INVALID_TYPE;
+                continue;
+            }
+            String accountNumber = batch.getAccountNumber(i);
+            Integer group = groupIds.get(accountNumber);
+            if (group == null) {
+                Account account = getAccount(accountNumber);
+                group = (account == null) ? -1 : groupAccounts.size();
+                if (account != null) {
+                    groupAccounts.add(account);
+                } else if (slots != null && slots.find(accountNumber) >= 0) {
+                    group = SLOT_GROUP;
+                }
+                if (accountNumber != null) {
+                    groupIds.put(accountNumber, group);
+                }
+            }
+            if (group == SLOT_GROUP) {
+                results[i] = applySlotEntry(slots, batch, i);
+                slotsChanged |= results[i] == TransactionBatch.OK;
+                continue;
+            }
+            if (group < 0) {
+                results[i] = TransactionBatch.UNKNOWN_ACCOUNT;
+                continue;
+            }
+            groupOf[i] = group;
+        }
+        
+        // Stable counting sort of entry indexes by group.
+        int groups = groupAccounts.size();
+        int[] groupStart = new int[groups + 1];
+        for (int i = 0; i < size; i++) {
+            if (groupOf[i] >= 0) {
+                groupStart[groupOf[i] + 1]++;
+            }
+        }
+        for (int g = 0; g < groups; g++) {
+            groupStart[g + 1] += groupStart[g];
+        }
+        int[] order = new int[groupStart[groups]];
+        int[] cursor = Arrays.copyOf(groupStart, groups);
+        for (int i = 0; i < size; i++) {
+            if (groupOf[i] >= 0) {
+                order[cursor[groupOf[i]]++] = i;
+            }
+        }
+        
+        if (isConcurrent() && groups > 1) {
+            IntStream.range(0, groups).parallel().forEach(g ->
+                groupAccounts.get(g).applyBatch(batch, order, groupStart[g], groupStart[g + 1], results));
+        } else {
+            for (int g = 0; g < groups; g++) {
+                groupAccounts.get(g).applyBatch(batch, order, groupStart[g], groupStart[g + 1], results);
+            }
+        }
+        committed(groups > 0 || slotsChanged);
+        return results;
+    }
+    
+    /**
+     * Applies one batch entry to an account in the account slots, with the
+     * result codes of Account.applyBatch.
+     */
+    private static byte applySlotEntry(AccountSlots slots, TransactionBatch batch, int entry) {
+        String accountNumber = batch.getAccountNumber(entry);
+        byte type = batch.getType(entry);
+        if (slots.find(accountNumber) < 0) {
+            return TransactionBatch.UNKNOWN_ACCOUNT;
+        }
+        if (type == TransactionType.INTEREST) {
+            slots.addInterest(accountNumber);
+            return TransactionBatch.OK;
+        }
+        return slots.post(accountNumber, type, batch.getAmount(entry)) ? TransactionBatch.OK : TransactionBatch.REJECTED;
+    }
+    
     public boolean transferFunds(long fromCustomerId, String fromAccountNumber, 
                                   long toCustomerId, String toAccountNumber, double amount) {
         Customer fromCustomer = getCustomer(fromCustomerId);
@@ -102,9 +483,30 @@ public class BankingService {
             return false;
         }
         
-        Account fromAccount = fromCustomer.getAccount(fromAccountNumber);
-        Account toAccount = toCustomer.getAccount(toAccountNumber);
-        
+        Account fromAccount = getAccount(fromCustomerId, fromAccountNumber);
+        Account toAccount = getAccount(toCustomerId, toAccountNumber);
+        if (accountSlots != null && (fromAccount == null || toAccount == null)) {
+            if ((fromAccount == null && slotOf(fromCustomerId, fromAccountNumber) < 0)
+                || (toAccount == null && slotOf(toCustomerId, toAccountNumber) < 0)) {
+                return false;
+            }
+            return committed(transferSlots(fromAccount, fromAccountNumber, toAccount, toAccountNumber,
+                                           Money.of(amount)));
+        }
+        return committed(transfer(fromAccount, toAccount, Money.of(amount)));
+    }
+    
+    public boolean transferFunds(String fromAccountNumber, String toAccountNumber, double amount) {
+        Account fromAccount = getAccount(fromAccountNumber);
+        Account toAccount = getAccount(toAccountNumber);
+        if (accountSlots != null && (fromAccount == null || toAccount == null)) {
+            return committed(transferSlots(fromAccount, fromAccountNumber, toAccount, toAccountNumber,
+                                           Money.of(amount)));
+        }
+        return committed(transfer(fromAccount, toAccount, Money.of(amount)));
+    }
+    
+    private boolean transfer(Account fromAccount, Account toAccount, long amount) {
         if (fromAccount == null || toAccount == null) {
             return false;
         }
@@ -121,7 +523,69 @@ public class BankingService {
             return false;
         }
         
-        return fromAccount.transfer(toAccount, amount);
+        return fromAccount.transferMinor(toAccount, amount);
+    }
+    
+    /**
+     * A transfer with at least one side in the account slots (the side whose
+     * Account is null). With the other side on the heap it runs as two legs,
+     * debit first; a refused credit returns the money, and the journal only
+     * hears of the transfer once both legs are in. Returns false if there
+     * are no account slots. Does not commit the journal; also used by
+     * TransactionPipeline.
+     */
+    boolean transferSlots(Account fromAccount, String fromAccountNumber,
+                          Account toAccount, String toAccountNumber, long amount) {
+        AccountSlots slots = accountSlots;
+        if (slots == null || amount <= 0 || amount > dailyTransferLimit) {
+            return false;
+        }
+        if (fromAccount == null && toAccount == null) {
+            return slots.transfer(fromAccountNumber, toAccountNumber, amount);
+        }
+        if (fromAccount != null) {
+            if (!fromAccount.isActive() || slots.find(toAccountNumber) < 0) {
+                return false;
+            }
+            long fromAfter = fromAccount.transferOutMinor(amount);
+            if (fromAfter == Account.REFUSED) {
+                return false;
+            }
+            long toAfter = slots.transferIn(toAccountNumber, amount);
+            if (toAfter != AccountSlots.REFUSED) {
+                journalTransfer(fromAccountNumber, toAccountNumber, amount, fromAfter, toAfter);
+                return true;
+            }
+            fromAccount.reverseTransferOutMinor(amount);
+            return false;
+        }
+        if (!toAccount.isActive()) {
+            return false;
+        }
+        long fromAfter = slots.transferOut(fromAccountNumber, amount);
+        if (fromAfter == AccountSlots.REFUSED) {
+            return false;
+        }
+        long toAfter = toAccount.transferInMinor(amount);
+        if (toAfter != Account.REFUSED) {
+            journalTransfer(fromAccountNumber, toAccountNumber, amount, fromAfter, toAfter);
+            return true;
+        }
+        slots.reverseTransferOut(fromAccountNumber, amount);
+        return false;
+    }
+    
+    /**
+     * Reports a transfer applied in two legs to the journal, as one record,
+     * once both legs are in. Also used by TransactionPipeline.
+     */
+    void journalTransfer(String fromAccountNumber, String toAccountNumber, long amount,
+                         long fromBalanceAfter, long toBalanceAfter) {
+        BankingJournal target = journal;
+        if (target != null) {
+            target.transferred(fromAccountNumber, toAccountNumber, amount, fromBalanceAfter, toBalanceAfter,
+                               EpochClock.nowMicros());
+        }
     }
     
     public double getAccountBalance(long customerId, String accountNumber) {
@@ -129,7 +593,64 @@ public class BankingService {
         if (customer == null) {
             return -1;
         }
-        return customer.getAccountBalance(accountNumber);
+        Account account = getAccount(customerId, accountNumber);
+        if (account == null) {
+            int slot = slotOf(customerId, accountNumber);
+            return slot < 0 ? -1 : Money.toDouble(accountSlots.getBalanceMinor(slot));
+        }
+        return account.getBalance();
+    }
+    
+    public double getAccountBalance(String accountNumber) {
+        Account account = getAccount(accountNumber);
+        if (account == null) {
+            int slot = slotOf(accountNumber);
+            return slot < 0 ? -1 : Money.toDouble(accountSlots.getBalanceMinor(slot));
+        }
+        return account.getBalance();
+    }
+    
+    /**
+     * Balance in minor units of the account with this number, whether it is
+     * an Account or in the account slots, or NO_BALANCE if there is none.
+     */
+    public long getAccountBalanceMinor(String accountNumber) {
+        Account account = getAccount(accountNumber);
+        if (account == null) {
+            int slot = slotOf(accountNumber);
+            return slot < 0 ? NO_BALANCE : accountSlots.getBalanceMinor(slot);
+        }
+        return account.getBalanceMinor();
+    }
+    
+    /**
+     * The last count entries of the account's history, or null if there is
+     * no such account. Accounts in the account slots keep no history: for
+     * them this throws UnsupportedOperationException rather than pretending
+     * the history is empty.
+     */
+    public HistoryView getTransactionHistory(String accountNumber, int count) {
+        Account account = getAccount(accountNumber);
+        if (account == null) {
+            return noHistory(accountNumber, slotOf(accountNumber));
+        }
+        return account.getTransactionHistory(count);
+    }
+    
+    public HistoryView getTransactionHistory(long customerId, String accountNumber, int count) {
+        Account account = getAccount(customerId, accountNumber);
+        if (account == null) {
+            return noHistory(accountNumber, slotOf(customerId, accountNumber));
+        }
+        return account.getTransactionHistory(count);
+    }
+    
+    private static HistoryView noHistory(String accountNumber, int slot) {
+        if (slot < 0) {
+            return null;
+        }
+        throw new UnsupportedOperationException("account " + accountNumber
+                                                + " is kept in the account slots, which keep no history");
     }
     
     public boolean applyMonthlyCharges(long customerId, String accountNumber, double chargeAmount) {
@@ -138,8 +659,9 @@ public class BankingService {
             return false;
         }
         
-        Account account = customer.getAccount(accountNumber);
-        if (account == null) {
+        Account account = getAccount(customerId, accountNumber);
+        int slot = account == null ? slotOf(customerId, accountNumber) : -1;
+        if (account == null && slot < 0) {
             return false;
         }
         
@@ -147,11 +669,18 @@ public class BankingService {
             return false;
         }
         
-        if (account.getBalance() < chargeAmount) {
+        if (account == null) {
+            if (accountSlots.getBalanceMinor(slot) < Money.of(chargeAmount)) {
+                return false;
+            }
+            return committed(accountSlots.post(accountNumber, TransactionType.MONTHLY_CHARGE, Money.of(chargeAmount)));
+        }
+        
+        if (account.getBalanceMinor() < Money.of(chargeAmount)) {
             return false;
         }
         
-        return account.applyMonthlyCharge(chargeAmount);
+        return committed(account.applyMonthlyCharge(chargeAmount));
     }
     
     public boolean applyInterest(long customerId, String accountNumber) {
@@ -160,9 +689,9 @@ public class BankingService {
             return false;
         }
         
-        Account account = customer.getAccount(accountNumber);
+        Account account = getAccount(customerId, accountNumber);
         if (account == null) {
-            return false;
+            return slotOf(customerId, accountNumber) >= 0 && committed(accountSlots.addInterest(accountNumber) > 0);
         }
         
         if (!account.isActive()) {
@@ -172,7 +701,7 @@ public class BankingService {
         double oldBalance = account.getBalance();
         double interest = account.calculateInterest();
         
-        return interest > 0;
+        return committed(interest > 0);
     }
     
     public boolean closeAccount(long customerId, String accountNumber) {
@@ -181,17 +710,31 @@ public class BankingService {
             return false;
         }
         
-        Account account = customer.getAccount(accountNumber);
+        Account account = getAccount(customerId, accountNumber);
         if (account == null) {
-            return false;
+            return closeSlot(customerId, accountNumber);
         }
         
-        if (account.getBalance() > 0) {
+        checkJournal();
+        // Deactivating first refuses postings through references taken
+        // before the account leaves the index; a positive balance keeps it.
+        if (!account.deactivateIfEmpty()) {
             return false;
         }
-        
-        account.deactivateAccount();
-        return customer.removeAccount(accountNumber);
+        long stamp = lockRegistry();
+        try {
+            if (!customer.removeAccount(accountNumber)) {
+                return false;
+            }
+            accountIndex.remove(accountNumber);
+            BankingJournal target = journal;
+            if (target != null) {
+                target.accountClosed(customerId, accountNumber);
+            }
+        } finally {
+            unlockRegistry(stamp);
+        }
+        return committed(true);
     }
     
     public double getTotalCustomerBalance(long customerId) {
@@ -199,33 +742,425 @@ public class BankingService {
         if (customer == null) {
             return -1;
         }
+        AccountSlots slots = accountSlots;
+        if (slots != null) {
+            return Money.toDouble(customer.getTotalBalanceMinor() + slots.getCustomerBalanceMinor(customerId));
+        }
         return customer.getTotalBalance();
     }
     
+    /**
+     * Every customer; with a customer source set this first loads all the
+     * customers still in it (they are then listed in the source's order,
+     * after those already loaded) and drops the source.
+     */
     public List<Customer> getAllCustomers() {
-        return new ArrayList<>(customers);
+        loadAllFromSource();
+        if (registryLock == null) {
+            return new ArrayList<>(customers);
+        }
+        long stamp = registryLock.readLock();
+        try {
+            return new ArrayList<>(customers);
+        } finally {
+            registryLock.unlockRead(stamp);
+        }
     }
     
-    public int getTotalAccounts() {
-        int count = 0;
-        for (Customer c : customers) {
-            count += c.getAccounts().size();
+    /**
+     * Takes a consistent cut of the bank through the checkpoint gate: the
+     * customers registered at that instant, whose state as of the cut the
+     * returned Cut serves while traffic continues. Registrations, account
+     * openings and closings wait for the cut, other changes only while
+     * changes in flight finish and the customer list is copied. With a
+     * customer source set, every customer is loaded first, as for
+     * getAllCustomers. Close the cut once it has been read.
+     */
+    public CheckpointGate.Cut cutCheckpoint() {
+        CheckpointGate gate = checkpointGate;
+        if (gate == null) {
+            throw new IllegalStateException("no checkpoint gate set");
+        }
+        loadAllFromSource();
+        if (registryLock == null) {
+            return gate.cut(() -> new ArrayList<>(customers));
+        }
+        long stamp = registryLock.readLock();
+        try {
+            return gate.cut(() -> new ArrayList<>(customers));
+        } finally {
+            registryLock.unlockRead(stamp);
         }
-        return count;
+    }
+    
+    public int getTotalAccounts() {
+        AccountSlots slots = accountSlots;
+        return (int) (bankTotals.getAccountCount() + sourceAccounts.get() + (slots == null ? 0 : slots.getAccountCount()));
+    }
+    
+    /**
+     * Sum of all active account balances across the bank, read in constant time.
+     */
+    public double getTotalBankBalance() {
+        return Money.toDouble(getTotalBankBalanceMinor());
+    }
+    
+    public long getTotalBankBalanceMinor() {
+        AccountSlots slots = accountSlots;
+        return bankTotals.getBalanceMinor() + sourceBalance.get() + (slots == null ? 0 : slots.getTotalBalanceMinor());
     }
     
     public void setDailyTransferLimit(double limit) {
         if (limit > 0) {
-            this.dailyTransferLimit = limit;
+            this.dailyTransferLimit = Money.of(limit);
         }
     }
     
     public void setMonthlyWithdrawalLimit(double limit) {
         if (limit > 0) {
-            this.monthlyWithdrawalLimit = limit;
+            this.monthlyWithdrawalLimit = Money.of(limit);
+        }
+    }
+    
+    /**
+     * Sets how accounts created from now on keep history: the most recent
+     * ringCapacity entries stay in memory, older ones go to a store from
+     * overflowFactory (one per account), or are discarded if it is null.
+     * The default, a ChunkedHistoryStore limited to
+     * TransactionLog.DEFAULT_HISTORY_LIMIT entries, keeps that much recent
+     * history on the heap; a HistoryArchive's archive::newStore keeps all of
+     * it with older entries on disk, a null factory only the ring.
+     */
+    public void setHistoryRetention(int ringCapacity, Supplier<HistoryStore> overflowFactory) {
+        if (ringCapacity > 0) {
+            this.historyCapacity = ringCapacity;
+            this.historyOverflow = overflowFactory;
+        }
+    }
+    
+    /**
+     * Starts reporting every change to the given journal (null stops
+     * journaling). Accounts that already exist are attached as well; their
+     * current state is not written, so set the journal before loading data
+     * or after taking a snapshot.
+     */
+    public void setJournal(BankingJournal journal) {
+        long stamp = lockRegistry();
+        try {
+            this.journal = journal;
+            if (accountSlots != null) {
+                accountSlots.attachJournal(journal);
+            }
+            for (Customer customer : customers) {
+                for (Account acc : customer.getAccounts()) {
+                    acc.attachJournal(journal);
+                }
+            }
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    /**
+     * Serves customers from source when a lookup by customer ID or account
+     * number misses: the customer is loaded on first access and registered
+     * like any other, without being journaled. Until then its accounts count
+     * towards the bank totals as recorded in the source. Set it on an empty
+     * service, before any traffic.
+     */
+    public void setCustomerSource(CustomerSource source) {
+        long stamp = lockRegistry();
+        try {
+            if (this.source != null || !customers.isEmpty() || accountSlots != null) {
+                throw new IllegalStateException("a customer source needs an empty service");
+            }
+            sourceAccounts.set(source == null ? 0 : source.getAccountCount());
+            sourceBalance.set(source == null ? 0 : source.getTotalBalanceMinor());
+            this.source = source;
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    /**
+     * Routes every change to customers and accounts through gate (null for
+     * none), so cutCheckpoint can take consistent cuts. Set it before
+     * traffic starts; customers registered later are attached as they join.
+     * Not available with account slots, whose accounts a cut would miss.
+     */
+    public void setCheckpointGate(CheckpointGate gate) {
+        long stamp = lockRegistry();
+        try {
+            if (gate != null && accountSlots != null) {
+                throw new IllegalStateException("accounts in account slots cannot be checkpointed");
+            }
+            this.checkpointGate = gate;
+            for (Customer customer : customers) {
+                customer.attachCheckpointGate(gate);
+            }
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    /**
+     * Opens accounts created from now on in slots, off the heap, as long as
+     * it has room and their number fits a slot; others are still created as
+     * Account objects. Accounts that already exist stay where they are. Not
+     * available with a customer source or a checkpoint gate; set it before
+     * traffic starts.
+     *
+     * Accounts in slots are not Account objects: getAccount returns null
+     * for them and Customer.getAccounts does not list them, but every
+     * operation here that takes an account number, and TransactionPipeline,
+     * reaches them. They keep no transaction history (getTransactionHistory
+     * throws UnsupportedOperationException for them), and BankingStore
+     * cannot persist them.
+     */
+    public void setAccountSlots(AccountSlots slots) {
+        long stamp = lockRegistry();
+        try {
+            if (source != null) {
+                throw new IllegalStateException("account slots cannot be used with a customer source");
+            }
+            if (slots != null && checkpointGate != null) {
+                throw new IllegalStateException("accounts in account slots cannot be checkpointed");
+            }
+            if (slots != null) {
+                slots.attachJournal(journal);
+            }
+            this.accountSlots = slots;
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    public AccountSlots getAccountSlots() { return accountSlots; }
+    public CustomerSource getCustomerSource() { return source; }
+    public CheckpointGate getCheckpointGate() { return checkpointGate; }
+    public BankingJournal getJournal() { return journal; }
+    public double getDailyTransferLimit() { return Money.toDouble(dailyTransferLimit); }
+    public long getDailyTransferLimitMinor() { return dailyTransferLimit; }
+    public double getMonthlyWithdrawalLimit() { return Money.toDouble(monthlyWithdrawalLimit); }
+    public boolean isConcurrent() { return registryLock != null; }
+    
+    /**
+     * Empty history log for a new account, per the current retention setting.
+     */
+    TransactionLog newHistory() {
+        Supplier<HistoryStore> overflow = historyOverflow;
+        return new TransactionLog(historyCapacity, overflow == null ? null : overflow.get());
+    }
+    
+    /**
+     * Adds a rebuilt account to its (registered) customer and the account
+     * index, without validation or journaling. Used by JournalReplayer.
+     */
+    boolean restoreAccount(Account account) {
+        Customer customer = getCustomer(account.getCustomerId());
+        if (customer == null) {
+            return false;
+        }
+        long stamp = lockRegistry();
+        try {
+            if (accountIndex.containsKey(account.getAccountNumber()) || !customer.addAccount(account)) {
+                return false;
+            }
+            accountIndex.put(account.getAccountNumber(), account);
+            return true;
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    /**
+     * Closes an account as recorded in a journal, whatever its balance. Used
+     * by JournalReplayer.
+     */
+    boolean restoreClose(long customerId, String accountNumber) {
+        Customer customer = getCustomer(customerId);
+        Account account = getAccount(customerId, accountNumber);
+        if (customer == null || account == null) {
+            return false;
+        }
+        account.deactivateAccount();
+        long stamp = lockRegistry();
+        try {
+            if (!customer.removeAccount(accountNumber)) {
+                return false;
+            }
+            accountIndex.remove(accountNumber);
+            return true;
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    /**
+     * Opens an account in the account slots, unless an Account already has
+     * its number. Returns the slot, or AccountSlots.TAKEN or NO_ROOM.
+     */
+    private int openSlot(AccountSlots slots, long customerId, String accountNumber, String accountType,
+                         long initialBalance) {
+        long rate = Money.rateOf(accountType.equals("SAVINGS") ? 0.03 : accountType.equals("CREDIT") ? 0.15 : 0.02);
+        long stamp = lockRegistry();
+        try {
+            if (accountIndex.containsKey(accountNumber)) {
+                return AccountSlots.TAKEN;
+            }
+            int slot = slots.open(accountNumber, accountType, customerId, initialBalance, minimumAccountBalance, rate);
+            BankingJournal target = journal;
+            if (slot >= 0 && target != null) {
+                target.accountCreated(customerId, accountNumber, accountType, initialBalance,
+                                      minimumAccountBalance, rate);
+            }
+            return slot;
+        } finally {
+            unlockRegistry(stamp);
         }
     }
     
-    public double getDailyTransferLimit() { return dailyTransferLimit; }
-    public double getMonthlyWithdrawalLimit() { return monthlyWithdrawalLimit; }
+    private boolean closeSlot(long customerId, String accountNumber) {
+        int slot = slotOf(customerId, accountNumber);
+        if (slot < 0 || accountSlots.getBalanceMinor(slot) > 0) {
+            return false;
+        }
+        checkJournal();
+        long stamp = lockRegistry();
+        try {
+            // close() checks the balance again in the swap that closes the slot
+            if (!accountSlots.close(accountNumber)) {
+                return false;
+            }
+            BankingJournal target = journal;
+            if (target != null) {
+                target.accountClosed(customerId, accountNumber);
+            }
+        } finally {
+            unlockRegistry(stamp);
+        }
+        return committed(true);
+    }
+    
+    /**
+     * The account slot of an open account that is not an Account object,
+     * or -1.
+     */
+    private int slotOf(String accountNumber) {
+        AccountSlots slots = accountSlots;
+        return slots == null ? -1 : slots.find(accountNumber);
+    }
+    
+    /**
+     * As slotOf(accountNumber), and -1 unless customerId owns the account.
+     */
+    private int slotOf(long customerId, String accountNumber) {
+        int slot = slotOf(accountNumber);
+        return slot >= 0 && accountSlots.getCustomerId(slot) == customerId ? slot : -1;
+    }
+    
+    private static void journalAccount(BankingJournal target, Account account) {
+        account.attachJournal(target);
+        target.accountCreated(account.getCustomerId(), account.getAccountNumber(), account.getAccountType(),
+                              account.getBalanceMinor(), account.getMinimumBalanceMinor(),
+                              account.getInterestRatePpm());
+    }
+    
+    /**
+     * Throws JournalUnavailableException if the journal cannot record the
+     * change about to be made.
+     */
+    private void checkJournal() {
+        BankingJournal target = journal;
+        if (target != null) {
+            target.checkAvailable();
+        }
+    }
+    
+    /**
+     * Commits the journal after a successful change, so it is durable when
+     * the calling operation returns, and passes applied through. If the
+     * journal fails now, the change has been applied but is not durable, so
+     * this throws NotDurableException; checkJournal refuses the changes
+     * after it. Also used by TransactionPipeline before it completes a
+     * command.
+     */
+    boolean committed(boolean applied) {
+        BankingJournal target = journal;
+        if (applied && target != null) {
+            try {
+                target.commit();
+            } catch (JournalUnavailableException e) {
+                throw new NotDurableException("change applied but not durable: " + e.getMessage(), e);
+            }
+        }
+        return applied;
+    }
+    
+    /**
+     * Loads a customer from the source and registers it, unless another
+     * thread got there first. The customer is built outside the registry
+     * lock; a losing copy is discarded.
+     */
+    private Customer materialize(long customerId) {
+        CustomerSource from = source;
+        Customer loaded = from == null ? null : from.loadCustomer(customerId);
+        if (loaded == null) {
+            return lookupCustomer(customerId);
+        }
+        long stamp = lockRegistry();
+        try {
+            Customer existing = customerIndex.get(customerId);
+            if (existing != null) {
+                return existing;
+            }
+            customerIndex.putIfAbsent(customerId, loaded);
+            customers.add(loaded);
+            sourceAccounts.addAndGet(-loaded.getAccounts().size());
+            sourceBalance.addAndGet(-loaded.getTotalBalanceMinor());
+            loaded.attachTotals(bankTotals);
+            loaded.attachCheckpointGate(checkpointGate);
+            for (Account acc : loaded.getAccounts()) {
+                acc.attachJournal(journal);
+                accountIndex.putIfAbsent(acc.getAccountNumber(), acc);
+            }
+            return loaded;
+        } finally {
+            unlockRegistry(stamp);
+        }
+    }
+    
+    /**
+     * Loads every customer still in the customer source and drops it.
+     */
+    private void loadAllFromSource() {
+        CustomerSource from = source;
+        if (from != null) {
+            from.forEachCustomerId(this::getCustomer);
+            source = null;
+        }
+    }
+    
+    private Account materializeOwner(String accountNumber) {
+        CustomerSource from = source;
+        long owner = from == null ? -1 : from.findOwner(accountNumber);
+        if (owner < 0 || lookupCustomer(owner) != null) {
+            return accountIndex.get(accountNumber); // unknown, or loaded (and since closed, or just now)
+        }
+        materialize(owner);
+        return accountIndex.get(accountNumber);
+    }
+    
+    /**
+     * Takes the registry write lock in concurrent mode; a no-op otherwise.
+     */
+    private long lockRegistry() {
+        return registryLock == null ? 0L : registryLock.writeLock();
+    }
+    
+    private void unlockRegistry(long stamp) {
+        if (registryLock != null) {
+            registryLock.unlockWrite(stamp);
+        }
+    }
 }
@@ -0,0 +1,218 @@
+package org.banking.service;
+
+import org.banking.model.Account;
+import org.banking.model.BankingJournal;
+import org.banking.model.Customer;
+import org.banking.model.TransactionType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * JournalReplayer rebuilds BankingService state from journal records, for
+ * example those read back by WriteAheadLog.replay, on top of whatever the
+ * service already holds (typically a loaded snapshot).
+ *
+ * Postings carry their amount and resulting balance, so an account's balance
+ * after replay is its starting balance plus the sum of its postings, whatever
+ * order accounts are replayed in. Only records of the same account need to
+ * stay in log order. With a concurrent service the replayer therefore
+ * buffers records into partitions by account number and applies each buffer
+ * of BATCH records with the partitions in parallel; registrations are applied
+ * at once, since later records of every partition may depend on them. A
+ * transfer is split into its two legs, each replayed in its own account's
+ * partition.
+ *
+ * Call finish() after the last record. Not thread-safe: records must be fed
+ * from one thread, in log order.
+ */
+public class JournalReplayer implements BankingJournal {
+
+    static final int BATCH = 1 << 16;
+
+    private static final byte OP_CREATE = 1;
+    private static final byte OP_POST = 2;
+    private static final byte OP_CLOSE = 3;
+
+    private final BankingService service;
+    private final int partitions;
+    private final List<List<Op>> pending;
+    private final long[] applied;
+    private final long[] skipped;
+    private long registered;
+    private int buffered;
+
+    public JournalReplayer(BankingService service) {
+        this(service, service.isConcurrent() ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    /**
+     * partitions is the replay parallelism; values above 1 need a service in
+     * concurrent mode.
+     */
+    public JournalReplayer(BankingService service, int partitions) {
+        if (partitions < 1 || (partitions > 1 && !service.isConcurrent())) {
+            throw new IllegalArgumentException("parallel replay needs a BankingService in concurrent mode");
+        }
+        this.service = service;
+        this.partitions = partitions;
+        this.pending = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            pending.add(new ArrayList<>());
+        }
+        this.applied = new long[partitions];
+        this.skipped = new long[partitions];
+    }
+
+    @Override
+    public void customerRegistered(long customerId, String firstName, String lastName,
+                                   String email, String phone, String address) {
+        if (service.registerCustomer(new Customer(customerId, firstName, lastName, email, phone, address))) {
+            registered++;
+        }
+    }
+
+    @Override
+    public void accountCreated(long customerId, String accountNumber, String accountType,
+                               long balance, long minimumBalance, long interestRate) {
+        Op op = new Op(OP_CREATE, accountNumber);
+        op.customerId = customerId;
+        op.accountType = accountType;
+        op.amount = balance;
+        op.minimumBalance = minimumBalance;
+        op.interestRatePpm = interestRate;
+        add(op);
+    }
+
+    @Override
+    public void posted(String accountNumber, byte type, long amount, long balanceAfter, long timestampMicros) {
+        Op op = new Op(OP_POST, accountNumber);
+        op.type = type;
+        op.amount = amount;
+        op.balanceAfter = balanceAfter;
+        op.timestampMicros = timestampMicros;
+        add(op);
+    }
+
+    @Override
+    public void transferred(String fromAccountNumber, String toAccountNumber, long amount,
+                            long fromBalanceAfter, long toBalanceAfter, long timestampMicros) {
+        posted(fromAccountNumber, TransactionType.TRANSFER_OUT, amount, fromBalanceAfter, timestampMicros);
+        posted(toAccountNumber, TransactionType.TRANSFER_IN, amount, toBalanceAfter, timestampMicros);
+    }
+
+    @Override
+    public void accountClosed(long customerId, String accountNumber) {
+        Op op = new Op(OP_CLOSE, accountNumber);
+        op.customerId = customerId;
+        add(op);
+    }
+
+    /**
+     * Applies any buffered records. Call once the log has been read.
+     */
+    public void finish() {
+        if (buffered == 0) {
+            return;
+        }
+        if (partitions == 1) {
+            applyPartition(0);
+        } else {
+            IntStream.range(0, partitions).parallel().forEach(this::applyPartition);
+        }
+        buffered = 0;
+    }
+
+    /**
+     * Records applied, including registrations; transfers count once per leg.
+     */
+    public long getAppliedCount() {
+        long total = registered;
+        for (long n : applied) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Records that referred to an unknown customer or account and were ignored.
+     */
+    public long getSkippedCount() {
+        long total = 0;
+        for (long n : skipped) {
+            total += n;
+        }
+        return total;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    private void add(Op op) {
+        if (partitions == 1) {
+            apply(0, op);
+            return;
+        }
+        pending.get(Math.floorMod(op.accountNumber.hashCode(), partitions)).add(op);
+        if (++buffered >= BATCH) {
+            finish();
+        }
+    }
+
+    private void applyPartition(int partition) {
+        List<Op> ops = pending.get(partition);
+        for (int i = 0; i < ops.size(); i++) {
+            apply(partition, ops.get(i));
+        }
+        ops.clear();
+    }
+
+    private void apply(int partition, Op op) {
+        boolean ok;
+        switch (op.kind) {
+            case OP_CREATE:
+                ok = service.restoreAccount(Account.restore(op.accountNumber, op.accountType, op.customerId,
+                                                            op.amount, op.minimumBalance, op.interestRatePpm,
+                                                            service.newHistory()));
+                break;
+            case OP_POST:
+                Account account = service.getAccount(op.accountNumber);
+                ok = account != null;
+                if (ok) {
+                    account.restorePosting(op.type, op.amount, op.balanceAfter, op.timestampMicros);
+                }
+                break;
+            default:
+                ok = service.restoreClose(op.customerId, op.accountNumber);
+                break;
+        }
+        if (ok) {
+            applied[partition]++;
+        } else {
+            skipped[partition]++;
+        }
+    }
+
+    /**
+     * One buffered record. For OP_CREATE, amount is the opening balance.
+     */
+    private static final class Op {
+        final byte kind;
+        final String accountNumber;
+        byte type;
+        long customerId;
+        String accountType;
+        long amount;
+        long balanceAfter;
+        long timestampMicros;
+        long minimumBalance;
+        long interestRatePpm;
+
+        Op(byte kind, String accountNumber) {
+            this.kind = kind;
+            this.accountNumber = accountNumber;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.banking.service;
+
+import org.banking.model.Account;
+import org.banking.model.HistoryView;
+import org.banking.model.TransactionType;
+import org.banking.utils.Money;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * StatementRenderer streams transaction history as statement lines in the
+ * same format as Transaction.toString():
+ *
+ *   [2024-03-15 10:30:45] DEPOSIT: Amount=100.00, Balance=1100.00
+ *
+ * Entries are copied out of the history in blocks, formatted into a reused
+ * char buffer with hand-rolled date and number formatting, and written to
+ * the Writer a buffer at a time, so no Transaction, String or formatter is
+ * created per line. The local date and time prefix is cached per minute, so
+ * the time-zone lookup runs at most once per distinct minute.
+ *
+ * A renderer is reusable but not thread-safe.
+ */
+public class StatementRenderer {
+
+    private static final int BLOCK = 1024;
+    private static final int FLUSH_AT = 8192;
+    private static final char[] AMOUNT = ": Amount=".toCharArray();
+    private static final char[] BALANCE = ", Balance=".toCharArray();
+
+    private final ZoneRules zoneRules;
+    private final char[] lineSeparator;
+    private final StringBuilder buffer;
+    private final byte[] types;
+    private final long[] amounts;
+    private final long[] balances;
+    private final long[] timestamps;
+    private final char[][] typeNames;
+
+    // "[yyyy-MM-dd HH:mm:" for cachedMinute (epoch minutes, UTC)
+    private final char[] minutePrefix;
+    private long cachedMinute;
+    private int minuteOffsetSeconds;
+
+    public StatementRenderer() {
+        this(ZoneId.systemDefault());
+    }
+
+    public StatementRenderer(ZoneId zone) {
+        this.zoneRules = zone.getRules();
+        this.lineSeparator = System.lineSeparator().toCharArray();
+        this.buffer = new StringBuilder(FLUSH_AT + 256);
+        this.types = new byte[BLOCK];
+        this.amounts = new long[BLOCK];
+        this.balances = new long[BLOCK];
+        this.timestamps = new long[BLOCK];
+        this.typeNames = new char[TransactionType.MONTHLY_CHARGE + 1][];
+        for (int i = 0; i < typeNames.length; i++) {
+            typeNames[i] = TransactionType.nameOf((byte) i).toCharArray();
+        }
+        this.minutePrefix = new char[18];
+        this.cachedMinute = Long.MIN_VALUE;
+    }
+
+    /**
+     * Writes every retained entry of the account's history.
+     */
+    public void render(Account account, Writer out) throws IOException {
+        HistoryView history = account.getTransactions();
+        render(history, 0, history.size(), out);
+    }
+
+    /**
+     * Writes entries [from, to) of the view, oldest first, and flushes the
+     * renderer's buffer to out (out itself is not flushed or closed).
+     */
+    public void render(HistoryView history, int from, int to, Writer out) throws IOException {
+        buffer.setLength(0);
+        int index = from;
+        while (index < to) {
+            int count = Math.min(history.read(index, types, amounts, balances, timestamps), to - index);
+            if (count == 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                appendLine(buffer, types[i], amounts[i], balances[i], timestamps[i]);
+                buffer.append(lineSeparator);
+                if (buffer.length() >= FLUSH_AT) {
+                    out.append(buffer);
+                    buffer.setLength(0);
+                }
+            }
+            index += count;
+        }
+        if (buffer.length() > 0) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Appends all entries of the view to sb, one line each.
+     */
+    public StringBuilder renderTo(HistoryView history, StringBuilder sb) {
+        int index = 0;
+        int size = history.size();
+        while (index < size) {
+            int count = Math.min(history.read(index, types, amounts, balances, timestamps), size - index);
+            if (count == 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                appendLine(sb, types[i], amounts[i], balances[i], timestamps[i]);
+                sb.append(lineSeparator);
+            }
+            index += count;
+        }
+        return sb;
+    }
+
+    /**
+     * Appends a single statement line, without a line separator.
+     */
+    public StringBuilder appendLine(StringBuilder sb, byte type, long amount, long balanceAfter, long timestampMicros) {
+        long epochSecond = Math.floorDiv(timestampMicros, 1_000_000L);
+        long minute = Math.floorDiv(epochSecond, 60L);
+        if (minute != cachedMinute) {
+            cacheMinute(minute);
+        }
+        int second = (int) Math.floorMod(epochSecond + minuteOffsetSeconds, 60L);
+        sb.append(minutePrefix);
+        append2(sb, second).append(']').append(' ');
+        char[] name = (type >= 0 && type < typeNames.length) ? typeNames[type] : typeNames[TransactionType.UNKNOWN];
+        sb.append(name).append(AMOUNT);
+        Money.appendTo(sb, amount).append(BALANCE);
+        return Money.appendTo(sb, balanceAfter);
+    }
+
+    private void cacheMinute(long minute) {
+        long epochSecond = minute * 60L;
+        int offset = zoneRules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        long local = epochSecond + offset;
+        long day = Math.floorDiv(local, 86_400L);
+        int secondOfDay = (int) Math.floorMod(local, 86_400L);
+        // Civil date from days since 1970-01-01 (Howard Hinnant's algorithm).
+        long z = day + 719_468L;
+        long era = Math.floorDiv(z, 146_097L);
+        long doe = z - era * 146_097L;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146_096L) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int dayOfMonth = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] p = minutePrefix;
+        p[0] = '[';
+        int y = (int) year;
+        p[1] = (char) ('0' + (y / 1000) % 10);
+        p[2] = (char) ('0' + (y / 100) % 10);
+        p[3] = (char) ('0' + (y / 10) % 10);
+        p[4] = (char) ('0' + y % 10);
+        p[5] = '-';
+        put2(p, 6, month);
+        p[8] = '-';
+        put2(p, 9, dayOfMonth);
+        p[11] = ' ';
+        put2(p, 12, secondOfDay / 3600);
+        p[14] = ':';
+        put2(p, 15, (secondOfDay / 60) % 60);
+        p[17] = ':';
+        cachedMinute = minute;
+        minuteOffsetSeconds = offset;
+    }
+
+    private static void put2(char[] p, int at, int value) {
+        p[at] = (char) ('0' + value / 10);
+        p[at + 1] = (char) ('0' + value % 10);
+    }
+
+    private static StringBuilder append2(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,470 @@
+package org.banking.service;
+
+import org.banking.model.Account;
+import org.banking.model.NotDurableException;
+import org.banking.model.TransactionType;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TransactionPipeline is an asynchronous front end to BankingService.
+ *
+ * Accounts are partitioned into shards by account number. Each shard owns a
+ * preallocated ring buffer of command slots and exactly one consumer thread,
+ * which is the only thread that applies pipeline commands to that shard's
+ * accounts, so commands never wait on account locks. Callers publish a
+ * command into the owning shard's ring and are notified through a Completion
+ * callback (or a CompletableFuture).
+ *
+ * Transfers are applied in two legs. The source shard debits the source
+ * account; if the target lives on another shard, the credit leg is handed off
+ * through that shard's inbox. If the credit leg fails (target closed or
+ * deactivated in the meantime) a refund is handed back to the source shard
+ * and the transfer completes with false. The journal records a transfer once,
+ * when its credit leg is in, so a crash between the legs loses neither.
+ *
+ * Accounts the service keeps in account slots (see
+ * BankingService.setAccountSlots) are not Account objects. Commands on them
+ * are applied through the service, which swaps their balances without
+ * locking, on the shard of the command's account number; a transfer with
+ * one side in the slots runs both its legs on the source shard.
+ *
+ * A command whose operation throws completes with false, and the shard goes
+ * on with the next one. With a journal set on the service, a command that
+ * changed anything commits the journal before it completes, so a completion
+ * reports a change as durable as BankingService's own calls do. A change the
+ * journal fails to make durable completes through Completion.onNotDurable
+ * (the future completes exceptionally with the NotDurableException).
+ *
+ * The service must be in concurrent mode, since consumer threads resolve
+ * accounts while other threads may register customers.
+ */
+public class TransactionPipeline implements AutoCloseable {
+
+    /**
+     * Callback invoked on a shard consumer thread when a command finishes.
+     * Implementations should be short and must not block.
+     */
+    public interface Completion {
+        void onComplete(boolean success);
+
+        /**
+         * Called instead of onComplete when the command was applied but the
+         * journal failed to make it durable; it must not be retried. By
+         * default reported as onComplete(false).
+         */
+        default void onNotDurable(NotDurableException e) {
+            onComplete(false);
+        }
+    }
+
+    private static final byte OP_TRANSFER = 100; // debit leg, on the source shard
+    private static final byte OP_CREDIT = 101;   // credit leg, on the target shard
+    private static final byte OP_REFUND = 102;   // credit leg failed, back on the source shard
+
+    private static final int SPINS_BEFORE_PARK = 200;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final BankingService service;
+    private final Shard[] shards;
+    private final LongAdder inFlight;
+    private volatile boolean running;
+
+    public TransactionPipeline(BankingService service, int shardCount, int ringSize) {
+        if (service == null || !service.isConcurrent()) {
+            throw new IllegalArgumentException("TransactionPipeline requires a BankingService in concurrent mode");
+        }
+        if (shardCount <= 0 || ringSize <= 0) {
+            throw new IllegalArgumentException("shardCount and ringSize must be positive");
+        }
+        this.service = service;
+        this.inFlight = new LongAdder();
+        this.shards = new Shard[shardCount];
+        int capacity = 1;
+        while (capacity < ringSize) {
+            capacity <<= 1;
+        }
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, capacity);
+        }
+    }
+
+    public void start() {
+        running = true;
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Stops accepting work once every submitted command (including pending
+     * cross-shard handoffs) has completed, then waits for consumers to exit.
+     * If interrupted while waiting, returns with the interrupt flag set.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void deposit(String accountNumber, long amount, Completion completion) {
+        publish(TransactionType.DEPOSIT, accountNumber, null, amount, completion);
+    }
+
+    public void withdraw(String accountNumber, long amount, Completion completion) {
+        publish(TransactionType.WITHDRAWAL, accountNumber, null, amount, completion);
+    }
+
+    public void applyMonthlyCharge(String accountNumber, long charge, Completion completion) {
+        publish(TransactionType.MONTHLY_CHARGE, accountNumber, null, charge, completion);
+    }
+
+    public void applyInterest(String accountNumber, Completion completion) {
+        publish(TransactionType.INTEREST, accountNumber, null, 0L, completion);
+    }
+
+    public void transfer(String fromAccountNumber, String toAccountNumber, long amount, Completion completion) {
+        publish(OP_TRANSFER, fromAccountNumber, toAccountNumber, amount, completion);
+    }
+
+    /**
+     * Future-returning variant; type is a TransactionType code (DEPOSIT,
+     * WITHDRAWAL, MONTHLY_CHARGE, INTEREST) or TRANSFER_OUT for a transfer.
+     */
+    public CompletableFuture<Boolean> submit(byte type, String accountNumber, String targetAccountNumber, long amount) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        byte op = (type == TransactionType.TRANSFER_OUT) ? OP_TRANSFER : type;
+        publish(op, accountNumber, targetAccountNumber, amount, new Completion() {
+            @Override
+            public void onComplete(boolean success) {
+                future.complete(success);
+            }
+
+            @Override
+            public void onNotDurable(NotDurableException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public int shardFor(String accountNumber) {
+        int h = (accountNumber == null) ? 0 : accountNumber.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7FFFFFFF) % shards.length;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    private void publish(byte op, String accountNumber, String targetAccountNumber, long amount, Completion completion) {
+        // Count first so a concurrent close() cannot retire consumers under us.
+        inFlight.increment();
+        if (!running) {
+            inFlight.decrement();
+            throw new IllegalStateException("TransactionPipeline is not running");
+        }
+        shards[shardFor(accountNumber)].publish(op, accountNumber, targetAccountNumber, amount, completion);
+    }
+
+    private void complete(Completion completion, boolean success) {
+        try {
+            if (completion != null) {
+                completion.onComplete(success);
+            }
+        } catch (RuntimeException e) {
+            // A failing callback must not take the shard's consumer thread down.
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    private void completeNotDurable(Completion completion, NotDurableException failure) {
+        try {
+            if (completion != null) {
+                completion.onNotDurable(failure);
+            }
+        } catch (RuntimeException e) {
+            // As in complete.
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    /**
+     * Preallocated ring slot. Fields are written by the claiming producer
+     * before the volatile sequence store that publishes the slot.
+     */
+    private static final class Slot {
+        volatile long sequence = -1L;
+        byte op;
+        String accountNumber;
+        String targetAccountNumber;
+        long amount;
+        Completion completion;
+    }
+
+    /**
+     * Cross-shard message for the credit or refund leg of a transfer. For a
+     * credit, debitedBalance is the source's balance after the debit leg.
+     */
+    private static final class Handoff {
+        final byte op;
+        final Account account;
+        final Account counterparty;
+        final long amount;
+        final long debitedBalance;
+        final Completion completion;
+
+        Handoff(byte op, Account account, Account counterparty, long amount, long debitedBalance,
+                Completion completion) {
+            this.op = op;
+            this.account = account;
+            this.counterparty = counterparty;
+            this.amount = amount;
+            this.debitedBalance = debitedBalance;
+            this.completion = completion;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        private final Slot[] slots;
+        private final int mask;
+        private final AtomicLong claimed;    // next sequence to hand to a producer
+        private volatile long consumed;      // next sequence the consumer will read
+        // Handoffs are unbounded so two shards handing off to each other with
+        // full rings cannot deadlock; only cross-shard transfers use it.
+        private final ConcurrentLinkedQueue<Handoff> inbox;
+        private final Thread thread;
+
+        Shard(int index, int capacity) {
+            this.slots = new Slot[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Slot();
+            }
+            this.mask = capacity - 1;
+            this.claimed = new AtomicLong();
+            this.inbox = new ConcurrentLinkedQueue<>();
+            this.thread = new Thread(this, "pipeline-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void publish(byte op, String accountNumber, String targetAccountNumber, long amount, Completion completion) {
+            long sequence = claimed.getAndIncrement();
+            int spins = 0;
+            while (sequence - consumed >= slots.length) {
+                // Ring is full: back off until the consumer frees the slot.
+                spins = backOff(spins);
+            }
+            Slot slot = slots[(int) sequence & mask];
+            slot.op = op;
+            slot.accountNumber = accountNumber;
+            slot.targetAccountNumber = targetAccountNumber;
+            slot.amount = amount;
+            slot.completion = completion;
+            slot.sequence = sequence;
+            if (spins > 0 || sequence == consumed) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void handOff(Handoff handoff) {
+            inbox.add(handoff);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            long next = 0L;
+            int idle = 0;
+            while (true) {
+                boolean worked = false;
+                Handoff handoff;
+                while ((handoff = inbox.poll()) != null) {
+                    applyHandoff(handoff);
+                    worked = true;
+                }
+                Slot slot = slots[(int) next & mask];
+                if (slot.sequence == next) {
+                    byte op = slot.op;
+                    String accountNumber = slot.accountNumber;
+                    String targetAccountNumber = slot.targetAccountNumber;
+                    long amount = slot.amount;
+                    Completion completion = slot.completion;
+                    slot.accountNumber = null;
+                    slot.targetAccountNumber = null;
+                    slot.completion = null;
+                    consumed = ++next;
+                    apply(op, accountNumber, targetAccountNumber, amount, completion);
+                    worked = true;
+                }
+                if (worked) {
+                    idle = 0;
+                    continue;
+                }
+                if (!running && inFlight.sum() == 0) {
+                    return;
+                }
+                idle = backOff(idle);
+            }
+        }
+
+        private void apply(byte op, String accountNumber, String targetAccountNumber, long amount, Completion completion) {
+            try {
+                Account account = service.getAccount(accountNumber);
+                if (account == null) {
+                    applyToSlot(op, accountNumber, targetAccountNumber, amount, completion);
+                    return;
+                }
+                switch (op) {
+                    case TransactionType.DEPOSIT:
+                        finish(completion, account.depositMinor(amount));
+                        break;
+                    case TransactionType.WITHDRAWAL:
+                        finish(completion, account.withdrawMinor(amount));
+                        break;
+                    case TransactionType.MONTHLY_CHARGE:
+                        finish(completion, account.applyMonthlyChargeMinor(amount));
+                        break;
+                    case TransactionType.INTEREST:
+                        account.calculateInterestMinor();
+                        finish(completion, true);
+                        break;
+                    case OP_TRANSFER:
+                        startTransfer(account, targetAccountNumber, amount, completion);
+                        break;
+                    default:
+                        complete(completion, false);
+                        break;
+                }
+            } catch (RuntimeException e) {
+                // Fail the command, not the shard: this thread is the only one draining its ring.
+                complete(completion, false);
+            }
+        }
+
+        /**
+         * Applies a command whose account is not an Account object, which it
+         * is if it lives in the service's account slots.
+         */
+        private void applyToSlot(byte op, String accountNumber, String targetAccountNumber, long amount,
+                                 Completion completion) {
+            switch (op) {
+                case TransactionType.DEPOSIT:
+                case TransactionType.WITHDRAWAL:
+                case TransactionType.MONTHLY_CHARGE:
+                case TransactionType.INTEREST:
+                    finish(completion, service.postToSlot(accountNumber, op, amount));
+                    break;
+                case OP_TRANSFER:
+                    finish(completion, service.transferSlots(null, accountNumber,
+                                                             service.getAccount(targetAccountNumber),
+                                                             targetAccountNumber, amount));
+                    break;
+                default:
+                    complete(completion, false);
+                    break;
+            }
+        }
+
+        /**
+         * Commits the service's journal if the command changed anything,
+         * then completes it. A change the journal failed to make durable
+         * completes through onNotDurable.
+         */
+        private void finish(Completion completion, boolean success) {
+            boolean committed;
+            try {
+                committed = service.committed(success);
+            } catch (NotDurableException e) {
+                completeNotDurable(completion, e);
+                return;
+            } catch (RuntimeException e) {
+                committed = false;
+            }
+            complete(completion, committed);
+        }
+
+        private void startTransfer(Account source, String targetAccountNumber, long amount, Completion completion) {
+            Account target = service.getAccount(targetAccountNumber);
+            if (target == null) {
+                finish(completion, service.transferSlots(source, source.getAccountNumber(), null,
+                                                         targetAccountNumber, amount));
+                return;
+            }
+            if (amount > service.getDailyTransferLimitMinor() || !target.isActive()) {
+                complete(completion, false);
+                return;
+            }
+            long debited = source.transferOutMinor(amount);
+            if (debited == Account.REFUSED) {
+                complete(completion, false);
+                return;
+            }
+            Shard targetShard = shards[shardFor(targetAccountNumber)];
+            Handoff credit = new Handoff(OP_CREDIT, target, source, amount, debited, completion);
+            if (targetShard == this) {
+                applyHandoff(credit);
+            } else {
+                targetShard.handOff(credit);
+            }
+        }
+
+        private void applyHandoff(Handoff handoff) {
+            if (handoff.op == OP_CREDIT) {
+                long credited;
+                try {
+                    credited = handoff.account.transferInMinor(handoff.amount);
+                } catch (RuntimeException e) {
+                    credited = Account.REFUSED;
+                }
+                if (credited != Account.REFUSED) {
+                    service.journalTransfer(handoff.counterparty.getAccountNumber(),
+                                            handoff.account.getAccountNumber(), handoff.amount,
+                                            handoff.debitedBalance, credited);
+                    finish(handoff.completion, true);
+                    return;
+                }
+                Handoff refund = new Handoff(OP_REFUND, handoff.counterparty, handoff.account,
+                                             handoff.amount, 0, handoff.completion);
+                Shard sourceShard = shards[shardFor(handoff.counterparty.getAccountNumber())];
+                if (sourceShard == this) {
+                    applyHandoff(refund);
+                } else {
+                    sourceShard.handOff(refund);
+                }
+            } else {
+                // Refund bypasses the active check: the money must go back.
+                try {
+                    handoff.account.reverseTransferOutMinor(handoff.amount);
+                } catch (RuntimeException e) {
+                    // Nothing left to try; the transfer still completes, with false.
+                }
+                complete(handoff.completion, false);
+            }
+        }
+    }
+
+    private static int backOff(int spins) {
+        if (spins < SPINS_BEFORE_PARK) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return spins + 1;
+    }
+}
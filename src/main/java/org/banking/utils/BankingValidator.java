@@ -5,6 +5,8 @@ package org.banking.utils;
  */
 public class BankingValidator {
     
+    private static final long MAX_AMOUNT = Money.ofUnits(1000000); // minor units
+    
     public static boolean isValidEmail(String email) {
         if (email == null || email.isEmpty()) {
             return false;
@@ -27,7 +29,11 @@ public class BankingValidator {
     }
     
     public static boolean isValidAmount(double amount) {
-        return amount > 0 && amount <= 1000000.0;
+        return isValidAmountMinor(Money.of(amount));
+    }
+    
+    public static boolean isValidAmountMinor(long amount) {
+        return amount > 0 && amount <= MAX_AMOUNT;
     }
     
     public static boolean isValidCustomerId(long customerId) {
@@ -0,0 +1,100 @@
+package org.banking.utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EpochClock is the time source for transaction timestamps, which are stored
+ * as primitive microseconds since the epoch (UTC).
+ *
+ * In precise mode (the default) every read asks the system clock. In coarse
+ * mode a daemon ticker thread refreshes a cached value every tick and reads
+ * are a single volatile load, at the cost of timestamps being up to one tick
+ * stale. Deployments choose the mode with -Dbanking.clock=coarse (tick length
+ * -Dbanking.clock.tickMicros, default 1000) or at runtime with useCoarse and
+ * usePrecise.
+ */
+public final class EpochClock {
+
+    public static final long DEFAULT_TICK_MICROS = 1_000L;
+
+    private static volatile boolean coarse;
+    private static volatile long coarseMicros;
+    private static Thread ticker;
+
+    static {
+        if ("coarse".equalsIgnoreCase(System.getProperty("banking.clock"))) {
+            useCoarse(Long.getLong("banking.clock.tickMicros", DEFAULT_TICK_MICROS));
+        }
+    }
+
+    private EpochClock() {
+    }
+
+    /**
+     * Current time in epoch microseconds, from the cache in coarse mode.
+     */
+    public static long nowMicros() {
+        return coarse ? coarseMicros : preciseMicros();
+    }
+
+    public static long preciseMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    /**
+     * Switches to coarse mode, (re)starting the ticker with the given period.
+     */
+    public static synchronized void useCoarse(long tickMicros) {
+        if (tickMicros <= 0) {
+            throw new IllegalArgumentException("tickMicros must be positive");
+        }
+        stopTicker();
+        coarseMicros = preciseMicros();
+        long tickNanos = tickMicros * 1_000L;
+        Thread t = new Thread(() -> {
+            Thread self = Thread.currentThread();
+            while (!self.isInterrupted()) {
+                LockSupport.parkNanos(tickNanos);
+                coarseMicros = preciseMicros();
+            }
+        }, "epoch-clock-ticker");
+        t.setDaemon(true);
+        t.start();
+        ticker = t;
+        coarse = true;
+    }
+
+    /**
+     * Switches to precise mode and stops the ticker.
+     */
+    public static synchronized void usePrecise() {
+        coarse = false;
+        stopTicker();
+    }
+
+    public static boolean isCoarse() {
+        return coarse;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMicros) {
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                                                Math.floorMod(epochMicros, 1_000_000L) * 1_000L);
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    public static long toEpochMicros(LocalDateTime time) {
+        Instant instant = time.atZone(ZoneId.systemDefault()).toInstant();
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000L);
+    }
+
+    private static void stopTicker() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.banking.utils;
+
+/**
+ * LongHashIndex is an open-addressing hash map keyed by primitive longs.
+ * Keys are stored unboxed in a long[] and probed linearly, so lookups do not
+ * allocate. Null values are not supported; a null slot marks an empty bucket.
+ */
+public class LongHashIndex<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public LongHashIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashIndex(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(expectedSize, 1));
+        allocate(capacity);
+    }
+
+    /**
+     * Looks up the value for the key. Reads the tables into locals and never
+     * probes past their bounds, so a racing writer can at worst produce a
+     * stale answer; callers doing optimistic reads must validate afterwards.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long[] keyTable = keys;
+        Object[] valueTable = values;
+        if (keyTable.length != valueTable.length) {
+            return null; // torn read across a resize
+        }
+        int tableMask = valueTable.length - 1;
+        int index = indexFor(key, tableMask);
+        for (int probes = 0; probes <= tableMask; probes++) {
+            Object value = valueTable[index];
+            if (value == null) {
+                return null;
+            }
+            if (keyTable[index] == key) {
+                return (V) value;
+            }
+            index = (index + 1) & tableMask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores the value only if no mapping exists for the key.
+     * Returns true when the value was inserted.
+     */
+    public boolean putIfAbsent(long key, V value) {
+        if (value == null) {
+            return false;
+        }
+        int index = indexFor(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the mapping for the key, shifting later entries of the probe
+     * chain back so no tombstones are needed.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = indexFor(key);
+        Object value;
+        while ((value = values[index]) != null) {
+            if (keys[index] == key) {
+                shiftBack(index);
+                size--;
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            Object value = values[index];
+            if (value == null) {
+                break;
+            }
+            int home = indexFor(keys[index]);
+            // Move the entry into the gap if the gap lies on its probe path.
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = value;
+                gap = index;
+            }
+        }
+        values[gap] = null;
+        keys[gap] = 0L;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                int index = indexFor(oldKeys[i]);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexFor(long key) {
+        return indexFor(key, mask);
+    }
+
+    private static int indexFor(long key, int tableMask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & tableMask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / LOAD_FACTOR);
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,139 @@
+package org.banking.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Money provides fixed-point arithmetic on amounts held as primitive longs of
+ * minor units (cents). Nothing here allocates, and overflow throws
+ * ArithmeticException instead of silently wrapping.
+ *
+ * Rates (interest) are held as longs in parts per million so that interest
+ * can be computed with integer math and rounded half-even, which gives the
+ * same result on every run and every JVM.
+ */
+public final class Money {
+
+    public static final long MINOR_PER_UNIT = 100;
+    public static final long RATE_SCALE = 1_000_000;
+
+    // Account balances share a long with a flag bit, which limits them to +/-2^62.
+    public static final long MAX_BALANCE = Long.MAX_VALUE >> 1;
+    public static final long MIN_BALANCE = Long.MIN_VALUE >> 1;
+    public static final long OUT_OF_RANGE = Long.MIN_VALUE; // addToBalance: the result is not a balance
+
+    private Money() {
+    }
+
+    /**
+     * Converts a decimal amount to minor units, rounding to the nearest cent.
+     */
+    public static long of(double amount) {
+        return Math.round(amount * MINOR_PER_UNIT);
+    }
+
+    public static long ofUnits(long units) {
+        return Math.multiplyExact(units, MINOR_PER_UNIT);
+    }
+
+    public static double toDouble(long minor) {
+        return (double) minor / MINOR_PER_UNIT;
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Whether an amount lies within [MIN_BALANCE, MAX_BALANCE].
+     */
+    public static boolean isBalance(long minor) {
+        return minor >= MIN_BALANCE && minor <= MAX_BALANCE;
+    }
+
+    /**
+     * Returns balance + delta, or OUT_OF_RANGE if that is not a balance.
+     * balance must be one; delta may be any long, as nothing overflows.
+     */
+    public static long addToBalance(long balance, long delta) {
+        if (delta >= 0 ? delta > MAX_BALANCE - balance : delta < MIN_BALANCE - balance) {
+            return OUT_OF_RANGE;
+        }
+        return balance + delta;
+    }
+
+    public static long rateOf(double rate) {
+        return Math.round(rate * RATE_SCALE);
+    }
+
+    public static double rateToDouble(long rate) {
+        return (double) rate / RATE_SCALE;
+    }
+
+    /**
+     * Returns amount * rate / periods in minor units, rounded half-even.
+     * For monthly interest on an annual rate pass periods = 12. The product
+     * is exact even where it does not fit a long (it is then computed with
+     * BigDecimal); only a result that does not fit one throws.
+     */
+    public static long applyRate(long amount, long rate, long periods) {
+        long divisor = Math.multiplyExact(RATE_SCALE, periods);
+        long high = Math.multiplyHigh(amount, rate);
+        long low = amount * rate;
+        if (high == (low >> 63)) {
+            return divideHalfEven(low, divisor);
+        }
+        return new BigDecimal(BigInteger.valueOf(amount).multiply(BigInteger.valueOf(rate)))
+            .divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN)
+            .longValueExact();
+    }
+
+    /**
+     * Integer division rounded half-even (banker's rounding). Divisor must be positive.
+     */
+    public static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long twice = Math.abs(remainder) * 2;
+        boolean roundAway = twice > divisor || (twice == divisor && (quotient & 1) != 0);
+        if (!roundAway) {
+            return quotient;
+        }
+        return dividend < 0 ? quotient - 1 : quotient + 1;
+    }
+
+    /**
+     * Appends the amount as a plain decimal with two fraction digits, e.g. "-12.05".
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long minor) {
+        if (minor < 0) {
+            sb.append('-');
+            if (minor == Long.MIN_VALUE) {
+                // -Long.MIN_VALUE overflows; peel off the last digit first.
+                return appendUnsigned(sb, Long.MAX_VALUE / MINOR_PER_UNIT, (Long.MAX_VALUE % MINOR_PER_UNIT) + 1);
+            }
+            minor = -minor;
+        }
+        return appendUnsigned(sb, minor / MINOR_PER_UNIT, minor % MINOR_PER_UNIT);
+    }
+
+    private static StringBuilder appendUnsigned(StringBuilder sb, long units, long cents) {
+        sb.append(units).append('.');
+        if (cents < 10) {
+            sb.append('0');
+        }
+        return sb.append(cents);
+    }
+
+    public static String format(long minor) {
+        return appendTo(new StringBuilder(24), minor).toString();
+    }
+}
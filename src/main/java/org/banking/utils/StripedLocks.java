@@ -0,0 +1,76 @@
+package org.banking.utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StripedLocks maps keys (account numbers) onto a fixed pool of locks.
+ * Two keys that land on the same stripe share a lock, which keeps memory
+ * bounded while still letting unrelated accounts proceed in parallel.
+ *
+ * Pairs of keys are always locked in ascending stripe order, so two threads
+ * locking the same pair from opposite ends cannot deadlock.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public int stripeFor(String key) {
+        int h = (key == null) ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    public void lock(String key) {
+        locks[stripeFor(key)].lock();
+    }
+
+    public void unlock(String key) {
+        locks[stripeFor(key)].unlock();
+    }
+
+    /**
+     * Locks the stripes of both keys in canonical (ascending stripe) order.
+     * If both keys share a stripe it is locked only once.
+     */
+    public void lockBoth(String first, String second) {
+        int a = stripeFor(first);
+        int b = stripeFor(second);
+        if (a == b) {
+            locks[a].lock();
+        } else if (a < b) {
+            locks[a].lock();
+            locks[b].lock();
+        } else {
+            locks[b].lock();
+            locks[a].lock();
+        }
+    }
+
+    public void unlockBoth(String first, String second) {
+        int a = stripeFor(first);
+        int b = stripeFor(second);
+        locks[a].unlock();
+        if (a != b) {
+            locks[b].unlock();
+        }
+    }
+
+    public int getStripeCount() {
+        return locks.length;
+    }
+}
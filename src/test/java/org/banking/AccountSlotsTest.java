@@ -0,0 +1,356 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.banking.model.Account;
+import org.banking.model.AccountSlots;
+import org.banking.model.CheckpointGate;
+import org.banking.model.Customer;
+import org.banking.model.TransactionBatch;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+import org.banking.service.JournalReplayer;
+import org.banking.utils.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AccountSlotsTest {
+
+    private static BankingService bank(AccountSlots slots, int customers) {
+        BankingService service = new BankingService(true);
+        service.setAccountSlots(slots);
+        for (int c = 1; c <= customers; c++) {
+            service.registerCustomer(new Customer(c, "First" + c, "Last" + c));
+        }
+        return service;
+    }
+
+    @Test
+    public void testPostingsFollowAccountRules() {
+        AccountSlots slots = new AccountSlots(16);
+        int slot = slots.open("S1", "SAVINGS", 7, Money.ofUnits(1000), Money.ofUnits(100), Money.rateOf(0.12));
+        assertEquals(slot, slots.find("S1"));
+        assertEquals(-1, slots.find("S2"));
+        assertEquals(7, slots.getCustomerId(slot));
+        assertEquals("SAVINGS", slots.getAccountType(slot));
+        assertEquals("S1", slots.getAccountNumber(slot));
+
+        assertTrue(slots.post("S1", TransactionType.DEPOSIT, Money.ofUnits(200)));
+        assertFalse(slots.post("S1", TransactionType.DEPOSIT, 0));
+        assertFalse(slots.post("S1", TransactionType.WITHDRAWAL, Money.ofUnits(1101)));
+        assertTrue(slots.post("S1", TransactionType.WITHDRAWAL, Money.ofUnits(1100)));
+        assertFalse(slots.post("S1", TransactionType.MONTHLY_CHARGE, Money.ofUnits(101)));
+        assertTrue(slots.post("S1", TransactionType.MONTHLY_CHARGE, Money.ofUnits(100)));
+        assertEquals(0, slots.getBalanceMinor(slot));
+        assertEquals(0, slots.addInterest("S1"));
+
+        slots.post("S1", TransactionType.DEPOSIT, Money.ofUnits(1000));
+        assertEquals(Money.ofUnits(10), slots.addInterest("S1"));
+        assertEquals(Money.ofUnits(1010), slots.getBalanceMinor(slot));
+        assertEquals(Money.ofUnits(1010), slots.getTotalBalanceMinor());
+        assertEquals(1, slots.getAccountCount());
+    }
+
+    @Test
+    public void testPostingsStayInBalanceRange() {
+        AccountSlots slots = new AccountSlots(4);
+        int full = slots.open("F1", "SAVINGS", 1, Money.MAX_BALANCE - 1, 0, Money.rateOf(0.12));
+        int low = slots.open("L1", "CREDIT", 1, Money.MIN_BALANCE, Money.MIN_BALANCE, 0);
+        assertTrue(slots.post("F1", TransactionType.DEPOSIT, 1));
+        assertFalse(slots.post("F1", TransactionType.DEPOSIT, 1));
+        assertEquals(AccountSlots.REFUSED, slots.transferIn("F1", Long.MAX_VALUE));
+        assertEquals(0, slots.addInterest("F1"));
+        assertFalse(slots.post("L1", TransactionType.WITHDRAWAL, 1));
+        assertFalse(slots.post("L1", TransactionType.MONTHLY_CHARGE, Long.MAX_VALUE));
+        assertEquals(Money.MAX_BALANCE, slots.getBalanceMinor(full));
+        assertEquals(Money.MIN_BALANCE, slots.getBalanceMinor(low));
+
+        BankingService service = bank(new AccountSlots(4), 1);
+        assertFalse(service.createAccount(1, "S1", "SAVINGS", 1e17));
+        assertTrue(service.createAccount(1, "S1", "SAVINGS", 1000));
+        assertFalse(service.processTransaction("S1", "DEPOSIT", 1e300));
+        assertEquals(1000.0, service.getAccountBalance("S1"), 0.001);
+    }
+
+    @Test
+    public void testClosedSlotIsReusedForItsNumber() {
+        AccountSlots slots = new AccountSlots(2);
+        int a = slots.open("A", "CHECKING", 1, 500, 0, 0);
+        assertEquals(AccountSlots.TAKEN, slots.open("A", "CHECKING", 1, 500, 0, 0));
+        slots.open("B", "CHECKING", 1, 700, 0, 0);
+        assertEquals(AccountSlots.NO_ROOM, slots.open("C", "CHECKING", 1, 100, 0, 0));
+        assertEquals(1200, slots.getTotalBalanceMinor());
+
+        assertFalse(slots.close("A"));
+        assertTrue(slots.post("A", TransactionType.WITHDRAWAL, 500));
+        assertTrue(slots.close("A"));
+        assertFalse(slots.close("A"));
+        assertEquals(-1, slots.find("A"));
+        assertFalse(slots.post("A", TransactionType.DEPOSIT, 10));
+        assertEquals(700, slots.getTotalBalanceMinor());
+        assertEquals(1, slots.getAccountCount());
+
+        assertEquals(a, slots.open("A", "CREDIT", 2, 300, 0, 0));
+        assertEquals("CREDIT", slots.getAccountType(a));
+        assertEquals(2, slots.getCustomerId(a));
+        assertEquals(1000, slots.getTotalBalanceMinor());
+        assertEquals(700, slots.getCustomerBalanceMinor(1));
+        assertEquals(300, slots.getCustomerBalanceMinor(2));
+        assertEquals(0, slots.getCustomerBalanceMinor(3));
+        assertEquals(2, slots.getSlotCount());
+    }
+
+    @Test
+    public void testPostingsRacingCloseKeepTotals() throws InterruptedException {
+        AccountSlots slots = new AccountSlots(2);
+        slots.open("B", "CHECKING", 1, 0, 0, 0);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread poster = new Thread(() -> {
+            while (!done.get()) {
+                slots.post("A", TransactionType.DEPOSIT, 1);
+                slots.transfer("A", "B", 1);
+                slots.transfer("B", "A", 1);
+            }
+        });
+        poster.start();
+        for (int i = 0; i < 20000; i++) {
+            slots.open("A", "CHECKING", 1, 0, 0, 0);
+            while (!slots.close("A")) {
+                int a = slots.find("A");
+                slots.post("A", TransactionType.WITHDRAWAL, slots.getBalanceMinor(a));
+            }
+        }
+        done.set(true);
+        poster.join();
+        assertEquals(1, slots.getAccountCount());
+        assertEquals(slots.getBalanceMinor(slots.find("B")), slots.getTotalBalanceMinor());
+        assertEquals(slots.getTotalBalanceMinor(), slots.getCustomerBalanceMinor(1));
+    }
+
+    @Test
+    public void testDepositsRacingCloseAreNeverLost() throws InterruptedException {
+        AccountSlots slots = new AccountSlots(2);
+        int a = slots.open("A", "CHECKING", 1, 0, 0, 0);
+        AtomicBoolean done = new AtomicBoolean();
+        long[] deposited = new long[1];
+        Thread depositor = new Thread(() -> {
+            while (!done.get()) {
+                if (slots.post("A", TransactionType.DEPOSIT, 1)) {
+                    deposited[0]++;
+                }
+            }
+        });
+        depositor.start();
+        long withdrawn = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (slots.close("A")) {
+                assertEquals(0, slots.getBalanceMinor(a));
+                slots.open("A", "CHECKING", 1, 0, 0, 0);
+                continue;
+            }
+            long balance = slots.getBalanceMinor(a);
+            if (slots.post("A", TransactionType.WITHDRAWAL, balance)) {
+                withdrawn += balance;
+            }
+        }
+        done.set(true);
+        depositor.join();
+        assertEquals(deposited[0], withdrawn + slots.getBalanceMinor(a));
+        assertEquals(slots.getBalanceMinor(a), slots.getTotalBalanceMinor());
+    }
+
+    @Test
+    public void testNumbersThatDoNotFit() {
+        assertTrue(AccountSlots.fits("1234567890123456789012"));
+        assertFalse(AccountSlots.fits("12345678901234567890123"));
+        assertFalse(AccountSlots.fits("Konto-ä"));
+        assertFalse(AccountSlots.fits(""));
+        assertEquals(AccountSlots.NO_ROOM, new AccountSlots(4).open("Konto-ä", "CHECKING", 1, 0, 0, 0));
+    }
+
+    @Test
+    public void testManyAccountsSpanPages() {
+        AccountSlots slots = new AccountSlots(3_000_000);
+        for (int i = 0; i < 1_500_000; i++) {
+            assertEquals(i, slots.open("N" + i, "CHECKING", i, i, 0, 0));
+        }
+        for (int i = 0; i < 1_500_000; i += 997) {
+            int slot = slots.find("N" + i);
+            assertEquals(i, slot);
+            assertEquals(i, slots.getBalanceMinor(slot));
+        }
+        assertEquals(-1, slots.find("N1500000"));
+        assertEquals((long) 1_499_999 * 1_500_000 / 2, slots.getTotalBalanceMinor());
+        assertEquals(1_499_999, slots.getCustomerBalanceMinor(1_499_999));
+    }
+
+    @Test
+    public void testServiceRunsAgainstSlots() {
+        AccountSlots slots = new AccountSlots(100);
+        BankingService service = bank(slots, 2);
+        assertTrue(service.createAccount(1, "S1", "SAVINGS", 1000.0));
+        assertTrue(service.createAccount(2, "C2", "CHECKING", 500.0));
+        assertFalse(service.createAccount(2, "S1", "CHECKING", 500.0));
+        assertNull(service.getAccount("S1"));
+        assertTrue(service.getCustomer(1).getAccounts().isEmpty());
+        assertEquals(Money.rateOf(0.03), slots.getInterestRatePpm(slots.find("S1")));
+
+        assertTrue(service.processTransaction("S1", "DEPOSIT", 200.0));
+        assertTrue(service.processTransaction(2, "C2", "WITHDRAWAL", 100.0));
+        assertFalse(service.processTransaction(1, "C2", "WITHDRAWAL", 100.0));
+        assertFalse(service.processTransaction("C2", "WITHDRAWAL", 400.0));
+        assertTrue(service.transferFunds(1, "S1", 2, "C2", 300.0));
+        assertFalse(service.transferFunds("S1", "C2", 20000.0));
+        assertEquals(900.0, service.getAccountBalance("S1"), 0.0);
+        assertEquals(700.0, service.getAccountBalance(2, "C2"), 0.0);
+        assertEquals(-1.0, service.getAccountBalance(1, "C2"), 0.0);
+        assertTrue(service.isAccountOwner(2, "C2"));
+        assertTrue(service.applyMonthlyCharges(2, "C2", 25.0));
+        assertFalse(service.applyMonthlyCharges(2, "C2", 2500.0));
+        assertTrue(service.applyInterest(1, "S1"));
+        assertEquals(902.25, service.getAccountBalance("S1"), 0.0);
+
+        assertEquals(2, service.getTotalAccounts());
+        assertEquals(902.25 + 675.0, service.getTotalBankBalance(), 1e-9);
+        assertEquals(675.0, service.getTotalCustomerBalance(2), 0.0);
+
+        assertFalse(service.closeAccount(2, "C2"));
+        assertTrue(service.applyMonthlyCharges(2, "C2", 675.0));
+        assertTrue(service.closeAccount(2, "C2"));
+        assertEquals(-1.0, service.getAccountBalance("C2"), 0.0);
+        assertEquals(1, service.getTotalAccounts());
+        assertTrue(service.createAccount(2, "C2", "CHECKING", 100.0));
+        assertEquals(100.0, service.getAccountBalance("C2"), 0.0);
+    }
+
+    @Test
+    public void testSlotAccountsByNumber() {
+        BankingService service = bank(new AccountSlots(10), 1);
+        service.createAccount(1, "S1", "CHECKING", 500.0);
+        assertEquals(Money.ofUnits(500), service.getAccountBalanceMinor("S1"));
+        assertEquals(BankingService.NO_BALANCE, service.getAccountBalanceMinor("S2"));
+        assertNull(service.getTransactionHistory(2, "S1", 10));
+        assertNull(service.getTransactionHistory("S2", 10));
+        try {
+            service.getTransactionHistory("S1", 10);
+            fail("accounts in slots keep no history");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            service.getTransactionHistory(1, "S1", 10);
+            fail("accounts in slots keep no history");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testSlotsAndCheckpointsExcludeEachOther() {
+        BankingService service = bank(new AccountSlots(10), 1);
+        try {
+            service.setCheckpointGate(new CheckpointGate());
+            fail("checkpoint gate accepted with account slots");
+        } catch (IllegalStateException expected) {
+        }
+        BankingService checkpointed = new BankingService(true);
+        checkpointed.setCheckpointGate(new CheckpointGate());
+        try {
+            checkpointed.setAccountSlots(new AccountSlots(10));
+            fail("account slots accepted with a checkpoint gate");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testHeapAndSlotAccountsMix() {
+        AccountSlots slots = new AccountSlots(1);
+        BankingService service = new BankingService();
+        Customer customer = new Customer(1, "Ann", "Lee");
+        customer.addAccount(new Account("H1", "CHECKING", 1000.0, 1));
+        service.registerCustomer(customer);
+        service.setAccountSlots(slots);
+        assertFalse(service.createAccount(1, "H1", "CHECKING", 100.0));
+        assertTrue(service.createAccount(1, "S1", "CHECKING", 500.0));
+        // The store is full: the next account is an Account again.
+        assertTrue(service.createAccount(1, "H2", "CHECKING", 300.0));
+        assertNotNull(service.getAccount("H2"));
+
+        assertTrue(service.transferFunds("H1", "S1", 250.0));
+        assertTrue(service.transferFunds(1, "S1", 1, "H2", 100.0));
+        assertFalse(service.transferFunds("S1", "H2", 600.0));
+        assertEquals(750.0, service.getAccountBalance("H1"), 0.0);
+        assertEquals(650.0, service.getAccountBalance("S1"), 0.0);
+        assertEquals(400.0, service.getAccountBalance("H2"), 0.0);
+        assertEquals(1800.0, service.getTotalBankBalance(), 0.0);
+        assertEquals(1800.0, service.getTotalCustomerBalance(1), 0.0);
+        assertEquals(3, service.getTotalAccounts());
+
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("S1", TransactionType.DEPOSIT, Money.ofUnits(50));
+        batch.add("H1", TransactionType.WITHDRAWAL, Money.ofUnits(50));
+        batch.add("S1", TransactionType.WITHDRAWAL, Money.ofUnits(5000));
+        batch.add("X9", TransactionType.DEPOSIT, Money.ofUnits(50));
+        assertArrayEquals(new byte[] { TransactionBatch.OK, TransactionBatch.OK, TransactionBatch.REJECTED,
+                                       TransactionBatch.UNKNOWN_ACCOUNT }, service.processTransactions(batch));
+        assertEquals(700.0, service.getAccountBalance("S1"), 0.0);
+        assertEquals(700.0, service.getAccountBalance("H1"), 0.0);
+    }
+
+    @Test
+    public void testJournalRecordsSlotAccounts() {
+        BankingService mirror = new BankingService();
+        BankingService service = new BankingService();
+        JournalReplayer replayer = new JournalReplayer(mirror);
+        service.setJournal(replayer);
+        service.setAccountSlots(new AccountSlots(10));
+        service.registerCustomer(new Customer(1, "Ann", "Lee"));
+        service.createAccount(1, "A", "SAVINGS", 1000.0);
+        service.createAccount(1, "B", "CHECKING", 200.0);
+        service.processTransaction("A", "DEPOSIT", 10.0);
+        service.transferFunds("A", "B", 300.0);
+        service.applyInterest(1, "A");
+        service.applyMonthlyCharges(1, "B", 500.0);
+        service.closeAccount(1, "B");
+        replayer.finish();
+
+        assertEquals(service.getAccountBalance("A"), mirror.getAccountBalance("A"), 0.0);
+        assertNull(mirror.getAccount("B"));
+        assertEquals(service.getTotalBankBalanceMinor(), mirror.getTotalBankBalanceMinor());
+    }
+
+    @Test
+    public void testConcurrentTransfersKeepTotals() throws InterruptedException {
+        AccountSlots slots = new AccountSlots(1000);
+        BankingService service = bank(slots, 10);
+        for (int i = 0; i < 100; i++) {
+            service.createAccount(1 + i % 10, "A" + i, "CHECKING", 1000.0);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    service.transferFunds("A" + random.nextInt(100), "A" + random.nextInt(100),
+                                          1 + random.nextInt(500));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long sum = 0;
+        for (int i = 0; i < 100; i++) {
+            long balance = slots.getBalanceMinor(slots.find("A" + i));
+            assertTrue(balance >= Money.ofUnits(100));
+            sum += balance;
+        }
+        assertEquals(Money.ofUnits(100000), sum);
+        assertEquals(sum, service.getTotalBankBalanceMinor());
+    }
+}
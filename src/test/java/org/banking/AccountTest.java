@@ -4,6 +4,8 @@ import org.junit.*;
 import static org.junit.Assert.*;
 import org.banking.model.Account;
 import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.utils.Money;
 
 import java.util.List;
 
@@ -183,4 +185,52 @@ public class AccountTest {
         Account a = new Account("300", "SAVINGS", 0, 1);
         assertEquals(0, a.calculateInterest(), 0.001);
     }
+
+    // -----------------------------
+    // balance range (+/-2^62 minor units)
+    // -----------------------------
+    @Test
+    public void testDepositUpToMaximumBalance() {
+        Account a = Account.restore("400", "SAVINGS", 1, Money.MAX_BALANCE - 1, 0, 0, new TransactionLog());
+        assertTrue(a.depositMinor(1));
+        assertEquals(Money.MAX_BALANCE, a.getBalanceMinor());
+        assertFalse(a.depositMinor(1));
+        assertFalse(a.depositMinor(Long.MAX_VALUE));
+        assertEquals(Money.MAX_BALANCE, a.getBalanceMinor());
+        assertEquals(1, a.getTransactionCount());
+    }
+
+    @Test
+    public void testHugeAmountsAreRefused() {
+        assertFalse(account.deposit(1e300));
+        assertFalse(account.withdraw(1e300));
+        assertFalse(account.applyMonthlyCharge(1e300));
+        assertEquals(5000.0, account.getBalance(), 0.001);
+    }
+
+    @Test
+    public void testWithdrawalFromMinimumBalanceIsRefused() {
+        Account a = Account.restore("401", "CREDIT", 1, Money.MIN_BALANCE, Money.MIN_BALANCE, 0,
+                                    new TransactionLog());
+        assertFalse(a.withdrawMinor(1));
+        assertFalse(a.withdrawMinor(Long.MAX_VALUE));
+        assertEquals(Money.MIN_BALANCE, a.getBalanceMinor());
+    }
+
+    @Test
+    public void testInterestIsSkippedAtMaximumBalance() {
+        Account a = Account.restore("402", "SAVINGS", 1, Money.MAX_BALANCE, 0, Money.rateOf(0.12),
+                                    new TransactionLog());
+        assertEquals(0, a.calculateInterestMinor());
+        assertEquals(Money.MAX_BALANCE, a.getBalanceMinor());
+    }
+
+    @Test
+    public void testTransferIntoFullAccountIsRefused() {
+        Account full = Account.restore("403", "SAVINGS", 2, Money.MAX_BALANCE, 0, 0, new TransactionLog());
+        assertFalse(account.transfer(full, 100));
+        assertEquals(5000.0, account.getBalance(), 0.001);
+        assertEquals(Money.MAX_BALANCE, full.getBalanceMinor());
+        assertEquals(0, account.getTransactionCount());
+    }
 }
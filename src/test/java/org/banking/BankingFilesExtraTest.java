@@ -29,6 +29,23 @@ public class BankingFilesExtraTest {
         assertEquals(1, loaded.get(0).getCustomerId());
     }
 
+    @Test
+    public void testSaveAndLoadCustomersToExplicitFile() throws Exception {
+        File file = File.createTempFile("customers", ".dat");
+        try {
+            List<Customer> customers = new ArrayList<>();
+            customers.add(new Customer(7, "P", "Q"));
+            BankingFiles.saveCustomers(customers, file);
+
+            assertFalse(BankingFiles.customersFileExists());
+            List<Customer> loaded = BankingFiles.loadCustomers(file);
+            assertEquals(1, loaded.size());
+            assertEquals(7, loaded.get(0).getCustomerId());
+        } finally {
+            file.delete();
+        }
+    }
+
     @Test(expected = FileNotFoundException.class)
     public void testLoadThrowsWhenNoFile() throws Exception {
         BankingFiles.deleteCustomersFile();
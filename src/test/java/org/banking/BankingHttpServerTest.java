@@ -0,0 +1,200 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import org.banking.api.BankingHttpServer;
+import org.banking.api.Json;
+import org.banking.model.Account;
+import org.banking.model.AccountSlots;
+import org.banking.model.BankingJournal;
+import org.banking.model.Customer;
+import org.banking.model.JournalUnavailableException;
+import org.banking.model.TransactionLog;
+import org.banking.service.BankingService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+public class BankingHttpServerTest {
+
+    private BankingService service;
+    private BankingHttpServer server;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new BankingService(true);
+        server = new BankingHttpServer(service, 0);
+        server.start();
+        client = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + server.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresConcurrentService() throws Exception {
+        new BankingHttpServer(new BankingService(), 0);
+    }
+
+    @Test
+    public void testRegisterCreateDepositTransferAndHistory() throws Exception {
+        assertEquals(201, post("/customers",
+            "{\"customerId\": 7, \"firstName\": \"Ann\", \"lastName\": \"Lee\", \"email\": \"ann@x.com\"}").statusCode());
+        assertEquals(409, post("/customers", "{\"customerId\": 7, \"firstName\": \"A\", \"lastName\": \"B\"}").statusCode());
+        assertEquals(201, post("/accounts",
+            "{\"customerId\": 7, \"accountNumber\": \"1111111111\", \"accountType\": \"SAVINGS\", \"initialBalance\": 1000}").statusCode());
+        assertEquals(201, post("/accounts",
+            "{\"customerId\": 7, \"accountNumber\": \"2222222222\", \"accountType\": \"CHECKING\", \"initialBalance\": 500}").statusCode());
+
+        HttpResponse<String> deposit = post("/accounts/1111111111/deposit", "{\"amount\": 250.5}");
+        assertEquals(200, deposit.statusCode());
+        assertTrue(deposit.body().contains("\"balance\":1250.50"));
+
+        assertEquals(422, post("/accounts/2222222222/withdraw", "{\"amount\": 450}").statusCode());
+        assertEquals(200, post("/transfers", "{\"from\": \"1111111111\", \"to\": \"2222222222\", \"amount\": 50}").statusCode());
+
+        HttpResponse<String> balance = get("/accounts/2222222222/balance");
+        assertEquals(200, balance.statusCode());
+        assertTrue(balance.body().contains("\"balance\":550.00"));
+
+        HttpResponse<String> history = get("/accounts/1111111111/transactions?limit=5");
+        assertEquals(200, history.statusCode());
+        assertTrue(history.body().contains("\"type\":\"DEPOSIT\""));
+        assertTrue(history.body().contains("\"type\":\"TRANSFER_OUT\""));
+    }
+
+    @Test
+    public void testSlotAccounts() throws Exception {
+        service.setAccountSlots(new AccountSlots(10));
+        service.registerCustomer(new Customer(7, "Ann", "Lee"));
+        assertEquals(201, post("/accounts",
+            "{\"customerId\": 7, \"accountNumber\": \"1111111111\", \"accountType\": \"CHECKING\", \"initialBalance\": 500}").statusCode());
+        assertNull(service.getAccount("1111111111"));
+
+        HttpResponse<String> deposit = post("/accounts/1111111111/deposit", "{\"amount\": 25}");
+        assertEquals(200, deposit.statusCode());
+        assertTrue(deposit.body().contains("\"balance\":525.00"));
+        assertTrue(get("/accounts/1111111111/balance").body().contains("\"balance\":525.00"));
+        HttpResponse<String> history = get("/accounts/1111111111/transactions");
+        assertEquals(501, history.statusCode());
+        assertTrue(history.body().contains("no transaction history"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertEquals(404, get("/accounts/404404/balance").statusCode());
+        assertEquals(400, post("/customers", "{not json").statusCode());
+        assertEquals(400, post("/transfers", "{\"from\": \"a\", \"to\": \"b\"}").statusCode());
+        assertEquals(405, get("/transfers").statusCode());
+    }
+
+    @Test
+    public void testOverflowAndJournalFailuresGetAReply() throws Exception {
+        Customer customer = new Customer(7, "Ann", "Lee");
+        customer.addAccount(Account.restore("1111111111", "CHECKING", 7, (Long.MAX_VALUE >> 1) - 1, 0, 0,
+                                            new TransactionLog()));
+        service.registerCustomer(customer);
+        assertEquals(422, post("/accounts/1111111111/deposit", "{\"amount\": 1}").statusCode());
+
+        StubJournal journal = new StubJournal();
+        service.setJournal(journal);
+        journal.unavailable = new JournalUnavailableException("disk full", new IOException("disk full"));
+        assertEquals(503, post("/accounts/1111111111/withdraw", "{\"amount\": 1}").statusCode());
+        assertEquals(503, post("/customers", "{\"customerId\": 8, \"firstName\": \"A\", \"lastName\": \"B\"}")
+            .statusCode());
+        assertEquals((Long.MAX_VALUE >> 1) - 1, service.getAccountBalanceMinor("1111111111"));
+        assertNull(service.getCustomer(8));
+
+        // Only a journal failure is a 503; other failures are internal errors.
+        journal.unavailable = new IllegalStateException("bug");
+        assertEquals(500, post("/accounts/1111111111/withdraw", "{\"amount\": 1}").statusCode());
+    }
+
+    @Test
+    public void testChangeAppliedBeforeJournalFailsIsReportedAsApplied() throws Exception {
+        service.registerCustomer(new Customer(7, "Ann", "Lee"));
+        service.createAccount(7, "1111111111", "CHECKING", 1000);
+        StubJournal journal = new StubJournal();
+        service.setJournal(journal);
+        journal.failCommit = true;
+        HttpResponse<String> withdraw = post("/accounts/1111111111/withdraw", "{\"amount\": 100}");
+        assertEquals(500, withdraw.statusCode());
+        assertTrue(withdraw.body().contains("\"applied\":true"));
+        assertEquals(900.0, service.getAccountBalance("1111111111"), 0.0);
+
+        journal.unavailable = new JournalUnavailableException("disk full");
+        HttpResponse<String> refused = post("/accounts/1111111111/withdraw", "{\"amount\": 100}");
+        assertEquals(503, refused.statusCode());
+        assertTrue(refused.body().contains("\"applied\":false"));
+        assertEquals(900.0, service.getAccountBalance("1111111111"), 0.0);
+    }
+
+    /**
+     * Journal that records nothing and fails as told.
+     */
+    private static final class StubJournal implements BankingJournal {
+        volatile RuntimeException unavailable;
+        volatile boolean failCommit;
+
+        public void customerRegistered(long customerId, String firstName, String lastName,
+                                       String email, String phone, String address) {
+        }
+
+        public void accountCreated(long customerId, String accountNumber, String accountType,
+                                   long balance, long minimumBalance, long interestRate) {
+        }
+
+        public void posted(String accountNumber, byte type, long amount, long balanceAfter, long timestampMicros) {
+        }
+
+        public void transferred(String fromAccountNumber, String toAccountNumber, long amount,
+                                long fromBalanceAfter, long toBalanceAfter, long timestampMicros) {
+        }
+
+        public void accountClosed(long customerId, String accountNumber) {
+        }
+
+        public void checkAvailable() {
+            RuntimeException failure = unavailable;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        public void commit() {
+            if (failCommit) {
+                throw new JournalUnavailableException("disk full", new IOException("disk full"));
+            }
+        }
+    }
+
+    @Test
+    public void testJsonParseObject() {
+        Map<String, String> fields = Json.parseObject(" {\"a\": \"x\\\"y\", \"b\": 12.5, \"c\": null, \"d\": true} ");
+        assertEquals("x\"y", fields.get("a"));
+        assertEquals("12.5", fields.get("b"));
+        assertNull(fields.get("c"));
+        assertEquals("true", fields.get("d"));
+        assertTrue(Json.parseObject("{}").isEmpty());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -5,6 +5,9 @@ import static org.junit.Assert.*;
 import org.banking.service.BankingService;
 import org.banking.model.Customer;
 import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionBatch;
 
 public class BankingServiceTest {
 
@@ -212,4 +215,265 @@ public class BankingServiceTest {
         assertEquals(old, service.getMonthlyWithdrawalLimit(), 0.001);
     }
 
+    // -----------------------------
+    // CUSTOMER INDEX
+    // -----------------------------
+    @Test
+    public void testRegisterDuplicateCustomerIdRejected() {
+        assertTrue(service.registerCustomer(c1));
+        assertFalse(service.registerCustomer(new Customer(1001L, "Other", "Person")));
+        assertEquals(1, service.getAllCustomers().size());
+        assertSame(c1, service.getCustomer(1001L));
+    }
+
+    @Test
+    public void testGetAllCustomersKeepsRegistrationOrder() {
+        service.registerCustomer(c2);
+        service.registerCustomer(c1);
+        assertEquals(1002L, service.getAllCustomers().get(0).getCustomerId());
+        assertEquals(1001L, service.getAllCustomers().get(1).getCustomerId());
+        assertNull(service.getCustomer(4242L));
+    }
+
+    // -----------------------------
+    // ACCOUNT INDEX
+    // -----------------------------
+    @Test
+    public void testGetAccountByNumberAndOwnership() {
+        service.registerCustomer(c1);
+        service.registerCustomer(c2);
+        service.createAccount(1001L, "A1", "SAVINGS", 500);
+        assertNotNull(service.getAccount("A1"));
+        assertTrue(service.isAccountOwner(1001L, "A1"));
+        assertFalse(service.isAccountOwner(1002L, "A1"));
+        assertNull(service.getAccount(1002L, "A1"));
+    }
+
+    @Test
+    public void testCreateAccountRejectsNumberUsedByAnotherCustomer() {
+        service.registerCustomer(c1);
+        service.registerCustomer(c2);
+        assertTrue(service.createAccount(1001L, "A1", "SAVINGS", 500));
+        assertFalse(service.createAccount(1002L, "A1", "CHECKING", 500));
+        assertEquals(1001L, service.getAccount("A1").getCustomerId());
+    }
+
+    @Test
+    public void testTransferFundsByAccountNumber() {
+        service.registerCustomer(c1);
+        service.registerCustomer(c2);
+        service.createAccount(1001L, "A1", "SAVINGS", 5000);
+        service.createAccount(1002L, "B1", "CHECKING", 1000);
+        assertTrue(service.transferFunds("A1", "B1", 1000));
+        assertEquals(4000.0, service.getAccountBalance("A1"), 0.001);
+        assertEquals(2000.0, service.getAccountBalance("B1"), 0.001);
+        assertFalse(service.transferFunds("A1", "MISSING", 10));
+    }
+
+    @Test
+    public void testTransferFundsRejectsWrongOwner() {
+        service.registerCustomer(c1);
+        service.registerCustomer(c2);
+        service.createAccount(1001L, "A1", "SAVINGS", 5000);
+        service.createAccount(1002L, "B1", "CHECKING", 1000);
+        assertFalse(service.transferFunds(1002L, "A1", 1002L, "B1", 100));
+        assertEquals(5000.0, service.getAccountBalance("A1"), 0.001);
+    }
+
+    @Test
+    public void testProcessTransactionByAccountNumber() {
+        service.registerCustomer(c1);
+        service.createAccount(1001L, "A1", "SAVINGS", 1000);
+        assertTrue(service.processTransaction("A1", "DEPOSIT", 250));
+        assertEquals(1250.0, service.getAccountBalance("A1"), 0.001);
+        assertFalse(service.processTransaction("NOPE", "DEPOSIT", 250));
+        assertEquals(-1, service.getAccountBalance("NOPE"), 0.001);
+    }
+
+    @Test
+    public void testCloseAccountRemovesFromIndex() {
+        service.registerCustomer(c1);
+        service.createAccount(1001L, "A1", "CHECKING", 200);
+        service.applyMonthlyCharges(1001L, "A1", 200);
+        assertTrue(service.closeAccount(1001L, "A1"));
+        assertNull(service.getAccount("A1"));
+    }
+
+    @Test
+    public void testRegisterCustomerIndexesExistingAccounts() {
+        c1.addAccount(new Account("PRE1", "SAVINGS", 700, 1001L));
+        service.registerCustomer(c1);
+        assertEquals(700.0, service.getAccountBalance("PRE1"), 0.001);
+    }
+
+    // -----------------------------
+    // RUNNING AGGREGATES
+    // -----------------------------
+    @Test
+    public void testBankTotalsTrackMutations() {
+        service.registerCustomer(c1);
+        service.registerCustomer(c2);
+        service.createAccount(1001L, "A1", "SAVINGS", 5000);
+        service.createAccount(1002L, "B1", "CHECKING", 1000);
+        assertEquals(6000.0, service.getTotalBankBalance(), 0.001);
+
+        service.processTransaction("A1", "DEPOSIT", 500);
+        service.processTransaction("B1", "WITHDRAWAL", 200);
+        service.transferFunds("A1", "B1", 1000);
+        assertEquals(6300.0, service.getTotalBankBalance(), 0.001);
+        assertEquals(4500.0, service.getTotalCustomerBalance(1001L), 0.001);
+        assertEquals(1800.0, service.getTotalCustomerBalance(1002L), 0.001);
+    }
+
+    @Test
+    public void testBankTotalsFollowCloseAndDeactivate() {
+        service.registerCustomer(c1);
+        service.createAccount(1001L, "A1", "CHECKING", 200);
+        service.createAccount(1001L, "A2", "SAVINGS", 300);
+        assertEquals(2, service.getTotalAccounts());
+
+        service.getAccount("A2").deactivateAccount();
+        assertEquals(200.0, service.getTotalBankBalance(), 0.001);
+        service.getAccount("A2").activateAccount();
+        assertEquals(500.0, service.getTotalBankBalance(), 0.001);
+
+        service.applyMonthlyCharges(1001L, "A1", 200);
+        assertTrue(service.closeAccount(1001L, "A1"));
+        assertEquals(1, service.getTotalAccounts());
+        assertEquals(300.0, service.getTotalBankBalance(), 0.001);
+    }
+
+    @Test
+    public void testRegisteringCustomerWithAccountsFoldsIntoBankTotals() {
+        c1.addAccount(new Account("PRE1", "SAVINGS", 700, 1001L));
+        service.registerCustomer(c1);
+        assertEquals(1, service.getTotalAccounts());
+        assertEquals(700.0, service.getTotalBankBalance(), 0.001);
+    }
+
+    // -----------------------------
+    // BATCH TRANSACTIONS
+    // -----------------------------
+    @Test
+    public void testProcessTransactionsAppliesInOrderPerAccount() {
+        service.registerCustomer(c1);
+        service.registerCustomer(c2);
+        service.createAccount(1001L, "A1", "SAVINGS", 1000);
+        service.createAccount(1002L, "B1", "CHECKING", 1000);
+
+        TransactionBatch batch = new TransactionBatch(2);
+        batch.add("A1", "DEPOSIT", 500);
+        batch.add("B1", "WITHDRAWAL", 950);    // would breach minimum balance
+        batch.add("A1", "WITHDRAWAL", 1300);   // only succeeds after the deposit
+        batch.add("NOPE", "DEPOSIT", 10);
+        batch.add("B1", "TRANSFER_IN", 10);    // not a single-account operation
+        batch.add("B1", "CHARGE", 100);
+
+        byte[] results = service.processTransactions(batch);
+        assertArrayEquals(new byte[] {
+            TransactionBatch.OK, TransactionBatch.REJECTED, TransactionBatch.OK,
+            TransactionBatch.UNKNOWN_ACCOUNT, TransactionBatch.INVALID_TYPE, TransactionBatch.OK
+        }, results);
+        assertEquals(200.0, service.getAccountBalance("A1"), 0.001);
+        assertEquals(900.0, service.getAccountBalance("B1"), 0.001);
+    }
+
+    @Test
+    public void testProcessTransactionsReportsInactiveAccount() {
+        service.registerCustomer(c1);
+        service.createAccount(1001L, "A1", "SAVINGS", 1000);
+        service.getAccount("A1").deactivateAccount();
+
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("A1", "DEPOSIT", 10);
+        assertEquals(TransactionBatch.INACTIVE, service.processTransactions(batch)[0]);
+    }
+
+    @Test
+    public void testProcessTransactionsInConcurrentMode() {
+        BankingService concurrent = new BankingService(true);
+        concurrent.registerCustomer(c1);
+        for (int i = 0; i < 20; i++) {
+            concurrent.createAccount(1001L, "ACC" + i, "CHECKING", 1000);
+        }
+        TransactionBatch batch = new TransactionBatch();
+        for (int n = 0; n < 100; n++) {
+            for (int i = 0; i < 20; i++) {
+                batch.add("ACC" + i, "DEPOSIT", 1);
+            }
+        }
+        byte[] results = concurrent.processTransactions(batch);
+        for (byte r : results) {
+            assertEquals(TransactionBatch.OK, r);
+        }
+        assertEquals(1100.0, concurrent.getAccountBalance("ACC7"), 0.001);
+        assertEquals(22000.0, concurrent.getTotalBankBalance(), 0.001);
+    }
+
+    @Test
+    public void testProcessTransactionsRejectsOverflowingEntry() {
+        for (BankingService bank : new BankingService[] { service, new BankingService(true) }) {
+            bank.registerCustomer(new Customer(1001L, "John", "Doe"));
+            bank.createAccount(1001L, "A1", "SAVINGS", 1000);
+            bank.createAccount(1001L, "A2", "SAVINGS", 1000);
+
+            TransactionBatch batch = new TransactionBatch();
+            batch.add("A1", "DEPOSIT", 10);
+            batch.add("A2", "DEPOSIT", 1e17);
+            batch.add("A2", "DEPOSIT", 5);
+            assertArrayEquals(new byte[] {
+                TransactionBatch.OK, TransactionBatch.REJECTED, TransactionBatch.OK
+            }, bank.processTransactions(batch));
+            assertEquals(1010.0, bank.getAccountBalance("A1"), 0.001);
+            assertEquals(1005.0, bank.getAccountBalance("A2"), 0.001);
+            assertEquals(2015.0, bank.getTotalBankBalance(), 0.001);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // History retention
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testHistoryRetentionAppliesToNewAccounts() {
+        service.registerCustomer(c1);
+        service.setHistoryRetention(4, null);
+        service.createAccount(1001L, "A1", "CHECKING", 1000);
+        Account a1 = service.getAccount("A1");
+        for (int i = 0; i < 10; i++) {
+            service.processTransaction("A1", "DEPOSIT", 1);
+        }
+        assertEquals(10, a1.getTransactionCount());
+        assertEquals(4, a1.getTransactions().size());
+        assertEquals(4, a1.getTransactionHistory(10).size());
+        assertNull(a1.getTransactionLog().getOverflow());
+    }
+
+    @Test
+    public void testHistoryRetentionIgnoresInvalidCapacity() {
+        service.registerCustomer(c1);
+        service.setHistoryRetention(0, null);
+        service.createAccount(1001L, "A1", "CHECKING", 1000);
+        assertNotNull(service.getAccount("A1").getTransactionLog().getOverflow());
+    }
+
+    @Test
+    public void testDefaultHistoryIsLimited() {
+        service.registerCustomer(c1);
+        service.createAccount(1001L, "A1", "CHECKING", 1000);
+        ChunkedHistoryStore overflow = (ChunkedHistoryStore) service.getAccount("A1").getTransactionLog().getOverflow();
+        assertEquals(TransactionLog.DEFAULT_HISTORY_LIMIT, overflow.getLimit());
+    }
+
+    @Test
+    public void testOutOfRangeAmountsAreRefused() {
+        service.registerCustomer(c1);
+        assertFalse(service.createAccount(1001L, "A1", "SAVINGS", 1e17));
+        assertNull(service.getAccount("A1"));
+        assertTrue(service.createAccount(1001L, "A1", "SAVINGS", 1000));
+        assertFalse(service.processTransaction("A1", "DEPOSIT", 1e300));
+        assertFalse(service.processTransaction(1001L, "A1", "DEPOSIT", 1e300));
+        assertEquals(1000.0, service.getAccountBalance("A1"), 0.001);
+        assertEquals(1000.0, service.getTotalBankBalance(), 0.001);
+    }
 }
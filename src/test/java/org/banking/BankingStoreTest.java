@@ -0,0 +1,269 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.BankingStore;
+import org.banking.files.WriteAheadLog;
+import org.banking.model.Account;
+import org.banking.model.AccountSlots;
+import org.banking.model.Customer;
+import org.banking.model.HistoryView;
+import org.banking.service.BankingService;
+import org.banking.service.JournalReplayer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class BankingStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("data").toPath();
+    }
+
+    private static void populate(BankingService service, int customers) {
+        for (int c = 0; c < customers; c++) {
+            service.registerCustomer(new Customer(1000 + c, "First" + c, "Last" + c, "c" + c + "@example.com", null, null));
+            service.createAccount(1000 + c, "S" + c, "SAVINGS", 1000.0);
+            service.createAccount(1000 + c, "C" + c, "CHECKING", 500.0);
+        }
+    }
+
+    private static void traffic(BankingService service, int customers, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            for (int c = 0; c < customers; c++) {
+                service.processTransaction("S" + c, "DEPOSIT", 10.25 + r);
+                service.processTransaction("C" + c, "WITHDRAWAL", 3.5);
+                service.transferFunds("S" + c, "C" + ((c + 1) % customers), 7.0);
+                if (r % 3 == 0) {
+                    service.applyInterest(1000 + c, "S" + c);
+                    service.applyMonthlyCharges(1000 + c, "C" + c, 1.0);
+                }
+            }
+        }
+    }
+
+    private static void assertSameBook(BankingService expected, BankingService actual) {
+        assertEquals(expected.getTotalAccounts(), actual.getTotalAccounts());
+        assertEquals(expected.getTotalBankBalanceMinor(), actual.getTotalBankBalanceMinor());
+        for (Customer customer : expected.getAllCustomers()) {
+            Customer restored = actual.getCustomer(customer.getCustomerId());
+            assertNotNull(restored);
+            assertEquals(customer.getEmail(), restored.getEmail());
+            assertEquals(customer.getTotalBalanceMinor(), restored.getTotalBalanceMinor());
+            for (Account account : customer.getAccounts()) {
+                Account copy = actual.getAccount(account.getAccountNumber());
+                assertNotNull(account.getAccountNumber(), copy);
+                assertEquals(account.getBalanceMinor(), copy.getBalanceMinor());
+                assertEquals(account.getMinimumBalanceMinor(), copy.getMinimumBalanceMinor());
+                assertEquals(account.getInterestRatePpm(), copy.getInterestRatePpm());
+                HistoryView a = account.getTransactions();
+                HistoryView b = copy.getTransactions();
+                assertEquals(a.size(), b.size());
+                for (int i = 0; i < a.size(); i++) {
+                    assertEquals(a.getTypeCode(i), b.getTypeCode(i));
+                    assertEquals(a.getAmountMinor(i), b.getAmountMinor(i));
+                    assertEquals(a.getBalanceAfterMinor(i), b.getBalanceAfterMinor(i));
+                    assertEquals(a.getTimestampMicros(i), b.getTimestampMicros(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the data directory as it is on disk right now, as a crash would
+     * leave it (nothing is closed or flushed first).
+     */
+    private Path crashCopy() throws IOException {
+        Path copy = folder.newFolder().toPath();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    @Test
+    public void testFreshStoreIsEmpty() throws IOException {
+        try (BankingStore store = BankingStore.open(dir)) {
+            assertTrue(store.getService().getAllCustomers().isEmpty());
+            assertEquals(-1, store.getSnapshotGeneration());
+            assertEquals(0, store.getReplayedRecordCount());
+        }
+    }
+
+    @Test
+    public void testRecoversFromLogAfterCrash() throws IOException {
+        try (BankingStore store = BankingStore.open(dir)) {
+            BankingService live = store.getService();
+            populate(live, 20);
+            traffic(live, 20, 5);
+            assertTrue(live.applyMonthlyCharges(1019, "C19", live.getAccountBalance("C19")));
+            assertTrue(live.closeAccount(1019, "C19"));
+
+            try (BankingStore recovered = BankingStore.open(crashCopy())) {
+                assertSameBook(live, recovered.getService());
+                assertNull(recovered.getService().getAccount("C19"));
+                assertTrue(recovered.getReplayedRecordCount() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testCheckpointBoundsReplay() throws IOException {
+        try (BankingStore store = BankingStore.open(dir)) {
+            BankingService live = store.getService();
+            populate(live, 10);
+            traffic(live, 10, 10);
+            store.checkpoint();
+            assertEquals(1, store.getGeneration());
+            live.processTransaction("S3", "DEPOSIT", 1.0);
+            live.transferFunds("S4", "C5", 2.0);
+
+            try (BankingStore recovered = BankingStore.open(crashCopy())) {
+                assertEquals(1, recovered.getSnapshotGeneration());
+                assertEquals(2, recovered.getReplayedRecordCount());
+                assertSameBook(live, recovered.getService());
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = new ArrayList<>();
+            files.forEach(f -> names.add(f.getFileName().toString()));
+            assertTrue(names.contains("snapshot-00000001.dat"));
+            assertTrue(names.contains("wal-00000001.log"));
+            assertFalse(names.contains("wal-00000000.log"));
+        }
+    }
+
+    @Test
+    public void testReopenContinuesAfterCheckpoints() throws IOException {
+        BankingService expected;
+        try (BankingStore store = BankingStore.open(dir)) {
+            expected = store.getService();
+            populate(expected, 5);
+            store.checkpoint();
+            traffic(expected, 5, 2);
+            store.checkpoint();
+            traffic(expected, 5, 2);
+        }
+        try (BankingStore store = BankingStore.open(dir)) {
+            assertEquals(2, store.getSnapshotGeneration());
+            assertSameBook(expected, store.getService());
+            traffic(store.getService(), 5, 1);
+            traffic(expected, 5, 1);
+        }
+        try (BankingStore store = BankingStore.open(dir)) {
+            assertEquals(expected.getTotalBankBalanceMinor(), store.getService().getTotalBankBalanceMinor());
+        }
+    }
+
+    @Test
+    public void testCheckpointWhileTrafficContinues() throws Exception {
+        try (BankingStore store = BankingStore.open(dir)) {
+            BankingService live = store.getService();
+            populate(live, 50);
+            Thread writer = new Thread(() -> traffic(live, 50, 20));
+            writer.start();
+            store.checkpoint();
+            store.checkpoint();
+            writer.join();
+
+            try (BankingStore recovered = BankingStore.open(crashCopy())) {
+                assertSameBook(live, recovered.getService());
+            }
+        }
+    }
+
+    @Test
+    public void testPeriodicCheckpoints() throws Exception {
+        try (BankingStore store = BankingStore.open(dir)) {
+            populate(store.getService(), 3);
+            store.startCheckpoints(10);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (store.getGeneration() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(store.getGeneration() >= 2);
+            assertNull(store.getCheckpointFailure());
+        }
+    }
+
+    @Test
+    public void testParallelReplayMatchesSequential() throws Exception {
+        Path log = dir.resolve("replay.log");
+        BankingService live = new BankingService(true);
+        try (WriteAheadLog wal = new WriteAheadLog(log)) {
+            live.setJournal(wal);
+            populate(live, 64);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread writer = new Thread(() -> traffic(live, 64, 10));
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        BankingService sequential = new BankingService(false);
+        JournalReplayer one = new JournalReplayer(sequential);
+        WriteAheadLog.replay(log, one);
+        one.finish();
+
+        BankingService parallel = new BankingService(true);
+        JournalReplayer many = new JournalReplayer(parallel, 8);
+        long records = WriteAheadLog.replay(log, many);
+        many.finish();
+
+        assertEquals(0, many.getSkippedCount());
+        assertTrue(many.getAppliedCount() >= records);
+        assertEquals(live.getTotalBankBalanceMinor(), sequential.getTotalBankBalanceMinor());
+        assertEquals(live.getTotalBankBalanceMinor(), parallel.getTotalBankBalanceMinor());
+        for (Customer customer : live.getAllCustomers()) {
+            for (Account account : customer.getAccounts()) {
+                long balance = account.getBalanceMinor();
+                assertEquals(balance, sequential.getAccount(account.getAccountNumber()).getBalanceMinor());
+                assertEquals(balance, parallel.getAccount(account.getAccountNumber()).getBalanceMinor());
+                assertEquals(account.getTransactionCount(),
+                             parallel.getAccount(account.getAccountNumber()).getTransactionCount());
+            }
+        }
+    }
+
+    @Test
+    public void testRefusesAccountSlots() throws IOException {
+        try {
+            BankingStore.open(dir, () -> {
+                BankingService service = new BankingService(true);
+                service.setAccountSlots(new AccountSlots(10));
+                return service;
+            }, WriteAheadLog.Durability.PER_BATCH).close();
+            fail("store accepted a service with account slots");
+        } catch (IllegalStateException expected) {
+        }
+        try (BankingStore store = BankingStore.open(dir)) {
+            store.getService().setAccountSlots(new AccountSlots(10));
+            store.checkpoint();
+            fail("checkpoint ignored the account slots");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelReplayNeedsConcurrentService() {
+        new JournalReplayer(new BankingService(false), 4);
+    }
+}
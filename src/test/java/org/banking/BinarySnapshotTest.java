@@ -0,0 +1,293 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.BankingFiles;
+import org.banking.files.BinarySnapshot;
+import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.Customer;
+import org.banking.model.TransactionLog;
+import org.banking.service.BankingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class BinarySnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile("snapshot.bin").toPath();
+    }
+
+    private static BankingService book(int customers, int rounds) {
+        BankingService service = new BankingService();
+        for (int c = 0; c < customers; c++) {
+            service.registerCustomer(new Customer(5000 + 3 * c, "First" + c, "Läst" + c,
+                                                  "c" + c + "@example.com", "555-" + c, c % 2 == 0 ? null : "Street " + c));
+            service.createAccount(5000 + 3 * c, "S" + c, "SAVINGS", 1000.0);
+            service.createAccount(5000 + 3 * c, "C" + c, "CHECKING", 500.0);
+        }
+        for (int r = 0; r < rounds; r++) {
+            for (int c = 0; c < customers; c++) {
+                service.processTransaction("S" + c, "DEPOSIT", 12.5 + r);
+                service.processTransaction("C" + c, "WITHDRAWAL", 1.25);
+                service.transferFunds("S" + c, "C" + c, 3.0);
+            }
+        }
+        return service;
+    }
+
+    private static void assertSameCustomers(List<Customer> expected, List<Customer> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int c = 0; c < expected.size(); c++) {
+            Customer a = expected.get(c);
+            Customer b = actual.get(c);
+            assertEquals(a.getCustomerId(), b.getCustomerId());
+            assertEquals(a.getFirstName(), b.getFirstName());
+            assertEquals(a.getLastName(), b.getLastName());
+            assertEquals(a.getEmail(), b.getEmail());
+            assertEquals(a.getPhone(), b.getPhone());
+            assertEquals(a.getAddress(), b.getAddress());
+            assertEquals(a.isVerified(), b.isVerified());
+            assertEquals(a.getTotalBalanceMinor(), b.getTotalBalanceMinor());
+            assertEquals(a.getAccounts().size(), b.getAccounts().size());
+            for (int i = 0; i < a.getAccounts().size(); i++) {
+                assertSameAccount(a.getAccounts().get(i), b.getAccounts().get(i));
+            }
+        }
+    }
+
+    private static void assertSameAccount(Account a, Account b) {
+        assertEquals(a.getAccountNumber(), b.getAccountNumber());
+        assertEquals(a.getAccountType(), b.getAccountType());
+        assertEquals(a.getCurrency(), b.getCurrency());
+        assertEquals(a.getBalanceMinor(), b.getBalanceMinor());
+        assertEquals(a.getMinimumBalanceMinor(), b.getMinimumBalanceMinor());
+        assertEquals(a.getInterestRatePpm(), b.getInterestRatePpm());
+        assertEquals(a.isActive(), b.isActive());
+        TransactionLog x = a.getTransactionLog();
+        TransactionLog y = b.getTransactionLog();
+        assertEquals(x.size(), y.size());
+        assertEquals(x.firstRetained(), y.firstRetained());
+        assertEquals(x.getCapacity(), y.getCapacity());
+        assertEquals(x.getOverflow() != null, y.getOverflow() != null);
+        assertEquals(x.isTypeIndexed(), y.isTypeIndexed());
+        for (int s = x.firstRetained(); s < x.size(); s++) {
+            assertEquals(x.getType(s), y.getType(s));
+            assertEquals(x.getAmount(s), y.getAmount(s));
+            assertEquals(x.getBalanceAfter(s), y.getBalanceAfter(s));
+            assertEquals(x.getTimestampMicros(s), y.getTimestampMicros(s));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BankingService service = book(40, 6);
+        Customer verified = service.getCustomer(5000);
+        assertTrue(verified.verifyCustomer("c0@example.com", "555-0"));
+        List<Customer> customers = service.getAllCustomers();
+
+        BinarySnapshot.write(customers, file);
+        assertSameCustomers(customers, BinarySnapshot.read(file));
+    }
+
+    @Test
+    public void testEmptyList() throws IOException {
+        BinarySnapshot.write(new ArrayList<>(), file);
+        assertTrue(BinarySnapshot.read(file).isEmpty());
+    }
+
+    @Test
+    public void testLoadedCustomersRegisterWithService() throws IOException {
+        BankingService service = book(10, 3);
+        BinarySnapshot.write(service.getAllCustomers(), file);
+
+        BankingService restored = new BankingService();
+        for (Customer customer : BinarySnapshot.read(file)) {
+            assertTrue(restored.registerCustomer(customer));
+        }
+        assertEquals(service.getTotalAccounts(), restored.getTotalAccounts());
+        assertEquals(service.getTotalBankBalanceMinor(), restored.getTotalBankBalanceMinor());
+        assertTrue(restored.processTransaction("S1", "DEPOSIT", 1.0));
+        assertEquals(service.getAccount("S1").getTransactionCount() + 1,
+                     restored.getAccount("S1").getTransactionCount());
+    }
+
+    @Test
+    public void testBoundedAndOverflowHistory() throws IOException {
+        Customer customer = new Customer(7, "Ann", "Lee");
+        TransactionLog bounded = new TransactionLog(8, null);
+        bounded.enableTypeIndex();
+        TransactionLog spilled = new TransactionLog(8, new ChunkedHistoryStore());
+        Account dropping = new Account("B1", "CHECKING", 0.0, 7, bounded);
+        Account keeping = new Account("B2", "SAVINGS", 0.0, 7, spilled);
+        customer.addAccount(dropping);
+        customer.addAccount(keeping);
+        for (int i = 0; i < 50; i++) {
+            dropping.deposit(1.0 + i);
+            keeping.deposit(2.0 + i);
+            keeping.withdraw(1.0);
+        }
+        assertTrue(bounded.firstRetained() > 0);
+        List<Customer> customers = List.of(customer);
+
+        BinarySnapshot.write(customers, file);
+        List<Customer> loaded = BinarySnapshot.read(file);
+        assertSameCustomers(customers, loaded);
+        TransactionLog restored = loaded.get(0).getAccount("B1").getTransactionLog();
+        assertEquals(bounded.between(0, Long.MAX_VALUE, (byte) 1).skipAll(),
+                     restored.between(0, Long.MAX_VALUE, (byte) 1).skipAll());
+    }
+
+    @Test
+    public void testLimitedOverflowHistory() throws IOException {
+        Customer customer = new Customer(7, "Ann", "Lee");
+        TransactionLog limited = new TransactionLog(8, new ChunkedHistoryStore(10));
+        Account account = new Account("L1", "CHECKING", 0.0, 7, limited);
+        customer.addAccount(account);
+        for (int i = 0; i < 3 * 4096; i++) {
+            account.deposit(1.0);
+        }
+        assertTrue(limited.firstRetained() > 0);
+        List<Customer> customers = List.of(customer);
+
+        BinarySnapshot.write(customers, file);
+        List<Customer> loaded = BinarySnapshot.read(file);
+        assertSameCustomers(customers, loaded);
+        TransactionLog restored = loaded.get(0).getAccount("L1").getTransactionLog();
+        assertEquals(10, ((ChunkedHistoryStore) restored.getOverflow()).getLimit());
+        int first = restored.firstRetained();
+        for (int i = 0; i < 2 * 4096; i++) {
+            loaded.get(0).getAccount("L1").deposit(1.0);
+        }
+        assertTrue(restored.firstRetained() > first);
+    }
+
+    @Test
+    public void testInactiveAccountStaysOutOfTotals() throws IOException {
+        BankingService service = book(2, 1);
+        service.getAccount("C1").deactivateAccount();
+        List<Customer> customers = service.getAllCustomers();
+        BinarySnapshot.write(customers, file);
+
+        List<Customer> loaded = BinarySnapshot.read(file);
+        assertFalse(loaded.get(1).getAccount("C1").isActive());
+        assertEquals(customers.get(1).getTotalBalanceMinor(), loaded.get(1).getTotalBalanceMinor());
+    }
+
+    @Test
+    public void testSpansManyBlocks() throws IOException {
+        BankingService service = book(3000, 4);
+        List<Customer> customers = service.getAllCustomers();
+        long size = BinarySnapshot.write(customers, file);
+        assertTrue(size > 256 * 1024);
+        assertSameCustomers(customers, BinarySnapshot.read(file));
+    }
+
+    @Test
+    public void testSmallerThanSerialization() throws IOException {
+        List<Customer> customers = book(500, 4).getAllCustomers();
+        File serialized = folder.newFile("customers.dat");
+        BankingFiles.saveCustomers(customers, serialized);
+        long binary = BankingFiles.saveSnapshot(customers, file.toFile());
+        assertTrue(binary * 2 < serialized.length());
+        assertEquals(customers.size(), BankingFiles.loadSnapshot(file.toFile()).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testDetectsCorruptBlock() throws IOException {
+        BinarySnapshot.write(book(20, 2).getAllCustomers(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x40);
+        }
+        BinarySnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDetectsTruncation() throws IOException {
+        BinarySnapshot.write(book(20, 2).getAllCustomers(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        BinarySnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsSerializedFile() throws IOException {
+        BankingFiles.saveCustomers(book(2, 1).getAllCustomers(), file.toFile());
+        assertTrue(Files.size(file) > 0);
+        BinarySnapshot.read(file);
+    }
+
+    @Test
+    public void testParallelReadMatchesSequential() throws IOException {
+        List<Customer> customers = book(3000, 4).getAllCustomers();
+        BinarySnapshot.write(customers, file);
+        for (int threads : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertSameCustomers(customers, BinarySnapshot.read(file, pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testParallelReadDetectsCorruptBlock() throws IOException {
+        BinarySnapshot.write(book(3000, 2).getAllCustomers(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x40);
+        }
+        BinarySnapshot.read(file, ForkJoinPool.commonPool());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParallelReadDetectsTruncation() throws IOException {
+        BinarySnapshot.write(book(3000, 2).getAllCustomers(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        BinarySnapshot.read(file, ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void testParallelLoadIntoService() throws IOException {
+        BankingService original = book(3000, 2);
+        BinarySnapshot.write(original.getAllCustomers(), file);
+
+        BankingService service = new BankingService(true);
+        assertTrue(service.registerCustomer(new Customer(5000, "Already", "Here")));
+        assertEquals(2999, BankingFiles.loadSnapshot(file.toFile(), service, 4));
+        assertEquals("Already", service.getCustomer(5000).getFirstName());
+        assertEquals(3000, service.getAllCustomers().size());
+        assertEquals(original.getTotalBankBalanceMinor() - original.getCustomer(5000).getTotalBalanceMinor(),
+                     service.getTotalBankBalanceMinor());
+        assertNull(service.getAccount("S0"));
+        assertSameAccount(original.getAccount("C2999"), service.getAccount("C2999"));
+
+        assertTrue(service.processTransaction("S1", "DEPOSIT", 10.0));
+        assertEquals(original.getAccount("S1").getBalanceMinor() + 1000, service.getAccount("S1").getBalanceMinor());
+        assertEquals(0, service.registerAll(BinarySnapshot.read(file)));
+    }
+}
@@ -0,0 +1,201 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.BankingFiles;
+import org.banking.files.BinarySnapshot;
+import org.banking.files.Checkpointer;
+import org.banking.model.Account;
+import org.banking.model.CheckpointGate;
+import org.banking.model.Customer;
+import org.banking.model.TransactionLog;
+import org.banking.service.BankingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CheckpointerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static BankingService book(int customers) {
+        BankingService service = new BankingService(true);
+        service.setHistoryRetention(64, null);
+        service.setCheckpointGate(new CheckpointGate());
+        for (int c = 0; c < customers; c++) {
+            service.registerCustomer(new Customer(1 + c, "First" + c, "Last" + c, "c" + c + "@example.com",
+                                                  "555-" + c, null));
+            service.createAccount(1 + c, "S" + c, "SAVINGS", 1000.0);
+            service.createAccount(1 + c, "C" + c, "CHECKING", 500.0);
+        }
+        return service;
+    }
+
+    private static long totalBalance(List<Customer> customers) {
+        long total = 0;
+        for (Customer customer : customers) {
+            for (Account account : customer.getAccounts()) {
+                total += account.getBalanceMinor();
+            }
+        }
+        return total;
+    }
+
+    private static void assertSameCustomers(List<Customer> expected, List<Customer> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int c = 0; c < expected.size(); c++) {
+            Customer x = expected.get(c);
+            Customer y = actual.get(c);
+            assertEquals(x.getCustomerId(), y.getCustomerId());
+            assertEquals(x.getEmail(), y.getEmail());
+            assertEquals(x.isVerified(), y.isVerified());
+            assertEquals(x.getAccounts().size(), y.getAccounts().size());
+            for (int a = 0; a < x.getAccounts().size(); a++) {
+                Account p = x.getAccounts().get(a);
+                Account q = y.getAccounts().get(a);
+                assertEquals(p.getAccountNumber(), q.getAccountNumber());
+                assertEquals(p.getBalanceMinor(), q.getBalanceMinor());
+                assertEquals(p.isActive(), q.isActive());
+                assertEquals(p.getInterestRatePpm(), q.getInterestRatePpm());
+                assertEquals(p.getTransactionCount(), q.getTransactionCount());
+            }
+        }
+    }
+
+    @Test
+    public void testCutIgnoresLaterChanges() throws IOException {
+        BankingService service = book(10);
+        service.processTransaction("S1", "DEPOSIT", 25.0);
+        service.transferFunds("S2", "C3", 40.0);
+        Path before = folder.newFile("before.bsn").toPath();
+        BinarySnapshot.write(service.getAllCustomers(), before);
+
+        Path cutFile = folder.newFile("cut.bsn").toPath();
+        try (CheckpointGate.Cut cut = service.cutCheckpoint()) {
+            assertTrue(service.getCheckpointGate().isCutOpen());
+            service.processTransaction("S1", "DEPOSIT", 5.0);
+            service.transferFunds("S4", "C5", 10.0);
+            service.getCustomer(7).setEmail("changed@example.com");
+            service.getAccount("S8").setInterestRate(0.07);
+            assertTrue(service.applyMonthlyCharges(10, "C9", 500.0));
+            assertTrue(service.closeAccount(10, "C9"));
+            assertTrue(service.createAccount(3, "N3", "SAVINGS", 200.0));
+            assertTrue(service.registerCustomer(new Customer(99, "Late", "Comer")));
+            BinarySnapshot.write(cut, cutFile);
+        }
+        assertFalse(service.getCheckpointGate().isCutOpen());
+        assertSameCustomers(BinarySnapshot.read(before), BinarySnapshot.read(cutFile));
+        assertEquals("changed@example.com", service.getCustomer(7).getEmail());
+    }
+
+    @Test
+    public void testCheckpointsUnderTransfersStayBalanced() throws Exception {
+        BankingService service = book(40);
+        long total = service.getTotalBankBalanceMinor();
+        File file = folder.newFile("checkpoint.bsn");
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] traffic = new Thread[3];
+        for (int t = 0; t < traffic.length; t++) {
+            int seed = t;
+            traffic[t] = new Thread(() -> {
+                try {
+                    int i = seed;
+                    while (!stop.get() && i < 200000) {
+                        i++;
+                        service.transferFunds("S" + (i % 40), "C" + ((i * 7) % 40), 1.0 + i % 5);
+                        service.transferFunds("C" + ((i * 3) % 40), "S" + ((i * 11) % 40), 1.0 + i % 3);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            traffic[t].start();
+        }
+        try (Checkpointer checkpointer = BankingFiles.openCheckpointer(service, file)) {
+            for (int round = 0; round < 20; round++) {
+                checkpointer.checkpoint();
+                List<Customer> loaded = BankingFiles.loadSnapshot(file);
+                assertEquals(40, loaded.size());
+                assertEquals(total, totalBalance(loaded));
+            }
+            assertEquals(20, checkpointer.getCheckpointCount());
+            assertEquals(file.length(), checkpointer.getLastCheckpointBytes());
+            assertEquals(40, checkpointer.getLastCheckpointCustomerCount());
+            assertTrue(checkpointer.getLastPauseNanos() > 0);
+            assertTrue(checkpointer.getLastCheckpointNanos() >= checkpointer.getLastPauseNanos());
+        } finally {
+            stop.set(true);
+            for (Thread t : traffic) {
+                t.join();
+            }
+        }
+        assertNull(failure.get());
+        assertEquals(total, service.getTotalBankBalanceMinor());
+    }
+
+    @Test
+    public void testBackgroundCheckpoints() throws Exception {
+        BankingService service = book(20);
+        File file = folder.newFile("background.bsn");
+        try (Checkpointer checkpointer = Checkpointer.open(service, file.toPath())) {
+            checkpointer.startCheckpoints(5);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (checkpointer.getCheckpointCount() < 3 && System.currentTimeMillis() < deadline) {
+                service.processTransaction("S1", "DEPOSIT", 1.0);
+                Thread.sleep(1);
+            }
+            assertTrue(checkpointer.getCheckpointCount() >= 3);
+            assertNull(checkpointer.getCheckpointFailure());
+        }
+        assertEquals(20, BankingFiles.loadSnapshot(file).size());
+    }
+
+    @Test
+    public void testBoundedHistoryKeepsEntriesOfTheCut() throws IOException {
+        BankingService service = new BankingService();
+        service.setCheckpointGate(new CheckpointGate());
+        Customer customer = new Customer(1, "Ann", "Lee");
+        customer.addAccount(new Account("B1", "CHECKING", 0.0, 1, new TransactionLog(8, null)));
+        service.registerCustomer(customer);
+        Account account = service.getAccount("B1");
+        for (int i = 0; i < 20; i++) {
+            account.deposit(1.0);
+        }
+        Path file = folder.newFile("bounded.bsn").toPath();
+        try (CheckpointGate.Cut cut = service.cutCheckpoint()) {
+            for (int i = 0; i < 3; i++) {
+                account.deposit(1.0);
+            }
+            BinarySnapshot.write(cut, file);
+        }
+        Account loaded = BinarySnapshot.read(file).get(0).getAccount("B1");
+        assertEquals(2000, loaded.getBalanceMinor());
+        assertEquals(20, loaded.getTransactionCount());
+        assertEquals(15, loaded.getTransactionLog().firstRetained());
+        assertEquals(2000, loaded.getTransactionLog().getBalanceAfter(19));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOneCutAtATime() {
+        BankingService service = book(2);
+        CheckpointGate.Cut cut = service.cutCheckpoint();
+        try {
+            service.cutCheckpoint();
+        } finally {
+            cut.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCutNeedsGate() {
+        new BankingService().cutCheckpoint();
+    }
+}
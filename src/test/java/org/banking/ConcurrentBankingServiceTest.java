@@ -0,0 +1,227 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import org.banking.model.Account;
+import org.banking.model.Customer;
+import org.banking.model.Transaction;
+import org.banking.service.BankingService;
+import org.banking.utils.StripedLocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentBankingServiceTest {
+
+    private static final int ACCOUNTS = 16;
+    private static final double OPENING_BALANCE = 100000.0;
+
+    private BankingService service;
+
+    @Before
+    public void setUp() {
+        service = new BankingService(true);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.registerCustomer(new Customer(i + 1, "C" + i, "L"));
+            service.createAccount(i + 1, accountNumber(i), "CHECKING", OPENING_BALANCE);
+        }
+    }
+
+    @Test
+    public void testConcurrentModeFlag() {
+        assertTrue(service.isConcurrent());
+        assertFalse(new BankingService().isConcurrent());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentTransfersConserveMoney() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final long seed = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 5000; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = random.nextInt(ACCOUNTS);
+                    service.transferFunds(accountNumber(from), accountNumber(to), 1 + random.nextInt(50));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        double total = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            total += service.getAccountBalance(accountNumber(i));
+        }
+        assertEquals(ACCOUNTS * OPENING_BALANCE, total, 0.001);
+        assertEquals(ACCOUNTS * OPENING_BALANCE, service.getTotalBankBalance(), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testOppositeTransfersDoNotDeadlock() throws Exception {
+        Thread forward = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                service.transferFunds(accountNumber(0), accountNumber(1), 1);
+            }
+        });
+        Thread backward = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                service.transferFunds(accountNumber(1), accountNumber(0), 1);
+            }
+        });
+        forward.start();
+        backward.start();
+        forward.join();
+        backward.join();
+        assertEquals(2 * OPENING_BALANCE,
+                service.getAccountBalance(accountNumber(0)) + service.getAccountBalance(accountNumber(1)), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentRegistrationAndLookup() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int base = 1000 + t * 10000;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    assertTrue(service.registerCustomer(new Customer(base + i, "F", "L")));
+                    assertNotNull(service.getCustomer(base + i));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        assertEquals(ACCOUNTS + 8000, service.getAllCustomers().size());
+    }
+
+    @Test(timeout = 30000)
+    public void testHotAccountCasUpdatesNeverBreachMinimum() throws Exception {
+        Account hot = new Account("9999999999", "CHECKING", 1000.0, 1L);
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final boolean depositor = (t % 2 == 0);
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    boolean ok = depositor ? hot.deposit(1) : hot.withdraw(3);
+                    if (ok) {
+                        succeeded.incrementAndGet();
+                    }
+                    assertTrue(hot.getBalance() >= hot.getMinimumBalance());
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        List<Transaction> history = hot.getTransactions();
+        assertEquals(succeeded.get(), history.size());
+        double net = 0;
+        for (Transaction t : history) {
+            net += t.getTransactionType().equals("DEPOSIT") ? t.getAmount() : -t.getAmount();
+        }
+        assertEquals(1000.0 + net, hot.getBalance(), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testTotalsStayExactWhileActivationToggles() throws Exception {
+        Customer owner = service.getCustomer(1);
+        Account account = owner.getAccount(accountNumber(0));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            final boolean depositor = (t % 2 == 0);
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    if (depositor) {
+                        account.deposit(1);
+                    } else {
+                        account.withdraw(1);
+                    }
+                }
+            }));
+        }
+        futures.add(pool.submit(() -> {
+            for (int i = 0; i < 20000; i++) {
+                account.deactivateAccount();
+                account.activateAccount();
+            }
+        }));
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertTrue(account.isActive());
+        assertEquals(account.getBalanceMinor(), owner.getTotalBalanceMinor());
+        long sum = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            sum += service.getAccount(accountNumber(i)).getBalanceMinor();
+        }
+        assertEquals(sum, service.getTotalBankBalanceMinor());
+    }
+
+    @Test(timeout = 30000)
+    public void testCloseRacingDepositNeverStrandsMoney() throws Exception {
+        long before = service.getTotalBankBalanceMinor();
+        int deposits = 0;
+        for (int round = 0; round < 500; round++) {
+            String number = "Z" + round;
+            assertTrue(service.createAccount(1, number, "CHECKING", 100));
+            assertTrue(service.applyMonthlyCharges(1, number, 100)); // empty, so it may be closed
+            Account account = service.getAccount(number);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicBoolean deposited = new AtomicBoolean();
+            Thread depositor = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                deposited.set(account.deposit(5));
+            });
+            depositor.start();
+            start.countDown();
+            boolean closed = service.closeAccount(1, number);
+            depositor.join();
+            assertFalse("deposit landed in a closed account", closed && deposited.get());
+            assertEquals(closed, service.getAccount(number) == null);
+            if (deposited.get()) {
+                deposits++;
+            }
+        }
+        assertEquals(before + deposits * 500L, service.getTotalBankBalanceMinor());
+    }
+
+    @Test
+    public void testStripedLocksRoundsUpAndIsStable() {
+        StripedLocks locks = new StripedLocks(100);
+        assertEquals(128, locks.getStripeCount());
+        assertEquals(locks.stripeFor("ACC001"), locks.stripeFor("ACC001"));
+        locks.lockBoth("ACC001", "ACC001");
+        locks.unlockBoth("ACC001", "ACC001");
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("%010d", i + 1);
+    }
+}
@@ -0,0 +1,181 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.CustomerSegments;
+import org.banking.model.Account;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class CustomerSegmentsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("segments").toPath();
+    }
+
+    private static BankingService book(int customers) {
+        BankingService service = new BankingService();
+        for (int c = 0; c < customers; c++) {
+            service.registerCustomer(new Customer(1 + c, "First" + c, "Last" + c, "c" + c + "@example.com",
+                                                  "555-" + c, null));
+            service.createAccount(1 + c, "S" + c, "SAVINGS", 1000.0);
+            service.createAccount(1 + c, "C" + c, "CHECKING", 500.0);
+        }
+        return service;
+    }
+
+    private static void assertSameBook(BankingService expected, List<Customer> loaded) {
+        BankingService actual = new BankingService();
+        for (Customer customer : loaded) {
+            assertTrue(actual.registerCustomer(customer));
+        }
+        assertEquals(expected.getTotalAccounts(), actual.getTotalAccounts());
+        assertEquals(expected.getTotalBankBalanceMinor(), actual.getTotalBankBalanceMinor());
+        for (Customer customer : expected.getAllCustomers()) {
+            Customer copy = actual.getCustomer(customer.getCustomerId());
+            assertEquals(customer.getEmail(), copy.getEmail());
+            for (Account account : customer.getAccounts()) {
+                Account restored = copy.getAccount(account.getAccountNumber());
+                assertEquals(account.getBalanceMinor(), restored.getBalanceMinor());
+                assertEquals(account.getTransactionCount(), restored.getTransactionCount());
+            }
+        }
+    }
+
+    @Test
+    public void testChangesMarkCustomersDirty() {
+        BankingService service = book(3);
+        Customer customer = service.getCustomer(2);
+        assertTrue(customer.isDirty());
+        customer.markSaved(customer.getChangeCount());
+        assertFalse(customer.isDirty());
+
+        assertTrue(service.processTransaction("S1", "DEPOSIT", 5.0));
+        assertTrue(customer.isDirty());
+        customer.markSaved(customer.getChangeCount());
+
+        assertTrue(service.transferFunds("S0", "C1", 5.0));
+        assertTrue(customer.isDirty());
+        customer.markSaved(customer.getChangeCount());
+
+        customer.getAccount("S1").setInterestRate(0.05);
+        assertTrue(customer.isDirty());
+        customer.markSaved(customer.getChangeCount());
+
+        customer.setEmail("new@example.com");
+        assertTrue(customer.isDirty());
+        customer.markSaved(customer.getChangeCount());
+
+        assertFalse(service.processTransaction("S1", "WITHDRAWAL", 1000000.0));
+        assertFalse(customer.isDirty());
+    }
+
+    @Test
+    public void testOnlyDirtyCustomersAreWritten() throws IOException {
+        BankingService service = book(100);
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            assertEquals(100, segments.save(service.getAllCustomers()));
+            long fullBytes = segments.getLastSaveBytes();
+            assertEquals(0, segments.save(service.getAllCustomers()));
+            assertEquals(1, segments.getSegmentCount());
+
+            service.processTransaction("S5", "DEPOSIT", 1.0);
+            service.transferFunds("S7", "C9", 2.0);
+            service.getCustomer(50).setAddress("Elm Street");
+            assertEquals(4, segments.save(service.getAllCustomers()));
+            assertTrue(segments.getLastSaveBytes() * 10 < fullBytes);
+            assertEquals(2, segments.getSegmentCount());
+
+            assertSameBook(service, segments.load());
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsNewestRecords() throws IOException {
+        BankingService service = book(20);
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            segments.save(service.getAllCustomers());
+            for (int round = 0; round < 5; round++) {
+                service.processTransaction("S" + round, "DEPOSIT", 10.0 + round);
+                service.processTransaction("S3", "WITHDRAWAL", 1.0);
+                segments.save(service.getAllCustomers());
+            }
+            assertEquals(6, segments.getSegmentCount());
+            assertEquals(5, segments.compact());
+            assertEquals(1, segments.getSegmentCount());
+            assertEquals(0, segments.compact());
+            assertSameBook(service, segments.load());
+
+            // Saving continues after the merged segment.
+            service.processTransaction("C4", "DEPOSIT", 3.0);
+            assertEquals(1, segments.save(service.getAllCustomers()));
+        }
+        try (CustomerSegments reopened = CustomerSegments.open(dir)) {
+            assertSameBook(service, reopened.load());
+        }
+    }
+
+    @Test
+    public void testLoadedCustomersAreClean() throws IOException {
+        BankingService service = book(10);
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            segments.save(service.getAllCustomers());
+        }
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            BankingService restored = new BankingService();
+            for (Customer customer : segments.load()) {
+                restored.registerCustomer(customer);
+            }
+            assertEquals(0, segments.save(restored.getAllCustomers()));
+            restored.processTransaction("S2", "DEPOSIT", 1.0);
+            assertEquals(1, segments.save(restored.getAllCustomers()));
+        }
+    }
+
+    @Test
+    public void testUnfinishedSegmentIsIgnored() throws IOException {
+        BankingService service = book(5);
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            segments.save(service.getAllCustomers());
+        }
+        Files.write(dir.resolve("segment-00000001.seg.tmp"), new byte[] {1, 2, 3});
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            assertFalse(Files.exists(dir.resolve("segment-00000001.seg.tmp")));
+            assertSameBook(service, segments.load());
+        }
+    }
+
+    @Test
+    public void testBackgroundCompactionWhileSaving() throws Exception {
+        BankingService service = book(50);
+        try (CustomerSegments segments = CustomerSegments.open(dir)) {
+            segments.startCompaction(5, 3);
+            for (int round = 0; round < 40; round++) {
+                service.processTransaction("S" + (round % 50), "DEPOSIT", 1.0);
+                service.transferFunds("S" + ((round + 7) % 50), "C" + (round % 50), 1.0);
+                segments.save(service.getAllCustomers());
+                Thread.sleep(1);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (segments.getSegmentCount() > 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(segments.getSegmentCount() <= 3);
+            assertNull(segments.getCompactionFailure());
+            assertSameBook(service, segments.load());
+        }
+    }
+}
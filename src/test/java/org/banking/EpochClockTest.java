@@ -0,0 +1,66 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.banking.model.Transaction;
+import org.banking.utils.EpochClock;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+public class EpochClockTest {
+
+    @After
+    public void restorePrecise() {
+        EpochClock.usePrecise();
+    }
+
+    @Test
+    public void testPreciseTracksSystemClock() {
+        long before = System.currentTimeMillis() * 1000L;
+        long now = EpochClock.nowMicros();
+        long after = System.currentTimeMillis() * 1000L + 1000L;
+        assertFalse(EpochClock.isCoarse());
+        assertTrue(now >= before && now <= after);
+    }
+
+    @Test
+    public void testCoarseModeAdvancesWithTicker() throws Exception {
+        EpochClock.useCoarse(500);
+        assertTrue(EpochClock.isCoarse());
+        long first = EpochClock.nowMicros();
+        assertTrue(Math.abs(first - EpochClock.preciseMicros()) < 1_000_000L);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (EpochClock.nowMicros() == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(EpochClock.nowMicros() > first);
+    }
+
+    @Test
+    public void testUsePreciseLeavesCoarseMode() {
+        EpochClock.useCoarse(1000);
+        EpochClock.usePrecise();
+        assertFalse(EpochClock.isCoarse());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCoarseRejectsNonPositiveTick() {
+        EpochClock.useCoarse(0);
+    }
+
+    @Test
+    public void testToLocalDateTime() {
+        LocalDateTime expected = LocalDateTime.of(2024, 3, 15, 10, 30, 45, 123_456_000);
+        long micros = expected.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() * 1000L + 456L;
+        assertEquals(expected, EpochClock.toLocalDateTime(micros));
+    }
+
+    @Test
+    public void testTransactionTimestampBuiltFromMicros() {
+        Transaction t = Transaction.ofMinor("DEPOSIT", 100, 200);
+        assertEquals(EpochClock.toLocalDateTime(t.getTimestampMicros()), t.getTimestamp());
+        assertSame(t.getTimestamp(), t.getTimestamp());
+    }
+}
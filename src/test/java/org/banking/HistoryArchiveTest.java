@@ -0,0 +1,234 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.BankingFiles;
+import org.banking.files.HistoryArchive;
+import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.Customer;
+import org.banking.model.HistoryView;
+import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class HistoryArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private HistoryArchive archive;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("archive").toPath();
+        archive = HistoryArchive.open(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        archive.close();
+    }
+
+    // Entry i is a deposit of i + 1 stamped at 1000 * i micros.
+    private Customer customer(long id, String accountNumber, int entries) {
+        TransactionLog log = new TransactionLog(16, archive.newStore());
+        append(log, 0, entries);
+        Customer customer = new Customer(id, "First" + id, "Last" + id);
+        customer.addAccount(new Account(accountNumber, "CHECKING", 0.0, id, log));
+        return customer;
+    }
+
+    private static void append(TransactionLog log, int from, int to) {
+        for (int i = from; i < to; i++) {
+            log.append(TransactionType.DEPOSIT, i + 1, (long) (i + 1) * (i + 2) / 2, 1000L * i);
+        }
+    }
+
+    private static void assertHistory(TransactionLog log, int entries) {
+        assertEquals(entries, log.size());
+        for (int i = 0; i < entries; i++) {
+            assertEquals(TransactionType.DEPOSIT, log.getType(i));
+            assertEquals(i + 1, log.getAmount(i));
+            assertEquals((long) (i + 1) * (i + 2) / 2, log.getBalanceAfter(i));
+            assertEquals(1000L * i, log.getTimestampMicros(i));
+        }
+    }
+
+    private static TransactionLog log(Customer customer) {
+        return customer.getAccounts().get(0).getTransactionLog();
+    }
+
+    @Test
+    public void testAgedHistoryStaysReadable() throws IOException {
+        List<Customer> customers = List.of(customer(1, "A1", 10000), customer(2, "A2", 100));
+        assertEquals(6000 + 100 - 16, archive.age(customers, 6000L * 1000));
+        assertEquals(6000, HistoryArchive.getArchivedCount(log(customers.get(0))));
+        assertEquals(84, HistoryArchive.getArchivedCount(log(customers.get(1))));
+        assertEquals(1, archive.getSegmentCount());
+        assertHistory(log(customers.get(0)), 10000);
+        assertHistory(log(customers.get(1)), 100);
+
+        HistoryView view = log(customers.get(0)).between(4090L * 1000, 4100L * 1000);
+        assertEquals(10, view.size());
+        Transaction first = view.get(0);
+        assertEquals(4091, first.getAmountMinor());
+
+        assertEquals(0, archive.age(customers, 6000L * 1000));
+        assertEquals(1, archive.getSegmentCount());
+        assertEquals(10000 - 6000 - 16, archive.age(customers, Long.MAX_VALUE));
+        assertEquals(2, archive.getSegmentCount());
+        assertHistory(log(customers.get(0)), 10000);
+    }
+
+    @Test
+    public void testArchiveIsCompressed() throws IOException {
+        Customer customer = customer(1, "A1", 50000);
+        long aged = archive.age(List.of(customer), Long.MAX_VALUE);
+        // About 25 bytes an entry on the heap.
+        assertTrue(archive.getLastAgeBytes() * 8 < aged * 25);
+    }
+
+    @Test
+    public void testAppendsContinueAfterAging() throws IOException {
+        Customer customer = customer(1, "A1", 3000);
+        archive.age(List.of(customer), 2000L * 1000);
+        append(log(customer), 3000, 9000);
+        archive.age(List.of(customer), 8000L * 1000);
+        assertEquals(8000, HistoryArchive.getArchivedCount(log(customer)));
+        assertHistory(log(customer), 9000);
+    }
+
+    @Test
+    public void testSnapshotKeepsArchivedHistoryInArchive() throws IOException {
+        List<Customer> customers = List.of(customer(1, "A1", 20000), customer(2, "A2", 500));
+        archive.age(customers, 15000L * 1000);
+        File full = folder.newFile("full.bsn");
+        BankingFiles.saveSnapshot(List.of(customer(3, "A3", 20000)), full);
+        File snapshot = folder.newFile("archived.bsn");
+        BankingFiles.saveSnapshot(customers, snapshot);
+        assertTrue(snapshot.length() * 2 < full.length());
+
+        archive.close();
+        archive = HistoryArchive.open(directory);
+        List<Customer> loaded = BankingFiles.loadSnapshot(snapshot, archive);
+        assertHistory(log(loaded.get(0)), 20000);
+        assertHistory(log(loaded.get(1)), 500);
+        assertEquals(15000, HistoryArchive.getArchivedCount(log(loaded.get(0))));
+
+        append(log(loaded.get(0)), 20000, 21000);
+        archive.age(loaded, 20500L * 1000);
+        assertHistory(log(loaded.get(0)), 21000);
+    }
+
+    @Test(expected = IOException.class)
+    public void testSnapshotNeedsItsArchive() throws IOException {
+        Customer customer = customer(1, "A1", 1000);
+        archive.age(List.of(customer), 500L * 1000);
+        File snapshot = folder.newFile("archived.bsn");
+        BankingFiles.saveSnapshot(List.of(customer), snapshot);
+        BankingFiles.loadSnapshot(snapshot);
+    }
+
+    @Test
+    public void testOlderSnapshotAgedAgainReplacesBlocks() throws IOException {
+        Customer customer = customer(1, "A1", 5000);
+        archive.age(List.of(customer), 1000L * 1000);
+        File snapshot = folder.newFile("older.bsn");
+        BankingFiles.saveSnapshot(List.of(customer), snapshot);
+        archive.age(List.of(customer), 4000L * 1000);
+
+        // Restored from the older snapshot, entries 1000..3999 are on the
+        // heap again while the archive also has them.
+        List<Customer> restored = BankingFiles.loadSnapshot(snapshot, archive);
+        assertEquals(1000, HistoryArchive.getArchivedCount(log(restored.get(0))));
+        assertHistory(log(restored.get(0)), 5000);
+        archive.age(restored, 2500L * 1000);
+
+        archive.close();
+        archive = HistoryArchive.open(directory);
+        File newer = folder.newFile("newer.bsn");
+        BankingFiles.saveSnapshot(restored, newer);
+        List<Customer> reloaded = BankingFiles.loadSnapshot(newer, archive);
+        assertEquals(2500, HistoryArchive.getArchivedCount(log(reloaded.get(0))));
+        assertHistory(log(reloaded.get(0)), 5000);
+    }
+
+    @Test
+    public void testServiceAccountsUseArchive() throws IOException {
+        BankingService service = new BankingService();
+        archive.close();
+        archive = BankingFiles.openHistoryArchive(service, directory.toFile());
+        service.registerCustomer(new Customer(7, "Ann", "Lee"));
+        service.createAccount(7, "S7", "SAVINGS", 100.0);
+        for (int i = 0; i < 1000; i++) {
+            service.processTransaction("S7", "DEPOSIT", 1.0);
+        }
+        TransactionLog log = service.getAccount("S7").getTransactionLog();
+        long[] before = new long[log.size()];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = log.getBalanceAfter(i);
+        }
+        assertEquals(before.length - TransactionLog.DEFAULT_CAPACITY, archive.age(service.getAllCustomers(), Long.MAX_VALUE));
+        HistoryView history = log.toList();
+        assertEquals(before.length, history.size());
+        for (int i = 0; i < before.length; i++) {
+            assertEquals(before[i], history.getBalanceAfterMinor(i));
+        }
+    }
+
+    @Test
+    public void testSerializationCopiesArchivedHistory() throws Exception {
+        Customer customer = customer(1, "A1", 3000);
+        archive.age(List.of(customer), 2000L * 1000);
+        File file = folder.newFile("customers.dat");
+        BankingFiles.saveCustomers(List.of(customer), file);
+        archive.close();
+        TransactionLog loaded = log(BankingFiles.loadCustomers(file).get(0));
+        assertTrue(loaded.getOverflow() instanceof ChunkedHistoryStore);
+        assertHistory(loaded, 3000);
+    }
+
+    @Test
+    public void testDetectsCorruptBlock() throws IOException {
+        Customer customer = customer(1, "A1", 3000);
+        archive.age(List.of(customer), Long.MAX_VALUE);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*.har");
+             RandomAccessFile raf = new RandomAccessFile(segments.iterator().next().toFile(), "rw")) {
+            raf.seek(20);
+            int b = raf.read();
+            raf.seek(20);
+            raf.write(b ^ 0x40);
+        }
+        try {
+            log(customer).getAmount(5);
+            fail("corrupt block was read");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause().getMessage().contains("checksum"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDetectsTruncatedSegment() throws IOException {
+        archive.age(List.of(customer(1, "A1", 3000)), Long.MAX_VALUE);
+        archive.close();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*.har");
+             RandomAccessFile raf = new RandomAccessFile(segments.iterator().next().toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        archive = HistoryArchive.open(directory);
+    }
+}
@@ -0,0 +1,231 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.HistoryCursor;
+import org.banking.model.HistoryView;
+import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.banking.utils.EpochClock;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+public class HistoryQueryTest {
+
+    private static final long T0 = 1_700_000_000_000_000L;
+    private static final byte[] CYCLE = {
+        TransactionType.DEPOSIT, TransactionType.WITHDRAWAL, TransactionType.DEPOSIT, TransactionType.INTEREST
+    };
+
+    private TransactionLog log;
+
+    @Before
+    public void setUp() {
+        log = new TransactionLog();
+    }
+
+    // Entry i is stamped T0 + 10i and has amount i.
+    private void fill(TransactionLog target, int count) {
+        for (int i = 0; i < count; i++) {
+            target.append(CYCLE[i % CYCLE.length], i, i, T0 + 10L * i);
+        }
+    }
+
+    private static int count(HistoryCursor cursor, byte type, TransactionLog source) {
+        int n = 0;
+        int previous = -1;
+        while (cursor.hasNext()) {
+            int sequence = cursor.nextSequence();
+            assertTrue(sequence > previous);
+            assertEquals(type, source.getType(sequence));
+            previous = sequence;
+            n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void testBetweenIsHalfOpen() {
+        fill(log, 1000);
+        HistoryView range = log.between(T0 + 100, T0 + 200);
+        assertEquals(10, range.size());
+        assertEquals(10, range.getAmountMinor(0));
+        assertEquals(19, range.getAmountMinor(9));
+        assertEquals(10, range.getFirstSequence());
+    }
+
+    @Test
+    public void testBetweenRoundsToEntryBoundaries() {
+        fill(log, 1000);
+        HistoryView range = log.between(T0 + 95, T0 + 201);
+        assertEquals(10, range.getAmountMinor(0));
+        assertEquals(20, range.getAmountMinor(range.size() - 1));
+    }
+
+    @Test
+    public void testBetweenOutsideHistory() {
+        fill(log, 100);
+        assertTrue(log.between(0, T0).isEmpty());
+        assertTrue(log.between(T0 + 10_000, T0 + 20_000).isEmpty());
+        assertTrue(log.between(T0 + 500, T0 + 100).isEmpty());
+        assertEquals(100, log.between(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertTrue(new TransactionLog().between(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testBetweenCoversOverflowAndRing() {
+        TransactionLog bounded = new TransactionLog(64, new ChunkedHistoryStore());
+        fill(bounded, 5000);
+        HistoryView range = bounded.between(T0, T0 + 10L * 5000);
+        assertEquals(5000, range.size());
+        HistoryView tail = bounded.between(T0 + 10L * 4990, Long.MAX_VALUE);
+        assertEquals(10, tail.size());
+        assertEquals(4990, tail.getAmountMinor(0));
+    }
+
+    @Test
+    public void testBetweenSkipsDroppedEntries() {
+        TransactionLog ring = new TransactionLog(16, null);
+        fill(ring, 100);
+        HistoryView range = ring.between(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(16, range.size());
+        assertEquals(84, range.getAmountMinor(0));
+    }
+
+    @Test
+    public void testTimestampsNeverGoBackwards() {
+        log.append(TransactionType.DEPOSIT, 1, 1, T0 + 50);
+        log.append(TransactionType.DEPOSIT, 2, 3, T0 + 20);
+        log.append(TransactionType.DEPOSIT, 3, 6, T0 + 60);
+        assertEquals(T0 + 50, log.getTimestampMicros(1));
+        assertEquals(2, log.between(T0 + 50, T0 + 60).size());
+    }
+
+    @Test
+    public void testFilteredScanAndIndexAgree() {
+        fill(log, 10_000);
+        TransactionLog indexed = new TransactionLog();
+        indexed.enableTypeIndex();
+        fill(indexed, 10_000);
+        assertTrue(indexed.isTypeIndexed());
+        assertFalse(log.isTypeIndexed());
+
+        for (byte type : new byte[] {TransactionType.DEPOSIT, TransactionType.INTEREST, TransactionType.TRANSFER_IN}) {
+            int scanned = count(log.between(T0 + 1000, T0 + 51_000, type), type, log);
+            int looked = count(indexed.between(T0 + 1000, T0 + 51_000, type), type, indexed);
+            assertEquals(scanned, looked);
+        }
+        assertEquals(2500, count(indexed.between(T0 + 1000, T0 + 51_000, TransactionType.DEPOSIT),
+                                 TransactionType.DEPOSIT, indexed));
+        assertEquals(0, count(indexed.between(T0, Long.MAX_VALUE, TransactionType.TRANSFER_IN),
+                              TransactionType.TRANSFER_IN, indexed));
+    }
+
+    @Test
+    public void testEnableIndexOnExistingHistory() {
+        fill(log, 1000);
+        log.enableTypeIndex();
+        fill(log, 1000);
+        HistoryCursor cursor = log.between(Long.MIN_VALUE, Long.MAX_VALUE, TransactionType.WITHDRAWAL);
+        assertEquals(500, cursor.skipAll());
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testCursorMaterializesTransactions() {
+        log.enableTypeIndex();
+        fill(log, 20);
+        HistoryCursor cursor = log.between(T0 + 20, T0 + 100, TransactionType.DEPOSIT);
+        Transaction first = cursor.next();
+        assertEquals("DEPOSIT", first.getTransactionType());
+        assertEquals(2, first.getAmountMinor());
+        assertEquals(T0 + 20, first.getTimestampMicros());
+        assertEquals(4, cursor.next().getAmountMinor());
+        assertEquals(6, cursor.next().getAmountMinor());
+        assertEquals(8, cursor.next().getAmountMinor());
+        assertFalse(cursor.hasNext());
+        try {
+            cursor.next();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+    }
+
+    @Test
+    public void testIndexTracksBoundedRing() {
+        TransactionLog ring = new TransactionLog(16, null);
+        ring.enableTypeIndex();
+        fill(ring, 10_000);
+        HistoryCursor cursor = ring.between(Long.MIN_VALUE, Long.MAX_VALUE, TransactionType.DEPOSIT);
+        assertEquals(8, count(cursor, TransactionType.DEPOSIT, ring));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIndexedCursorOverDroppedEntriesFails() {
+        TransactionLog ring = new TransactionLog(16, null);
+        ring.enableTypeIndex();
+        fill(ring, 16);
+        HistoryCursor cursor = ring.between(Long.MIN_VALUE, Long.MAX_VALUE, TransactionType.DEPOSIT);
+        fill(ring, 16);
+        cursor.hasNext();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testScanningCursorOverDroppedEntriesFails() {
+        TransactionLog ring = new TransactionLog(16, null);
+        fill(ring, 16);
+        HistoryCursor cursor = ring.between(Long.MIN_VALUE, Long.MAX_VALUE, TransactionType.DEPOSIT);
+        fill(ring, 16);
+        cursor.hasNext();
+    }
+
+    @Test
+    public void testIndexSurvivesSerialization() throws Exception {
+        TransactionLog bounded = new TransactionLog(32, new ChunkedHistoryStore());
+        bounded.enableTypeIndex();
+        fill(bounded, 500);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(bounded);
+        }
+        TransactionLog copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TransactionLog) in.readObject();
+        }
+        assertTrue(copy.isTypeIndexed());
+        assertEquals(125, copy.between(Long.MIN_VALUE, Long.MAX_VALUE, TransactionType.INTEREST).skipAll());
+        copy.append(TransactionType.INTEREST, 1, 1, T0);
+        assertEquals(T0 + 10L * 499, copy.getTimestampMicros(500));
+        assertEquals(126, copy.between(Long.MIN_VALUE, Long.MAX_VALUE, TransactionType.INTEREST).skipAll());
+    }
+
+    @Test
+    public void testAccountQueriesByLocalTime() {
+        Account account = new Account("1000000001", "CHECKING", 1000.0, 1L);
+        LocalDateTime before = EpochClock.toLocalDateTime(EpochClock.nowMicros() - 1);
+        account.deposit(10);
+        account.withdraw(5);
+        account.deposit(20);
+        LocalDateTime after = EpochClock.toLocalDateTime(EpochClock.nowMicros() + 1);
+
+        assertEquals(3, account.getTransactionsBetween(before, after).size());
+        assertTrue(account.getTransactionsBetween(after, after.plusDays(1)).isEmpty());
+        assertEquals(2, account.getTransactionsBetween(before, after, "DEPOSIT").skipAll());
+        HistoryCursor withdrawals = account.getTransactionsBetween(before, after, "WITHDRAWAL");
+        assertEquals(5.0, withdrawals.next().getAmount(), 0.001);
+    }
+
+    @Test
+    public void testToEpochMicrosRoundTrip() {
+        long micros = T0 + 123_456L;
+        assertEquals(micros, EpochClock.toEpochMicros(EpochClock.toLocalDateTime(micros)));
+    }
+}
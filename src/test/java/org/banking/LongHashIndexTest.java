@@ -0,0 +1,74 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import org.banking.utils.LongHashIndex;
+
+public class LongHashIndexTest {
+
+    private LongHashIndex<String> index;
+
+    @Before
+    public void setUp() {
+        index = new LongHashIndex<>();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertTrue(index.putIfAbsent(42L, "a"));
+        assertEquals("a", index.get(42L));
+        assertNull(index.get(43L));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testPutIfAbsentRejectsDuplicateKey() {
+        assertTrue(index.putIfAbsent(1L, "a"));
+        assertFalse(index.putIfAbsent(1L, "b"));
+        assertEquals("a", index.get(1L));
+    }
+
+    @Test
+    public void testPutNullValueRejected() {
+        assertFalse(index.putIfAbsent(1L, null));
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void testZeroAndNegativeKeys() {
+        assertTrue(index.putIfAbsent(0L, "zero"));
+        assertTrue(index.putIfAbsent(-1L, "minus"));
+        assertEquals("zero", index.get(0L));
+        assertEquals("minus", index.get(-1L));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(index.putIfAbsent(i * 31, "v" + i));
+        }
+        assertEquals(10000, index.size());
+        for (long i = 0; i < 10000; i++) {
+            assertEquals("v" + i, index.get(i * 31));
+        }
+    }
+
+    @Test
+    public void testRemoveKeepsProbeChainIntact() {
+        for (long i = 0; i < 1000; i++) {
+            index.putIfAbsent(i, "v" + i);
+        }
+        for (long i = 0; i < 1000; i += 2) {
+            assertEquals("v" + i, index.remove(i));
+        }
+        assertEquals(500, index.size());
+        for (long i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                assertNull(index.get(i));
+            } else {
+                assertEquals("v" + i, index.get(i));
+            }
+        }
+        assertNull(index.remove(-5L));
+    }
+}
@@ -0,0 +1,261 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.BankingFiles;
+import org.banking.files.MappedSnapshot;
+import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.Customer;
+import org.banking.model.HistoryView;
+import org.banking.model.TransactionLog;
+import org.banking.service.BankingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+public class MappedSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile("snapshot.map");
+    }
+
+    private static BankingService book(int customers, int rounds) {
+        BankingService service = new BankingService(true);
+        for (int c = 0; c < customers; c++) {
+            service.registerCustomer(new Customer(100 + c, "First" + c, "Läst" + c, "c" + c + "@example.com",
+                                                  "555-" + c, null));
+            service.createAccount(100 + c, "S" + c, "SAVINGS", 1000.0);
+            service.createAccount(100 + c, "C" + c, "CHECKING", 500.0);
+        }
+        for (int r = 0; r < rounds; r++) {
+            for (int c = 0; c < customers; c++) {
+                service.processTransaction("S" + c, "DEPOSIT", 10.0 + r);
+                service.transferFunds("S" + c, "C" + c, 2.5);
+            }
+        }
+        return service;
+    }
+
+    private static void assertSameAccount(Account a, Account b) {
+        assertSameAccount(a, b, Long.MAX_VALUE);
+    }
+
+    /**
+     * Timestamps are compared only for entries before sequence timedUntil;
+     * entries posted separately to both accounts are stamped differently.
+     */
+    private static void assertSameAccount(Account a, Account b, long timedUntil) {
+        assertEquals(a.getAccountNumber(), b.getAccountNumber());
+        assertEquals(a.getAccountType(), b.getAccountType());
+        assertEquals(a.getBalanceMinor(), b.getBalanceMinor());
+        assertEquals(a.getMinimumBalanceMinor(), b.getMinimumBalanceMinor());
+        assertEquals(a.getInterestRatePpm(), b.getInterestRatePpm());
+        assertEquals(a.isActive(), b.isActive());
+        HistoryView x = a.getTransactions();
+        HistoryView y = b.getTransactions();
+        assertEquals(x.getFirstSequence(), y.getFirstSequence());
+        assertEquals(x.size(), y.size());
+        for (int i = 0; i < x.size(); i++) {
+            assertEquals(x.getTypeCode(i), y.getTypeCode(i));
+            assertEquals(x.getAmountMinor(i), y.getAmountMinor(i));
+            assertEquals(x.getBalanceAfterMinor(i), y.getBalanceAfterMinor(i));
+            if (x.getFirstSequence() + i < timedUntil) {
+                assertEquals(x.getTimestampMicros(i), y.getTimestampMicros(i));
+            }
+        }
+    }
+
+    @Test
+    public void testLazyServiceMatchesOriginal() throws IOException {
+        BankingService original = book(50, 300);
+        BankingFiles.saveMappedSnapshot(original.getAllCustomers(), file);
+
+        BankingService lazy = new BankingService(true);
+        MappedSnapshot snapshot = BankingFiles.openMappedSnapshot(lazy, file);
+        assertEquals(50, snapshot.getCustomerCount());
+        assertEquals(original.getTotalAccounts(), lazy.getTotalAccounts());
+        assertEquals(original.getTotalBankBalanceMinor(), lazy.getTotalBankBalanceMinor());
+
+        assertSameAccount(original.getAccount("C7"), lazy.getAccount("C7"));
+        assertEquals(original.getCustomer(130).getEmail(), lazy.getCustomer(130).getEmail());
+        assertSame(lazy.getAccount("S7"), lazy.getCustomer(107).getAccount("S7"));
+        assertEquals(original.getTotalBankBalanceMinor(), lazy.getTotalBankBalanceMinor());
+
+        for (Customer customer : original.getAllCustomers()) {
+            for (Account account : customer.getAccounts()) {
+                assertSameAccount(account, lazy.getAccount(account.getAccountNumber()));
+            }
+        }
+        assertNull(lazy.getAccount("X1"));
+        assertNull(lazy.getCustomer(99));
+    }
+
+    @Test
+    public void testTrafficOnLoadedAccounts() throws IOException {
+        BankingService original = book(10, 400);
+        MappedSnapshot.write(original.getAllCustomers(), file.toPath());
+        BankingService lazy = new BankingService(true);
+        lazy.setCustomerSource(MappedSnapshot.open(file.toPath()));
+
+        for (int r = 0; r < 500; r++) {
+            assertTrue(lazy.processTransaction("S3", "DEPOSIT", 1.0));
+            assertTrue(original.processTransaction("S3", "DEPOSIT", 1.0));
+        }
+        assertTrue(lazy.transferFunds("S3", "C4", 5.0));
+        assertTrue(original.transferFunds("S3", "C4", 5.0));
+        assertEquals(original.getTotalBankBalanceMinor(), lazy.getTotalBankBalanceMinor());
+        assertSameAccount(original.getAccount("S3"), lazy.getAccount("S3"), 800);
+        assertSameAccount(original.getAccount("C4"), lazy.getAccount("C4"), 400);
+    }
+
+    @Test
+    public void testRegistrationChecksUnloadedCustomers() throws IOException {
+        MappedSnapshot.write(book(5, 1).getAllCustomers(), file.toPath());
+        BankingService lazy = new BankingService();
+        lazy.setCustomerSource(MappedSnapshot.open(file.toPath()));
+
+        assertFalse(lazy.registerCustomer(new Customer(102, "Dup", "Licate")));
+        assertTrue(lazy.registerCustomer(new Customer(900, "New", "Comer")));
+        assertFalse(lazy.createAccount(900, "S4", "SAVINGS", 1000.0));
+        assertTrue(lazy.createAccount(900, "N1", "SAVINGS", 1000.0));
+        assertEquals(11, lazy.getTotalAccounts());
+    }
+
+    @Test
+    public void testClosedAccountIsNotReloaded() throws IOException {
+        BankingService original = book(3, 0);
+        MappedSnapshot.write(original.getAllCustomers(), file.toPath());
+        BankingService lazy = new BankingService();
+        lazy.setCustomerSource(MappedSnapshot.open(file.toPath()));
+
+        assertTrue(lazy.applyMonthlyCharges(101, "C1", 500.0));
+        assertTrue(lazy.closeAccount(101, "C1"));
+        assertNull(lazy.getAccount("C1"));
+        assertEquals(5, lazy.getTotalAccounts());
+    }
+
+    @Test
+    public void testGetAllCustomersLoadsEverything() throws IOException {
+        BankingService original = book(20, 2);
+        MappedSnapshot.write(original.getAllCustomers(), file.toPath());
+        BankingService lazy = new BankingService();
+        lazy.setCustomerSource(MappedSnapshot.open(file.toPath()));
+        lazy.getAccount("S5");
+
+        List<Customer> all = lazy.getAllCustomers();
+        assertEquals(20, all.size());
+        assertNull(lazy.getCustomerSource());
+        assertEquals(original.getTotalAccounts(), lazy.getTotalAccounts());
+        assertEquals(original.getTotalBankBalanceMinor(), lazy.getTotalBankBalanceMinor());
+    }
+
+    @Test
+    public void testBoundedHistoryAndSerialization() throws Exception {
+        Customer customer = new Customer(7, "Ann", "Lee");
+        TransactionLog bounded = new TransactionLog(8, null);
+        TransactionLog spilled = new TransactionLog(8, new ChunkedHistoryStore());
+        spilled.enableTypeIndex();
+        customer.addAccount(new Account("B1", "CHECKING", 0.0, 7, bounded));
+        customer.addAccount(new Account("B2", "SAVINGS", 0.0, 7, spilled));
+        for (int i = 0; i < 40; i++) {
+            customer.getAccount("B1").deposit(1.0 + i);
+            customer.getAccount("B2").deposit(2.0 + i);
+        }
+        MappedSnapshot.write(List.of(customer), file.toPath());
+        MappedSnapshot snapshot = MappedSnapshot.open(file.toPath());
+        Customer loaded = snapshot.loadCustomer(7);
+        assertSameAccount(customer.getAccount("B1"), loaded.getAccount("B1"));
+        assertSameAccount(customer.getAccount("B2"), loaded.getAccount("B2"));
+        assertTrue(loaded.getAccount("B2").getTransactionLog().isTypeIndexed());
+
+        // Accounts over mapped history serialize as ordinary ones.
+        for (int i = 0; i < 20; i++) {
+            loaded.getAccount("B2").deposit(1.0);
+            customer.getAccount("B2").deposit(1.0);
+        }
+        File copy = folder.newFile("customers.dat");
+        BankingFiles.saveCustomers(List.of(loaded), copy);
+        Customer reread = BankingFiles.loadCustomers(copy).get(0);
+        assertEquals(60, reread.getAccount("B2").getTransactionCount());
+        assertEquals(customer.getAccount("B2").getBalanceMinor(), reread.getAccount("B2").getBalanceMinor());
+    }
+
+    @Test
+    public void testLimitedOverflowIsCopiedIn() throws IOException {
+        Customer customer = new Customer(7, "Ann", "Lee");
+        customer.addAccount(new Account("L1", "CHECKING", 0.0, 7, new TransactionLog(8, new ChunkedHistoryStore(10))));
+        customer.addAccount(new Account("L2", "SAVINGS", 0.0, 7, new TransactionLog(8, null)));
+        for (int i = 0; i < 3 * 4096; i++) {
+            customer.getAccount("L1").deposit(1.0);
+        }
+        customer.getAccount("L2").deposit(5.0);
+        assertTrue(customer.getAccount("L1").getTransactionLog().firstRetained() > 0);
+        MappedSnapshot.write(List.of(customer), file.toPath());
+        MappedSnapshot snapshot = MappedSnapshot.open(file.toPath());
+        assertEquals(7L, snapshot.findOwner("L2"));
+        Customer loaded = snapshot.loadCustomer(7);
+        assertSameAccount(customer.getAccount("L1"), loaded.getAccount("L1"));
+        assertSameAccount(customer.getAccount("L2"), loaded.getAccount("L2"));
+        TransactionLog restored = loaded.getAccount("L1").getTransactionLog();
+        assertEquals(10, ((ChunkedHistoryStore) restored.getOverflow()).getLimit());
+    }
+
+    @Test
+    public void testSmallRegionsArePadded() throws IOException {
+        BankingService original = book(400, 3);
+        long size = MappedSnapshot.write(original.getAllCustomers(), file.toPath(), 12);
+        assertTrue(size > 4 * 4096);
+        MappedSnapshot snapshot = MappedSnapshot.open(file.toPath());
+        for (int c = 0; c < 400; c++) {
+            assertSameAccount(original.getAccount("S" + c), snapshot.loadCustomer(100 + c).getAccount("S" + c));
+            assertEquals(100 + c, snapshot.findOwner("C" + c));
+        }
+    }
+
+    @Test
+    public void testCorruptRecordFailsOnAccess() throws IOException {
+        MappedSnapshot.write(book(3, 1).getAllCustomers(), file.toPath());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(64 + 8 + 20);
+            int b = raf.read();
+            raf.seek(64 + 8 + 20);
+            raf.write(b ^ 0x01);
+        }
+        MappedSnapshot snapshot = MappedSnapshot.open(file.toPath());
+        assertNotNull(snapshot.loadCustomer(102));
+        try {
+            snapshot.loadCustomer(100);
+            fail("corrupt record was loaded");
+        } catch (UncheckedIOException expected) {
+            assertTrue(expected.getCause().getMessage().contains("checksum"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFileIsRejected() throws IOException {
+        MappedSnapshot.write(book(3, 1).getAllCustomers(), file.toPath());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 16);
+        }
+        MappedSnapshot.open(file.toPath());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSourceNeedsEmptyService() throws IOException {
+        MappedSnapshot.write(book(1, 0).getAllCustomers(), file.toPath());
+        BankingService service = book(1, 0);
+        service.setCustomerSource(MappedSnapshot.open(file.toPath()));
+    }
+}
@@ -0,0 +1,79 @@
+package org.banking;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.banking.utils.Money;
+
+public class MoneyTest {
+
+    @Test
+    public void testOfRoundsToNearestCent() {
+        assertEquals(1234, Money.of(12.34));
+        assertEquals(10, Money.of(0.1));
+        assertEquals(30, Money.of(0.1 + 0.2));
+        assertEquals(-505, Money.of(-5.05));
+    }
+
+    @Test
+    public void testRepeatedAdditionDoesNotDrift() {
+        long total = 0;
+        for (int i = 0; i < 1000000; i++) {
+            total = Money.add(total, Money.of(0.1));
+        }
+        assertEquals(Money.ofUnits(100000), total);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testAddOverflowThrows() {
+        Money.add(Long.MAX_VALUE, 1);
+    }
+
+    @Test
+    public void testAddToBalanceStaysInRange() {
+        assertEquals(Money.MAX_BALANCE, Money.addToBalance(Money.MAX_BALANCE - 1, 1));
+        assertEquals(Money.OUT_OF_RANGE, Money.addToBalance(Money.MAX_BALANCE, 1));
+        assertEquals(Money.OUT_OF_RANGE, Money.addToBalance(0, Long.MAX_VALUE));
+        assertEquals(Money.MIN_BALANCE, Money.addToBalance(Money.MIN_BALANCE + 1, -1));
+        assertEquals(Money.OUT_OF_RANGE, Money.addToBalance(Money.MIN_BALANCE, -1));
+        assertEquals(Money.OUT_OF_RANGE, Money.addToBalance(Money.MAX_BALANCE, Long.MIN_VALUE));
+        assertTrue(Money.isBalance(Money.MIN_BALANCE));
+        assertFalse(Money.isBalance(Money.of(1e17)));
+    }
+
+    @Test
+    public void testDivideHalfEven() {
+        assertEquals(2, Money.divideHalfEven(5, 2));   // 2.5 -> 2
+        assertEquals(4, Money.divideHalfEven(7, 2));   // 3.5 -> 4
+        assertEquals(3, Money.divideHalfEven(8, 3));   // 2.67 -> 3
+        assertEquals(-2, Money.divideHalfEven(-5, 2)); // -2.5 -> -2
+        assertEquals(-4, Money.divideHalfEven(-7, 2)); // -3.5 -> -4
+        assertEquals(-1, Money.divideHalfEven(-4, 3)); // -1.33 -> -1
+    }
+
+    @Test
+    public void testApplyRateMonthlyInterest() {
+        // 5000.00 at 2% annual, one month: 8.333.. -> 8.33
+        assertEquals(833, Money.applyRate(Money.ofUnits(5000), Money.rateOf(0.02), 12));
+        // 1.50 at 100% annual over 12 periods: 0.125 -> 0.12 (half-even)
+        assertEquals(12, Money.applyRate(150, Money.rateOf(1.0), 12));
+    }
+
+    @Test
+    public void testApplyRateBeyondLongProduct() {
+        long balance = 100_000_000_000_000_000L; // amount * rate overflows a long
+        assertEquals(1_250_000_000_000_000L, Money.applyRate(balance, Money.rateOf(0.15), 12));
+        assertEquals(1_250_000_000_000_000L, Money.applyRate(balance + 1, Money.rateOf(0.15), 12));
+        assertEquals(-1_250_000_000_000_000L, Money.applyRate(-balance, Money.rateOf(0.15), 12));
+        // Half a cent rounds half-even in the wide path too: 5e16 + 0.5 -> 5e16
+        assertEquals(50_000_000_000_000_000L, Money.applyRate(100_000_000_000_000_001L, 6_000_000, 12));
+        assertEquals(50_000_000_000_000_002L, Money.applyRate(100_000_000_000_000_003L, 6_000_000, 12));
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("12.05", Money.format(1205));
+        assertEquals("0.00", Money.format(0));
+        assertEquals("-0.07", Money.format(-7));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+}
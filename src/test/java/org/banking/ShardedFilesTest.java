@@ -0,0 +1,193 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.BankingFiles;
+import org.banking.files.ShardedFiles;
+import org.banking.model.Account;
+import org.banking.model.Customer;
+import org.banking.service.BankingService;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ShardedFilesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("shards").toPath();
+    }
+
+    private static BankingService book(int customers) {
+        BankingService service = new BankingService();
+        for (int c = 0; c < customers; c++) {
+            service.registerCustomer(new Customer(1 + c, "First" + c, "Last" + c, "c" + c + "@example.com",
+                                                  "555-" + c, null));
+            service.createAccount(1 + c, "S" + c, "SAVINGS", 1000.0);
+            service.createAccount(1 + c, "C" + c, "CHECKING", 500.0);
+        }
+        return service;
+    }
+
+    private static void assertSameBook(BankingService expected, List<Customer> loaded) {
+        BankingService actual = new BankingService();
+        for (Customer customer : loaded) {
+            assertTrue(actual.registerCustomer(customer));
+        }
+        assertEquals(expected.getAllCustomers().size(), actual.getAllCustomers().size());
+        assertEquals(expected.getTotalBankBalanceMinor(), actual.getTotalBankBalanceMinor());
+        for (Customer customer : expected.getAllCustomers()) {
+            Customer copy = actual.getCustomer(customer.getCustomerId());
+            assertEquals(customer.getEmail(), copy.getEmail());
+            for (Account account : customer.getAccounts()) {
+                Account restored = copy.getAccount(account.getAccountNumber());
+                assertEquals(account.getBalanceMinor(), restored.getBalanceMinor());
+                assertEquals(account.getTransactionCount(), restored.getTransactionCount());
+            }
+        }
+    }
+
+    private static void corrupt(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x40);
+        }
+    }
+
+    @Test
+    public void testCustomersArePartitionedByShard() throws IOException {
+        BankingService service = book(200);
+        try (ShardedFiles files = ShardedFiles.open(dir, 4)) {
+            assertEquals(200, files.save(service.getAllCustomers()));
+            for (int shard = 0; shard < 4; shard++) {
+                List<Customer> part = files.load(shard);
+                assertTrue(part.size() > 20);
+                for (Customer customer : part) {
+                    assertEquals(shard, files.shardOf(customer.getCustomerId()));
+                }
+            }
+            assertSameBook(service, files.load());
+        }
+    }
+
+    @Test
+    public void testSaveTouchesOnlyChangedShards() throws IOException {
+        BankingService service = book(100);
+        try (ShardedFiles files = ShardedFiles.open(dir, 4)) {
+            files.save(service.getAllCustomers());
+            service.processTransaction("S7", "DEPOSIT", 25.0);
+            int changed = files.shardOf(8);
+            assertEquals(1, files.save(service.getAllCustomers()));
+            for (int shard = 0; shard < 4; shard++) {
+                assertEquals(shard == changed ? 2 : 1, files.getSegmentCount(shard));
+            }
+            assertSameBook(service, files.load());
+        }
+    }
+
+    @Test
+    public void testCompactionMergesIntoAccountsFile() throws IOException {
+        BankingService service = book(100);
+        try (ShardedFiles files = ShardedFiles.open(dir, 3)) {
+            files.save(service.getAllCustomers());
+            service.processTransaction("S1", "DEPOSIT", 10.0);
+            service.getCustomer(50).setEmail("new@example.com");
+            files.save(service.getAllCustomers());
+            int shard = files.shardOf(2);
+            assertEquals(2, files.compact(shard));
+            assertEquals(0, files.getSegmentCount(shard));
+            assertTrue(Files.exists(files.getShardDirectory(shard).resolve("accounts.dat")));
+            assertSameBook(service, files.load());
+
+            assertTrue(files.compact() > 0);
+            for (int s = 0; s < 3; s++) {
+                assertEquals(0, files.getSegmentCount(s));
+            }
+            service.processTransaction("C3", "WITHDRAWAL", 5.0);
+            assertEquals(1, files.save(service.getAllCustomers()));
+            assertSameBook(service, files.load());
+        }
+        try (ShardedFiles reopened = ShardedFiles.open(dir, 3)) {
+            assertSameBook(service, reopened.load());
+        }
+    }
+
+    @Test
+    public void testRestoreOneShardFromBackup() throws IOException {
+        BankingService service = book(120);
+        Path backup = folder.newFolder("backup").toPath();
+        try (ShardedFiles files = ShardedFiles.open(dir, 4)) {
+            files.save(service.getAllCustomers());
+            files.compact();
+            assertTrue(files.backup(backup) > 0);
+
+            int damaged = files.shardOf(5);
+            corrupt(files.getShardDirectory(damaged).resolve("accounts.dat"));
+            try {
+                files.load(damaged);
+                fail("corrupt shard was loaded");
+            } catch (IOException expected) {
+                // checksum mismatch
+            }
+            long untouched = Files.getLastModifiedTime(files.getShardDirectory((damaged + 1) % 4)
+                                                           .resolve("accounts.dat")).toMillis();
+            files.restore(damaged, backup);
+            assertSameBook(service, files.load());
+            assertEquals(untouched, Files.getLastModifiedTime(files.getShardDirectory((damaged + 1) % 4)
+                                                                   .resolve("accounts.dat")).toMillis());
+        }
+    }
+
+    @Test
+    public void testReplaceShardFromLiveCustomers() throws IOException {
+        BankingService service = book(80);
+        try (ShardedFiles files = ShardedFiles.open(dir, 2)) {
+            files.save(service.getAllCustomers());
+            service.processTransaction("S9", "DEPOSIT", 10.0);
+            files.save(service.getAllCustomers());
+            int shard = files.shardOf(10);
+            try (Stream<Path> shardFiles = Files.list(files.getShardDirectory(shard))) {
+                corrupt(shardFiles.filter(p -> p.getFileName().toString().startsWith("segment-"))
+                                  .sorted().findFirst().get());
+            }
+            files.replace(shard, service.getAllCustomers());
+            assertEquals(0, files.getSegmentCount(shard));
+            assertSameBook(service, files.load());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testShardCountIsFixed() throws IOException {
+        ShardedFiles.open(dir, 4).close();
+        ShardedFiles.open(dir, 8);
+    }
+
+    @Test
+    public void testDefaultDirectoryUsesAccountsFile() throws IOException {
+        try (ShardedFiles files = BankingFiles.openShardedFiles(2)) {
+            try {
+                files.save(book(10).getAllCustomers());
+                files.compact();
+                assertTrue(Files.exists(files.getShardDirectory(0).resolve("accounts.dat")));
+            } finally {
+                try (Stream<Path> paths = Files.walk(files.getDirectory())) {
+                    paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.banking.model.Account;
+import org.banking.model.HistoryView;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+import org.banking.service.StatementRenderer;
+
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+public class StatementRendererTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private TransactionLog log;
+    private StatementRenderer renderer;
+
+    @Before
+    public void setUp() {
+        log = new TransactionLog();
+        renderer = new StatementRenderer();
+    }
+
+    @Test
+    public void testLineMatchesTransactionToString() {
+        log.append(TransactionType.DEPOSIT, 10050, 110050);
+        log.append(TransactionType.WITHDRAWAL, 5, -3);
+        log.append(TransactionType.MONTHLY_CHARGE, 0, 0);
+        HistoryView view = log.toList();
+
+        String rendered = renderer.renderTo(view, new StringBuilder()).toString();
+        String expected = view.get(0) + NL + view.get(1) + NL + view.get(2) + NL;
+        assertEquals(expected, rendered);
+    }
+
+    @Test
+    public void testFormatsDateAndAmounts() {
+        ZoneId zone = ZoneId.of("Asia/Kolkata");
+        LocalDateTime when = LocalDateTime.of(2024, 2, 29, 23, 59, 7);
+        long micros = when.atZone(zone).toEpochSecond() * 1_000_000L + 999_999L;
+
+        StringBuilder sb = new StatementRenderer(zone)
+            .appendLine(new StringBuilder(), TransactionType.TRANSFER_IN, 123456, -705, micros);
+        assertEquals("[2024-02-29 23:59:07] TRANSFER_IN: Amount=1234.56, Balance=-7.05", sb.toString());
+    }
+
+    @Test
+    public void testMatchesFormatterAcrossDaylightSavingChange() {
+        ZoneId zone = ZoneId.of("America/New_York");
+        StatementRenderer r = new StatementRenderer(zone);
+        DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        long start = LocalDateTime.of(2024, 3, 10, 0, 0).atZone(zone).toEpochSecond();
+        for (long s = start; s < start + 6 * 3600; s += 599) {
+            String line = r.appendLine(new StringBuilder(), TransactionType.INTEREST, 1, 1, s * 1_000_000L).toString();
+            String expected = "[" + f.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(s), zone)) + "]";
+            assertTrue(line, line.startsWith(expected));
+        }
+    }
+
+    @Test
+    public void testUnknownTypeCode() {
+        String line = renderer.appendLine(new StringBuilder(), (byte) 42, 1, 2, 0).toString();
+        assertTrue(line.contains("] UNKNOWN: Amount=0.01, Balance=0.02"));
+    }
+
+    @Test
+    public void testRenderRangeToWriter() throws Exception {
+        for (int i = 0; i < 5000; i++) {
+            log.append(TransactionType.DEPOSIT, i, i, 1_700_000_000_000_000L + i * 1_000_000L);
+        }
+        HistoryView view = log.toList();
+        StringWriter out = new StringWriter();
+        renderer.render(view, 1000, 4000, out);
+
+        String[] lines = out.toString().split(NL);
+        assertEquals(3000, lines.length);
+        assertEquals(view.get(1000).toString(), lines[0]);
+        assertEquals(view.get(3999).toString(), lines[2999]);
+    }
+
+    @Test
+    public void testRenderAccount() throws Exception {
+        Account account = new Account("1000000001", "CHECKING", 1000.0, 1L);
+        account.deposit(25.5);
+        account.withdraw(10);
+        StringWriter out = new StringWriter();
+        renderer.render(account, out);
+        assertEquals(account.getTransactions().get(0) + NL + account.getTransactions().get(1) + NL, out.toString());
+    }
+
+    @Test
+    public void testRenderEmptyHistory() throws Exception {
+        StringWriter out = new StringWriter();
+        renderer.render(log.toList(), 0, 0, out);
+        assertEquals("", out.toString());
+    }
+}
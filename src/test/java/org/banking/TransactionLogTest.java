@@ -0,0 +1,304 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.banking.model.Account;
+import org.banking.model.ChunkedHistoryStore;
+import org.banking.model.HistoryView;
+import org.banking.model.Transaction;
+import org.banking.model.TransactionLog;
+import org.banking.model.TransactionType;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+public class TransactionLogTest {
+
+    private TransactionLog log;
+
+    @Before
+    public void setUp() {
+        log = new TransactionLog();
+    }
+
+    @Test
+    public void testEmptyLog() {
+        assertEquals(0, log.size());
+        assertTrue(log.toList().isEmpty());
+        assertTrue(log.last(5).isEmpty());
+    }
+
+    @Test
+    public void testAppendAndReadColumns() {
+        log.append(TransactionType.DEPOSIT, 1050, 6050, 1_700_000_000_123_456L);
+        assertEquals(1, log.size());
+        assertEquals(TransactionType.DEPOSIT, log.getType(0));
+        assertEquals(1050, log.getAmount(0));
+        assertEquals(6050, log.getBalanceAfter(0));
+        assertEquals(1_700_000_000_123_456L, log.getTimestampMicros(0));
+    }
+
+    @Test
+    public void testMaterializedTransaction() {
+        log.append(TransactionType.MONTHLY_CHARGE, 2500, 97500);
+        Transaction t = log.get(0);
+        assertEquals("MONTHLY_CHARGE", t.getTransactionType());
+        assertEquals(25.0, t.getAmount(), 0.001);
+        assertEquals(975.0, t.getBalanceAfter(), 0.001);
+        assertEquals("", t.getDescription());
+        assertFalse(t.getTimestamp().isBefore(LocalDateTime.now().minusMinutes(1)));
+    }
+
+    @Test
+    public void testGrowsAcrossChunkBoundaries() {
+        ChunkedHistoryStore store = new ChunkedHistoryStore();
+        int count = 3 * 4096 + 17;
+        for (int i = 0; i < count; i++) {
+            store.append(TransactionType.DEPOSIT, i, i * 2L, i);
+        }
+        assertEquals(count, store.size());
+        for (int i : new int[] {0, 7, 8, 4095, 4096, 8191, 8192, count - 1}) {
+            assertEquals(i, store.getAmount(i));
+            assertEquals(i * 2L, store.getBalanceAfter(i));
+            assertEquals(i, store.getTimestampMicros(i));
+        }
+    }
+
+    @Test
+    public void testLimitedStoreDiscardsWholeChunks() throws Exception {
+        ChunkedHistoryStore store = new ChunkedHistoryStore(5000);
+        int count = 4 * 4096 + 3;
+        for (int i = 0; i < count; i++) {
+            store.append(TransactionType.DEPOSIT, i, i * 2L, i);
+        }
+        assertEquals(count, store.size());
+        assertEquals(8192, store.firstRetained());
+        assertEquals(8192, store.getAmount(8192));
+        assertEquals((count - 1) * 2L, store.getBalanceAfter(count - 1));
+        try {
+            store.getAmount(8191);
+            fail("discarded entry was readable");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(store);
+        }
+        ChunkedHistoryStore copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ChunkedHistoryStore) in.readObject();
+        }
+        assertEquals(5000, copy.getLimit());
+        assertEquals(count, copy.size());
+        assertEquals(8192, copy.firstRetained());
+        for (int i = 8192; i < count; i++) {
+            assertEquals(i, copy.getAmount(i));
+        }
+    }
+
+    @Test
+    public void testDefaultLogIsLimited() {
+        int count = TransactionLog.DEFAULT_HISTORY_LIMIT + 3 * 4096;
+        for (int i = 0; i < count; i++) {
+            log.append(TransactionType.DEPOSIT, i, i, i);
+        }
+        assertEquals(TransactionLog.DEFAULT_HISTORY_LIMIT, ((ChunkedHistoryStore) log.getOverflow()).getLimit());
+        assertTrue(log.firstRetained() > 0);
+        assertTrue(count - log.firstRetained() >= TransactionLog.DEFAULT_HISTORY_LIMIT);
+        assertEquals(count - log.firstRetained(), log.toList().size());
+        assertEquals(log.firstRetained(), log.getAmount(log.firstRetained()));
+        assertEquals(count - 1, log.getAmount(count - 1));
+    }
+
+    @Test
+    public void testDefaultLogKeepsFullHistoryThroughOverflow() {
+        int count = TransactionLog.DEFAULT_CAPACITY * 3 + 5;
+        for (int i = 0; i < count; i++) {
+            log.append(TransactionType.DEPOSIT, i, i, i);
+        }
+        assertEquals(count, log.size());
+        assertEquals(0, log.firstRetained());
+        assertEquals(count - TransactionLog.DEFAULT_CAPACITY, log.getOverflow().size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, log.getAmount(i));
+        }
+        assertEquals(count, log.toList().size());
+    }
+
+    @Test
+    public void testBoundedRingWithoutOverflowDropsOldest() {
+        TransactionLog ring = new TransactionLog(5, null); // rounded up to 8
+        assertEquals(8, ring.getCapacity());
+        for (int i = 0; i < 20; i++) {
+            ring.append(TransactionType.WITHDRAWAL, i, 100 - i, i);
+        }
+        assertEquals(20, ring.size());
+        assertEquals(12, ring.firstRetained());
+        assertEquals(8, ring.toList().size());
+        assertEquals(12, ring.getAmount(12));
+        assertEquals(19, ring.getAmount(19));
+        assertEquals(3, ring.last(3).size());
+        assertEquals(8, ring.last(100).size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBoundedRingRejectsDroppedSequence() {
+        TransactionLog ring = new TransactionLog(4, null);
+        for (int i = 0; i < 10; i++) {
+            ring.append(TransactionType.DEPOSIT, i, i, i);
+        }
+        ring.getAmount(5);
+    }
+
+    @Test
+    public void testViewReadsLogWithoutCopying() {
+        for (int i = 1; i <= 4; i++) {
+            log.append(TransactionType.DEPOSIT, i * 100L, i * 1000L, i);
+        }
+        HistoryView view = log.last(2);
+        log.append(TransactionType.WITHDRAWAL, 5, 5, 5);
+
+        assertEquals(2, view.size());
+        assertEquals(2, view.getFirstSequence());
+        assertEquals(TransactionType.DEPOSIT, view.getTypeCode(0));
+        assertEquals(300, view.getAmountMinor(0));
+        assertEquals(4000, view.getBalanceAfterMinor(1));
+        assertEquals(4, view.getTimestampMicros(1));
+        assertEquals(4.0, view.get(1).getAmount(), 0.001);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewIsReadOnly() {
+        log.append(TransactionType.DEPOSIT, 1, 1);
+        log.toList().add(log.get(0));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testViewOverDroppedEntriesFails() {
+        TransactionLog ring = new TransactionLog(4, null);
+        ring.append(TransactionType.DEPOSIT, 1, 1, 1);
+        HistoryView view = ring.toList();
+        for (int i = 0; i < 8; i++) {
+            ring.append(TransactionType.DEPOSIT, i, i, i);
+        }
+        view.getAmountMinor(0);
+    }
+
+    @Test
+    public void testLastReturnsMostRecentOldestFirst() {
+        for (int i = 1; i <= 10; i++) {
+            log.append(TransactionType.DEPOSIT, i * 100L, i * 100L);
+        }
+        List<Transaction> last = log.last(3);
+        assertEquals(3, last.size());
+        assertEquals(8.0, last.get(0).getAmount(), 0.001);
+        assertEquals(10.0, last.get(2).getAmount(), 0.001);
+        assertEquals(10, log.last(50).size());
+        assertTrue(log.last(0).isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+        log.append(TransactionType.DEPOSIT, 1, 1);
+        log.get(1);
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        for (int i = 0; i < 5000; i++) {
+            log.append(TransactionType.WITHDRAWAL, i, -i, 1000L + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(log);
+        }
+        TransactionLog copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TransactionLog) in.readObject();
+        }
+        assertEquals(5000, copy.size());
+        assertEquals(TransactionType.WITHDRAWAL, copy.getType(4999));
+        assertEquals(4999, copy.getAmount(4999));
+        assertEquals(-4999, copy.getBalanceAfter(4999));
+        assertEquals(5999, copy.getTimestampMicros(4999));
+        assertEquals(0, copy.getAmount(0));
+    }
+
+    @Test
+    public void testSerializationOfWrappedRing() throws Exception {
+        TransactionLog ring = new TransactionLog(8, null);
+        for (int i = 0; i < 21; i++) {
+            ring.append(TransactionType.INTEREST, i, i, i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(ring);
+        }
+        TransactionLog copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TransactionLog) in.readObject();
+        }
+        assertEquals(21, copy.size());
+        assertEquals(13, copy.firstRetained());
+        for (int i = 13; i < 21; i++) {
+            assertEquals(i, copy.getAmount(i));
+        }
+        copy.append(TransactionType.DEPOSIT, 99, 99, 99);
+        assertEquals(99, copy.getAmount(21));
+        assertEquals(14, copy.firstRetained());
+    }
+
+    @Test
+    public void testSkipToThenGrowRing() {
+        TransactionLog bounded = new TransactionLog(64, null);
+        bounded.skipTo(1000);
+        ChunkedHistoryStore prefix = new ChunkedHistoryStore();
+        for (int i = 0; i < 5; i++) {
+            prefix.append(TransactionType.DEPOSIT, i, i, i);
+        }
+        TransactionLog prefilled = new TransactionLog(64, prefix);
+        prefilled.skipTo(5);
+        for (int i = 0; i < 100; i++) {
+            bounded.append(TransactionType.DEPOSIT, 1000 + i, 0, i);
+            prefilled.append(TransactionType.WITHDRAWAL, 5 + i, 0, 10 + i);
+        }
+        assertEquals(1100, bounded.size());
+        assertEquals(1036, bounded.firstRetained());
+        for (int s = 1036; s < 1100; s++) {
+            assertEquals(s, bounded.getAmount(s));
+        }
+        assertEquals(105, prefilled.size());
+        for (int s = 0; s < 105; s++) {
+            assertEquals(s, prefilled.getAmount(s));
+            assertEquals(s < 5 ? TransactionType.DEPOSIT : TransactionType.WITHDRAWAL, prefilled.getType(s));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSkipToMustMatchOverflow() {
+        new TransactionLog(8, new ChunkedHistoryStore()).skipTo(3);
+    }
+
+    @Test
+    public void testAccountRecordsIntoLog() {
+        Account account = new Account("1000000001", "CHECKING", 1000.0, 1L);
+        account.deposit(200);
+        account.withdraw(50);
+        account.applyMonthlyCharge(5);
+
+        TransactionLog accountLog = account.getTransactionLog();
+        assertEquals(3, account.getTransactionCount());
+        assertEquals(TransactionType.DEPOSIT, accountLog.getType(0));
+        assertEquals(TransactionType.WITHDRAWAL, accountLog.getType(1));
+        assertEquals(TransactionType.MONTHLY_CHARGE, accountLog.getType(2));
+        assertEquals(114500, accountLog.getBalanceAfter(2));
+
+        List<Transaction> history = account.getTransactions();
+        assertEquals("WITHDRAWAL", history.get(1).getTransactionType());
+        assertEquals(1150.0, history.get(1).getBalanceAfter(), 0.001);
+    }
+}
@@ -0,0 +1,197 @@
+package org.banking;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import org.banking.model.AccountSlots;
+import org.banking.model.BankingJournal;
+import org.banking.model.Customer;
+import org.banking.model.JournalUnavailableException;
+import org.banking.model.NotDurableException;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+import org.banking.service.TransactionPipeline;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionPipelineTest {
+
+    private static final int ACCOUNTS = 32;
+
+    private BankingService service;
+    private TransactionPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        service = new BankingService(true);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            service.registerCustomer(new Customer(i + 1, "C" + i, "L"));
+            service.createAccount(i + 1, accountNumber(i), "CHECKING", 10000);
+        }
+        pipeline = new TransactionPipeline(service, 4, 64);
+        pipeline.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pipeline.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresConcurrentService() {
+        new TransactionPipeline(new BankingService(), 2, 16);
+    }
+
+    @Test(timeout = 30000)
+    public void testSingleAccountCommands() throws Exception {
+        assertTrue(pipeline.submit(TransactionType.DEPOSIT, accountNumber(0), null, 500).get());
+        assertTrue(pipeline.submit(TransactionType.WITHDRAWAL, accountNumber(0), null, 200).get());
+        assertFalse(pipeline.submit(TransactionType.WITHDRAWAL, accountNumber(0), null, 1_000_000).get());
+        assertTrue(pipeline.submit(TransactionType.MONTHLY_CHARGE, accountNumber(0), null, 100).get());
+        assertFalse(pipeline.submit(TransactionType.DEPOSIT, "MISSING", null, 100).get());
+        assertEquals(10002.0, service.getAccountBalance(accountNumber(0)), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testManyTransfersAcrossShardsConserveMoney() throws Exception {
+        int transfers = 20000;
+        CountDownLatch done = new CountDownLatch(transfers);
+        AtomicInteger succeeded = new AtomicInteger();
+        for (int i = 0; i < transfers; i++) {
+            pipeline.transfer(accountNumber(i % ACCOUNTS), accountNumber((i * 7 + 3) % ACCOUNTS), 1 + (i % 5),
+                ok -> {
+                    if (ok) {
+                        succeeded.incrementAndGet();
+                    }
+                    done.countDown();
+                });
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        assertTrue(succeeded.get() > 0);
+        assertEquals(ACCOUNTS * 10000.0, service.getTotalBankBalance(), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testCommandsReachSlotAccounts() throws Exception {
+        service.setAccountSlots(new AccountSlots(16));
+        assertTrue(service.createAccount(1, "S1", "CHECKING", 1000));
+        assertTrue(service.createAccount(2, "S2", "SAVINGS", 1000));
+        assertNull(service.getAccount("S1"));
+
+        assertTrue(pipeline.submit(TransactionType.DEPOSIT, "S1", null, 500).get());
+        assertTrue(pipeline.submit(TransactionType.WITHDRAWAL, "S1", null, 200).get());
+        assertFalse(pipeline.submit(TransactionType.WITHDRAWAL, "S1", null, 1_000_000).get());
+        assertTrue(pipeline.submit(TransactionType.MONTHLY_CHARGE, "S1", null, 100).get());
+        assertFalse(pipeline.submit(TransactionType.TRANSFER_IN, "S1", null, 100).get());
+        assertEquals(100200, service.getAccountBalanceMinor("S1"));
+
+        assertTrue(pipeline.submit(TransactionType.TRANSFER_OUT, "S1", "S2", 1000).get());
+        assertTrue(pipeline.submit(TransactionType.TRANSFER_OUT, "S2", accountNumber(0), 3000).get());
+        assertTrue(pipeline.submit(TransactionType.TRANSFER_OUT, accountNumber(1), "S1", 500).get());
+        assertFalse(pipeline.submit(TransactionType.TRANSFER_OUT, accountNumber(1), "MISSING", 500).get());
+        assertEquals(99700, service.getAccountBalanceMinor("S1"));
+        assertEquals(98000, service.getAccountBalanceMinor("S2"));
+        assertEquals(1_003_000, service.getAccountBalanceMinor(accountNumber(0)));
+        assertEquals(999_500, service.getAccountBalanceMinor(accountNumber(1)));
+
+        assertTrue(pipeline.submit(TransactionType.INTEREST, "S2", null, 0).get());
+        assertEquals(98245, service.getAccountBalanceMinor("S2"));
+    }
+
+    @Test(timeout = 30000)
+    public void testTransferToInactiveTargetFails() throws Exception {
+        service.getAccount(accountNumber(1)).deactivateAccount();
+        assertFalse(pipeline.submit(TransactionType.TRANSFER_OUT, accountNumber(0), accountNumber(1), 100).get());
+        assertEquals(10000.0, service.getAccountBalance(accountNumber(0)), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testCloseDrainsSubmittedWork() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            pipeline.deposit(accountNumber(2), 1, null);
+        }
+        pipeline.close();
+        assertEquals(10010.0, service.getAccountBalance(accountNumber(2)), 0.001);
+    }
+
+    @Test(timeout = 30000)
+    public void testThrowingOperationFailsOnlyItsCommand() throws Exception {
+        int other = 1;
+        while (pipeline.shardFor(accountNumber(other)) != pipeline.shardFor(accountNumber(0))) {
+            other++;
+        }
+        service.setJournal(new FailingJournal(accountNumber(0)));
+        assertFalse(pipeline.submit(TransactionType.DEPOSIT, accountNumber(0), null, 100).get());
+        assertTrue(pipeline.submit(TransactionType.DEPOSIT, accountNumber(other), null, 100).get());
+        pipeline.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testCommandsCommitTheJournalBeforeCompleting() throws Exception {
+        FailingJournal journal = new FailingJournal(null);
+        service.setJournal(journal);
+        assertTrue(pipeline.submit(TransactionType.DEPOSIT, accountNumber(3), null, 100).get());
+        assertEquals(1, journal.commits.get());
+        assertTrue(pipeline.submit(TransactionType.TRANSFER_OUT, accountNumber(3), accountNumber(4), 100).get());
+        assertEquals(2, journal.commits.get());
+        assertFalse(pipeline.submit(TransactionType.WITHDRAWAL, accountNumber(3), null, 1_000_000).get());
+        assertEquals(2, journal.commits.get());
+
+        journal.failCommit = true;
+        try {
+            pipeline.submit(TransactionType.DEPOSIT, accountNumber(3), null, 100).get();
+            fail("an applied change the journal lost was reported as a plain result");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NotDurableException);
+        }
+        assertEquals(10001.0, service.getAccountBalance(accountNumber(3)), 0.001);
+    }
+
+    /**
+     * Counts commits and throws on postings to one account.
+     */
+    private static final class FailingJournal implements BankingJournal {
+        final String failing;
+        final AtomicLong commits = new AtomicLong();
+        volatile boolean failCommit;
+
+        FailingJournal(String failing) {
+            this.failing = failing;
+        }
+
+        public void customerRegistered(long customerId, String firstName, String lastName,
+                                       String email, String phone, String address) {
+        }
+
+        public void accountCreated(long customerId, String accountNumber, String accountType,
+                                   long balance, long minimumBalance, long interestRate) {
+        }
+
+        public void posted(String accountNumber, byte type, long amount, long balanceAfter, long timestampMicros) {
+            if (accountNumber.equals(failing)) {
+                throw new IllegalStateException("posting refused");
+            }
+        }
+
+        public void transferred(String fromAccountNumber, String toAccountNumber, long amount,
+                                long fromBalanceAfter, long toBalanceAfter, long timestampMicros) {
+        }
+
+        public void accountClosed(long customerId, String accountNumber) {
+        }
+
+        public void commit() {
+            if (failCommit) {
+                throw new JournalUnavailableException("disk full");
+            }
+            commits.incrementAndGet();
+        }
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("%010d", i + 1);
+    }
+}
@@ -0,0 +1,357 @@
+package org.banking;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.banking.files.WriteAheadLog;
+import org.banking.files.WriteAheadLog.Durability;
+import org.banking.model.AccountSlots;
+import org.banking.model.BankingJournal;
+import org.banking.model.Customer;
+import org.banking.model.JournalUnavailableException;
+import org.banking.model.NotDurableException;
+import org.banking.model.TransactionType;
+import org.banking.service.BankingService;
+import org.banking.service.JournalReplayer;
+import org.banking.service.TransactionPipeline;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = folder.getRoot().toPath().resolve("banking.wal");
+    }
+
+    /**
+     * Flattens journal calls into one line each, for comparing logs.
+     */
+    static final class RecordingJournal implements BankingJournal {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void customerRegistered(long customerId, String firstName, String lastName,
+                                       String email, String phone, String address) {
+            lines.add("register " + customerId + " " + firstName + " " + lastName + " " + email + " " + phone + " " + address);
+        }
+
+        @Override
+        public void accountCreated(long customerId, String accountNumber, String accountType,
+                                   long balance, long minimumBalance, long interestRate) {
+            lines.add("create " + customerId + " " + accountNumber + " " + accountType + " "
+                      + balance + " " + minimumBalance + " " + interestRate);
+        }
+
+        @Override
+        public void posted(String accountNumber, byte type, long amount, long balanceAfter, long timestampMicros) {
+            lines.add(TransactionType.nameOf(type) + " " + accountNumber + " " + amount + " " + balanceAfter);
+        }
+
+        @Override
+        public void transferred(String fromAccountNumber, String toAccountNumber, long amount,
+                                long fromBalanceAfter, long toBalanceAfter, long timestampMicros) {
+            lines.add("transfer " + fromAccountNumber + " " + toAccountNumber + " " + amount + " "
+                      + fromBalanceAfter + " " + toBalanceAfter);
+        }
+
+        @Override
+        public void accountClosed(long customerId, String accountNumber) {
+            lines.add("close " + customerId + " " + accountNumber);
+        }
+    }
+
+    private List<String> replay() throws IOException {
+        RecordingJournal journal = new RecordingJournal();
+        WriteAheadLog.replay(path, journal);
+        return journal.lines;
+    }
+
+    @Test
+    public void testRecordsRoundTrip() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.customerRegistered(1001L, "Zoë", "Smith", null, "555-0101", "1 Main St");
+            wal.accountCreated(1001L, "ACC001", "SAVINGS", 100_000, 10_000, 30_000);
+            wal.posted("ACC001", TransactionType.DEPOSIT, 2_550, 102_550, 1_700_000_000_000_000L);
+            wal.transferred("ACC001", "ACC002", 500, 102_050, 600, 1_700_000_000_000_001L);
+            wal.accountClosed(1001L, "ACC001");
+            wal.commit();
+            assertEquals(5, wal.getRecordCount());
+            assertEquals(wal.size(), wal.getDurableSize());
+        }
+        List<String> lines = replay();
+        assertEquals("register 1001 Zoë Smith null 555-0101 1 Main St", lines.get(0));
+        assertEquals("create 1001 ACC001 SAVINGS 100000 10000 30000", lines.get(1));
+        assertEquals("DEPOSIT ACC001 2550 102550", lines.get(2));
+        assertEquals("transfer ACC001 ACC002 500 102050 600", lines.get(3));
+        assertEquals("close 1001 ACC001", lines.get(4));
+    }
+
+    @Test
+    public void testLongStringsRoundTrip() throws IOException {
+        String address = "x".repeat(40_000);
+        String name = "ü".repeat(30_000); // 60,000 UTF-8 bytes
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.customerRegistered(7L, name, "Lee", null, "555", address);
+            wal.accountClosed(7L, "ACC7");
+            try {
+                wal.customerRegistered(8L, "Bob", "Ray", "y".repeat(70_000), null, null);
+                fail("string longer than the length field was written");
+            } catch (IllegalArgumentException expected) {
+                // rejected before anything was appended
+            }
+            assertEquals(2, wal.getRecordCount());
+        }
+        List<String> lines = replay();
+        assertEquals(List.of("register 7 " + name + " Lee null 555 " + address, "close 7 ACC7"), lines);
+    }
+
+    @Test
+    public void testServiceJournalsEveryChange() throws IOException {
+        BankingService service = new BankingService();
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            service.setJournal(wal);
+            service.registerCustomer(new Customer(1L, "Ann", "Lee"));
+            service.registerCustomer(new Customer(2L, "Bob", "Ray"));
+            service.createAccount(1L, "A1", "SAVINGS", 1000.0);
+            service.createAccount(2L, "B1", "CHECKING", 500.0);
+            service.processTransaction("A1", "DEPOSIT", 250.0);
+            service.processTransaction("A1", "WITHDRAWAL", 100.0);
+            service.processTransaction("A1", "WITHDRAWAL", 99_999.0); // rejected, not logged
+            service.transferFunds("A1", "B1", 50.0);
+            service.applyMonthlyCharges(2L, "B1", 5.0);
+            service.applyInterest(1L, "A1");
+            service.processTransaction("B1", "WITHDRAWAL", 445.0);
+            service.applyMonthlyCharges(2L, "B1", 100.0);
+            service.closeAccount(2L, "B1");
+            assertEquals(wal.size(), wal.getDurableSize());
+        }
+        List<String> lines = replay();
+        assertEquals(12, lines.size());
+        assertEquals("create 1 A1 SAVINGS 100000 10000 30000", lines.get(2));
+        assertEquals("DEPOSIT A1 25000 125000", lines.get(4));
+        assertEquals("WITHDRAWAL A1 10000 115000", lines.get(5));
+        assertEquals("transfer A1 B1 5000 110000 55000", lines.get(6));
+        assertEquals("MONTHLY_CHARGE B1 500 54500", lines.get(7));
+        assertEquals("INTEREST A1 275 110275", lines.get(8));
+        assertEquals("close 2 B1", lines.get(11));
+    }
+
+    @Test
+    public void testTransferInTwoLegsIsOneRecord() throws Exception {
+        BankingService service = new BankingService(true);
+        long transfers;
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            service.setJournal(wal);
+            service.registerCustomer(new Customer(1L, "Ann", "Lee"));
+            service.createAccount(1L, "A1", "CHECKING", 1000.0);
+            service.createAccount(1L, "B1", "CHECKING", 1000.0);
+            service.setAccountSlots(new AccountSlots(4));
+            service.createAccount(1L, "S1", "CHECKING", 1000.0);
+            transfers = wal.size();
+            try (TransactionPipeline pipeline = new TransactionPipeline(service, 2, 16)) {
+                pipeline.start();
+                assertTrue(pipeline.submit(TransactionType.TRANSFER_OUT, "A1", "B1", 5000).get());
+            }
+            assertTrue(service.transferFunds("A1", "S1", 100.0));
+            assertTrue(service.transferFunds("S1", "B1", 30.0));
+        }
+        assertEquals(List.of("transfer A1 B1 5000 95000 105000",
+                             "transfer A1 S1 10000 85000 110000",
+                             "transfer S1 B1 3000 107000 108000"), replay().subList(4, 7));
+
+        // Cut anywhere, even inside a transfer, the log replays with no money lost.
+        byte[] log = Files.readAllBytes(path);
+        for (int cut = (int) transfers; cut <= log.length; cut++) {
+            Files.write(path, Arrays.copyOf(log, cut));
+            BankingService recovered = new BankingService();
+            JournalReplayer replayer = new JournalReplayer(recovered);
+            WriteAheadLog.replay(path, replayer);
+            replayer.finish();
+            assertEquals(300000, recovered.getTotalBankBalanceMinor());
+        }
+    }
+
+    @Test
+    public void testAppendsAfterReopen() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.accountClosed(1L, "A");
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(path, Durability.PER_OPERATION, 0)) {
+            wal.accountClosed(2L, "B");
+        }
+        assertEquals(List.of("close 1 A", "close 2 B"), replay());
+    }
+
+    @Test
+    public void testTornTailIsIgnoredAndTruncated() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.accountClosed(1L, "A");
+            wal.accountClosed(2L, "B");
+        }
+        long size = Files.size(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size - 3);
+        }
+        assertEquals(List.of("close 1 A"), replay());
+
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.accountClosed(3L, "C");
+        }
+        assertEquals(List.of("close 1 A", "close 3 C"), replay());
+    }
+
+    @Test
+    public void testCorruptRecordEndsLog() throws IOException {
+        long second;
+        try (WriteAheadLog wal = new WriteAheadLog(path)) {
+            wal.accountClosed(1L, "A");
+            second = wal.size();
+            wal.accountClosed(2L, "B");
+            wal.accountClosed(3L, "C");
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(second + 12);
+            file.write(0x7f);
+        }
+        assertEquals(List.of("close 1 A"), replay());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsForeignFile() throws IOException {
+        Files.write(path, "not a log at all".getBytes());
+        new WriteAheadLog(path).close();
+    }
+
+    @Test
+    public void testPerOperationForcesEveryCommit() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(path, Durability.PER_OPERATION, 0)) {
+            for (int i = 0; i < 10; i++) {
+                wal.posted("A", TransactionType.DEPOSIT, i, i, i);
+                assertTrue(wal.getDurableSize() < wal.size()); // appending does no I/O
+                wal.commit();
+                assertEquals(wal.size(), wal.getDurableSize());
+            }
+            wal.commit(); // nothing new to force
+            assertEquals(10, wal.getForceCount());
+        }
+    }
+
+    @Test
+    public void testFailedLogRefusesChangesBeforeTheyApply() throws Exception {
+        BankingService service = new BankingService();
+        WriteAheadLog wal = new WriteAheadLog(path);
+        service.setJournal(wal);
+        service.registerCustomer(new Customer(1L, "Ann", "Lee"));
+        service.createAccount(1L, "A1", "SAVINGS", 1000.0);
+        Field channel = WriteAheadLog.class.getDeclaredField("channel");
+        channel.setAccessible(true);
+        ((FileChannel) channel.get(wal)).close(); // the next write fails
+
+        // Admitted before the failure: applied, and reported as not durable.
+        try {
+            service.processTransaction("A1", "DEPOSIT", 10.0);
+            fail("change reported durable by a failed journal");
+        } catch (NotDurableException expected) {
+            assertTrue(expected.getCause() instanceof JournalUnavailableException);
+        }
+        try {
+            service.processTransaction("A1", "DEPOSIT", 10.0);
+            fail("change accepted by a failed journal");
+        } catch (JournalUnavailableException expected) {
+            // refused before the balance moved
+        }
+        try {
+            service.registerCustomer(new Customer(2L, "Bob", "Ray"));
+            fail("registration accepted by a failed journal");
+        } catch (JournalUnavailableException expected) {
+            // refused before the customer was added
+        }
+        assertNull(service.getCustomer(2L));
+        assertEquals(1010.0, service.getAccountBalance("A1"), 0.001);
+        assertEquals(1010.0, service.getTotalBankBalance(), 0.001);
+
+        wal.posted("A1", TransactionType.DEPOSIT, 1, 1, 1); // dropped, not thrown
+        try {
+            wal.commit();
+            fail("commit on a failed journal");
+        } catch (JournalUnavailableException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+        try {
+            wal.close();
+            fail("close reported no failure");
+        } catch (IOException expected) {
+            // the sticky failure
+        }
+    }
+
+    @Test
+    public void testPerIntervalDefersForce() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(path, Durability.PER_INTERVAL, 5)) {
+            wal.posted("A", TransactionType.DEPOSIT, 1, 1, 1);
+            wal.commit();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (wal.getDurableSize() < wal.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(wal.size(), wal.getDurableSize());
+            wal.posted("A", TransactionType.DEPOSIT, 2, 3, 2);
+        }
+        assertEquals(2, replay().size());
+    }
+
+    @Test
+    public void testGroupCommitSharesForces() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (WriteAheadLog wal = new WriteAheadLog(path, Durability.PER_BATCH, 0)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String account = "T" + t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        wal.posted(account, TransactionType.DEPOSIT, 1, i + 1, i);
+                        wal.commit();
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            assertEquals(threads * perThread, wal.getRecordCount());
+            assertTrue(wal.getForceCount() <= wal.getRecordCount());
+            assertEquals(wal.size(), wal.getDurableSize());
+        } finally {
+            pool.shutdown();
+        }
+        List<String> lines = replay();
+        assertEquals(threads * perThread, lines.size());
+        assertTrue(lines.contains("DEPOSIT T7 1 200"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAppendAfterCloseFails() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(path);
+        wal.close();
+        wal.accountClosed(1L, "A");
+    }
+}